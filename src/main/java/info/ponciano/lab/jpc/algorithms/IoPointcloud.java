@@ -16,6 +16,8 @@
  */
 package info.ponciano.lab.jpc.algorithms;
 
+import info.ponciano.lab.jpc.mesh.ply.PLY;
+import info.ponciano.lab.jpc.mesh.ply.PLYPointCloud;
 import info.ponciano.lab.jpc.pointcloud.Pointcloud;
 import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
 import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
@@ -89,6 +91,50 @@ public class IoPointcloud {
         return result;
     }
 
+    /**
+     * Saves the patches of a point cloud in a PLY file.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be saved.
+     * @param binary true to write a binary little endian file, false to write
+     * an ASCII file.
+     * @return true if the point cloud is correctly saved, false otherwise.
+     * @see PLYPointCloud
+     */
+    public static boolean savePLY(String path, Pointcloud cloud, boolean binary) {
+        try {
+            PLYPointCloud.write(new File(path).toPath(), cloud,
+                    binary ? PLY.Format.BINARY_LITTLE_ENDIAN : PLY.Format.ASCII);
+            return true;
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Loads the patches of a point cloud from a PLY file.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be filled.
+     * @return true if an error occurs during the reading, false otherwise.
+     * @throws FileNotFoundException if the file is not found.
+     * @see PLYPointCloud
+     */
+    public static boolean loadPLY(String path, Pointcloud cloud) throws FileNotFoundException {
+        File fileio = new File(path);
+        if (!fileio.exists()) {
+            throw new FileNotFoundException(path + " not found");
+        }
+        try {
+            PLYPointCloud.read(fileio.toPath(), cloud);
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            return true;
+        }
+        return false;
+    }
+
     public static String saveSet(Iterator<String> irregular, char key) {
 
         StringBuilder txt = new StringBuilder();
@@ -118,7 +164,41 @@ public class IoPointcloud {
         return cloud;
     }
 
+    /**
+     * Loads a point cloud file with {@code ParallelAsciiReader}.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be filled.
+     * @return true if an error occurs during the reading, false otherwise.
+     * @throws FileNotFoundException if the file is not found.
+     * @throws NumberFormatException if a color or the number of points is
+     * malformed.
+     */
     public static boolean loadASCII(String path, Pointcloud cloud) throws FileNotFoundException, NumberFormatException {
+        File fileio = new File(path);
+        if (!fileio.exists()) {
+            throw new FileNotFoundException(path + " not found");
+        }
+        try {
+            ParallelAsciiReader.read(fileio.toPath(), cloud);
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads a point cloud file line by line on the current thread.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be filled.
+     * @return true if an error occurs during the reading, false otherwise.
+     * @throws FileNotFoundException if the file is not found.
+     * @throws NumberFormatException if a color or the number of points is
+     * malformed.
+     */
+    public static boolean loadASCIILines(String path, Pointcloud cloud) throws FileNotFoundException, NumberFormatException {
         BufferedReader reader = null;
         IOException error = null;
         int nbpoint = -1;
@@ -145,25 +225,7 @@ public class IoPointcloud {
                 // get regex with white character
                 String[] split = line.split("\\s");
                 if (split.length > 1 && split[0].charAt(0) == SET_K) {
-                    switch (split[1].charAt(0)) {
-                        case Pointcloud.ISOLATED_K:
-                            for (int i = 2; i < split.length; i++) {
-                                isolated.add(split[i]);
-                            }
-                            break;
-                        case Pointcloud.IRREGULAR_K:
-                            for (int i = 2; i < split.length; i++) {
-                                irregular.add(split[i]);
-                            }
-                            break;
-                        case Pointcloud.REGULAR_K:
-                            for (int i = 2; i < split.length; i++) {
-                                regular.add(split[i]);
-                            }
-                            break;
-                        default:
-                            System.err.println("Unknow key for the point cloud loading:" + split[0] + " info.ponciano.lab.jpc.algorithms.IoPointcloud.loadASCII()");
-                    }
+                    readSet(split, regular, irregular, isolated);
                 } else // if the line is not a comment
                 if (line.charAt(0) != '#' && line.charAt(0) != '/') {
                     if (split.length == 1) { //it is the number of points
@@ -252,4 +314,34 @@ public class IoPointcloud {
         return false;
     }
 
+    /**
+     * Adds the ids of a set line to the set given by its key.
+     *
+     * @param split tokens of the line.
+     * @param regular ids of the regular patches.
+     * @param irregular ids of the irregular patches.
+     * @param isolated ids of the isolated patches.
+     */
+    public static void readSet(String[] split, Set<String> regular, Set<String> irregular, Set<String> isolated) {
+        switch (split[1].charAt(0)) {
+            case Pointcloud.ISOLATED_K:
+                for (int i = 2; i < split.length; i++) {
+                    isolated.add(split[i]);
+                }
+                break;
+            case Pointcloud.IRREGULAR_K:
+                for (int i = 2; i < split.length; i++) {
+                    irregular.add(split[i]);
+                }
+                break;
+            case Pointcloud.REGULAR_K:
+                for (int i = 2; i < split.length; i++) {
+                    regular.add(split[i]);
+                }
+                break;
+            default:
+                System.err.println("Unknow key for the point cloud loading:" + split[0] + " info.ponciano.lab.jpc.algorithms.IoPointcloud.loadASCII()");
+        }
+    }
+
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.algorithms;
+
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudArray;
+import info.ponciano.lab.jpc.pointcloud.stucture.kdtree.KdTree;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Estimates the normal of every point of a point cloud by principal component
+ * analysis of its neighbourhood.
+ * <p>
+ * The neighbourhood of a point is given by a KD-tree of the cloud: its k
+ * nearest points, or the points closer than a radius. The normal is the
+ * eigenvector of the smallest eigenvalue of the covariance matrix of the
+ * neighbourhood, computed in closed form. The points are processed by batches
+ * on a fork-join pool of a bounded number of threads.</p>
+ * <p>
+ * The results are the components x, y, z of the normal of each point in the
+ * order of the cloud, oriented toward the viewpoint if one is set. They are
+ * written into the cloud: into the normal columns of a
+ * {@code PointCloudArray}, or with {@code Point.setNormal} otherwise. As
+ * {@code Normal} keeps the absolute value of its components, the orientation
+ * is only kept in the results. The normal of a point having less than 3
+ * neighbours or a neighbourhood without direction is the zero vector.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class NormalEstimation implements Algorithm<float[]> {
+
+    /**
+     * Number of points processed by a single task.
+     */
+    private static final int BATCH_SIZE = 1024;
+    /**
+     * Squared norm under which a cross product of the rows of the shifted
+     * covariance matrix, scaled to 1, is not used as eigenvector.
+     */
+    private static final double EPSILON = 1e-24;
+
+    private final APointCloud cloud;
+    private final int k;
+    private double radius;
+    private double[] viewpoint;
+    private int parallelism;
+    private float[] normals;
+
+    /**
+     * Creates new instance of {@code NormalEstimation} using the k nearest
+     * neighbours of each point.
+     *
+     * @param cloud point cloud whose normals are estimated.
+     * @param k number of neighbours of each point, the point included.
+     */
+    public NormalEstimation(APointCloud cloud, int k) {
+        if (k < 3) {
+            throw new IllegalArgumentException("At least 3 neighbours are needed: " + k);
+        }
+        this.cloud = cloud;
+        this.k = k;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Uses the points closer than a radius as neighbourhood instead of the k
+     * nearest neighbours.
+     *
+     * @param radius radius of the neighbourhoods, 0 to use the k nearest
+     * neighbours.
+     */
+    public void setRadius(double radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius should be positive: " + radius);
+        }
+        this.radius = radius;
+    }
+
+    /**
+     * Sets the viewpoint toward which the normals are oriented.
+     *
+     * @param viewpoint position of the viewpoint, null to not orient the
+     * normals.
+     */
+    public void setViewpoint(Coord3D viewpoint) {
+        this.viewpoint = viewpoint == null ? null : new double[]{viewpoint.getX(), viewpoint.getY(), viewpoint.getZ()};
+    }
+
+    /**
+     * Sets the number of threads estimating the normals, the number of
+     * available processors by default.
+     *
+     * @param parallelism number of threads.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void run() {
+        int n = this.cloud.size();
+        double[] coords = new double[3 * n];
+        Point[] points = null;
+        PointCloudArray array = this.cloud instanceof PointCloudArray ? (PointCloudArray) this.cloud : null;
+        if (array != null) {
+            for (int i = 0; i < n; i++) {
+                coords[3 * i] = array.getX(i);
+                coords[3 * i + 1] = array.getY(i);
+                coords[3 * i + 2] = array.getZ(i);
+            }
+        } else {
+            points = this.cloud.stream().toArray(Point[]::new);
+            for (int i = 0; i < n; i++) {
+                Coord3D c = points[i].getCoords();
+                coords[3 * i] = c.getX();
+                coords[3 * i + 1] = c.getY();
+                coords[3 * i + 2] = c.getZ();
+            }
+        }
+        float[] results = new float[3 * n];
+        if (n > 0) {
+            KdTree tree = new KdTree(coords);
+            ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+            try {
+                pool.invoke(new NormalTask(tree, coords, results, 0, n));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Normal normal = new Normal(results[3 * i], results[3 * i + 1], results[3 * i + 2]);
+            if (array != null) {
+                array.setNormal(i, normal);
+            } else {
+                points[i].setNormal(normal);
+            }
+        }
+        this.cloud.invalidate();
+        this.normals = results;
+    }
+
+    /**
+     * Gets the normals estimated.
+     *
+     * @return the components x, y, z of the normal of each point in the order
+     * of the cloud, or null if the algorithm was not run before.
+     */
+    @Override
+    public float[] getResults() {
+        return this.normals;
+    }
+
+    /**
+     * Computes the unit eigenvector of the smallest eigenvalue of a symmetric
+     * 3x3 matrix, with the trigonometric solution of its characteristic
+     * polynomial.
+     *
+     * @param m the coefficients 00, 01, 02, 11, 12, 22 of the matrix.
+     * @param vector array receiving the eigenvector.
+     * @return false if every eigenvalue is equal and no direction is given,
+     * true otherwise.
+     */
+    static boolean smallestEigenvector(double[] m, double[] vector) {
+        double scale = 0;
+        for (double v : m) {
+            scale = Math.max(scale, Math.abs(v));
+        }
+        if (scale == 0) {
+            return false;
+        }
+        double a00 = m[0] / scale, a01 = m[1] / scale, a02 = m[2] / scale;
+        double a11 = m[3] / scale, a12 = m[4] / scale, a22 = m[5] / scale;
+        double q = (a00 + a11 + a22) / 3;
+        double b00 = a00 - q, b11 = a11 - q, b22 = a22 - q;
+        double p2 = b00 * b00 + b11 * b11 + b22 * b22 + 2 * (a01 * a01 + a02 * a02 + a12 * a12);
+        if (p2 <= EPSILON) {
+            return false;
+        }
+        double p = Math.sqrt(p2 / 6);
+        double det = b00 * (b11 * b22 - a12 * a12) - a01 * (a01 * b22 - a12 * a02) + a02 * (a01 * a12 - b11 * a02);
+        double r = Math.max(-1, Math.min(1, det / (2 * p * p * p)));
+        double phi = Math.acos(r) / 3;
+        double min = q + 2 * p * Math.cos(phi + 2 * Math.PI / 3);
+        if (eigenvector(a00, a01, a02, a11, a12, a22, min, vector)) {
+            return true;
+        }
+        // double smallest eigenvalue: any direction orthogonal to the largest
+        double max = q + 2 * p * Math.cos(phi);
+        if (!eigenvector(a00, a01, a02, a11, a12, a22, max, vector)) {
+            return false;
+        }
+        // cross product with the axis x, or y if the vector is close to x
+        double x = Math.abs(vector[0]) < 0.9 ? 0 : -vector[2];
+        double y = Math.abs(vector[0]) < 0.9 ? vector[2] : 0;
+        double z = Math.abs(vector[0]) < 0.9 ? -vector[1] : vector[0];
+        double norm = Math.sqrt(x * x + y * y + z * z);
+        vector[0] = x / norm;
+        vector[1] = y / norm;
+        vector[2] = z / norm;
+        return true;
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    /**
+     * Computes the unit eigenvector of a simple eigenvalue as the largest
+     * cross product of the rows of the matrix minus the eigenvalue.
+     */
+    private static boolean eigenvector(double a00, double a01, double a02, double a11, double a12, double a22, double eigenvalue, double[] vector) {
+        double r00 = a00 - eigenvalue, r11 = a11 - eigenvalue, r22 = a22 - eigenvalue;
+        // cross products of the rows (r00, a01, a02), (a01, r11, a12) and (a02, a12, r22)
+        double x01 = a01 * a12 - a02 * r11, y01 = a02 * a01 - r00 * a12, z01 = r00 * r11 - a01 * a01;
+        double x02 = a01 * r22 - a02 * a12, y02 = a02 * a02 - r00 * r22, z02 = r00 * a12 - a01 * a02;
+        double x12 = r11 * r22 - a12 * a12, y12 = a12 * a02 - a01 * r22, z12 = a01 * a12 - r11 * a02;
+        double n01 = x01 * x01 + y01 * y01 + z01 * z01;
+        double n02 = x02 * x02 + y02 * y02 + z02 * z02;
+        double n12 = x12 * x12 + y12 * y12 + z12 * z12;
+        if (Math.max(n01, Math.max(n02, n12)) <= EPSILON) {
+            return false;
+        }
+        if (n01 >= n02 && n01 >= n12) {
+            double norm = Math.sqrt(n01);
+            vector[0] = x01 / norm;
+            vector[1] = y01 / norm;
+            vector[2] = z01 / norm;
+        } else if (n02 >= n12) {
+            double norm = Math.sqrt(n02);
+            vector[0] = x02 / norm;
+            vector[1] = y02 / norm;
+            vector[2] = z02 / norm;
+        } else {
+            double norm = Math.sqrt(n12);
+            vector[0] = x12 / norm;
+            vector[1] = y12 / norm;
+            vector[2] = z12 / norm;
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the normals of a range of points, split in batches.
+     */
+    private class NormalTask extends RecursiveAction {
+
+        private final KdTree tree;
+        private final double[] coords;
+        private final float[] results;
+        private final int from;
+        private final int to;
+
+        NormalTask(KdTree tree, double[] coords, float[] results, int from, int to) {
+            this.tree = tree;
+            this.coords = coords;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > BATCH_SIZE) {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(new NormalTask(this.tree, this.coords, this.results, this.from, mid),
+                        new NormalTask(this.tree, this.coords, this.results, mid, this.to));
+            } else {
+                double[] covariance = new double[6];
+                double[] normal = new double[3];
+                for (int i = this.from; i < this.to; i++) {
+                    double x = this.coords[3 * i], y = this.coords[3 * i + 1], z = this.coords[3 * i + 2];
+                    int[] neighbours = radius > 0 ? this.tree.radius(x, y, z, radius) : this.tree.knn(x, y, z, k);
+                    if (neighbours.length < 3) {
+                        continue;
+                    }
+                    this.covariance(neighbours, covariance);
+                    if (smallestEigenvector(covariance, normal)) {
+                        if (viewpoint != null
+                                && normal[0] * (viewpoint[0] - x) + normal[1] * (viewpoint[1] - y) + normal[2] * (viewpoint[2] - z) < 0) {
+                            normal[0] = -normal[0];
+                            normal[1] = -normal[1];
+                            normal[2] = -normal[2];
+                        }
+                        this.results[3 * i] = (float) normal[0];
+                        this.results[3 * i + 1] = (float) normal[1];
+                        this.results[3 * i + 2] = (float) normal[2];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Computes the covariance of the neighbours around their mean, to
+         * keep the precision of georeferenced coordinates.
+         */
+        private void covariance(int[] neighbours, double[] covariance) {
+            double mx = 0, my = 0, mz = 0;
+            for (int j : neighbours) {
+                mx += this.coords[3 * j];
+                my += this.coords[3 * j + 1];
+                mz += this.coords[3 * j + 2];
+            }
+            mx /= neighbours.length;
+            my /= neighbours.length;
+            mz /= neighbours.length;
+            Arrays.fill(covariance, 0);
+            for (int j : neighbours) {
+                double dx = this.coords[3 * j] - mx;
+                double dy = this.coords[3 * j + 1] - my;
+                double dz = this.coords[3 * j + 2] - mz;
+                covariance[0] += dx * dx;
+                covariance[1] += dx * dy;
+                covariance[2] += dx * dz;
+                covariance[3] += dy * dy;
+                covariance[4] += dy * dz;
+                covariance[5] += dz * dz;
+            }
+        }
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.algorithms;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.pointcloud.Pointcloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel reader of the ASCII format written by
+ * {@code IoPointcloud.saveASCII}.
+ * <p>
+ * The file is split in ranges of bytes aligned on line ends. Each range is
+ * parsed by a task directly from the bytes into primitive arrays, numbers
+ * being read without creating any string. The ranges are then merged in the
+ * order of the file: colors and normals missing on a line are inherited from
+ * the previous lines, patches are created in the order of their first point
+ * and set lines ({@code %}) are added in the order of the file.
+ * </p>
+ * <p>
+ * Lines are interpreted as {@code IoPointcloud.loadASCIILines} does, except
+ * that empty lines, blank lines and lines with less than three values, which
+ * made the line reader fail, are respectively ignored and completed with 0.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class ParallelAsciiReader {
+
+    /**
+     * Size of the ranges of bytes parsed by each task.
+     */
+    public static final int RANGE_SIZE = 1 << 23;
+    private static final byte HAS_COLOR = 1;
+    private static final byte HAS_NORMAL = 2;
+    private static final long MAX_EXACT = 1L << 53;
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private ParallelAsciiReader() {
+    }
+
+    /**
+     * Reads a point cloud file with as many tasks as available processors.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be filled.
+     * @throws IOException if the file cannot be read.
+     * @throws NumberFormatException if a color or the number of points is
+     * malformed.
+     */
+    public static void read(Path path, Pointcloud cloud) throws IOException {
+        read(path, cloud, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads a point cloud file.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be filled.
+     * @param threads number of threads used to parse the file.
+     * @throws IOException if the file cannot be read.
+     * @throws NumberFormatException if a color or the number of points is
+     * malformed.
+     */
+    public static void read(Path path, Pointcloud cloud, int threads) throws IOException {
+        read(path, cloud, threads, RANGE_SIZE);
+    }
+
+    /**
+     * Reads a point cloud file.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be filled.
+     * @param threads number of threads used to parse the file.
+     * @param rangeSize size in bytes of the ranges parsed by each task.
+     * @throws IOException if the file cannot be read.
+     * @throws NumberFormatException if a color or the number of points is
+     * malformed.
+     */
+    public static void read(Path path, Pointcloud cloud, int threads, int rangeSize) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = split(channel, rangeSize);
+            List<Future<Range>> futures = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                final long start = bounds[i];
+                final long end = bounds[i + 1];
+                futures.add(executor.submit(() -> parse(channel, start, end)));
+            }
+            List<Range> ranges = new ArrayList<>();
+            for (Future<Range> future : futures) {
+                ranges.add(get(future));
+            }
+            merge(ranges, cloud, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the file in ranges starting at the beginning of a line.
+     *
+     * @return positions of the beginning of each range and of the end of the
+     * file.
+     */
+    private static long[] split(FileChannel channel, int rangeSize) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long last = 0;
+        for (long nominal = rangeSize; nominal < size; nominal += rangeSize) {
+            long position = Math.max(nominal, last);
+            boolean found = false;
+            while (!found && position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                for (int i = 0; i < read && !found; i++) {
+                    if (buffer.get(i) == '\n') {
+                        position += i + 1;
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    position += Math.max(read, 0);
+                }
+            }
+            if (position < size && position > last) {
+                bounds.add(position);
+                last = position;
+            }
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static Range parse(FileChannel channel, long start, long end) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        Range range = new Range(bytes.length / 32 + 16);
+        int s = 0;
+        try {
+            while (s < bytes.length) {
+                int e = s;
+                while (e < bytes.length && bytes[e] != '\n' && bytes[e] != '\r') {
+                    e++;
+                }
+                range.line(bytes, s, e);
+                if (e < bytes.length && bytes[e] == '\r' && e + 1 < bytes.length && bytes[e + 1] == '\n') {
+                    e++;
+                }
+                s = e + 1;
+            }
+        } catch (RuntimeException ex) {
+            // the line reader stops at the first error
+            range.error = ex;
+        }
+        return range;
+    }
+
+    private static void merge(List<Range> ranges, Pointcloud cloud, ExecutorService executor) throws IOException {
+        // errors and point count in the order of the file
+        int nbpoint = -1;
+        for (Range range : ranges) {
+            if (nbpoint < 0 && range.count != null) {
+                nbpoint = Integer.parseInt(range.count);
+            }
+            if (range.error != null) {
+                throw range.error;
+            }
+        }
+        // inherits the color and the normal of the previous lines
+        short r = 255;
+        short g = 255;
+        short b = 255;
+        double nx = 0, ny = 0, nz = 0;
+        for (Range range : ranges) {
+            for (int i = 0; i < range.size; i++) {
+                if ((range.flags[i] & HAS_COLOR) != 0) {
+                    r = range.colors[i * 3];
+                    g = range.colors[i * 3 + 1];
+                    b = range.colors[i * 3 + 2];
+                } else {
+                    range.colors[i * 3] = r;
+                    range.colors[i * 3 + 1] = g;
+                    range.colors[i * 3 + 2] = b;
+                }
+                if ((range.flags[i] & HAS_NORMAL) != 0) {
+                    nx = range.values[i * 6 + 3];
+                    ny = range.values[i * 6 + 4];
+                    nz = range.values[i * 6 + 5];
+                } else {
+                    range.values[i * 6 + 3] = nx;
+                    range.values[i * 6 + 4] = ny;
+                    range.values[i * 6 + 5] = nz;
+                }
+            }
+        }
+        // creates the points of each range
+        List<Future<Point[]>> points = new ArrayList<>();
+        for (Range range : ranges) {
+            points.add(executor.submit(range::points));
+        }
+        // global index of the patches in the order of their first point
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        List<int[]> locals = new ArrayList<>();
+        for (Range range : ranges) {
+            int[] local = new int[range.ids.size()];
+            for (int i = 0; i < local.length; i++) {
+                local[i] = ids.computeIfAbsent(range.ids.get(i), k -> ids.size());
+            }
+            locals.add(local);
+        }
+        List<Point[]> created = new ArrayList<>();
+        for (Future<Point[]> future : points) {
+            created.add(get(future));
+        }
+        // buckets the points by patch with a counting sort, keeping the order
+        // of the file in each bucket
+        List<String> keys = new ArrayList<>(ids.keySet());
+        int[] starts = new int[keys.size() + 1];
+        for (int k = 0; k < ranges.size(); k++) {
+            Range range = ranges.get(k);
+            int[] local = locals.get(k);
+            for (int i = 0; i < range.size; i++) {
+                starts[local[range.patches[i]] + 1]++;
+            }
+        }
+        for (int p = 0; p < keys.size(); p++) {
+            starts[p + 1] += starts[p];
+        }
+        Point[] sorted = new Point[starts[keys.size()]];
+        int[] next = Arrays.copyOf(starts, keys.size());
+        for (int k = 0; k < ranges.size(); k++) {
+            Range range = ranges.get(k);
+            int[] local = locals.get(k);
+            Point[] rp = created.get(k);
+            for (int i = 0; i < range.size; i++) {
+                sorted[next[local[range.patches[i]]]++] = rp[i];
+            }
+        }
+        // fills each patch from its bucket
+        List<Callable<PointCloudMap>> tasks = new ArrayList<>();
+        for (int p = 0; p < keys.size(); p++) {
+            final int from = starts[p];
+            final int to = starts[p + 1];
+            tasks.add(() -> {
+                PointCloudMap cloudPatch = new PointCloudMap();
+                for (int i = from; i < to; i++) {
+                    cloudPatch.add(sorted[i]);
+                }
+                return cloudPatch;
+            });
+        }
+        List<Future<PointCloudMap>> patches = new ArrayList<>();
+        for (Callable<PointCloudMap> task : tasks) {
+            patches.add(executor.submit(task));
+        }
+        for (int p = 0; p < keys.size(); p++) {
+            String id = keys.get(p);
+            PointCloudMap patch = get(patches.get(p));
+            if (cloud.contains(id)) {
+                cloud.get(id).add(patch);
+            } else {
+                cloud.add(id, patch);
+            }
+        }
+        Set<String> regular = new LinkedHashSet<>();
+        Set<String> irregular = new LinkedHashSet<>();
+        Set<String> isolated = new LinkedHashSet<>();
+        for (Range range : ranges) {
+            regular.addAll(range.regular);
+            irregular.addAll(range.irregular);
+            isolated.addAll(range.isolated);
+        }
+        cloud.setIrregular(irregular);
+        cloud.setRegular(regular);
+        cloud.setIsolated(isolated);
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == 0x0B || c == '\f';
+    }
+
+    /**
+     * Parses a decimal number as {@code Double.parseDouble} does. Numbers
+     * made of a mantissa lower than 2^53 and a power of ten lower than 22 are
+     * computed exactly from the bytes, others are given to
+     * {@code Double.parseDouble}.
+     *
+     * @param bytes bytes of the line.
+     * @param a first byte of the number.
+     * @param b end of the number.
+     * @return the number parsed.
+     * @throws NumberFormatException if the bytes are not a number.
+     */
+    static double parseDouble(byte[] bytes, int a, int b) {
+        int i = a;
+        boolean negative = false;
+        if (i < b && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean exact = true;
+        while (i < b && bytes[i] >= '0' && bytes[i] <= '9') {
+            if (mantissa < (MAX_EXACT - 9) / 10) {
+                mantissa = mantissa * 10 + (bytes[i] - '0');
+            } else {
+                exact = false;
+            }
+            digits++;
+            i++;
+        }
+        if (i < b && bytes[i] == '.') {
+            i++;
+            while (i < b && bytes[i] >= '0' && bytes[i] <= '9') {
+                if (mantissa < (MAX_EXACT - 9) / 10) {
+                    mantissa = mantissa * 10 + (bytes[i] - '0');
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+                digits++;
+                i++;
+            }
+        }
+        if (digits > 0 && i < b && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < b && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExp = bytes[i] == '-';
+                i++;
+            }
+            int e = 0;
+            int expDigits = 0;
+            while (i < b && bytes[i] >= '0' && bytes[i] <= '9' && expDigits < 5) {
+                e = e * 10 + (bytes[i] - '0');
+                expDigits++;
+                i++;
+            }
+            if (expDigits == 0) {
+                exact = false;
+            }
+            exponent += negativeExp ? -e : e;
+        }
+        if (exact && digits > 0 && i == b) {
+            double value;
+            if (mantissa == 0) {
+                value = 0.0;
+            } else if (exponent >= 0 && exponent < POW10.length) {
+                value = mantissa * POW10[exponent];
+            } else if (exponent < 0 && -exponent < POW10.length) {
+                value = mantissa / POW10[-exponent];
+            } else {
+                return Double.parseDouble(new String(bytes, a, b - a, StandardCharsets.UTF_8));
+            }
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(bytes, a, b - a, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a decimal number as {@code Short.parseShort} does.
+     *
+     * @param bytes bytes of the line.
+     * @param a first byte of the number.
+     * @param b end of the number.
+     * @return the number parsed.
+     * @throws NumberFormatException if the bytes are not a short.
+     */
+    static short parseShort(byte[] bytes, int a, int b) {
+        int i = a;
+        boolean negative = false;
+        if (i < b && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        int value = 0;
+        if (i < b && b - i <= 5) {
+            while (i < b && bytes[i] >= '0' && bytes[i] <= '9') {
+                value = value * 10 + (bytes[i] - '0');
+                i++;
+            }
+            if (negative) {
+                value = -value;
+            }
+            if (i == b && value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                return (short) value;
+            }
+        }
+        return Short.parseShort(new String(bytes, a, b - a, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Points and sets read in a range of the file.
+     */
+    private static class Range {
+
+        /**
+         * x, y, z, nx, ny, nz of each point.
+         */
+        double[] values;
+        /**
+         * r, g, b of each point.
+         */
+        short[] colors;
+        byte[] flags;
+        /**
+         * index in {@code ids} of the patch of each point.
+         */
+        int[] patches;
+        int size;
+        final List<String> ids = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        final Set<String> regular = new LinkedHashSet<>();
+        final Set<String> irregular = new LinkedHashSet<>();
+        final Set<String> isolated = new LinkedHashSet<>();
+        /**
+         * First line containing the number of points.
+         */
+        String count;
+        RuntimeException error;
+        private final int[] starts = new int[10];
+        private final int[] ends = new int[10];
+        private int lastPatch = -1;
+        private int lastStart;
+        private int lastEnd;
+        private byte[] lastBytes;
+
+        Range(int capacity) {
+            this.values = new double[capacity * 6];
+            this.colors = new short[capacity * 3];
+            this.flags = new byte[capacity];
+            this.patches = new int[capacity];
+        }
+
+        void line(byte[] bytes, int s, int e) {
+            // tokens separated by each white character, trailing empty tokens ignored
+            int tokens = 0;
+            int nonEmpty = 0;
+            int t = s;
+            while (t <= e) {
+                int te = t;
+                while (te < e && !isSpace(bytes[te])) {
+                    te++;
+                }
+                if (tokens < 10) {
+                    starts[tokens] = t;
+                    ends[tokens] = te;
+                }
+                tokens++;
+                if (te > t) {
+                    nonEmpty = tokens;
+                }
+                t = te + 1;
+            }
+            tokens = nonEmpty;
+            if (tokens == 0) {
+                return;
+            }
+            if (tokens > 1 && ends[0] > starts[0] && bytes[s] == IoPointcloud.SET_K) {
+                String line = new String(bytes, s, e - s, StandardCharsets.UTF_8);
+                IoPointcloud.readSet(line.split("\\s"), regular, irregular, isolated);
+            } else if (bytes[s] != '#' && bytes[s] != '/') {
+                if (tokens == 1) {
+                    if (this.count == null) {
+                        this.count = new String(bytes, starts[0], ends[0] - starts[0], StandardCharsets.UTF_8);
+                    }
+                } else {
+                    this.point(bytes, tokens);
+                }
+            }
+        }
+
+        private void point(byte[] bytes, int tokens) {
+            if (size == flags.length) {
+                int capacity = size * 2;
+                values = Arrays.copyOf(values, capacity * 6);
+                colors = Arrays.copyOf(colors, capacity * 3);
+                flags = Arrays.copyOf(flags, capacity);
+                patches = Arrays.copyOf(patches, capacity);
+            }
+            values[size * 6] = this.value(bytes, 0, tokens);
+            values[size * 6 + 1] = this.value(bytes, 1, tokens);
+            values[size * 6 + 2] = this.value(bytes, 2, tokens);
+            byte flag = 0;
+            if (tokens >= 6) {
+                colors[size * 3] = parseShort(bytes, starts[3], ends[3]);
+                colors[size * 3 + 1] = parseShort(bytes, starts[4], ends[4]);
+                colors[size * 3 + 2] = parseShort(bytes, starts[5], ends[5]);
+                flag |= HAS_COLOR;
+            }
+            if (tokens >= 9) {
+                values[size * 6 + 3] = this.value(bytes, 6, tokens);
+                values[size * 6 + 4] = this.value(bytes, 7, tokens);
+                values[size * 6 + 5] = this.value(bytes, 8, tokens);
+                flag |= HAS_NORMAL;
+            }
+            flags[size] = flag;
+            if (tokens >= 10) {
+                patches[size] = this.patch(bytes, starts[9], ends[9]);
+            } else {
+                patches[size] = this.patch("0");
+            }
+            size++;
+        }
+
+        private double value(byte[] bytes, int token, int tokens) {
+            if (token >= tokens || starts[token] == ends[token]) {
+                return 0;
+            }
+            try {
+                return parseDouble(bytes, starts[token], ends[token]);
+            } catch (NumberFormatException ex) {
+                return 0;
+            }
+        }
+
+        /**
+         * Gets the index of a patch id, the id is only decoded when it differs
+         * from the id of the previous point.
+         */
+        private int patch(byte[] bytes, int s, int e) {
+            if (lastPatch >= 0 && lastBytes == bytes && Arrays.equals(bytes, s, e, bytes, lastStart, lastEnd)) {
+                return lastPatch;
+            }
+            lastPatch = this.patch(new String(bytes, s, e - s, StandardCharsets.UTF_8));
+            lastBytes = bytes;
+            lastStart = s;
+            lastEnd = e;
+            return lastPatch;
+        }
+
+        private int patch(String id) {
+            Integer i = index.get(id);
+            if (i == null) {
+                i = ids.size();
+                ids.add(id);
+                index.put(id, i);
+            }
+            lastBytes = null;
+            return i;
+        }
+
+        Point[] points() {
+            Point[] points = new Point[size];
+            for (int i = 0; i < size; i++) {
+                Coord3D coords = new Coord3D(values[i * 6], values[i * 6 + 1], values[i * 6 + 2]);
+                Color color = new Color(colors[i * 3], colors[i * 3 + 1], colors[i * 3 + 2]);
+                Normal normal = new Normal(values[i * 6 + 3], values[i * 6 + 4], values[i * 6 + 5]);
+                points[i] = new Point(coords, color, normal);
+            }
+            return points;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.algorithms.segmentation;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid indexing the centroids of regions.
+ * <p>
+ * The cells are slightly larger than the merge distance, so that two
+ * centroids at a distance lower or equal to it are always in the same cell or
+ * in two neighbouring cells. The cells are stored in an open addressing hash
+ * table, the index of the centroids of a cell being contiguous in a single
+ * array.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+class CentroidGrid {
+
+    /**
+     * Margin of the cells over the merge distance, against rounding errors.
+     */
+    private static final double MARGIN = 1e-9;
+
+    private final double size;
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    /**
+     * Cell of each centroid, 3 longs by centroid.
+     */
+    private final long[] cellOf;
+    private final long[] keys;
+    private final boolean[] used;
+    private final int mask;
+    /**
+     * Index of the centroids of the cell of each slot, from starts[slot] to
+     * starts[slot + 1].
+     */
+    private final int[] starts;
+    private final int[] members;
+
+    /**
+     * Creates the grid of centroids.
+     *
+     * @param coords coordinates x, y, z of each centroid.
+     * @param distance merge distance.
+     */
+    CentroidGrid(double[] coords, double distance) {
+        int n = coords.length / 3;
+        this.size = Math.max(distance * (1 + MARGIN), Double.MIN_NORMAL);
+        double mx = Double.MAX_VALUE;
+        double my = Double.MAX_VALUE;
+        double mz = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            mx = Math.min(mx, coords[3 * i]);
+            my = Math.min(my, coords[3 * i + 1]);
+            mz = Math.min(mz, coords[3 * i + 2]);
+        }
+        this.minX = mx;
+        this.minY = my;
+        this.minZ = mz;
+        int capacity = Integer.highestOneBit(Math.max(2 * n, 2) - 1) << 1;
+        this.mask = capacity - 1;
+        this.keys = new long[3 * capacity];
+        this.used = new boolean[capacity];
+        this.cellOf = new long[3 * n];
+        // counts the centroids of each cell
+        int[] slotOf = new int[n];
+        int[] counts = new int[capacity];
+        for (int i = 0; i < n; i++) {
+            long cx = this.cell(coords[3 * i], this.minX);
+            long cy = this.cell(coords[3 * i + 1], this.minY);
+            long cz = this.cell(coords[3 * i + 2], this.minZ);
+            this.cellOf[3 * i] = cx;
+            this.cellOf[3 * i + 1] = cy;
+            this.cellOf[3 * i + 2] = cz;
+            int slot = this.slot(cx, cy, cz);
+            if (!this.used[slot]) {
+                this.used[slot] = true;
+                this.keys[3 * slot] = cx;
+                this.keys[3 * slot + 1] = cy;
+                this.keys[3 * slot + 2] = cz;
+            }
+            slotOf[i] = slot;
+            counts[slot]++;
+        }
+        this.starts = new int[capacity + 1];
+        for (int s = 0; s < capacity; s++) {
+            this.starts[s + 1] = this.starts[s] + counts[s];
+        }
+        // fills the cells in ascending order of index
+        this.members = new int[n];
+        int[] filled = new int[capacity];
+        for (int i = 0; i < n; i++) {
+            int slot = slotOf[i];
+            this.members[this.starts[slot] + filled[slot]++] = i;
+        }
+    }
+
+    /**
+     * Gives every centroid of the cell of a centroid and of its 26
+     * neighbouring cells, the centroid itself included.
+     *
+     * @param i index of the centroid.
+     * @param action action receiving the index of each centroid found.
+     */
+    void forEachNear(int i, IntConsumer action) {
+        long cx = this.cellOf[3 * i];
+        long cy = this.cellOf[3 * i + 1];
+        long cz = this.cellOf[3 * i + 2];
+        for (long x = cx - 1; x <= cx + 1; x++) {
+            for (long y = cy - 1; y <= cy + 1; y++) {
+                for (long z = cz - 1; z <= cz + 1; z++) {
+                    int slot = this.slot(x, y, z);
+                    if (this.used[slot]) {
+                        for (int m = this.starts[slot]; m < this.starts[slot + 1]; m++) {
+                            action.accept(this.members[m]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private long cell(double v, double min) {
+        return (long) Math.floor((v - min) / this.size);
+    }
+
+    /**
+     * Slot of a cell: the slot holding it, or the free slot where it should
+     * be inserted.
+     */
+    private int slot(long x, long y, long z) {
+        long h = x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+        int slot = (int) (h ^ (h >>> 32)) & this.mask;
+        while (this.used[slot]
+                && (this.keys[3 * slot] != x || this.keys[3 * slot + 1] != y || this.keys[3 * slot + 2] != z)) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.algorithms.segmentation;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint sets of the integers from 0 to n - 1, with path compression and
+ * union by rank.
+ * <p>
+ * The number of elements of each set is kept in its root, so that the sets
+ * can be listed in a single pass.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+class DisjointSet {
+
+    private final int[] parent;
+    private final byte[] rank;
+    private final int[] sizes;
+    private int count;
+
+    /**
+     * Creates n sets of a single element.
+     *
+     * @param n number of elements.
+     */
+    DisjointSet(int n) {
+        this.parent = new int[n];
+        this.rank = new byte[n];
+        this.sizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.parent[i] = i;
+            this.sizes[i] = 1;
+        }
+        this.count = n;
+    }
+
+    /**
+     * Gets the root of the set of an element.
+     *
+     * @param i element.
+     * @return the element representing the set of i.
+     */
+    int find(int i) {
+        int root = i;
+        while (this.parent[root] != root) {
+            root = this.parent[root];
+        }
+        while (this.parent[i] != root) {
+            int next = this.parent[i];
+            this.parent[i] = root;
+            i = next;
+        }
+        return root;
+    }
+
+    /**
+     * Merges the sets of two elements.
+     *
+     * @param i first element.
+     * @param j second element.
+     * @return true if the sets have been merged, false if both elements were
+     * already in the same set.
+     */
+    boolean union(int i, int j) {
+        int ri = this.find(i);
+        int rj = this.find(j);
+        if (ri == rj) {
+            return false;
+        }
+        if (this.rank[ri] < this.rank[rj]) {
+            int r = ri;
+            ri = rj;
+            rj = r;
+        } else if (this.rank[ri] == this.rank[rj]) {
+            this.rank[ri]++;
+        }
+        this.parent[rj] = ri;
+        this.sizes[ri] += this.sizes[rj];
+        this.count--;
+        return true;
+    }
+
+    /**
+     * Number of sets.
+     *
+     * @return the number of disjoint sets.
+     */
+    int count() {
+        return this.count;
+    }
+
+    /**
+     * Lists the elements of each set.
+     *
+     * @return the elements of each set in ascending order, the sets being
+     * ordered by their lowest element.
+     */
+    int[][] sets() {
+        int[][] sets = new int[this.count][];
+        int[] filled = new int[this.count];
+        // index of the set of each root, -1 until its lowest element is met
+        int[] label = new int[this.parent.length];
+        Arrays.fill(label, -1);
+        int next = 0;
+        for (int i = 0; i < this.parent.length; i++) {
+            int root = this.find(i);
+            int s = label[root];
+            if (s < 0) {
+                s = next++;
+                label[root] = s;
+                sets[s] = new int[this.sizes[root]];
+            }
+            sets[s][filled[s]++] = i;
+        }
+        return sets;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.algorithms.segmentation;
+
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import java.util.Arrays;
+
+/**
+ * Distances between pairs of patches, stored in arrays of primitive values.
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PatchDistances {
+
+    /**
+     * Action receiving a pair of patches and their distance.
+     */
+    public interface Consumer {
+
+        /**
+         * Receives a pair of patches.
+         *
+         * @param patch1 first patch.
+         * @param patch2 second patch.
+         * @param distance distance between the oriented bounding boxes of the
+         * both patches.
+         */
+        void accept(APointCloud patch1, APointCloud patch2, double distance);
+    }
+
+    private final APointCloud[] patches;
+    private final int[] first;
+    private final int[] second;
+    private final double[] distances;
+
+    /**
+     * Creates the pairs of patches, their distance being not yet computed.
+     *
+     * @param patches patches.
+     * @param first index of the first patch of each pair.
+     * @param second index of the second patch of each pair.
+     */
+    PatchDistances(APointCloud[] patches, int[] first, int[] second) {
+        this.patches = patches;
+        this.first = first;
+        this.second = second;
+        this.distances = new double[first.length];
+        Arrays.fill(this.distances, Double.NaN);
+    }
+
+    /**
+     * Number of pairs.
+     *
+     * @return the number of pairs of patches.
+     */
+    public int size() {
+        return this.first.length;
+    }
+
+    public APointCloud getPatch1(int k) {
+        return this.patches[this.first[k]];
+    }
+
+    public APointCloud getPatch2(int k) {
+        return this.patches[this.second[k]];
+    }
+
+    /**
+     * Gets the distance of a pair.
+     *
+     * @param k index of the pair.
+     * @return the distance between the oriented bounding boxes of the patches
+     * of the pair, NaN if it is not computed.
+     */
+    public double getDistance(int k) {
+        return this.distances[k];
+    }
+
+    /**
+     * Gives each pair in order with its distance.
+     *
+     * @param action action receiving each pair.
+     */
+    public void forEach(Consumer action) {
+        for (int k = 0; k < this.first.length; k++) {
+            action.accept(this.patches[this.first[k]], this.patches[this.second[k]], this.distances[k]);
+        }
+    }
+
+    /**
+     * Computes the distance of a pair.
+     *
+     * @param k index of the pair.
+     */
+    void compute(int k) {
+        this.distances[k] = this.getPatch1(k).getOBB().distance(this.getPatch2(k).getOBB());
+    }
+}
@@ -17,62 +17,122 @@
 package info.ponciano.lab.jpc.algorithms.segmentation;
 
 import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.stucture.bvh.BoundingVolumeHierarchy;
+import info.ponciano.lab.jpc.pointcloud.stucture.octree.Voxel;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
 
 /**
+ * Computes the distances between the patches closer than a maximum distance.
+ * <p>
+ * The distances are computed by batches of pairs on a fork-join pool of a
+ * bounded number of threads, the results being stored in a
+ * {@link PatchDistances} given to {@link #postprocessing}. The progress is
+ * reported to an optional listener and the computation can be cancelled from
+ * another thread.</p>
  *
  * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
  */
 public abstract class PatchesDistanceEstimation implements Runnable {
 
+    /**
+     * Number of pairs computed by a single task.
+     */
+    private static final int BATCH_SIZE = 64;
+
     private int maxDistance;
+    private int parallelism;
+    private DoubleConsumer progress;
+    private volatile boolean cancelled;
 
     public PatchesDistanceEstimation() {
-        this.maxDistance = 1;
+        this(1);
     }
 
     /**
      * Creates new instance of {@code PatchesDistanceEstimation}
      *
-     * @param maxDistance the maximum distance between centroids of two patches
-     * to allow the calculation of their distance.
+     * @param maxDistance the maximum distance between the bounding boxes of
+     * two patches to allow the calculation of their distance.
      */
     public PatchesDistanceEstimation(int maxDistance) {
         this.maxDistance = maxDistance;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
     }
 
     @Override
     public void run() {
         System.out.println(new Date(System.currentTimeMillis()).toLocaleString() + " start " + this.getClass().getName());
+        this.cancelled = false;
+        //get all patches
+        Map<String, APointCloud> patches = this.getPatches();
+        APointCloud[] patchestoArray = patches.values().toArray(new APointCloud[patches.size()]);
+        PatchDistances distances = this.candidates(patchestoArray, maxDistance);
+        //calculate the distances on a bounded pool
+        if (distances.size() > 0) {
+            ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+            try {
+                pool.invoke(new DistanceTask(distances, 0, distances.size(), new AtomicInteger()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        System.out.println(new Date(System.currentTimeMillis()).toLocaleString() + " end " + this.getClass().getName());
+        System.out.println(distances.size());
+        if (!this.cancelled) {
+            this.postprocessing(distances, patches);
+        }
+    }
+
+    /**
+     * Cancels the computation: the remaining batches are not computed and
+     * {@link #postprocessing} is not called.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Tests if the last computation has been cancelled.
+     *
+     * @return true if the computation has been cancelled, false otherwise.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
 
-        try {
-            //get all patches
-            Map<String, APointCloud> patches = this.getPatches();
-            //calculate the minimum distance between all patches in multi-threading
-            APointCloud[] patchestoArray = patches.values().toArray(new APointCloud[patches.size()]);
-            /*Brut force method for distances computing. This method should be improved */
-            List<info.ponciano.lab.jpc.algorithms.segmentation.MinPatchesDistanceEstimation> workers = breakingStrategy(patchestoArray, maxDistance);
-            //executes all thread
-            ExecutorService execute = Executors.newCachedThreadPool();
-            workers.forEach(w -> execute.submit(w));
-            execute.shutdown();
-            execute.awaitTermination(1000, TimeUnit.DAYS);
-            System.out.println(new Date(System.currentTimeMillis()).toLocaleString() + " end " + this.getClass().getName());
-            System.out.println(workers.size());
-            this.postprocessing(workers, patches);
-        } catch (InterruptedException ex) {
-            Logger.getLogger(PatchesDistanceEstimation.class.getName()).log(Level.SEVERE, null, ex);
+    /**
+     * Sets the number of threads computing the distances, the number of
+     * available processors by default.
+     *
+     * @param parallelism number of threads.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be positive: " + parallelism);
         }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the listener of the progress, called from the computing threads
+     * after each batch with the fraction of the pairs computed.
+     *
+     * @param progress listener of the progress, null for none.
+     */
+    public void setProgressListener(DoubleConsumer progress) {
+        this.progress = progress;
     }
 
     /**
@@ -96,29 +156,127 @@ public abstract class PatchesDistanceEstimation implements Runnable {
      * Set workers for computing patches distances in a breaking way.
      *
      * @param patchestoArray array of patches
-     * @param workers list of workers created
+     * @param maxdistance the maximum distance between two patches to
+     * calculate their distance.
+     * @return the workers of the pairs of patches given by
+     * {@link #candidates}.
      */
     protected List<MinPatchesDistanceEstimation> breakingStrategy(APointCloud[] patchestoArray, double maxdistance) {
+        PatchDistances pairs = this.candidates(patchestoArray, maxdistance);
+        List<info.ponciano.lab.jpc.algorithms.segmentation.MinPatchesDistanceEstimation> workers = new ArrayList<>(pairs.size());
+        for (int k = 0; k < pairs.size(); k++) {
+            workers.add(new info.ponciano.lab.jpc.algorithms.segmentation.MinPatchesDistanceEstimation(
+                    pairs.getPatch1(k), pairs.getPatch2(k)));
+        }
+        return workers;
+    }
+
+    /**
+     * Gets the pairs of patches whose distance should be computed.
+     * <p>
+     * The candidate pairs are the patches whose oriented bounding boxes have
+     * axis-aligned bounds closer than the maximum distance, found with a
+     * bounding volume hierarchy. The pairs whose lower bound of
+     * {@code Box.distance} is above the maximum distance are rejected.</p>
+     *
+     * @param patchestoArray array of patches, sorted by this method.
+     * @param maxdistance the maximum distance between two patches to
+     * calculate their distance.
+     * @return the pairs of patches, in the order of the sorted array of
+     * patches, with distances not yet computed.
+     */
+    protected PatchDistances candidates(APointCloud[] patchestoArray, double maxdistance) {
         //sort the patches in x then in y then in z
         Arrays.sort(patchestoArray);
+        Voxel[] obbs = new Voxel[patchestoArray.length];
+        double[] bounds = new double[6 * patchestoArray.length];
+        for (int i = 0; i < patchestoArray.length; i++) {
+            obbs[i] = patchestoArray[i].getOBB();
+            System.arraycopy(obbs[i].getBounds(), 0, bounds, 6 * i, 6);
+        }
+        // pairs encoded as i * 2^32 + j to be sorted
+        PairBuffer pairs = new PairBuffer();
+        new BoundingVolumeHierarchy(bounds).forEachPair(maxdistance, (i, j) -> {
+            if (obbs[i].lowerBoundDistance(obbs[j]) <= maxdistance) {
+                pairs.add((long) i << 32 | j);
+            }
+        });
+        Arrays.sort(pairs.values, 0, pairs.size);
+        int[] first = new int[pairs.size];
+        int[] second = new int[pairs.size];
+        for (int k = 0; k < first.length; k++) {
+            long pair = pairs.values[k];
+            first[k] = (int) (pair >>> 32);
+            second[k] = (int) pair;
+        }
+        return new PatchDistances(patchestoArray, first, second);
+    }
 
-        List<info.ponciano.lab.jpc.algorithms.segmentation.MinPatchesDistanceEstimation> workers = new ArrayList<>();
-        for (int i = 0; i < patchestoArray.length - 1; i++) {
-            APointCloud pi = patchestoArray[i];
+    protected abstract Map<String, APointCloud> getPatches();
 
-            for (int j = i + 1; j < patchestoArray.length; j++) {
-                APointCloud pj = patchestoArray[j];
-                if (Math.abs(pi.getCentroid().getX()-pj.getCentroid().getX()) > maxdistance) {
-                    break;
-                } else {
-                    workers.add(new info.ponciano.lab.jpc.algorithms.segmentation.MinPatchesDistanceEstimation(pi, pj));
-                }
+    /**
+     * Processes the distances computed.
+     *
+     * @param distances pairs of patches closer than the maximum distance with
+     * their distance.
+     * @param patches patches processed.
+     */
+    protected abstract void postprocessing(PatchDistances distances, Map<String, APointCloud> patches);
+
+    // ------------------------ PRIVATE ------------------------
+    /**
+     * Growable array of encoded pairs, avoiding an object by pair.
+     */
+    private static class PairBuffer {
+
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long pair) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
             }
+            this.values[this.size++] = pair;
         }
-        return workers;
     }
 
-    protected abstract Map<String, APointCloud> getPatches();
+    /**
+     * Computes the distances of a range of pairs, split in batches.
+     */
+    private class DistanceTask extends RecursiveAction {
+
+        private final PatchDistances distances;
+        private final int from;
+        private final int to;
+        private final AtomicInteger done;
 
-    protected abstract void postprocessing(List<MinPatchesDistanceEstimation> workers, Map<String, APointCloud> patches);
+        DistanceTask(PatchDistances distances, int from, int to, AtomicInteger done) {
+            this.distances = distances;
+            this.from = from;
+            this.to = to;
+            this.done = done;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            if (this.to - this.from > BATCH_SIZE) {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(new DistanceTask(this.distances, this.from, mid, this.done),
+                        new DistanceTask(this.distances, mid, this.to, this.done));
+            } else {
+                for (int k = this.from; k < this.to && !cancelled; k++) {
+                    this.distances.compute(k);
+                }
+                int count = this.done.addAndGet(this.to - this.from);
+                DoubleConsumer listener = progress;
+                if (listener != null) {
+                    listener.accept(count / (double) this.distances.size());
+                }
+            }
+        }
+    }
+    // ---------------------- END PRIVATE ----------------------
 }
@@ -23,10 +23,6 @@ import info.ponciano.lab.jpc.math.Coord3D;
 import info.ponciano.lab.jpc.math.vector.Normal;
 
 import java.util.Collection;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.Set;
-import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -35,15 +31,11 @@ import java.util.UUID;
  */
 public abstract class Region {
 
-    private boolean closed;
     private final UUID id;
     protected final PointCloudMap cloud;
-    private final Set<Region> adjoinedRegions;
 
     public Region(final APointCloud points) {
         this.id = UUID.randomUUID();
-        this.closed = false;
-        this.adjoinedRegions = new LinkedHashSet<>();
         this.cloud = new PointCloudMap();
         this.cloud.add(points);
     }
@@ -60,22 +52,6 @@ public abstract class Region {
         return this.cloud.getCentroid();
     }
 
-    synchronized void addAdjoinedRegion(final Region reg2) {
-        this.adjoinedRegions.add(reg2);
-    }
-
-    public Set<Region> getAdjoinedRegions() {
-        return adjoinedRegions;
-    }
-
-    public void close() {
-        this.closed = true;
-    }
-
-    public boolean isClosed() {
-        return closed;
-    }
-
     public Normal getMeanNormal() {
         return this.cloud.getMeanNormal();
     }
@@ -122,20 +98,6 @@ public abstract class Region {
      */
     public abstract double getDistance();
 
-    /**
-     * Merge recurrsivelly all linked region.
-     *
-     * @param id id of the new region.
-     * @return the new region created.
-     */
-    public Region mergeLinkedRegion() {
-        if (this.isClosed()) {
-            return null;
-        }
-        final Collection<Region> regions = this.mergeRegionsAdjoined();
-        return this.merge(regions);
-    }
-
     /**
      * Merges collection of regions in a new one
      *
@@ -151,40 +113,6 @@ public abstract class Region {
         return this.createRegion(points);
     }
 
-    /**
-     * Merge regions and close there
-     *
-     * @param region region to be analysed
-     * @return the list of all regions to merge (all regions adjoined to the
-     * region or adjoined to an adjoined region of the region).
-     */
-    private Collection<Region> mergeRegionsAdjoined() {
-
-        // if the current regions is closed, return null
-        if (this.isClosed()) {
-            return null;
-        }
-        final TreeMap<UUID, Region> superRegion = new TreeMap<>();
-        // get all adjoineds region
-        final LinkedList<Region> toBExplored = new LinkedList<>();
-        toBExplored.push(this);
-        while (!toBExplored.isEmpty()) {
-            final Region pop = toBExplored.pop();
-            // add the adjoined region to the current regions
-            // if the regions is not already added
-            if (!superRegion.containsKey(pop.getId())) {
-                // adds it
-                superRegion.put(pop.getId(), pop);
-            }
-            // close the region
-            pop.close();
-            // test if the regions is not closed to run recursivity trategy
-            pop.getAdjoinedRegions().stream().filter(r -> !r.isClosed()).forEach(r -> toBExplored.push(r));
-        }
-        // return the region
-        return superRegion.values();
-    }
-
     protected abstract Region createRegion(APointCloud points);
 
 }
@@ -16,6 +16,7 @@
  */
 package info.ponciano.lab.jpc.algorithms.segmentation;
 
+import info.ponciano.lab.jpc.math.Coord3D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -66,55 +67,55 @@ public class Regions {
         this.regions.sort((Region o1, Region o2) -> Double.compare(o2.getCentroid().getX(), o1.getCentroid().getX()));
     }
 
-    // protected <EuclidianRegion> regions;
-    protected void calculate_adjacent_regions(boolean fast) {
-        if (this.regions.size() > 1) {
-            // ThreadManager manager = new ThreadManager();
-            // compute adjoined regions
-            // System.out.println("calculate_adjacent_regions:" + (this.regions.size() - 1)
-            // * this.regions.size());
-            this.sortX();
-            for (int i = 0; i < this.regions.size() - 1; i++) {
-                // System.out.println(i + "/" + this.size());
-                int start = i;
-                // manager.addWorker(() -> {
-                for (int j = start + 1; j < this.regions.size(); j++) {
-                    // get both this
-                    Region reg1 = this.regions.get(start);
-                    Region reg2 = this.regions.get(j);
-                    boolean closeX = reg1.isCloseX(reg2);
-                    if (!closeX) {
-                        break;
-                    }
-                    boolean canMerge = reg1.canMerge(reg2);
-                    // test if the distance is under the maximal neighbor distance.
-                    if (canMerge) {
-                        // this are adjoining
-                        reg1.addAdjoinedRegion(reg2);
-                        reg2.addAdjoinedRegion(reg1);
-                    }
-                }
-                // });
-            }
-            // wait all this are computed.
-            // manager.waitTheEnd();
-        }
-    }
-
     /**
-     * Merges regions when possible
+     * Merges regions when possible.
+     * <p>
+     * The candidates to the merge of a region are searched in a grid of the
+     * centroids whose cells have the size of the largest merge distance, so
+     * that only the regions of the 27 cells around its centroid are tested.
+     * Regions are linked when they are close in X and can merge, the linked
+     * regions being gathered with a disjoint set. Each group of linked regions
+     * is merged by its first region in the order of
+     * {@link #sortX()}.</p>
      *
      * @return Regions after merging.
      */
     public Regions merges(boolean fast) {
-//        Benchmark ben = new Benchmark();
-//        ben.go();
-        this.calculate_adjacent_regions(fast);
-//        ben.stop();
-//        System.out.println("calculate_adjacent_regions:" + ben.showValue());
         Regions finalRegions = new Regions();
-        this.regions.stream().map(region -> region.mergeLinkedRegion()).filter(ml -> ml != null)
-                .forEach(ml -> finalRegions.add(ml));
+        this.sortX();
+        int n = this.regions.size();
+        double[] centroids = new double[3 * n];
+        double distance = 0;
+        for (int i = 0; i < n; i++) {
+            Region region = this.regions.get(i);
+            Coord3D c = region.getCentroid();
+            centroids[3 * i] = c.getX();
+            centroids[3 * i + 1] = c.getY();
+            centroids[3 * i + 2] = c.getZ();
+            distance = Math.max(distance, region.getDistance());
+        }
+        CentroidGrid grid = new CentroidGrid(centroids, distance);
+        DisjointSet sets = new DisjointSet(n);
+        for (int i = 0; i < n; i++) {
+            int first = i;
+            Region reg1 = this.regions.get(i);
+            grid.forEachNear(i, j -> {
+                // each pair is tested once, in the order of the regions
+                if (j > first) {
+                    Region reg2 = this.regions.get(j);
+                    if (reg1.isCloseX(reg2) && reg1.canMerge(reg2)) {
+                        sets.union(first, j);
+                    }
+                }
+            });
+        }
+        for (int[] set : sets.sets()) {
+            List<Region> linked = new ArrayList<>(set.length);
+            for (int i : set) {
+                linked.add(this.regions.get(i));
+            }
+            finalRegions.add(linked.get(0).merge(linked));
+        }
         return finalRegions;
     }
 
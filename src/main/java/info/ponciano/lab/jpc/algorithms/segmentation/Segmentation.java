@@ -17,9 +17,15 @@
 package info.ponciano.lab.jpc.algorithms.segmentation;
 
 import info.ponciano.lab.jpc.algorithms.Algorithm;
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
 import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
 import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
 import info.ponciano.lab.jpc.pointcloud.stucture.octree.Voxel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  *
@@ -47,15 +53,39 @@ public abstract class Segmentation implements Algorithm<Regions> {
 
     @Override
     public void run() {
-        /* Transforms every point of the cloud in a single region. */
+        /* Every point of the cloud is a single region, sorted as by Regions.sortX. */
+        final Point[] points = this.region.stream().toArray(Point[]::new);
+        Arrays.sort(points, (p1, p2) -> Double.compare(p2.getCoords().getX(), p1.getCoords().getX()));
+        final Color[] normals = new Color[points.length];
+        for (int i = 0; i < points.length; i++) {
+            normals[i] = points[i].getNormal().toColor().asHumanPerception(RegionNormal.ACCURACY);
+        }
+        // links the points with the test of RegionNormal between single points
+        final DisjointSet sets = new DisjointSet(points.length);
+        final CentroidGrid grid = new CentroidGrid(coords(points), this.distance);
+        for (int i = 0; i < points.length; i++) {
+            final int first = i;
+            final Coord3D c1 = points[i].getCoords();
+            grid.forEachNear(i, j -> {
+                final Coord3D c2 = points[j].getCoords();
+                if (j > first && Math.abs(c1.getX() - c2.getX()) <= this.distance
+                        && c1.distance(c2) <= this.distance && normals[first].equals(normals[j])) {
+                    sets.union(first, j);
+                }
+            });
+        }
+        //merge all linked points
         final Regions rgs = new Regions();
-        this.region.stream().forEach(point -> {
-            APointCloud rpc = new PointCloudMap();
-            rpc.add(point);
-            rgs.add(new RegionNormal(rpc, this.distance));
-        });
-        //merge all regions when it is possible
-        this.merges = rgs.merges(true);
+        for (int[] set : sets.sets()) {
+            final List<Point> linked = new ArrayList<>(set.length);
+            for (int i : set) {
+                linked.add(points[i]);
+            }
+            final Region merged = new RegionEuclidean(new PointCloudMap(), this.distance);
+            merged.getCloud().add(linked);
+            rgs.add(merged);
+        }
+        this.merges = rgs;
     }
 
     @Override
@@ -63,6 +93,20 @@ public abstract class Segmentation implements Algorithm<Regions> {
         return merges;
     }
 
+    /**
+     * Coordinates x, y, z of points in a single array.
+     */
+    static double[] coords(Point[] points) {
+        final double[] coords = new double[3 * points.length];
+        for (int i = 0; i < points.length; i++) {
+            final Coord3D c = points[i].getCoords();
+            coords[3 * i] = c.getX();
+            coords[3 * i + 1] = c.getY();
+            coords[3 * i + 2] = c.getZ();
+        }
+        return coords;
+    }
+
     /*private static List<Segment> byNormal(Pointcloud instance) {
         Benchmark ben = new Benchmark();
         APointCloud points = instance.getPoints();
@@ -28,7 +28,11 @@ public class Coord3D implements Cloneable, java.io.Serializable {
     protected double y;
     protected double z;
     public final static double ACCURACY = 0.0001;
-    private String key;
+    /**
+     * Key of the coordinates at the {@code ACCURACY} grid, built on the first
+     * call of {@code hash()} and reset at each modification.
+     */
+    private transient String key;
 
     /**
      * Creates a new instance of <code>Coord3D</code>that is a clone of the
@@ -40,7 +44,6 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         this.x = clone.x;
         this.y = clone.y;
         this.z = clone.z;
-        computeKey();
 
     }
 
@@ -55,14 +58,12 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         this.x = x;
         this.y = y;
         this.z = z;
-        computeKey();
     }
 
     public Coord3D(final float x, final float y, final float z) {
         this.x = (double) x;
         this.y = (double) y;
         this.z = (double) z;
-        computeKey();
     }
 
     /**
@@ -82,14 +83,12 @@ public class Coord3D implements Cloneable, java.io.Serializable {
             this.y = 0;
             this.z = 0;
         }
-        computeKey();
     }
 
     public Coord3D() {
         this.x = 0;
         this.y = 0;
         this.z = 0;
-        computeKey();
     }
 
     /**
@@ -110,12 +109,10 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         final String sy = split.get(1);
         final String sz = split.get(2);
         this.format(sx, sy, sz);
-        computeKey();
     }
 
     public Coord3D(final String sx, final String sy, final String sz) {
         this.format(sx, sy, sz);
-        computeKey();
     }
 
     @Override
@@ -294,7 +291,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
 
     public void setX(final double x) {
         this.x = x;
-        computeKey();
+        changed();
     }
 
     public double getY() {
@@ -303,7 +300,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
 
     public void setY(final double y) {
         this.y = y;
-        computeKey();
+        changed();
     }
 
     public double getZ() {
@@ -312,7 +309,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
 
     public void setZ(final double z) {
         this.z = z;
-        computeKey();
+        changed();
     }
 
     @Override
@@ -398,7 +395,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
                 this.z = value;
                 break;
         }
-        computeKey();
+        changed();
     }
 
     /**
@@ -415,7 +412,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         x = generator.nextDouble() * range + lower;
         y = generator.nextDouble() * range + lower;
         z = generator.nextDouble() * range + lower;
-        computeKey();
+        changed();
     }
 
     public int compareTo(final Coord3D o) {
@@ -532,6 +529,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         this.x -= coord.getX();
         this.y -= coord.getY();
         this.z -= coord.getZ();
+        changed();
     }
 
     /**
@@ -543,6 +541,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         this.x += coord.getX();
         this.y += coord.getY();
         this.z += coord.getZ();
+        changed();
     }
 
     private double matrixMultiplication(final Coord3D vm) {
@@ -599,7 +598,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
                 throw new ArrayIndexOutOfBoundsException(i);
             }
         }
-        computeKey();
+        changed();
     }
 
     /**
@@ -611,7 +610,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         x = v1.x;
         y = v1.y;
         z = v1.z;
-        computeKey();
+        changed();
     }
 
     /**
@@ -625,7 +624,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         this.x = x;
         this.y = y;
         this.z = z;
-        computeKey();
+        changed();
     }
 
     /**
@@ -740,6 +739,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         x = s * x;
         y = s * y;
         z = s * z;
+        changed();
     }
 
     /**
@@ -752,6 +752,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         x = v1.x + v2.x;
         y = v1.y + v2.y;
         z = v1.z + v2.z;
+        changed();
     }
 
     /**
@@ -764,7 +765,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         x = v1.x - v2.x;
         y = v1.y - v2.y;
         z = v1.z - v2.z;
-        v1.computeKey();
+        changed();
     }
 
     /**
@@ -835,7 +836,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         x = 0;
         y = 0;
         z = 0;
-        computeKey();
+        changed();
     }
 
     /**
@@ -848,6 +849,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
             this.y /= norm;
             this.z /= norm;
         }
+        changed();
     }
 
     /**
@@ -877,15 +879,33 @@ public class Coord3D implements Cloneable, java.io.Serializable {
     }
 
     public String hash() {
+        if (key == null) {
+            long rx = Math.round(x / Coord3D.ACCURACY);
+            long ry = Math.round(y / Coord3D.ACCURACY);
+            long rz = Math.round(z / Coord3D.ACCURACY);
+            this.key = rx + "" + ry + "" + rz;
+        }
         return key;
+    }
 
+    /**
+     * Called after every modification of the coordinates through the methods
+     * of the class. Subclasses storing the coordinates elsewhere override it
+     * to write them back.
+     */
+    protected void changed() {
+        this.key = null;
     }
 
-    private void computeKey() {
-        long rx = Math.round(x / Coord3D.ACCURACY);
-        long ry = Math.round(y / Coord3D.ACCURACY);
-        long rz = Math.round(z / Coord3D.ACCURACY);
-        this.key = rx + "" + ry + "" + rz;
+    /**
+     * Gets the class compared by {@code equals}: the class of the instance,
+     * except for the views of coordinates stored elsewhere, which return the
+     * class they stand for.
+     *
+     * @return the class of the value.
+     */
+    protected Class<? extends Coord3D> getValueClass() {
+        return this.getClass();
     }
 
     @Override
@@ -896,7 +916,7 @@ public class Coord3D implements Cloneable, java.io.Serializable {
         if (obj == null) {
             return false;
         }
-        if (getClass() != obj.getClass()) {
+        if (!(obj instanceof Coord3D) || this.getValueClass() != ((Coord3D) obj).getValueClass()) {
             return false;
         }
         Coord3D other = (Coord3D) obj;
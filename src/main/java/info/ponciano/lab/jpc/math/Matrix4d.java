@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.math;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable 4x4 matrix of an affine transformation in homogeneous
+ * coordinates.
+ * <p>
+ * Translations, rotations and scales are composed into a single matrix with
+ * {@link #then}, {@link #translate}, {@link #rotate} and {@link #scale}, each
+ * step being applied after the previous ones. The matrix is applied in place
+ * to coordinates stored in a primitive buffer (x, y, z of each point) or in
+ * three columns, large buffers being split in chunks transformed in
+ * parallel.</p>
+ * Example:
+ * <pre><code> Matrix4d.translation(-cx, -cy, -cz).rotate(rx, ry, rz).transform(coords);</code></pre>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public final class Matrix4d {
+
+    /**
+     * Number of points of the chunks transformed in parallel.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+    private static final Matrix4d IDENTITY = new Matrix4d(new double[]{
+        1, 0, 0, 0,
+        0, 1, 0, 0,
+        0, 0, 1, 0,
+        0, 0, 0, 1});
+
+    /**
+     * Coefficients in row-major order.
+     */
+    private final double[] m;
+
+    /**
+     * Creates the matrix of an affine transformation.
+     *
+     * @param values the 16 coefficients in row-major order, the last row
+     * being 0, 0, 0, 1.
+     */
+    public Matrix4d(double[] values) {
+        if (values.length != 16) {
+            throw new IllegalArgumentException("16 coefficients expected: " + values.length);
+        }
+        if (values[12] != 0 || values[13] != 0 || values[14] != 0 || values[15] != 1) {
+            throw new IllegalArgumentException("Not an affine transformation: " + Arrays.toString(values));
+        }
+        this.m = values.clone();
+    }
+
+    public static Matrix4d identity() {
+        return IDENTITY;
+    }
+
+    /**
+     * Creates the matrix of a translation by the vector {@code (x, y, z)}.
+     *
+     * @param x translation vector x coordinate
+     * @param y translation vector y coordinate
+     * @param z translation vector z coordinate
+     * @return the matrix of the translation.
+     */
+    public static Matrix4d translation(double x, double y, double z) {
+        return new Matrix4d(new double[]{
+            1, 0, 0, x,
+            0, 1, 0, y,
+            0, 0, 1, z,
+            0, 0, 0, 1});
+    }
+
+    /**
+     * Creates the matrix of a scale along each axis.
+     *
+     * @param x scale in x.
+     * @param y scale in y.
+     * @param z scale in z.
+     * @return the matrix of the scale.
+     */
+    public static Matrix4d scaling(double x, double y, double z) {
+        return new Matrix4d(new double[]{
+            x, 0, 0, 0,
+            0, y, 0, 0,
+            0, 0, z, 0,
+            0, 0, 0, 1});
+    }
+
+    /**
+     * Creates the matrix of a rotation around the three axis using Euler
+     * angles: around X, then around Y, then around Z.
+     *
+     * @param rotationX the angle by which to rotate around the X axis
+     * @param rotationY the angle by which to rotate around the Y axis
+     * @param rotationZ the angle by which to rotate around the Z axis
+     * @return the matrix of the rotation.
+     */
+    public static Matrix4d rotation(double rotationX, double rotationY, double rotationZ) {
+        double cx = Math.cos(rotationX), sx = Math.sin(rotationX);
+        double cy = Math.cos(rotationY), sy = Math.sin(rotationY);
+        double cz = Math.cos(rotationZ), sz = Math.sin(rotationZ);
+        // Rz * Ry * Rx
+        return new Matrix4d(new double[]{
+            cz * cy, cz * sy * sx - sz * cx, cz * sy * cx + sz * sx, 0,
+            sz * cy, sz * sy * sx + cz * cx, sz * sy * cx - cz * sx, 0,
+            -sy, cy * sx, cy * cx, 0,
+            0, 0, 0, 1});
+    }
+
+    /**
+     * Composes this transformation with a next one.
+     *
+     * @param next transformation applied after this one.
+     * @return the matrix applying this transformation then the next one.
+     */
+    public Matrix4d then(Matrix4d next) {
+        double[] a = next.m;
+        double[] b = this.m;
+        double[] c = new double[16];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                c[4 * i + j] = a[4 * i] * b[j] + a[4 * i + 1] * b[4 + j] + a[4 * i + 2] * b[8 + j] + a[4 * i + 3] * b[12 + j];
+            }
+        }
+        return new Matrix4d(c);
+    }
+
+    public Matrix4d translate(double x, double y, double z) {
+        return this.then(translation(x, y, z));
+    }
+
+    public Matrix4d rotate(double rotationX, double rotationY, double rotationZ) {
+        return this.then(rotation(rotationX, rotationY, rotationZ));
+    }
+
+    public Matrix4d scale(double x, double y, double z) {
+        return this.then(scaling(x, y, z));
+    }
+
+    /**
+     * Gets a coefficient of the matrix.
+     *
+     * @param row row of the coefficient, from 0 to 3.
+     * @param column column of the coefficient, from 0 to 3.
+     * @return the coefficient.
+     */
+    public double get(int row, int column) {
+        return this.m[4 * row + column];
+    }
+
+    /**
+     * Tests if the transformation is a translation.
+     *
+     * @return true if the linear part of the matrix is the identity.
+     */
+    public boolean isTranslation() {
+        return this.m[0] == 1 && this.m[1] == 0 && this.m[2] == 0
+                && this.m[4] == 0 && this.m[5] == 1 && this.m[6] == 0
+                && this.m[8] == 0 && this.m[9] == 0 && this.m[10] == 1;
+    }
+
+    /**
+     * Transforms coordinates.
+     *
+     * @param c coordinates to be transformed.
+     * @return new transformed coordinates.
+     */
+    public Coord3D transform(Coord3D c) {
+        double x = c.getX(), y = c.getY(), z = c.getZ();
+        return new Coord3D(
+                this.m[0] * x + this.m[1] * y + this.m[2] * z + this.m[3],
+                this.m[4] * x + this.m[5] * y + this.m[6] * z + this.m[7],
+                this.m[8] * x + this.m[9] * y + this.m[10] * z + this.m[11]);
+    }
+
+    /**
+     * Transforms in place the coordinates of a buffer, in parallel for large
+     * buffers.
+     *
+     * @param coords coordinates x, y, z of each point.
+     */
+    public void transform(double[] coords) {
+        int n = coords.length / 3;
+        if (n > CHUNK_SIZE) {
+            IntStream.range(0, (n + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+                    .forEach(c -> this.transform(coords, c * CHUNK_SIZE, Math.min(n, (c + 1) * CHUNK_SIZE)));
+        } else {
+            this.transform(coords, 0, n);
+        }
+    }
+
+    /**
+     * Transforms in place the coordinates of a range of points of a buffer.
+     *
+     * @param coords coordinates x, y, z of each point.
+     * @param from index of the first point to be transformed.
+     * @param to index after the last point to be transformed.
+     */
+    public void transform(double[] coords, int from, int to) {
+        double m00 = this.m[0], m01 = this.m[1], m02 = this.m[2], m03 = this.m[3];
+        double m10 = this.m[4], m11 = this.m[5], m12 = this.m[6], m13 = this.m[7];
+        double m20 = this.m[8], m21 = this.m[9], m22 = this.m[10], m23 = this.m[11];
+        for (int i = 3 * from; i < 3 * to; i += 3) {
+            double x = coords[i], y = coords[i + 1], z = coords[i + 2];
+            coords[i] = m00 * x + m01 * y + m02 * z + m03;
+            coords[i + 1] = m10 * x + m11 * y + m12 * z + m13;
+            coords[i + 2] = m20 * x + m21 * y + m22 * z + m23;
+        }
+    }
+
+    /**
+     * Transforms in place the coordinates of points stored in columns.
+     *
+     * @param xs x coordinates of the points.
+     * @param ys y coordinates of the points.
+     * @param zs z coordinates of the points.
+     * @param size number of points to be transformed.
+     */
+    public void transform(double[] xs, double[] ys, double[] zs, int size) {
+        double m00 = this.m[0], m01 = this.m[1], m02 = this.m[2], m03 = this.m[3];
+        double m10 = this.m[4], m11 = this.m[5], m12 = this.m[6], m13 = this.m[7];
+        double m20 = this.m[8], m21 = this.m[9], m22 = this.m[10], m23 = this.m[11];
+        for (int i = 0; i < size; i++) {
+            double x = xs[i], y = ys[i], z = zs[i];
+            xs[i] = m00 * x + m01 * y + m02 * z + m03;
+            ys[i] = m10 * x + m11 * y + m12 * z + m13;
+            zs[i] = m20 * x + m21 * y + m22 * z + m23;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return Arrays.equals(this.m, ((Matrix4d) obj).m);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.m);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            buff.append(this.m[4 * i]).append("\t").append(this.m[4 * i + 1]).append("\t")
+                    .append(this.m[4 * i + 2]).append("\t").append(this.m[4 * i + 3]).append("\n");
+        }
+        return buff.toString();
+    }
+}
@@ -325,7 +325,7 @@ public class Point implements Comparable<Point>, Serializable {
         if (obj == null) {
             return false;
         }
-        if (getClass() != obj.getClass()) {
+        if (!(obj instanceof Point) || this.getValueClass() != ((Point) obj).getValueClass()) {
             return false;
         }
         final Point other = (Point) obj;
@@ -338,6 +338,17 @@ public class Point implements Comparable<Point>, Serializable {
         return this.coords.equals(other.coords);
     }
 
+    /**
+     * Gets the class compared by {@code equals}: the class of the instance,
+     * except for the views of points stored elsewhere, which return the class
+     * they stand for.
+     *
+     * @return the class of the value.
+     */
+    protected Class<? extends Point> getValueClass() {
+        return this.getClass();
+    }
+
     public final void loadfromTxt(String pToString) {
         List<String> split = new ArrayList<>();
         String[] splited = pToString.split("\\s");
@@ -372,7 +383,7 @@ public class Point implements Comparable<Point>, Serializable {
         Collections.sort(ps, (Point o1, Point o2) -> {
             double d1 = o1.getCoords().distance(d);
             double d2 = o2.getCoords().distance(d);
-            return (int) (d1 - d2);
+            return Double.compare(d1, d2);
         });
     }
 }
@@ -21,21 +21,15 @@ import info.ponciano.lab.jpc.math.Color;
 import info.ponciano.lab.jpc.math.Coord3D;
 import info.ponciano.lab.jpc.math.Point;
 import java.io.IOException;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Map;
 import info.ponciano.lab.jpc.mesh.ply.PLY;
 import info.ponciano.lab.jpc.mesh.ply.PLYElementList;
-import info.ponciano.lab.jpc.mesh.ply.PLYType;
-import static info.ponciano.lab.jpc.mesh.ply.PLYType.FLOAT32;
-import static info.ponciano.lab.jpc.mesh.ply.PLYType.LIST;
 import static info.ponciano.lab.jpc.mesh.ply.PLYType.UINT32;
 import static info.ponciano.lab.jpc.mesh.ply.PLYType.UINT8;
-import info.ponciano.lab.jpc.mesh.ply.PLY_Plotly;
 
 /**
  *
@@ -96,9 +90,103 @@ public class Mesh {
      *
      * @param path path of the file with the PLY extension.
      * @param comments comments to add or empty for no comment
+     * @throws IOException if the file cannot be written.
      */
-    public void exportPly(String path, String comments) {
-        throw new UnsupportedOperationException("Not supported yet.");
+    public void exportPly(String path, String comments) throws IOException {
+        this.exportPly(path, comments, PLY.Format.ASCII);
+    }
+
+    /**
+     * Exports the mesh in PLY file. Points at the same position are a single
+     * vertex, written in {@code float}, and the color of each polygon is the
+     * color of its face.
+     *
+     * @param path path of the file with the PLY extension.
+     * @param comments comments to add or empty for no comment
+     * @param format format of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void exportPly(String path, String comments, PLY.Format format) throws IOException {
+        Map<String, Integer> indices = new HashMap<>();
+        List<Coord3D> vertices = new ArrayList<>();
+        int[][] faces = new int[this.polygons.size()][];
+        int[][] colors = new int[3][this.polygons.size()];
+        for (int f = 0; f < faces.length; f++) {
+            Polygon polygon = this.polygons.get(f);
+            List<Point> points = polygon.getPtlist();
+            faces[f] = new int[points.size()];
+            for (int i = 0; i < faces[f].length; i++) {
+                Coord3D coords = points.get(i).getCoords();
+                Integer index = indices.putIfAbsent(coords.hash(), vertices.size());
+                if (index == null) {
+                    index = vertices.size();
+                    vertices.add(coords);
+                }
+                faces[f][i] = index;
+            }
+            Color c = polygon.getColor() == null ? this.color : polygon.getColor();
+            colors[0][f] = c.getRed();
+            colors[1][f] = c.getGreen();
+            colors[2][f] = c.getBlue();
+        }
+        float[][] xyz = new float[3][vertices.size()];
+        for (int i = 0; i < vertices.size(); i++) {
+            xyz[0][i] = (float) vertices.get(i).getX();
+            xyz[1][i] = (float) vertices.get(i).getY();
+            xyz[2][i] = (float) vertices.get(i).getZ();
+        }
+        PLYElementList vertex = new PLYElementList("vertex", vertices.size());
+        vertex.add("x", xyz[0]);
+        vertex.add("y", xyz[1]);
+        vertex.add("z", xyz[2]);
+        PLYElementList face = new PLYElementList("face", faces.length);
+        face.add("vertex_indices", UINT8, UINT32, faces);
+        face.add("red", UINT8, colors[0]);
+        face.add("green", UINT8, colors[1]);
+        face.add("blue", UINT8, colors[2]);
+        PLY ply = new PLY(format);
+        if (comments != null && !comments.isEmpty()) {
+            for (String comment : comments.split("\\R")) {
+                ply.addComment(comment);
+            }
+        }
+        ply.add(vertex);
+        ply.add(face);
+        ply.write(Paths.get(path));
+    }
+
+    /**
+     * Imports a mesh from the vertices and faces of a PLY file. Faces colors
+     * are applied to the polygons.
+     *
+     * @param path path of the PLY file.
+     * @return the mesh.
+     * @throws IOException if the file cannot be read or has no face.
+     */
+    public static Mesh importPly(String path) throws IOException {
+        PLY ply = PLY.read(Paths.get(path), "vertex.x", "vertex.y", "vertex.z",
+                "face.vertex_indices", "face.vertex_index", "face.red", "face.green", "face.blue");
+        PLYElementList vertex = ply.getElement("vertex");
+        PLYElementList face = ply.getElement("face");
+        if (vertex == null || face == null) {
+            throw new IOException(path + " has no vertex or no face");
+        }
+        String property = face.isLoaded("vertex_indices") ? "vertex_indices" : "vertex_index";
+        if (!face.isLoaded(property) || !vertex.isLoaded("x") || !vertex.isLoaded("y") || !vertex.isLoaded("z")) {
+            throw new IOException(path + " has no vertex coordinates or no vertex indices");
+        }
+        Coord3D[] vertices = new Coord3D[vertex.getCount()];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = new Coord3D(vertex.getDouble("x", i), vertex.getDouble("y", i), vertex.getDouble("z", i));
+        }
+        Mesh mesh = new Mesh(vertices, face.getLists(property));
+        if (face.isLoaded("red") && face.isLoaded("green") && face.isLoaded("blue")) {
+            for (int f = 0; f < face.getCount(); f++) {
+                mesh.polygons.get(f).setColor(new Color((int) face.getDouble("red", f),
+                        (int) face.getDouble("green", f), (int) face.getDouble("blue", f)));
+            }
+        }
+        return mesh;
     }
 
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.mesh.ply;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * PLY document: format, comments and elements with their values.
+ * <p>
+ * A document is read and written entirely, through {@link PLYReader} and
+ * {@link PLYWriter} which stream the values in large blocks. Only the
+ * properties asked for are loaded when reading, the others being skipped.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PLY {
+
+    /**
+     * Formats of the body of a PLY file.
+     */
+    public enum Format {
+        ASCII("ascii", null),
+        BINARY_LITTLE_ENDIAN("binary_little_endian", ByteOrder.LITTLE_ENDIAN),
+        BINARY_BIG_ENDIAN("binary_big_endian", ByteOrder.BIG_ENDIAN);
+
+        private final String name;
+        private final ByteOrder order;
+
+        private Format(String name, ByteOrder order) {
+            this.name = name;
+            this.order = order;
+        }
+
+        /**
+         * Gets the format of a name of the PLY header.
+         *
+         * @param name name of the format, as {@code binary_little_endian}.
+         * @return the format.
+         * @throws IllegalArgumentException if the name is unknown.
+         */
+        public static Format parse(String name) {
+            for (Format format : values()) {
+                if (format.name.equals(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown PLY format: " + name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the byte order of a binary format.
+         *
+         * @return the byte order, null for {@code ASCII}.
+         */
+        public ByteOrder getOrder() {
+            return order;
+        }
+    }
+
+    private final Format format;
+    private final List<String> comments;
+    private final List<PLYElementList> elements;
+
+    /**
+     * Creates a new empty document.
+     *
+     * @param format format of the file to be written.
+     */
+    public PLY(Format format) {
+        this.format = format;
+        this.comments = new ArrayList<>();
+        this.elements = new ArrayList<>();
+    }
+
+    /**
+     * Reads a PLY file.
+     *
+     * @param path path of the file.
+     * @param properties properties to be loaded, named {@code property} for
+     * every element having it or {@code element.property}. Every property is
+     * loaded if none is given.
+     * @return the document with the values of the loaded properties.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public static PLY read(Path path, String... properties) throws IOException {
+        Set<String> wanted = new HashSet<>(Arrays.asList(properties));
+        try (PLYReader reader = new PLYReader(path)) {
+            PLY ply = new PLY(reader.getFormat());
+            ply.comments.addAll(reader.getComments());
+            for (PLYElementList declaration : reader.getElements()) {
+                PLYElementList element = new PLYElementList(declaration);
+                boolean[] loaded = new boolean[element.size()];
+                boolean any = false;
+                for (int p = 0; p < loaded.length; p++) {
+                    String property = element.getProperties().get(p);
+                    loaded[p] = wanted.isEmpty() || wanted.contains(property)
+                            || wanted.contains(element.getName() + "." + property);
+                    any |= loaded[p];
+                }
+                read(reader, element, loaded, any);
+                ply.elements.add(element);
+            }
+            return ply;
+        }
+    }
+
+    /**
+     * Writes the document. Every property of the elements must be loaded.
+     *
+     * @param path path of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        try (PLYWriter writer = new PLYWriter(path, format, comments, elements)) {
+            for (PLYElementList element : elements) {
+                write(writer, element);
+            }
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public List<String> getComments() {
+        return comments;
+    }
+
+    /**
+     * Adds a comment written in the header.
+     *
+     * @param comment comment on a single line.
+     */
+    public void addComment(String comment) {
+        if (comment.indexOf('\n') >= 0 || comment.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("A comment must be on a single line");
+        }
+        this.comments.add(comment);
+    }
+
+    /**
+     * Adds an element after the existing ones.
+     *
+     * @param element element to be added.
+     */
+    public void add(PLYElementList element) {
+        if (this.getElement(element.getName()) != null) {
+            throw new IllegalArgumentException("The element " + element.getName() + " already exists");
+        }
+        this.elements.add(element);
+    }
+
+    public List<PLYElementList> getElements() {
+        return Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Gets an element from its name.
+     *
+     * @param name name of the element, as {@code vertex}.
+     * @return the element or null if the document does not have it.
+     */
+    public PLYElementList getElement(String name) {
+        for (PLYElementList element : elements) {
+            if (element.getName().equals(name)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private static void read(PLYReader reader, PLYElementList element, boolean[] loaded, boolean any) throws IOException {
+        int rowSize = 0;
+        for (int p = 0; p < loaded.length && rowSize >= 0; p++) {
+            rowSize = element.getType(p) == PLYType.LIST ? -1 : rowSize + element.getType(p).getSize();
+        }
+        if (!any && rowSize >= 0 && reader.getFormat() != Format.ASCII) {
+            reader.skipBytes((long) rowSize * element.getCount());
+            return;
+        }
+        Object[] columns = new Object[loaded.length];
+        for (int p = 0; p < loaded.length; p++) {
+            if (loaded[p]) {
+                columns[p] = element.allocate(p);
+            }
+        }
+        for (int i = 0; i < element.getCount(); i++) {
+            for (int p = 0; p < columns.length; p++) {
+                PLYType type = element.getType(p);
+                Object column = columns[p];
+                if (type == PLYType.LIST) {
+                    PLYType itemType = element.getItemType(p);
+                    int size = reader.readCount(element.getCountType(p));
+                    if (column instanceof int[][]) {
+                        int[] items = new int[size];
+                        for (int j = 0; j < size; j++) {
+                            items[j] = (int) (long) reader.read(itemType);
+                        }
+                        ((int[][]) column)[i] = items;
+                    } else if (column instanceof double[][]) {
+                        double[] items = new double[size];
+                        for (int j = 0; j < size; j++) {
+                            items[j] = reader.read(itemType);
+                        }
+                        ((double[][]) column)[i] = items;
+                    } else {
+                        reader.skip(itemType, size);
+                    }
+                } else if (column instanceof double[]) {
+                    ((double[]) column)[i] = reader.read(type);
+                } else if (column instanceof float[]) {
+                    ((float[]) column)[i] = (float) reader.read(type);
+                } else if (column instanceof int[]) {
+                    ((int[]) column)[i] = (int) (long) reader.read(type);
+                } else {
+                    reader.skip(type, 1);
+                }
+            }
+        }
+    }
+
+    private static void write(PLYWriter writer, PLYElementList element) throws IOException {
+        Object[] columns = new Object[element.size()];
+        for (int p = 0; p < columns.length; p++) {
+            columns[p] = element.getColumn(p);
+            if (columns[p] == null) {
+                throw new IllegalStateException("The values of " + element.getName() + "."
+                        + element.getProperties().get(p) + " are not loaded");
+            }
+        }
+        for (int i = 0; i < element.getCount(); i++) {
+            for (int p = 0; p < columns.length; p++) {
+                Object column = columns[p];
+                if (column instanceof int[][]) {
+                    writer.write(((int[][]) column)[i]);
+                } else if (column instanceof double[][]) {
+                    writer.write(((double[][]) column)[i]);
+                } else {
+                    writer.write(element.getDouble(p, i));
+                }
+            }
+        }
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
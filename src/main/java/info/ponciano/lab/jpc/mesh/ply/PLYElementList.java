@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.mesh.ply;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Element of a PLY file, such as {@code vertex} or {@code face}, with the
+ * declaration of its properties and their values stored by column.
+ * <p>
+ * Scalar columns are stored in a {@code double[]} for {@code FLOAT64}, a
+ * {@code float[]} for {@code FLOAT32} and an {@code int[]} for the integer
+ * types, {@code UINT32} values keeping their bits. List columns are stored in
+ * an {@code int[][]}, or a {@code double[][]} when their items are floating
+ * point numbers. A declared property whose values are not loaded has no
+ * column.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PLYElementList {
+
+    private final String name;
+    private final int count;
+    private final List<String> properties;
+    private final List<PLYType> types;
+    private final List<PLYType> countTypes;
+    private final List<PLYType> itemTypes;
+    private final List<Object> columns;
+
+    /**
+     * Creates a new element without property.
+     *
+     * @param name name of the element.
+     * @param count number of instances of the element.
+     */
+    public PLYElementList(String name, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative number of " + name + ": " + count);
+        }
+        this.name = name;
+        this.count = count;
+        this.properties = new ArrayList<>();
+        this.types = new ArrayList<>();
+        this.countTypes = new ArrayList<>();
+        this.itemTypes = new ArrayList<>();
+        this.columns = new ArrayList<>();
+    }
+
+    /**
+     * Creates a copy of the declaration of an element, without its values.
+     *
+     * @param other element to be copied.
+     */
+    public PLYElementList(PLYElementList other) {
+        this(other.name, other.count);
+        this.properties.addAll(other.properties);
+        this.types.addAll(other.types);
+        this.countTypes.addAll(other.countTypes);
+        this.itemTypes.addAll(other.itemTypes);
+        this.columns.addAll(Collections.nCopies(other.columns.size(), null));
+    }
+
+    /**
+     * Declares a scalar property without values.
+     *
+     * @param property name of the property.
+     * @param type type of the property.
+     */
+    public void addProperty(String property, PLYType type) {
+        if (type == PLYType.LIST) {
+            throw new IllegalArgumentException("The count and item types of the list " + property + " are missing");
+        }
+        this.declare(property, type, null, null, null);
+    }
+
+    /**
+     * Declares a list property without values.
+     *
+     * @param property name of the property.
+     * @param countType integer type of the number of items.
+     * @param itemType type of the items.
+     */
+    public void addList(String property, PLYType countType, PLYType itemType) {
+        if (countType == PLYType.LIST || countType.isFloating() || itemType == PLYType.LIST) {
+            throw new IllegalArgumentException("Invalid list " + property + ": " + countType + " " + itemType);
+        }
+        this.declare(property, PLYType.LIST, countType, itemType, null);
+    }
+
+    /**
+     * Adds a {@code FLOAT64} property with its values.
+     *
+     * @param property name of the property.
+     * @param values values of each instance of the element.
+     */
+    public void add(String property, double[] values) {
+        this.declare(property, PLYType.FLOAT64, null, null, this.checked(values.length, values));
+    }
+
+    /**
+     * Adds a {@code FLOAT32} property with its values.
+     *
+     * @param property name of the property.
+     * @param values values of each instance of the element.
+     */
+    public void add(String property, float[] values) {
+        this.declare(property, PLYType.FLOAT32, null, null, this.checked(values.length, values));
+    }
+
+    /**
+     * Adds an integer property with its values.
+     *
+     * @param property name of the property.
+     * @param type integer type of the property.
+     * @param values values of each instance of the element.
+     */
+    public void add(String property, PLYType type, int[] values) {
+        if (type == PLYType.LIST || type.isFloating()) {
+            throw new IllegalArgumentException(type + " is not an integer type");
+        }
+        this.declare(property, type, null, null, this.checked(values.length, values));
+    }
+
+    /**
+     * Adds a list property of integers with its values.
+     *
+     * @param property name of the property.
+     * @param countType integer type of the number of items.
+     * @param itemType integer type of the items.
+     * @param values items of each instance of the element.
+     */
+    public void add(String property, PLYType countType, PLYType itemType, int[][] values) {
+        if (itemType.isFloating()) {
+            throw new IllegalArgumentException(itemType + " is not an integer type");
+        }
+        this.addList(property, countType, itemType);
+        this.columns.set(this.columns.size() - 1, this.checked(values.length, values));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the names of the properties in the order of the file.
+     *
+     * @return unmodifiable list of the names.
+     */
+    public List<String> getProperties() {
+        return Collections.unmodifiableList(properties);
+    }
+
+    /**
+     * Indicates if a property is declared.
+     *
+     * @param property name of the property.
+     * @return true if the element has this property.
+     */
+    public boolean contains(String property) {
+        return this.properties.contains(property);
+    }
+
+    /**
+     * Indicates if the values of a property are loaded.
+     *
+     * @param property name of the property.
+     * @return true if the property has a column.
+     */
+    public boolean isLoaded(String property) {
+        int i = this.properties.indexOf(property);
+        return i >= 0 && this.columns.get(i) != null;
+    }
+
+    /**
+     * Gets the type of a property.
+     *
+     * @param property name of the property.
+     * @return the type of the property, {@code LIST} for a list.
+     */
+    public PLYType getType(String property) {
+        return this.types.get(this.indexOf(property));
+    }
+
+    /**
+     * Gets the type of the number of items of a list property.
+     *
+     * @param property name of the list property.
+     * @return the type of the count, null if the property is not a list.
+     */
+    public PLYType getCountType(String property) {
+        return this.countTypes.get(this.indexOf(property));
+    }
+
+    /**
+     * Gets the type of the items of a list property.
+     *
+     * @param property name of the list property.
+     * @return the type of the items, null if the property is not a list.
+     */
+    public PLYType getItemType(String property) {
+        return this.itemTypes.get(this.indexOf(property));
+    }
+
+    /**
+     * Gets the value of a scalar property whatever its type.
+     *
+     * @param property name of the property.
+     * @param index index of the instance of the element.
+     * @return the value.
+     */
+    public double getDouble(String property, int index) {
+        return this.getDouble(this.indexOf(property), index);
+    }
+
+    /**
+     * Gets the values of a {@code FLOAT64} property.
+     *
+     * @param property name of the property.
+     * @return the column of the values.
+     */
+    public double[] getDoubles(String property) {
+        return (double[]) this.column(property, double[].class);
+    }
+
+    /**
+     * Gets the values of a {@code FLOAT32} property.
+     *
+     * @param property name of the property.
+     * @return the column of the values.
+     */
+    public float[] getFloats(String property) {
+        return (float[]) this.column(property, float[].class);
+    }
+
+    /**
+     * Gets the values of an integer property.
+     *
+     * @param property name of the property.
+     * @return the column of the values.
+     */
+    public int[] getInts(String property) {
+        return (int[]) this.column(property, int[].class);
+    }
+
+    /**
+     * Gets the values of a list property of integers, such as the
+     * {@code vertex_indices} of the faces.
+     *
+     * @param property name of the property.
+     * @return the items of each instance of the element.
+     */
+    public int[][] getLists(String property) {
+        return (int[][]) this.column(property, int[][].class);
+    }
+
+    /**
+     * Gets the values of a list property of floating point numbers.
+     *
+     * @param property name of the property.
+     * @return the items of each instance of the element.
+     */
+    public double[][] getDoubleLists(String property) {
+        return (double[][]) this.column(property, double[][].class);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder txt = new StringBuilder();
+        txt.append("element ").append(name).append(' ').append(count).append('\n');
+        for (int i = 0; i < this.properties.size(); i++) {
+            txt.append("property ");
+            if (this.types.get(i) == PLYType.LIST) {
+                txt.append("list ").append(this.countTypes.get(i).getName()).append(' ').append(this.itemTypes.get(i).getName());
+            } else {
+                txt.append(this.types.get(i).getName());
+            }
+            txt.append(' ').append(this.properties.get(i)).append('\n');
+        }
+        return txt.toString();
+    }
+
+    int size() {
+        return this.properties.size();
+    }
+
+    PLYType getType(int property) {
+        return this.types.get(property);
+    }
+
+    PLYType getCountType(int property) {
+        return this.countTypes.get(property);
+    }
+
+    PLYType getItemType(int property) {
+        return this.itemTypes.get(property);
+    }
+
+    Object getColumn(int property) {
+        return this.columns.get(property);
+    }
+
+    /**
+     * Creates the empty column of a property to be read.
+     *
+     * @param property index of the property.
+     * @return the new column.
+     */
+    Object allocate(int property) {
+        Object column;
+        PLYType type = this.types.get(property);
+        if (type == PLYType.LIST) {
+            column = this.itemTypes.get(property).isFloating() ? new double[count][] : new int[count][];
+        } else if (type == PLYType.FLOAT64) {
+            column = new double[count];
+        } else if (type == PLYType.FLOAT32) {
+            column = new float[count];
+        } else {
+            column = new int[count];
+        }
+        this.columns.set(property, column);
+        return column;
+    }
+
+    double getDouble(int property, int index) {
+        Object column = this.columns.get(property);
+        if (column instanceof double[]) {
+            return ((double[]) column)[index];
+        } else if (column instanceof float[]) {
+            return ((float[]) column)[index];
+        } else if (column instanceof int[]) {
+            int value = ((int[]) column)[index];
+            return this.types.get(property) == PLYType.UINT32 ? Integer.toUnsignedLong(value) : value;
+        } else if (column == null) {
+            throw new IllegalStateException("The values of " + this.properties.get(property) + " are not loaded");
+        }
+        throw new IllegalArgumentException(this.properties.get(property) + " is a list");
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private void declare(String property, PLYType type, PLYType countType, PLYType itemType, Object column) {
+        if (this.properties.contains(property)) {
+            throw new IllegalArgumentException("The property " + property + " of " + name + " already exists");
+        }
+        this.properties.add(property);
+        this.types.add(type);
+        this.countTypes.add(countType);
+        this.itemTypes.add(itemType);
+        this.columns.add(column);
+    }
+
+    private Object checked(int length, Object column) {
+        if (length != this.count) {
+            throw new IllegalArgumentException(length + " values for " + count + " " + name);
+        }
+        return column;
+    }
+
+    private int indexOf(String property) {
+        int i = this.properties.indexOf(property);
+        if (i < 0) {
+            throw new IllegalArgumentException(name + " has no property " + property);
+        }
+        return i;
+    }
+
+    private Object column(String property, Class<?> type) {
+        Object column = this.columns.get(this.indexOf(property));
+        if (column == null) {
+            throw new IllegalStateException("The values of " + property + " are not loaded");
+        }
+        if (!type.isInstance(column)) {
+            throw new IllegalArgumentException(property + " is not stored in a " + type.getSimpleName());
+        }
+        return column;
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.mesh.ply;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.pointcloud.Pointcloud;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes point clouds in PLY files.
+ * <p>
+ * The points are the {@code vertex} element with the properties {@code x},
+ * {@code y}, {@code z} as {@code double}, {@code red}, {@code green},
+ * {@code blue} as {@code uchar} and {@code nx}, {@code ny}, {@code nz} as
+ * {@code float}. Colors and normals are written only if a point has one;
+ * points without color are then written white and points without normal get
+ * a null normal. The points of a {@code Pointcloud} also have the
+ * {@code int} property {@code patch}, index of their patch whose id is kept
+ * in a {@code patch <index> <id>} comment.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PLYPointCloud {
+
+    public static final String VERTEX = "vertex";
+    public static final String PATCH = "patch";
+    private static final String[] COLOR = {"red", "green", "blue"};
+    private static final String[] NORMAL = {"nx", "ny", "nz"};
+    private static final String[] PROPERTIES = {
+        VERTEX + ".x", VERTEX + ".y", VERTEX + ".z",
+        VERTEX + ".red", VERTEX + ".green", VERTEX + ".blue",
+        VERTEX + ".nx", VERTEX + ".ny", VERTEX + ".nz", VERTEX + "." + PATCH
+    };
+
+    private PLYPointCloud() {
+    }
+
+    /**
+     * Writes a point cloud.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be written.
+     * @param format format of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path path, APointCloud cloud, PLY.Format format) throws IOException {
+        boolean color = cloud.stream().anyMatch(Point::isColored);
+        boolean normal = cloud.stream().anyMatch(Point::isNormalized);
+        List<PLYElementList> elements = List.of(declaration(cloud.size(), color, normal, false));
+        try (PLYWriter writer = new PLYWriter(path, format, List.of(), elements)) {
+            Iterator<Point> it = cloud.iterator();
+            while (it.hasNext()) {
+                write(writer, it.next(), color, normal);
+            }
+        }
+    }
+
+    /**
+     * Writes the patches of a point cloud.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be written.
+     * @param format format of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path path, Pointcloud cloud, PLY.Format format) throws IOException {
+        Map<String, APointCloud> patches = cloud.getPatches();
+        boolean color = false;
+        boolean normal = false;
+        List<String> comments = new ArrayList<>();
+        for (Map.Entry<String, APointCloud> patch : patches.entrySet()) {
+            color |= patch.getValue().stream().anyMatch(Point::isColored);
+            normal |= patch.getValue().stream().anyMatch(Point::isNormalized);
+            comments.add(PATCH + " " + comments.size() + " " + patch.getKey());
+        }
+        List<PLYElementList> elements = List.of(declaration(cloud.size(), color, normal, true));
+        try (PLYWriter writer = new PLYWriter(path, format, comments, elements)) {
+            int index = 0;
+            for (APointCloud patch : patches.values()) {
+                Iterator<Point> it = patch.iterator();
+                while (it.hasNext()) {
+                    write(writer, it.next(), color, normal);
+                    writer.write(index);
+                }
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Reads the points of a PLY file.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be filled.
+     * @throws IOException if the file cannot be read or has no vertex.
+     */
+    public static void read(Path path, APointCloud cloud) throws IOException {
+        PLYElementList vertex = vertex(PLY.read(path, PROPERTIES));
+        int[] columns = columns(vertex);
+        for (int i = 0; i < vertex.getCount(); i++) {
+            cloud.add(point(vertex, columns, i));
+        }
+    }
+
+    /**
+     * Reads the points of a PLY file in the patches of a point cloud. The
+     * points without patch are added to the patch {@code 0}.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be filled.
+     * @throws IOException if the file cannot be read or has no vertex.
+     */
+    public static void read(Path path, Pointcloud cloud) throws IOException {
+        PLY ply = PLY.read(path, PROPERTIES);
+        PLYElementList vertex = vertex(ply);
+        Map<Integer, String> ids = new HashMap<>();
+        for (String comment : ply.getComments()) {
+            String[] split = comment.split(" ", 3);
+            if (split.length == 3 && PATCH.equals(split[0])) {
+                try {
+                    ids.put(Integer.parseInt(split[1]), split[2]);
+                } catch (NumberFormatException ex) {
+                    // not a patch comment
+                }
+            }
+        }
+        int[] columns = columns(vertex);
+        int patches = columns[PROPERTIES.length - 1];
+        for (int i = 0; i < vertex.getCount(); i++) {
+            String id = "0";
+            if (patches >= 0) {
+                int index = (int) vertex.getDouble(patches, i);
+                id = ids.getOrDefault(index, String.valueOf(index));
+            }
+            APointCloud patch = cloud.get(id);
+            if (patch == null) {
+                patch = new PointCloudMap();
+                cloud.add(id, patch);
+            }
+            patch.add(point(vertex, columns, i));
+        }
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private static PLYElementList declaration(int count, boolean color, boolean normal, boolean patch) {
+        PLYElementList vertex = new PLYElementList(VERTEX, count);
+        vertex.addProperty("x", PLYType.FLOAT64);
+        vertex.addProperty("y", PLYType.FLOAT64);
+        vertex.addProperty("z", PLYType.FLOAT64);
+        if (color) {
+            for (String property : COLOR) {
+                vertex.addProperty(property, PLYType.UINT8);
+            }
+        }
+        if (normal) {
+            for (String property : NORMAL) {
+                vertex.addProperty(property, PLYType.FLOAT32);
+            }
+        }
+        if (patch) {
+            vertex.addProperty(PATCH, PLYType.INT32);
+        }
+        return vertex;
+    }
+
+    private static void write(PLYWriter writer, Point point, boolean color, boolean normal) throws IOException {
+        Coord3D coords = point.getCoords();
+        writer.write(coords.getX());
+        writer.write(coords.getY());
+        writer.write(coords.getZ());
+        if (color) {
+            Color c = point.isColored() ? point.getColor() : Color.WHITE;
+            writer.write(c.getRed());
+            writer.write(c.getGreen());
+            writer.write(c.getBlue());
+        }
+        if (normal) {
+            Normal n = point.getNormal();
+            writer.write(n == null ? 0 : n.getX());
+            writer.write(n == null ? 0 : n.getY());
+            writer.write(n == null ? 0 : n.getZ());
+        }
+    }
+
+    private static PLYElementList vertex(PLY ply) throws IOException {
+        PLYElementList vertex = ply.getElement(VERTEX);
+        if (vertex == null || !vertex.isLoaded("x") || !vertex.isLoaded("y") || !vertex.isLoaded("z")) {
+            throw new IOException("The PLY file has no vertex coordinates");
+        }
+        return vertex;
+    }
+
+    /**
+     * Gets the indexes of the loaded properties of the points.
+     *
+     * @return the index of each property of {@code PROPERTIES}, -1 if it is
+     * not loaded. Colors and normals are -1 if one of their component is
+     * missing.
+     */
+    private static int[] columns(PLYElementList vertex) {
+        int[] columns = new int[PROPERTIES.length];
+        for (int i = 0; i < columns.length; i++) {
+            String property = PROPERTIES[i].substring(VERTEX.length() + 1);
+            columns[i] = vertex.isLoaded(property) ? vertex.getProperties().indexOf(property) : -1;
+        }
+        for (int i = 3; i < 9; i += 3) {
+            if (columns[i] < 0 || columns[i + 1] < 0 || columns[i + 2] < 0) {
+                columns[i] = -1;
+            }
+        }
+        return columns;
+    }
+
+    private static Point point(PLYElementList vertex, int[] columns, int i) {
+        Point point = new Point(vertex.getDouble(columns[0], i), vertex.getDouble(columns[1], i), vertex.getDouble(columns[2], i));
+        if (columns[3] >= 0) {
+            double scale = vertex.getType(columns[3]).isFloating() ? 255 : 1;
+            point.setColor(new Color((int) Math.round(vertex.getDouble(columns[3], i) * scale),
+                    (int) Math.round(vertex.getDouble(columns[4], i) * scale),
+                    (int) Math.round(vertex.getDouble(columns[5], i) * scale)));
+        }
+        if (columns[6] >= 0) {
+            double nx = vertex.getDouble(columns[6], i);
+            double ny = vertex.getDouble(columns[7], i);
+            double nz = vertex.getDouble(columns[8], i);
+            if (nx != 0 || ny != 0 || nz != 0) {
+                point.setNormal(new Normal(nx, ny, nz));
+            }
+        }
+        return point;
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
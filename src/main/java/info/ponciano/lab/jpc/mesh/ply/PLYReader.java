@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.mesh.ply;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming reader of PLY files.
+ * <p>
+ * The header is read at the creation of the reader, then the values are read
+ * one by one in the order of the file, according to the declaration of the
+ * elements. The file is read in large blocks into a direct buffer; values of
+ * binary files are decoded from the buffer and values of ASCII files are
+ * parsed from its bytes.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PLYReader implements Closeable {
+
+    /**
+     * Size of the blocks read from the file.
+     */
+    public static final int BLOCK_SIZE = 1 << 22;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final PLY.Format format;
+    private final List<String> comments;
+    private final List<PLYElementList> elements;
+    private byte[] token;
+
+    /**
+     * Opens a file and reads its header.
+     *
+     * @param path path of the file.
+     * @throws IOException if the file cannot be read or if its header is
+     * malformed.
+     */
+    public PLYReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        this.buffer.limit(0);
+        this.token = new byte[64];
+        this.comments = new ArrayList<>();
+        this.elements = new ArrayList<>();
+        try {
+            this.format = this.readHeader(path);
+        } catch (IOException | RuntimeException ex) {
+            this.channel.close();
+            throw ex;
+        }
+        if (format != PLY.Format.ASCII) {
+            this.buffer.order(format.getOrder());
+        }
+    }
+
+    public PLY.Format getFormat() {
+        return format;
+    }
+
+    public List<String> getComments() {
+        return Collections.unmodifiableList(comments);
+    }
+
+    /**
+     * Gets the declarations of the elements, without values.
+     *
+     * @return the elements in the order of the file.
+     */
+    public List<PLYElementList> getElements() {
+        return Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Reads the next value.
+     *
+     * @param type scalar type of the value.
+     * @return the value.
+     * @throws IOException if the file cannot be read or ends.
+     */
+    public double read(PLYType type) throws IOException {
+        if (format == PLY.Format.ASCII) {
+            return this.parseToken();
+        }
+        this.ensure(type.getSize());
+        return type.get(buffer);
+    }
+
+    /**
+     * Reads the number of items of a list.
+     *
+     * @param countType integer type of the count.
+     * @return the number of items.
+     * @throws IOException if the file cannot be read, ends or if the count is
+     * invalid.
+     */
+    public int readCount(PLYType countType) throws IOException {
+        double count = this.read(countType);
+        if (count < 0 || count > Integer.MAX_VALUE || count != Math.rint(count)) {
+            throw new IOException("Invalid number of items: " + count);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Skips values.
+     *
+     * @param type scalar type of the values.
+     * @param count number of values to be skipped.
+     * @throws IOException if the file cannot be read or ends.
+     */
+    public void skip(PLYType type, int count) throws IOException {
+        if (format == PLY.Format.ASCII) {
+            for (int i = 0; i < count; i++) {
+                this.nextToken();
+            }
+        } else {
+            this.skipBytes((long) type.getSize() * count);
+        }
+    }
+
+    /**
+     * Skips bytes of a binary file without reading them.
+     *
+     * @param count number of bytes to be skipped.
+     * @throws IOException if the file cannot be read or ends.
+     */
+    public void skipBytes(long count) throws IOException {
+        if (count <= buffer.remaining()) {
+            buffer.position(buffer.position() + (int) count);
+            return;
+        }
+        long position = channel.position() + count - buffer.remaining();
+        if (position > channel.size()) {
+            throw new EOFException("Unexpected end of the PLY file");
+        }
+        channel.position(position);
+        buffer.limit(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private PLY.Format readHeader(Path path) throws IOException {
+        if (!"ply".equals(this.readLine())) {
+            throw new IOException(path + " is not a PLY file");
+        }
+        PLY.Format f = null;
+        PLYElementList element = null;
+        String line;
+        while (!"end_header".equals(line = this.readLine())) {
+            if (line == null) {
+                throw new EOFException("Unexpected end of the PLY header");
+            }
+            String[] split = line.split("\\s+");
+            try {
+                switch (split[0]) {
+                    case "format":
+                        f = PLY.Format.parse(split[1]);
+                        break;
+                    case "comment":
+                        this.comments.add(line.length() > 8 ? line.substring(8) : "");
+                        break;
+                    case "element":
+                        element = new PLYElementList(split[1], Integer.parseInt(split[2]));
+                        this.elements.add(element);
+                        break;
+                    case "property":
+                        if (element == null) {
+                            throw new IOException("Property declared before any element: " + line);
+                        }
+                        if ("list".equals(split[1])) {
+                            element.addList(split[4], PLYType.parse(split[2]), PLYType.parse(split[3]));
+                        } else {
+                            element.addProperty(split[2], PLYType.parse(split[1]));
+                        }
+                        break;
+                    case "obj_info":
+                    case "":
+                        break;
+                    default:
+                        throw new IOException("Unknown PLY header line: " + line);
+                }
+            } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+                throw new IOException("Malformed PLY header line: " + line, ex);
+            }
+        }
+        if (f == null) {
+            throw new IOException("The format of " + path + " is missing");
+        }
+        return f;
+    }
+
+    /**
+     * Reads a line of the header.
+     *
+     * @return the line without its end or null at the end of the file.
+     */
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = this.nextByte()) != '\n') {
+            if (b < 0) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString().trim();
+    }
+
+    /**
+     * Reads the next token of an ASCII file in {@code token}.
+     *
+     * @return the length of the token.
+     */
+    private int nextToken() throws IOException {
+        int b = this.nextByte();
+        while (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+            b = this.nextByte();
+        }
+        if (b < 0) {
+            throw new EOFException("Unexpected end of the PLY file");
+        }
+        int length = 0;
+        while (b >= 0 && b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+            if (length == token.length) {
+                token = Arrays.copyOf(token, length * 2);
+            }
+            token[length++] = (byte) b;
+            b = this.nextByte();
+        }
+        return length;
+    }
+
+    private double parseToken() throws IOException {
+        int length = this.nextToken();
+        int i = token[0] == '-' || token[0] == '+' ? 1 : 0;
+        if (i < length && length <= 18) {
+            long value = 0;
+            int j = i;
+            while (j < length && token[j] >= '0' && token[j] <= '9') {
+                value = value * 10 + token[j++] - '0';
+            }
+            if (j == length) {
+                return token[0] == '-' ? -value : value;
+            }
+        }
+        String txt = new String(token, 0, length, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(txt);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid PLY value: " + txt, ex);
+        }
+    }
+
+    private int nextByte() throws IOException {
+        if (!buffer.hasRemaining() && !this.fill()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    private void ensure(int size) throws IOException {
+        while (buffer.remaining() < size) {
+            if (!this.fill()) {
+                throw new EOFException("Unexpected end of the PLY file");
+            }
+        }
+    }
+
+    /**
+     * Reads the next block of the file after the remaining bytes.
+     *
+     * @return false at the end of the file.
+     */
+    private boolean fill() throws IOException {
+        buffer.compact();
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read > 0;
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
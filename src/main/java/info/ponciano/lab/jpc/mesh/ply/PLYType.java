@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.mesh.ply;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Types of the properties of a PLY file. {@code LIST} declares a list
+ * property, whose count and items have one of the scalar types.
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public enum PLYType {
+    INT8("char", "int8", 1),
+    UINT8("uchar", "uint8", 1),
+    INT16("short", "int16", 2),
+    UINT16("ushort", "uint16", 2),
+    INT32("int", "int32", 4),
+    UINT32("uint", "uint32", 4),
+    FLOAT32("float", "float32", 4),
+    FLOAT64("double", "float64", 8),
+    LIST("list", "list", 0);
+
+    private final String name;
+    private final String alias;
+    private final int size;
+
+    private PLYType(String name, String alias, int size) {
+        this.name = name;
+        this.alias = alias;
+        this.size = size;
+    }
+
+    /**
+     * Gets the type of a name of the PLY header.
+     *
+     * @param name name of the type, as {@code float} or {@code float32}.
+     * @return the type.
+     * @throws IllegalArgumentException if the name is unknown.
+     */
+    public static PLYType parse(String name) {
+        for (PLYType type : values()) {
+            if (type.name.equals(name) || type.alias.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown PLY type: " + name);
+    }
+
+    /**
+     * Gets the name of the type written in the header.
+     *
+     * @return the name of the type.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the size of a value of this type in a binary file.
+     *
+     * @return the number of bytes of a value, 0 for a list.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Indicates if the values of this type are floating point numbers.
+     *
+     * @return true for {@code FLOAT32} and {@code FLOAT64}.
+     */
+    public boolean isFloating() {
+        return this == FLOAT32 || this == FLOAT64;
+    }
+
+    /**
+     * Reads a value of this type.
+     *
+     * @param buffer buffer with the byte order of the file.
+     * @return the value.
+     */
+    double get(ByteBuffer buffer) {
+        switch (this) {
+            case INT8:
+                return buffer.get();
+            case UINT8:
+                return buffer.get() & 0xFF;
+            case INT16:
+                return buffer.getShort();
+            case UINT16:
+                return buffer.getShort() & 0xFFFF;
+            case INT32:
+                return buffer.getInt();
+            case UINT32:
+                return buffer.getInt() & 0xFFFFFFFFL;
+            case FLOAT32:
+                return buffer.getFloat();
+            case FLOAT64:
+                return buffer.getDouble();
+            default:
+                throw new IllegalStateException("A list has no scalar value");
+        }
+    }
+
+    /**
+     * Writes a value of this type. Integer values are truncated to the type.
+     *
+     * @param buffer buffer with the byte order of the file.
+     * @param value value to be written.
+     */
+    void put(ByteBuffer buffer, double value) {
+        switch (this) {
+            case INT8:
+            case UINT8:
+                buffer.put((byte) (long) value);
+                break;
+            case INT16:
+            case UINT16:
+                buffer.putShort((short) (long) value);
+                break;
+            case INT32:
+            case UINT32:
+                buffer.putInt((int) (long) value);
+                break;
+            case FLOAT32:
+                buffer.putFloat((float) value);
+                break;
+            case FLOAT64:
+                buffer.putDouble(value);
+                break;
+            default:
+                throw new IllegalStateException("A list has no scalar value");
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.mesh.ply;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming writer of PLY files.
+ * <p>
+ * The header is written from the declaration of the elements, then the
+ * values are given one by one in the order of the file: every property of
+ * every instance of the first element, then of the next elements. The values
+ * are encoded in a direct buffer written to the file each time it is full,
+ * so that a point cloud can be written without being copied in columns.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PLYWriter implements Closeable {
+
+    /**
+     * Size of the blocks written to the file.
+     */
+    public static final int BLOCK_SIZE = 1 << 22;
+    private static final int MAX_TOKEN = 32;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final PLY.Format format;
+    private final List<PLYElementList> elements;
+    private int element;
+    private int index;
+    private int property;
+
+    /**
+     * Creates the file and writes its header.
+     *
+     * @param path path of the file.
+     * @param format format of the body.
+     * @param comments comments of the header.
+     * @param elements declarations of the elements, whose values are not
+     * used.
+     * @throws IOException if the file cannot be written.
+     */
+    public PLYWriter(Path path, PLY.Format format, List<String> comments, List<PLYElementList> elements) throws IOException {
+        this.format = format;
+        this.elements = new ArrayList<>(elements);
+        this.buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        if (format != PLY.Format.ASCII) {
+            this.buffer.order(format.getOrder());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        StringBuilder header = new StringBuilder();
+        header.append("ply\nformat ").append(format.getName()).append(" 1.0\n");
+        for (String comment : comments) {
+            header.append("comment ").append(comment).append('\n');
+        }
+        for (PLYElementList e : this.elements) {
+            header.append(e);
+        }
+        header.append("end_header\n");
+        this.put(header.toString().getBytes(StandardCharsets.US_ASCII));
+        this.next();
+    }
+
+    /**
+     * Writes the value of the next scalar property.
+     *
+     * @param value value to be written, truncated for an integer type.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(double value) throws IOException {
+        PLYType type = this.current(false);
+        if (format == PLY.Format.ASCII) {
+            this.putToken(type, value);
+        } else {
+            this.ensure(type.getSize());
+            type.put(buffer, value);
+        }
+        this.advance();
+    }
+
+    /**
+     * Writes the items of the next list property.
+     *
+     * @param items items to be written.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(int[] items) throws IOException {
+        PLYType itemType = this.current(true);
+        this.putCount(items.length);
+        for (int item : items) {
+            this.putItem(itemType, item);
+        }
+        this.advance();
+    }
+
+    /**
+     * Writes the items of the next list property.
+     *
+     * @param items items to be written.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(double[] items) throws IOException {
+        PLYType itemType = this.current(true);
+        this.putCount(items.length);
+        for (double item : items) {
+            this.putItem(itemType, item);
+        }
+        this.advance();
+    }
+
+    /**
+     * Writes the remaining buffered values and closes the file.
+     *
+     * @throws IOException if the file cannot be written or if values are
+     * missing.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+        if (element < elements.size()) {
+            throw new IOException("Missing values from " + elements.get(element).getName() + " " + index);
+        }
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    /**
+     * Gets the type of the property to be written.
+     *
+     * @param list true if a list is given.
+     * @return the type of the scalar property or of the items of the list.
+     */
+    private PLYType current(boolean list) {
+        if (element >= elements.size()) {
+            throw new IllegalStateException("Every value has already been written");
+        }
+        PLYElementList e = elements.get(element);
+        PLYType type = e.getType(property);
+        if ((type == PLYType.LIST) != list) {
+            throw new IllegalStateException(e.getName() + "." + e.getProperties().get(property)
+                    + (list ? " is not a list" : " is a list"));
+        }
+        return list ? e.getItemType(property) : type;
+    }
+
+    private void advance() throws IOException {
+        property++;
+        if (property < elements.get(element).size()) {
+            if (format == PLY.Format.ASCII) {
+                this.ensure(1);
+                buffer.put((byte) ' ');
+            }
+            return;
+        }
+        if (format == PLY.Format.ASCII) {
+            this.ensure(1);
+            buffer.put((byte) '\n');
+        }
+        property = 0;
+        index++;
+        if (index == elements.get(element).getCount()) {
+            index = 0;
+            element++;
+            this.next();
+        }
+    }
+
+    /**
+     * Skips the elements without value.
+     */
+    private void next() {
+        while (element < elements.size()
+                && (elements.get(element).getCount() == 0 || elements.get(element).size() == 0)) {
+            element++;
+        }
+    }
+
+    private void putCount(int count) throws IOException {
+        PLYElementList e = elements.get(element);
+        PLYType countType = e.getCountType(property);
+        if (format == PLY.Format.ASCII) {
+            this.putToken(countType, count);
+        } else {
+            this.ensure(countType.getSize());
+            countType.put(buffer, count);
+        }
+    }
+
+    private void putItem(PLYType itemType, double item) throws IOException {
+        if (format == PLY.Format.ASCII) {
+            this.ensure(1);
+            buffer.put((byte) ' ');
+            this.putToken(itemType, item);
+        } else {
+            this.ensure(itemType.getSize());
+            itemType.put(buffer, item);
+        }
+    }
+
+    private void putToken(PLYType type, double value) throws IOException {
+        String token;
+        if (type == PLYType.FLOAT64) {
+            token = Double.toString(value);
+        } else if (type == PLYType.FLOAT32) {
+            token = Float.toString((float) value);
+        } else {
+            token = Long.toString((long) value);
+        }
+        this.ensure(MAX_TOKEN);
+        for (int i = 0; i < token.length(); i++) {
+            buffer.put((byte) token.charAt(i));
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                this.flush();
+            }
+            int length = Math.min(bytes.length - offset, buffer.remaining());
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensure(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            this.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
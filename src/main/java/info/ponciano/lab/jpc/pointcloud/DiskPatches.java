@@ -0,0 +1,512 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud;
+
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudStatistics;
+import info.ponciano.lab.jpc.pointcloud.stucture.octree.DiskOctree;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map of patches stored on disk, one file by patch, only the index (number of
+ * points, statistics and types of each patch) and the patches recently used
+ * being kept in memory.
+ * <p>
+ * A patch is loaded by {@code get} in a LRU cache whose size is bounded by a
+ * byte budget, estimated with {@code DiskOctree.POINT_MEMORY} bytes by point.
+ * When the budget is exceeded, the least recently used patches are removed
+ * from the cache, the patches added with {@code put} or modified since their
+ * loading being written back before. A patch is modified if its
+ * {@code getVersion} changed, so that points modified in place have to be
+ * followed by a call to {@code invalidate} on their patch. A patch has also
+ * to be obtained again with {@code get} after other patches have been used,
+ * since it may have been removed from the cache in between.
+ * </p>
+ * <p>
+ * The number of points and the statistics of a patch are answered from the
+ * index without loading it. Iterating over the entries loads the patches one
+ * by one only when their value is asked for.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class DiskPatches extends AbstractMap<String, APointCloud> {
+
+    private static final String INDEX = "patches.idx";
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private final Path directory;
+    private final long budget;
+    private final Map<String, Info> index;
+    private final LinkedHashMap<String, Cached> cache;
+    private long bytes;
+    private int nextFile;
+
+    /**
+     * Metadata of a patch kept in memory.
+     */
+    private static class Info {
+
+        final int file;
+        int size;
+        PointCloudStatistics statistics;
+        byte types;
+
+        Info(int file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Patch loaded in the cache.
+     */
+    private static class Cached {
+
+        final APointCloud patch;
+        /**
+         * Version of the patch when it was last read or written, -1 if it has
+         * never been written.
+         */
+        long version;
+        int size;
+
+        Cached(APointCloud patch, long version) {
+            this.patch = patch;
+            this.version = version;
+            this.size = patch.size();
+        }
+
+        boolean isDirty() {
+            return this.version != this.patch.getVersion();
+        }
+    }
+
+    private DiskPatches(Path directory, long budget) {
+        this.directory = directory;
+        this.budget = budget;
+        this.index = new LinkedHashMap<>();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.bytes = 0;
+        this.nextFile = 0;
+    }
+
+    /**
+     * Creates an empty map of patches in a directory.
+     *
+     * @param directory directory where patches are stored, created if needed.
+     * @param cacheBytes maximum number of bytes of the patches loaded in
+     * memory.
+     * @return the map created.
+     * @throws IOException if the directory cannot be created or already
+     * stores patches.
+     */
+    public static DiskPatches create(Path directory, long cacheBytes) throws IOException {
+        Files.createDirectories(directory);
+        if (Files.exists(directory.resolve(INDEX))) {
+            throw new IOException(directory + " already stores patches");
+        }
+        return new DiskPatches(directory, cacheBytes);
+    }
+
+    /**
+     * Opens the patches saved in a directory with {@code save}.
+     *
+     * @param directory directory of the patches.
+     * @param cacheBytes maximum number of bytes of the patches loaded in
+     * memory.
+     * @return the map opened.
+     * @throws IOException if the index cannot be read.
+     */
+    public static DiskPatches open(Path directory, long cacheBytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(INDEX))))) {
+            if (in.readInt() != PatchArchive.MAGIC) {
+                throw new IOException(directory + " does not store patches");
+            }
+            int version = in.readInt();
+            if (version != PatchArchive.VERSION) {
+                throw new IOException("Unsupported version of patches: " + version);
+            }
+            DiskPatches patches = new DiskPatches(directory, cacheBytes);
+            patches.nextFile = in.readInt();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String id = in.readUTF();
+                Info info = new Info(in.readInt());
+                info.size = in.readInt();
+                info.types = in.readByte();
+                info.statistics = PointCloudStatistics.read(in);
+                patches.index.put(id, info);
+            }
+            return patches;
+        }
+    }
+
+    /**
+     * Writes the modified patches and the index, so that the patches can be
+     * opened again.
+     *
+     * @param regular ids of the regular patches.
+     * @param irregular ids of the irregular patches.
+     * @param isolated ids of the isolated patches.
+     * @throws IOException if the patches or the index cannot be written.
+     */
+    public void save(Set<String> regular, Set<String> irregular, Set<String> isolated) throws IOException {
+        for (Map.Entry<String, Cached> entry : this.cache.entrySet()) {
+            if (entry.getValue().isDirty()) {
+                this.write(entry.getKey(), entry.getValue());
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(INDEX))))) {
+            out.writeInt(PatchArchive.MAGIC);
+            out.writeInt(PatchArchive.VERSION);
+            out.writeInt(this.nextFile);
+            out.writeInt(this.index.size());
+            for (Map.Entry<String, Info> entry : this.index.entrySet()) {
+                Info info = entry.getValue();
+                info.types = PatchArchive.types(entry.getKey(), regular, irregular, isolated);
+                out.writeUTF(entry.getKey());
+                out.writeInt(info.file);
+                out.writeInt(info.size);
+                out.writeByte(info.types);
+                info.statistics.write(out);
+            }
+        }
+    }
+
+    /**
+     * Gets a patch, loading it from its file if it is not in the cache.
+     *
+     * @param key id of the patch.
+     * @return the patch or null if there is no patch with this id.
+     * @throws UncheckedIOException if the file of the patch cannot be read.
+     */
+    @Override
+    public APointCloud get(Object key) {
+        Cached cached = this.cache.get(key);
+        if (cached != null) {
+            // the patch may have grown since its last access
+            this.bytes += (long) (cached.patch.size() - cached.size) * DiskOctree.POINT_MEMORY;
+            cached.size = cached.patch.size();
+            this.evict(key.toString());
+        } else {
+            Info info = this.index.get(key);
+            if (info == null) {
+                return null;
+            }
+            try {
+                APointCloud patch = this.load(info);
+                cached = new Cached(patch, patch.getVersion());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            this.cache(key.toString(), cached);
+        }
+        return cached.patch;
+    }
+
+    /**
+     * Adds or replaces a patch, which is written on disk when it is removed
+     * from the cache or when the patches are saved.
+     *
+     * @param key id of the patch.
+     * @param value patch to be stored.
+     * @return the previous patch if it was in the cache, null otherwise.
+     * @throws UncheckedIOException if patches removed from the cache cannot
+     * be written.
+     */
+    @Override
+    public APointCloud put(String key, APointCloud value) {
+        Cached previous = this.uncache(key);
+        Info info = this.index.get(key);
+        if (info == null) {
+            info = new Info(this.nextFile++);
+            this.index.put(key, info);
+        }
+        info.size = value.size();
+        info.statistics = null;
+        this.cache(key, new Cached(value, -1));
+        return previous == null ? null : previous.patch;
+    }
+
+    /**
+     * Removes a patch and its file.
+     *
+     * @param key id of the patch.
+     * @return the patch if it was in the cache, null otherwise.
+     * @throws UncheckedIOException if the file cannot be deleted.
+     */
+    @Override
+    public APointCloud remove(Object key) {
+        Info info = this.index.remove(key);
+        if (info == null) {
+            return null;
+        }
+        Cached cached = this.uncache(key.toString());
+        try {
+            Files.deleteIfExists(this.file(info));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return cached == null ? null : cached.patch;
+    }
+
+    @Override
+    public void clear() {
+        for (String id : new ArrayList<>(this.index.keySet())) {
+            this.remove(id);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.index.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Gets the entries of the patches in the order of their addition. The
+     * patch of an entry is loaded when its value is asked for.
+     *
+     * @return the entries of the map.
+     */
+    @Override
+    public Set<Entry<String, APointCloud>> entrySet() {
+        return new AbstractSet<Entry<String, APointCloud>>() {
+            @Override
+            public Iterator<Entry<String, APointCloud>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return DiskPatches.this.size();
+            }
+        };
+    }
+
+    /**
+     * Gets the number of points of a patch without loading it.
+     *
+     * @param id id of the patch.
+     * @return the number of points, 0 if there is no patch with this id.
+     */
+    public int size(String id) {
+        Cached cached = this.cache.get(id);
+        if (cached != null) {
+            return cached.patch.size();
+        }
+        Info info = this.index.get(id);
+        return info == null ? 0 : info.size;
+    }
+
+    /**
+     * Gets the statistics of a patch without loading it.
+     *
+     * @param id id of the patch.
+     * @return the statistics of the patch, null if there is no patch with
+     * this id.
+     */
+    public PointCloudStatistics getStatistics(String id) {
+        Cached cached = this.cache.get(id);
+        if (cached != null) {
+            return cached.patch.getStatistics();
+        }
+        Info info = this.index.get(id);
+        return info == null ? null : new PointCloudStatistics(info.statistics);
+    }
+
+    /**
+     * Gets the estimated number of bytes of the patches in the cache.
+     *
+     * @return the number of bytes.
+     */
+    public long getCachedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number of patches in the cache.
+     *
+     * @return the number of patches loaded.
+     */
+    public int getCachedCount() {
+        return this.cache.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the types of a patch saved in the index.
+     *
+     * @param id id of the patch.
+     * @return the flags of the types of the patch.
+     */
+    byte getTypes(String id) {
+        return this.index.get(id).types;
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private Path file(Info info) {
+        return this.directory.resolve("patch-" + info.file + ".bin");
+    }
+
+    private void cache(String id, Cached cached) {
+        this.cache.put(id, cached);
+        this.bytes += (long) cached.size * DiskOctree.POINT_MEMORY;
+        this.evict(id);
+    }
+
+    /**
+     * Removes the least recently used patches until the budget is met,
+     * writing back the modified ones.
+     *
+     * @param id id of the patch just used, which is kept even if it exceeds
+     * the budget alone.
+     */
+    private void evict(String id) {
+        Iterator<Map.Entry<String, Cached>> iterator = this.cache.entrySet().iterator();
+        while (this.bytes > this.budget && this.cache.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, Cached> eldest = iterator.next();
+            if (!eldest.getKey().equals(id)) {
+                if (eldest.getValue().isDirty()) {
+                    try {
+                        this.write(eldest.getKey(), eldest.getValue());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+                this.bytes -= (long) eldest.getValue().size * DiskOctree.POINT_MEMORY;
+                iterator.remove();
+            }
+        }
+    }
+
+    private Cached uncache(String id) {
+        Cached cached = this.cache.remove(id);
+        if (cached != null) {
+            this.bytes -= (long) cached.size * DiskOctree.POINT_MEMORY;
+        }
+        return cached;
+    }
+
+    private void write(String id, Cached cached) throws IOException {
+        Info info = this.index.get(id);
+        APointCloud patch = cached.patch;
+        try (FileChannel channel = FileChannel.open(this.file(info), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(WRITE_BUFFER, (long) Math.max(1, patch.size()) * PatchArchive.RECORD_SIZE));
+            Iterator<Point> it = patch.iterator();
+            while (it.hasNext()) {
+                if (buffer.remaining() < PatchArchive.RECORD_SIZE) {
+                    PatchArchive.flush(channel, buffer);
+                }
+                PatchArchive.put(buffer, it.next());
+            }
+            PatchArchive.flush(channel, buffer);
+        }
+        info.size = patch.size();
+        info.statistics = patch.getStatistics();
+        cached.version = patch.getVersion();
+    }
+
+    private APointCloud load(Info info) throws IOException {
+        PointCloudMap patch = new PointCloudMap();
+        try (FileChannel channel = FileChannel.open(this.file(info), StandardOpenOption.READ)) {
+            PatchArchive.read(channel, 0, info.size, patch);
+        }
+        if (patch.size() == info.size) {
+            patch.restore(info.statistics, null);
+        }
+        return patch;
+    }
+
+    /**
+     * Iterator over the entries of a copy of the ids, loading each patch only
+     * when the value of its entry is asked for.
+     */
+    private class EntryIterator implements Iterator<Entry<String, APointCloud>> {
+
+        private final Iterator<String> ids = new ArrayList<>(index.keySet()).iterator();
+        private String last;
+
+        @Override
+        public boolean hasNext() {
+            return this.ids.hasNext();
+        }
+
+        @Override
+        public Entry<String, APointCloud> next() {
+            if (!this.ids.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String id = this.ids.next();
+            this.last = id;
+            return new Entry<String, APointCloud>() {
+                @Override
+                public String getKey() {
+                    return id;
+                }
+
+                @Override
+                public APointCloud getValue() {
+                    return get(id);
+                }
+
+                @Override
+                public APointCloud setValue(APointCloud value) {
+                    return put(id, value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (this.last == null) {
+                throw new IllegalStateException();
+            }
+            DiskPatches.this.remove(this.last);
+            this.last = null;
+        }
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudStatistics;
+import info.ponciano.lab.jpc.pointcloud.stucture.octree.Voxel;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary archive of the patches of a {@code Pointcloud}, whose patches can be
+ * loaded one by one.
+ * <p>
+ * The file starts with a header (magic number and version), followed by the
+ * points of each patch in a contiguous block of fixed size records: x, y, z,
+ * flags of the colour and normal, rgb, nx, ny, nz. It ends with an index
+ * giving for each patch its id, the offset and length of its block, its types
+ * ({@code regular}, {@code irregular}, {@code isolated}), its statistics,
+ * from which its bounds and centroid are derived, and its oriented bounding
+ * box. The offset of the index is written in the last bytes of the file.
+ * </p>
+ * <p>
+ * Opening an archive only reads its index. The points of a patch are read
+ * from its block in chunks of bounded size, and the loaded patch gets the
+ * statistics and oriented bounding box of the index instead of computing them
+ * again.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PatchArchive {
+
+    /**
+     * First bytes of an archive: "JPCA".
+     */
+    public static final int MAGIC = 0x4A504341;
+    public static final int VERSION = 1;
+    /**
+     * Size in bytes of a point in a patch block.
+     */
+    public static final int RECORD_SIZE = 3 * Double.BYTES + 1 + Integer.BYTES + 3 * Double.BYTES;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int WRITE_BUFFER = 1 << 20;
+    private static final int READ_BUFFER = 1 << 20;
+    private static final byte HAS_COLOR = 1;
+    private static final byte HAS_NORMAL = 2;
+    static final byte REGULAR = 1;
+    static final byte IRREGULAR = 2;
+    static final byte ISOLATED = 4;
+
+    private final Path path;
+    private final Map<String, Entry> index;
+
+    /**
+     * Entry of the index of an archive, describing a patch without loading
+     * its points.
+     */
+    public static class Entry {
+
+        private final String id;
+        private final long offset;
+        private final int size;
+        private final byte types;
+        private final PointCloudStatistics statistics;
+        private final boolean axisAligned;
+        private final double[] corners;
+
+        Entry(String id, long offset, int size, byte types, PointCloudStatistics statistics, boolean axisAligned, double[] corners) {
+            this.id = id;
+            this.offset = offset;
+            this.size = size;
+            this.types = types;
+            this.statistics = statistics;
+            this.axisAligned = axisAligned;
+            this.corners = corners;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Gets the position of the block of points in the file.
+         *
+         * @return the offset of the block in bytes.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Gets the size of the block of points in the file.
+         *
+         * @return the length of the block in bytes.
+         */
+        public long getLength() {
+            return (long) size * RECORD_SIZE;
+        }
+
+        /**
+         * Gets the number of points of the patch.
+         *
+         * @return the number of points.
+         */
+        public int size() {
+            return size;
+        }
+
+        public boolean isRegular() {
+            return (types & REGULAR) != 0;
+        }
+
+        public boolean isIrregular() {
+            return (types & IRREGULAR) != 0;
+        }
+
+        public boolean isIsolated() {
+            return (types & ISOLATED) != 0;
+        }
+
+        /**
+         * Gets the statistics of the points of the patch.
+         *
+         * @return a copy of the statistics.
+         */
+        public PointCloudStatistics getStatistics() {
+            return new PointCloudStatistics(statistics);
+        }
+
+        public Coord3D getCentroid() {
+            return statistics.getCentroid();
+        }
+
+        public Coord3D getMin() {
+            return statistics.getMin();
+        }
+
+        public Coord3D getMax() {
+            return statistics.getMax();
+        }
+
+        /**
+         * Gets the oriented bounding box of the patch.
+         *
+         * @return a new voxel with the corners of the box.
+         */
+        public Voxel getOBB() {
+            List<Point> points = new ArrayList<>();
+            for (int i = 0; i < corners.length; i += 3) {
+                points.add(new Point(corners[i], corners[i + 1], corners[i + 2]));
+            }
+            if (axisAligned) {
+                return new Voxel(points.get(0), points.get(points.size() - 1));
+            }
+            return new Voxel(points);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(id);
+            out.writeLong(offset);
+            out.writeInt(size);
+            out.writeByte(types);
+            statistics.write(out);
+            out.writeBoolean(axisAligned);
+            for (double c : corners) {
+                out.writeDouble(c);
+            }
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            String id = in.readUTF();
+            long offset = in.readLong();
+            int size = in.readInt();
+            byte types = in.readByte();
+            PointCloudStatistics statistics = PointCloudStatistics.read(in);
+            boolean axisAligned = in.readBoolean();
+            double[] corners = new double[24];
+            for (int i = 0; i < corners.length; i++) {
+                corners[i] = in.readDouble();
+            }
+            return new Entry(id, offset, size, types, statistics, axisAligned, corners);
+        }
+    }
+
+    private PatchArchive(Path path, Map<String, Entry> index) {
+        this.path = path;
+        this.index = index;
+    }
+
+    /**
+     * Writes the patches of a point cloud in an archive. The archive is
+     * written in a temporary file of the same directory, then moved over the
+     * file, so that a point cloud whose patches are loaded from the file can
+     * be saved in it.
+     *
+     * @param path path of the file.
+     * @param cloud point cloud to be written.
+     * @return the archive written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static PatchArchive write(Path path, Pointcloud cloud) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            Map<String, Entry> index = write(temp, cloud.getPatches(), cloud);
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new PatchArchive(path, index);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes patches in a file and returns their index.
+     */
+    private static Map<String, Entry> write(Path path, Map<String, APointCloud> patches, Pointcloud cloud) throws IOException {
+        Map<String, Entry> index = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            long offset = HEADER_SIZE;
+            for (Map.Entry<String, APointCloud> patch : patches.entrySet()) {
+                APointCloud points = patch.getValue();
+                int size = 0;
+                Iterator<Point> it = points.iterator();
+                while (it.hasNext()) {
+                    if (buffer.remaining() < RECORD_SIZE) {
+                        flush(channel, buffer);
+                    }
+                    put(buffer, it.next());
+                    size++;
+                }
+                String id = patch.getKey();
+                byte types = types(id, cloud.getRegular(), cloud.getIrregular(), cloud.getIsolated());
+                Voxel obb = points.getOBB();
+                double[] corners = new double[24];
+                Point[] p = obb.getPoints();
+                for (int k = 0; k < 8; k++) {
+                    corners[3 * k] = p[k].getCoords().getX();
+                    corners[3 * k + 1] = p[k].getCoords().getY();
+                    corners[3 * k + 2] = p[k].getCoords().getZ();
+                }
+                index.put(id, new Entry(id, offset, size, types, points.getStatistics(), obb.isAxisAligned(), corners));
+                offset += (long) size * RECORD_SIZE;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(index.size());
+                for (Entry entry : index.values()) {
+                    entry.write(out);
+                }
+                out.writeLong(offset);
+                out.writeInt(MAGIC);
+            }
+            flush(channel, buffer);
+            ByteBuffer footer = ByteBuffer.wrap(bytes.toByteArray());
+            while (footer.hasRemaining()) {
+                channel.write(footer);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Opens an archive by reading its index.
+     *
+     * @param path path of the file.
+     * @return the archive opened.
+     * @throws IOException if the file cannot be read or is not an archive.
+     */
+    public static PatchArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException(path + " is not a patch archive");
+            }
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            ByteBuffer trailer = read(channel, length - TRAILER_SIZE, TRAILER_SIZE);
+            long start = trailer.getLong();
+            if (header.getInt() != MAGIC || trailer.getInt() != MAGIC || start < HEADER_SIZE || start > length - TRAILER_SIZE) {
+                throw new IOException(path + " is not a patch archive");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version of patch archive: " + version);
+            }
+            // the index is streamed, its size being only bounded by the file
+            channel.position(start);
+            Map<String, Entry> index = new LinkedHashMap<>();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)))) {
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    Entry entry = Entry.read(in);
+                    index.put(entry.getId(), entry);
+                }
+            }
+            return new PatchArchive(path, index);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the ids of the patches in the order of the archive.
+     *
+     * @return unmodifiable set of ids.
+     */
+    public Set<String> getIds() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    public boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * Removes a patch from the index in memory, the file being unchanged.
+     *
+     * @param id id of the patch.
+     */
+    void remove(String id) {
+        index.remove(id);
+    }
+
+    /**
+     * Gets the entry of the index of a patch.
+     *
+     * @param id id of the patch.
+     * @return the entry or null if the archive does not have the patch.
+     */
+    public Entry getEntry(String id) {
+        return index.get(id);
+    }
+
+    /**
+     * Loads the points of a patch.
+     *
+     * @param id id of the patch.
+     * @return the patch, with its statistics and oriented bounding box
+     * restored from the index, or null if the archive does not have it.
+     * @throws IOException if the file cannot be read.
+     */
+    public APointCloud load(String id) throws IOException {
+        Entry entry = index.get(id);
+        if (entry == null) {
+            return null;
+        }
+        PointCloudMap patch = new PointCloudMap();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            read(channel, entry.offset, entry.size, patch);
+        }
+        // duplicated points are merged by the map
+        if (patch.size() == entry.size) {
+            patch.restore(entry.statistics, entry.getOBB());
+        }
+        return patch;
+    }
+
+    /**
+     * Gets the flags of the types of a patch.
+     *
+     * @param id id of the patch.
+     * @param regular ids of the regular patches.
+     * @param irregular ids of the irregular patches.
+     * @param isolated ids of the isolated patches.
+     * @return the flags {@code REGULAR}, {@code IRREGULAR} and
+     * {@code ISOLATED} of the sets containing the patch.
+     */
+    static byte types(String id, Set<String> regular, Set<String> irregular, Set<String> isolated) {
+        return (byte) ((regular.contains(id) ? REGULAR : 0)
+                | (irregular.contains(id) ? IRREGULAR : 0)
+                | (isolated.contains(id) ? ISOLATED : 0));
+    }
+
+    /**
+     * Writes a point in a record.
+     *
+     * @param buffer buffer with at least {@code RECORD_SIZE} bytes remaining.
+     * @param p point to be written.
+     */
+    static void put(ByteBuffer buffer, Point p) {
+        Coord3D c = p.getCoords();
+        buffer.putDouble(c.getX()).putDouble(c.getY()).putDouble(c.getZ());
+        Color color = p.getColor();
+        Normal normal = p.getNormal();
+        buffer.put((byte) ((color != null ? HAS_COLOR : 0) | (normal != null ? HAS_NORMAL : 0)));
+        buffer.putInt(color == null ? 0 : color.getRed() << 16 | color.getGreen() << 8 | color.getBlue());
+        if (normal == null) {
+            buffer.putDouble(0).putDouble(0).putDouble(0);
+        } else {
+            buffer.putDouble(normal.getX()).putDouble(normal.getY()).putDouble(normal.getZ());
+        }
+    }
+
+    /**
+     * Reads a point from a record.
+     *
+     * @param buffer buffer with at least {@code RECORD_SIZE} bytes remaining.
+     * @return the point read.
+     */
+    static Point get(ByteBuffer buffer) {
+        Point p = new Point(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+        byte flags = buffer.get();
+        int rgb = buffer.getInt();
+        double nx = buffer.getDouble();
+        double ny = buffer.getDouble();
+        double nz = buffer.getDouble();
+        if ((flags & HAS_COLOR) != 0) {
+            p.setColor(new Color(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF));
+        }
+        if ((flags & HAS_NORMAL) != 0) {
+            p.setNormal(new Normal(nx, ny, nz));
+        }
+        return p;
+    }
+
+    static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        fill(channel, position, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads a block of records in chunks of at most {@code READ_BUFFER}
+     * bytes, so that the size of the block is not bounded by the size of a
+     * buffer.
+     *
+     * @param channel channel of the file.
+     * @param position position of the block in the file.
+     * @param size number of records of the block.
+     * @param patch cloud in which the points read are added.
+     * @throws IOException if the block cannot be read.
+     */
+    static void read(FileChannel channel, long position, int size, APointCloud patch) throws IOException {
+        int chunk = READ_BUFFER / RECORD_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(1, Math.min(size, chunk)) * RECORD_SIZE);
+        for (int read = 0; read < size;) {
+            int count = Math.min(size - read, chunk);
+            buffer.clear().limit(count * RECORD_SIZE);
+            fill(channel, position + (long) read * RECORD_SIZE, buffer);
+            buffer.flip();
+            for (int i = 0; i < count; i++) {
+                patch.add(get(buffer));
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Fills an empty buffer with the bytes of a file from a position.
+     */
+    private static void fill(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of the patch archive");
+            }
+        }
+    }
+}
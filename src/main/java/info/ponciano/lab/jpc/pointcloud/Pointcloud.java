@@ -20,19 +20,23 @@ import info.ponciano.lab.jpc.algorithms.IoPointcloud;
 import info.ponciano.lab.jpc.algorithms.segmentation.Segmentation;
 import info.ponciano.lab.jpc.algorithms.segmentation.SegmentationEuclidean;
 import info.ponciano.lab.jpc.algorithms.segmentation.SegmentationNormal;
-import info.ponciano.lab.jpc.algorithms.segmentation.Regions;
 import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
 import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudStatistics;
 import info.ponciano.lab.jpc.algorithms.segmentation.Region;
 import info.ponciano.lab.jpc.pointcloud.stucture.octree.Octree;
 import info.ponciano.lab.jpc.pointcloud.stucture.octree.Voxel;
 import info.ponciano.lab.jpc.pointcloud.stucture.octree.Voxels;
 import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
 import info.ponciano.lab.jpc.math.RandomColor;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -40,6 +44,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +65,11 @@ public class Pointcloud implements Serializable {
     protected Set<String> regular = new LinkedHashSet<>();
     protected Set<String> irregular = new LinkedHashSet<>();
     protected Set<String> isolated = new LinkedHashSet<>();
+    /**
+     * Archive whose patches not yet in {@code patches} are loaded on demand,
+     * null if every patch is in memory.
+     */
+    protected transient PatchArchive archive;
 
     public Pointcloud() {
         this.patches = new LinkedHashMap<>();
@@ -68,29 +81,119 @@ public class Pointcloud implements Serializable {
      *
      */
     public boolean refactor() {
+        return this.refactor(null);
+    }
+
+    /**
+     * Refactor the instance by recreating patches according to a points
+     * contained, and two thresholds for the patches creation. The voxels are
+     * segmented in parallel on the given executor, the patches being created
+     * in the same order as by a sequential refactoring.
+     *
+     * @param executor executor segmenting the voxels, null to segment them
+     * sequentially.
+     * @return true if the point cloud is refactored, false if its normals are
+     * not estimated.
+     */
+    public boolean refactor(ExecutorService executor) {
         //test that the point cloud has normal estimate
-        boolean normalized = this.patches.values().iterator().next().isNormalized();
+        boolean normalized = this.getPatches().values().iterator().next().isNormalized();
         if (normalized) {
             APointCloud points = this.getPoints();
             this.patches.clear();
-            this.init(points);
+            this.init(points, executor);
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Refactor incrementally the instance with new points. Only the patches
+     * in the neighbourhood of the new points are recreated, the other ones
+     * being kept with their keys.
+     *
+     * @param added new points to be added in the point cloud.
+     * @param margin distance around the new points in which the patches are
+     * recreated.
+     * @return true if the point cloud is refactored, false if there is no new
+     * point or if their normals are not estimated.
+     */
+    public boolean refactor(APointCloud added, double margin) {
+        return this.refactor(added, margin, null);
+    }
+
+    /**
+     * Refactor incrementally the instance with new points. Only the patches
+     * in the neighbourhood of the new points are recreated, the other ones
+     * being kept with their keys.
+     * <p>
+     * The new points are gathered in a grid of cells of size {@code margin}.
+     * A patch is recreated if its bounding box, extended by {@code margin},
+     * intersects a cell holding new points. The points of these patches and
+     * the new points are then segmented as by {@link #refactor()}, the
+     * patches created being added to the {@code regular}, {@code irregular}
+     * and {@code isolated} sets.</p>
+     *
+     * @param added new points to be added in the point cloud.
+     * @param margin distance around the new points in which the patches are
+     * recreated.
+     * @param executor executor segmenting the voxels, null to segment them
+     * sequentially.
+     * @return true if the point cloud is refactored, false if there is no new
+     * point or if their normals are not estimated.
+     */
+    public boolean refactor(APointCloud added, double margin, ExecutorService executor) {
+        if (!added.isNormalized()) {
+            return false;
+        }
+        if (!(margin > 0)) {
+            throw new IllegalArgumentException("Margin should be positive: " + margin);
+        }
+        // cells holding new points
+        Set<Long> keys = new HashSet<>();
+        List<long[]> cells = new ArrayList<>();
+        added.stream().forEach(p -> {
+            long[] cell = {cell(p.getCoords().getX(), margin), cell(p.getCoords().getY(), margin),
+                cell(p.getCoords().getZ(), margin)};
+            if (keys.add(key(cell[0], cell[1], cell[2]))) {
+                cells.add(cell);
+            }
+        });
+        // removes the touched patches, found from their statistics without
+        // loading the other ones, and gathers their points with the new ones
+        PointCloudMap points = new PointCloudMap();
+        for (String id : this.getIds()) {
+            PointCloudStatistics statistics = this.getStatistics(id);
+            if (statistics.getCount() == 0 || isTouched(statistics.getMin(), statistics.getMax(), margin, keys, cells)) {
+                points.add(this.get(id));
+                this.patches.remove(id);
+                if (this.archive != null) {
+                    this.archive.remove(id);
+                }
+                this.regular.remove(id);
+                this.irregular.remove(id);
+                this.isolated.remove(id);
+            }
+        }
+        points.add(added);
+        this.init(points, executor);
+        return true;
+    }
+
     /**
      * Initialization of the instance according to a Collection of points, and
      * two thresholds for the patches creation.
      *
      * @param pointcloud Point cloud use to init the cloud
+     * @param executor executor segmenting the voxels, null to segment them
+     * sequentially.
      */
-    private void init(APointCloud pointcloud) {
+    private void init(APointCloud pointcloud, ExecutorService executor) {
         // extract regular patch and return the rest
-        PointCloudMap unknow = segmentPatch(pointcloud, true);
+        PointCloudMap unknow = segmentPatch(pointcloud, true, executor);
         // extract irregular patch and return isolated
-        unknow = segmentPatch(unknow, false);
+        unknow = segmentPatch(unknow, false, executor);
         //gather isolated in patch
         Voxels rawVoxels = Octree.getRawVoxels(unknow, maxPatchSize);
         Iterator<Voxel> it = rawVoxels.getVoxels();
@@ -101,25 +204,15 @@ public class Pointcloud implements Serializable {
         }
     }
 
-    private PointCloudMap segmentPatch(APointCloud pointcloud, boolean normal) {
+    private PointCloudMap segmentPatch(APointCloud pointcloud, boolean normal, ExecutorService executor) {
         PointCloudMap unknow = new PointCloudMap();
         Voxels rawVoxels = Octree.getRawVoxels(pointcloud, maxPatchSize);
 
         rawVoxels.removeAlone();
-        Iterator<Voxel> it = rawVoxels.getVoxels();
-        while (it.hasNext()) {
-            Voxel next = it.next();
-            Regions splitedRegion;
-            if (normal) {
-                Segmentation segmentationNormal = new SegmentationNormal(next);
-                segmentationNormal.run();
-                splitedRegion = segmentationNormal.getResults();
-            } else {
-                Segmentation segmentationEuclidean = new SegmentationEuclidean(next);
-                segmentationEuclidean.run();
-                splitedRegion = segmentationEuclidean.getResults();
-            }
-            List<Region> regions = splitedRegion.getRegions();
+        List<Voxel> voxels = new ArrayList<>();
+        rawVoxels.getVoxels().forEachRemaining(voxels::add);
+        // the regions of each voxel are kept apart and inserted in the order of the voxels
+        for (List<Region> regions : segment(voxels, normal, executor)) {
             for (Region r : regions) {
                 double minSize;
                 if (normal) {
@@ -143,15 +236,120 @@ public class Pointcloud implements Serializable {
         return unknow;
     }
 
+    /**
+     * Segments voxels.
+     *
+     * @param voxels voxels to be segmented.
+     * @param normal true to segment by normals, false to segment by Euclidean
+     * distance.
+     * @param executor executor segmenting the voxels, null to segment them
+     * sequentially.
+     * @return the regions of each voxel, in the order of the voxels.
+     */
+    private static List<List<Region>> segment(List<Voxel> voxels, boolean normal, ExecutorService executor) {
+        List<List<Region>> results = new ArrayList<>(voxels.size());
+        if (executor == null) {
+            for (Voxel voxel : voxels) {
+                results.add(segment(voxel, normal));
+            }
+            return results;
+        }
+        List<Callable<List<Region>>> tasks = new ArrayList<>(voxels.size());
+        for (Voxel voxel : voxels) {
+            tasks.add(() -> segment(voxel, normal));
+        }
+        try {
+            for (Future<List<Region>> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Segmentation interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Tests if a cell holding new points intersects the bounding box of a
+     * patch extended by the margin.
+     */
+    private static boolean isTouched(Coord3D min, Coord3D max, double margin, Set<Long> keys, List<long[]> cells) {
+        long[] from = {cell(min.getX() - margin, margin), cell(min.getY() - margin, margin),
+            cell(min.getZ() - margin, margin)};
+        long[] to = {cell(max.getX() + margin, margin), cell(max.getY() + margin, margin),
+            cell(max.getZ() + margin, margin)};
+        double range = (double) (to[0] - from[0] + 1) * (to[1] - from[1] + 1) * (to[2] - from[2] + 1);
+        if (range > cells.size()) {
+            // fewer cells with new points than cells in the box
+            for (long[] cell : cells) {
+                if (cell[0] >= from[0] && cell[0] <= to[0] && cell[1] >= from[1] && cell[1] <= to[1]
+                        && cell[2] >= from[2] && cell[2] <= to[2]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (long x = from[0]; x <= to[0]; x++) {
+            for (long y = from[1]; y <= to[1]; y++) {
+                for (long z = from[2]; z <= to[2]; z++) {
+                    // a collision of keys only recreates one more patch
+                    if (keys.contains(key(x, y, z))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long cell(double v, double size) {
+        return (long) Math.floor(v / size);
+    }
+
+    private static long key(long x, long y, long z) {
+        return x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+    }
+
+    private static List<Region> segment(Voxel voxel, boolean normal) {
+        Segmentation segmentation;
+        if (normal) {
+            segmentation = new SegmentationNormal(voxel);
+        } else {
+            segmentation = new SegmentationEuclidean(voxel);
+        }
+        segmentation.run();
+        return segmentation.getResults().getRegions();
+    }
+
     public void add(String id, APointCloud cloud) {
         this.patches.put(id, cloud);
     }
 
     public Iterator<APointCloud> iterator() {
-        return patches.values().iterator();
+        return this.getPatches().values().iterator();
     }
 
+    /**
+     * Gets the patches of the point cloud, loading every patch of the archive
+     * not loaded yet.
+     *
+     * @return the patches by id.
+     */
     public Map<String, APointCloud> getPatches() {
+        if (this.archive != null) {
+            Map<String, APointCloud> all = new LinkedHashMap<>();
+            for (String id : this.archive.getIds()) {
+                all.put(id, this.get(id));
+            }
+            all.putAll(this.patches);
+            this.patches = all;
+            this.archive = null;
+        }
         return patches;
     }
 
@@ -164,17 +362,43 @@ public class Pointcloud implements Serializable {
      * @return {@code true} if this set contains the specified element
      */
     public boolean contains(String id) {
-        return this.patches.containsKey(id);
+        return this.patches.containsKey(id) || (this.archive != null && this.archive.contains(id));
     }
 
     /**
-     * Returns {@code Patch} that has the {@code id}
+     * Returns {@code Patch} that has the {@code id}, loading it from the
+     * archive if it is not loaded yet.
      *
      * @param id id of the patch
      * @return {@code Patch} found or null if the patch is not found
+     * @throws UncheckedIOException if the patch cannot be read in the archive.
      */
     public APointCloud get(String id) {
-        return this.patches.get(id);
+        APointCloud patch = this.patches.get(id);
+        if (patch == null && this.archive != null && this.archive.contains(id)) {
+            try {
+                patch = this.archive.load(id);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            this.patches.put(id, patch);
+        }
+        return patch;
+    }
+
+    /**
+     * Gets the ids of the patches, without loading the patches of the
+     * archive.
+     *
+     * @return the ids of the patches.
+     */
+    public Set<String> getIds() {
+        Set<String> ids = new LinkedHashSet<>();
+        if (this.archive != null) {
+            ids.addAll(this.archive.getIds());
+        }
+        ids.addAll(this.patches.keySet());
+        return ids;
     }
 
     /**
@@ -205,14 +429,50 @@ public class Pointcloud implements Serializable {
      */
     public int size() {
         int size = 0;
-        Iterator<APointCloud> iterator = this.iterator();
-        while (iterator.hasNext()) {
-            APointCloud next = iterator.next();
-            size += next.size();
+        for (String id : this.getIds()) {
+            if (this.archive != null && !this.patches.containsKey(id)) {
+                size += this.archive.getEntry(id).size();
+            } else if (this.patches instanceof DiskPatches) {
+                size += ((DiskPatches) this.patches).size(id);
+            } else {
+                size += this.patches.get(id).size();
+            }
         }
         return size;
     }
 
+    /**
+     * Gets the statistics of all points of the point cloud, such as their
+     * bounds, computed from the statistics of the patches. The patches of an
+     * archive or stored on disk are not loaded.
+     *
+     * @return the statistics of the point cloud.
+     */
+    public PointCloudStatistics getStatistics() {
+        PointCloudStatistics statistics = new PointCloudStatistics();
+        for (String id : this.getIds()) {
+            statistics.combine(this.getStatistics(id));
+        }
+        return statistics;
+    }
+
+    /**
+     * Gets the statistics of a patch, from the index of the archive or of
+     * the patches stored on disk if the patch is not loaded.
+     *
+     * @param id id of the patch.
+     * @return the statistics of the patch.
+     */
+    private PointCloudStatistics getStatistics(String id) {
+        if (this.archive != null && !this.patches.containsKey(id)) {
+            return this.archive.getEntry(id).getStatistics();
+        } else if (this.patches instanceof DiskPatches) {
+            return ((DiskPatches) this.patches).getStatistics(id);
+        } else {
+            return this.patches.get(id).getStatistics();
+        }
+    }
+
     /**
      * Returns all points that are contained in all patches.
      *
@@ -324,7 +584,7 @@ public class Pointcloud implements Serializable {
             return false;
         }
         final Pointcloud other = (Pointcloud) obj;
-        if (this.patches.size() != other.patches.size()) {
+        if (this.getPatches().size() != other.getPatches().size()) {
             return false;
         }
         Iterator<String> iterator = this.patches.keySet().iterator();
@@ -363,6 +623,7 @@ public class Pointcloud implements Serializable {
      */
     public void setPatches(Map<String, APointCloud> patches) {
         this.patches = patches;
+        this.archive = null;
     }
 
     /**
@@ -427,6 +688,127 @@ public class Pointcloud implements Serializable {
         return IoPointcloud.saveASCII(path, this);
     }
 
+    /**
+     * Saves the patches of the point cloud in a PLY file.
+     *
+     * @param path path of the file.
+     * @param binary true to write a binary little endian file, false to write
+     * an ASCII file.
+     * @return true if the point cloud is correctly saved, false otherwise.
+     */
+    public boolean savePLY(String path, boolean binary) {
+        return IoPointcloud.savePLY(path, this, binary);
+    }
+
+    /**
+     * Saves the patches of the point cloud in an indexed binary archive, whose
+     * patches can then be loaded one by one with {@code openArchive}.
+     *
+     * @param path path of the file.
+     * @throws IOException if the file cannot be written.
+     * @see PatchArchive
+     */
+    public void saveArchive(String path) throws IOException {
+        PatchArchive.write(new File(path).toPath(), this);
+    }
+
+    /**
+     * Replaces the patches of the point cloud by the patches of an archive
+     * written by {@code saveArchive}. Only the index of the archive is read:
+     * each patch is loaded at its first access with {@code get}, and every
+     * remaining patch when the patches are iterated.
+     *
+     * @param path path of the file.
+     * @throws IOException if the archive cannot be read.
+     */
+    public void openArchive(String path) throws IOException {
+        PatchArchive opened = PatchArchive.open(new File(path).toPath());
+        this.patches = new LinkedHashMap<>();
+        this.regular = new LinkedHashSet<>();
+        this.irregular = new LinkedHashSet<>();
+        this.isolated = new LinkedHashSet<>();
+        for (String id : opened.getIds()) {
+            PatchArchive.Entry entry = opened.getEntry(id);
+            if (entry.isRegular()) {
+                this.regular.add(id);
+            }
+            if (entry.isIrregular()) {
+                this.irregular.add(id);
+            }
+            if (entry.isIsolated()) {
+                this.isolated.add(id);
+            }
+        }
+        this.archive = opened;
+    }
+
+    /**
+     * Moves the patches of the point cloud in a directory, one file by patch,
+     * only the patches recently used being kept in memory. A patch modified
+     * after its access with {@code get} is written back when it leaves the
+     * memory, and the number of points and the statistics of the point cloud
+     * are computed without loading the patches.
+     *
+     * @param directory directory where patches are stored, which must not
+     * already store patches.
+     * @param cacheBytes maximum number of bytes of the patches kept in memory.
+     * @throws IOException if the patches cannot be written.
+     * @see DiskPatches
+     */
+    public void storeOnDisk(String directory, long cacheBytes) throws IOException {
+        DiskPatches disk = DiskPatches.create(new File(directory).toPath(), cacheBytes);
+        try {
+            this.getPatches().forEach(disk::put);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        this.patches = disk;
+        disk.save(this.regular, this.irregular, this.isolated);
+    }
+
+    /**
+     * Replaces the patches of the point cloud by the patches stored in a
+     * directory with {@code storeOnDisk}, which are loaded at their access.
+     *
+     * @param directory directory where patches are stored.
+     * @param cacheBytes maximum number of bytes of the patches kept in memory.
+     * @throws IOException if the index of the patches cannot be read.
+     */
+    public void openPatches(String directory, long cacheBytes) throws IOException {
+        DiskPatches opened = DiskPatches.open(new File(directory).toPath(), cacheBytes);
+        this.regular = new LinkedHashSet<>();
+        this.irregular = new LinkedHashSet<>();
+        this.isolated = new LinkedHashSet<>();
+        for (String id : opened.keySet()) {
+            byte types = opened.getTypes(id);
+            if ((types & PatchArchive.REGULAR) != 0) {
+                this.regular.add(id);
+            }
+            if ((types & PatchArchive.IRREGULAR) != 0) {
+                this.irregular.add(id);
+            }
+            if ((types & PatchArchive.ISOLATED) != 0) {
+                this.isolated.add(id);
+            }
+        }
+        this.patches = opened;
+        this.archive = null;
+    }
+
+    /**
+     * Writes the modified patches stored on disk and their index, so that
+     * they can be opened again with {@code openPatches}.
+     *
+     * @throws IOException if the patches cannot be written.
+     * @throws IllegalStateException if the patches are not stored on disk.
+     */
+    public void flush() throws IOException {
+        if (!(this.patches instanceof DiskPatches)) {
+            throw new IllegalStateException("The patches are not stored on disk");
+        }
+        ((DiskPatches) this.patches).save(this.regular, this.irregular, this.isolated);
+    }
+
     /**
      * Saves All patches in a file according to is key in the point cloud.
      *
@@ -438,7 +820,7 @@ public class Pointcloud implements Serializable {
         }
         new File(pathdir).mkdirs();
         final String dir = pathdir;
-        this.patches.forEach((k, v) -> {
+        this.getPatches().forEach((k, v) -> {
             try {
                 v.save(dir + k + ".xyz");
             } catch (IOException ex) {
@@ -17,111 +17,146 @@
 
 package info.ponciano.lab.jpc.pointcloud.bounding;
 
-import java.awt.Point;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
  * Computes a 2D bounding box: Example:
  * <pre><code> List<Point2D> minObbCorners = MinOrientedBoundingBoxComputer2D.computeCorners(points); </code></pre>
+ * or, from primitive coordinates:
+ * <pre><code> double[] corners = MinOrientedBoundingBoxComputer2D.computeCorners(x, y, size); </code></pre>
+ * The convex hull is computed with the monotone chain algorithm and the
+ * rectangle of minimum area with rotating calipers over its edges.
  */
 public class MinOrientedBoundingBoxComputer2D {
 
-    private static int ACCURACY = 1000;
-
     public static List<Point2D> computeCorners(List<Point2D> points) {
-        List<Point2D> convexHullPoints = computeConvexHullPoints(points);
-        int alignmentPointIndex = computeAlignmentPointIndex(convexHullPoints);
-        Rectangle2D r = computeAlignedBounds(convexHullPoints, alignmentPointIndex);
-
-        List<Point2D> alignedCorners = new ArrayList<>();
-        alignedCorners.add(new Point2D.Double(r.getMinX(), r.getMinY()));
-        alignedCorners.add(new Point2D.Double(r.getMaxX(), r.getMinY()));
-        alignedCorners.add(new Point2D.Double(r.getMaxX(), r.getMaxY()));
-        alignedCorners.add(new Point2D.Double(r.getMinX(), r.getMaxY()));
-
-        Point2D center = convexHullPoints.get(alignmentPointIndex);
-        double angleRad = computeEdgeAngleRad(convexHullPoints, alignmentPointIndex);
-
-        AffineTransform at = new AffineTransform();
-        at.concatenate(AffineTransform.getTranslateInstance(center.getX(), center.getY()));
-        at.concatenate(AffineTransform.getRotateInstance(angleRad));
-
-        List<Point2D> corners = transform(alignedCorners, at);
-        return corners;
+        int size = points.size();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            Point2D p = points.get(i);
+            x[i] = p.getX();
+            y[i] = p.getY();
+        }
+        double[] corners = computeCorners(x, y, size);
+        List<Point2D> result = new ArrayList<>();
+        for (int i = 0; i < corners.length; i += 2) {
+            result.add(new Point2D.Double(corners[i], corners[i + 1]));
+        }
+        return result;
     }
 
-    private static int computeAlignmentPointIndex(List<Point2D> points) {
-        double minArea = Double.MAX_VALUE;
-        int minAreaIndex = -1;
-        for (int i = 0; i < points.size(); i++) {
-            Rectangle2D r = computeAlignedBounds(points, i);
-            double area = r.getWidth() * r.getHeight();
-
+    /**
+     * Computes the corners of the rectangle of minimum area holding points.
+     *
+     * @param x x coordinates of the points
+     * @param y y coordinates of the points
+     * @param size number of points to read in the arrays
+     * @return the coordinates x0, y0, ..., x3, y3 of the 4 corners in counter
+     * clockwise order
+     */
+    public static double[] computeCorners(double[] x, double[] y, int size) {
+        if (size < 1 || x.length < size || y.length < size) {
+            throw new IllegalArgumentException("Size not valid: " + size);
+        }
+        double[] hx = new double[size + 1];
+        double[] hy = new double[size + 1];
+        int h = computeConvexHull(x, y, size, hx, hy);
+        if (h == 1) {
+            return new double[]{hx[0], hy[0], hx[0], hy[0], hx[0], hy[0], hx[0], hy[0]};
+        }
+        double minArea = Double.POSITIVE_INFINITY;
+        double[] corners = new double[8];
+        // vertices of maximal and minimal projection along the edge, and farthest from it
+        int right = 1;
+        int top = 1;
+        int left = 1;
+        for (int i = 0; i < h; i++) {
+            int j = (i + 1) % h;
+            double length = Math.hypot(hx[j] - hx[i], hy[j] - hy[i]);
+            double ex = (hx[j] - hx[i]) / length;
+            double ey = (hy[j] - hy[i]) / length;
+            right = advance(hx, hy, h, i, right, ex, ey, 1);
+            if (i == 0) {
+                top = right;
+            }
+            top = advance(hx, hy, h, i, top, -ey, ex, 1);
+            if (i == 0) {
+                left = top;
+            }
+            left = advance(hx, hy, h, i, left, ex, ey, -1);
+            double max = project(hx, hy, i, right, ex, ey);
+            double min = project(hx, hy, i, left, ex, ey);
+            double height = project(hx, hy, i, top, -ey, ex);
+            double area = (max - min) * height;
             if (area < minArea) {
                 minArea = area;
-                minAreaIndex = i;
+                corners[0] = hx[i] + ex * min;
+                corners[1] = hy[i] + ey * min;
+                corners[2] = hx[i] + ex * max;
+                corners[3] = hy[i] + ey * max;
+                corners[4] = corners[2] - ey * height;
+                corners[5] = corners[3] + ex * height;
+                corners[6] = corners[0] - ey * height;
+                corners[7] = corners[1] + ex * height;
             }
         }
-        return minAreaIndex;
-    }
-
-    private static double computeEdgeAngleRad(List<Point2D> points, int index) {
-        int i0 = index;
-        int i1 = (i0 + 1) % points.size();
-        Point2D p0 = points.get(i0);
-        Point2D p1 = points.get(i1);
-        double dx = p1.getX() - p0.getX();
-        double dy = p1.getY() - p0.getY();
-        double angleRad = Math.atan2(dy, dx);
-        return angleRad;
-    }
-
-    private static Rectangle2D computeAlignedBounds(List<Point2D> points, int index) {
-        Point2D p0 = points.get(index);
-        double angleRad = computeEdgeAngleRad(points, index);
-        AffineTransform at = createTransform(-angleRad, p0);
-        List<Point2D> transformedPoints = transform(points, at);
-        Rectangle2D bounds = computeBounds(transformedPoints);
-        return bounds;
-    }
-
-    private static AffineTransform createTransform(double angleRad, Point2D center) {
-        AffineTransform at = new AffineTransform();
-        at.concatenate(AffineTransform.getRotateInstance(angleRad));
-        at.concatenate(AffineTransform.getTranslateInstance(-center.getX(), -center.getY()));
-        return at;
+        return corners;
     }
 
-    private static List<Point2D> transform(List<Point2D> points, AffineTransform at) {
-        List<Point2D> result = new ArrayList<>();
-        for (Point2D p : points) {
-            Point2D tp = at.transform(p, null);
-            result.add(tp);
+    /**
+     * Computes the convex hull of points with the monotone chain algorithm.
+     * Collinear and duplicated points are not kept in the hull.
+     *
+     * @param x x coordinates of the points
+     * @param y y coordinates of the points
+     * @param size number of points to read in the arrays
+     * @param hx array receiving the x coordinates of the hull, of length at
+     * least size + 1
+     * @param hy array receiving the y coordinates of the hull, of length at
+     * least size + 1
+     * @return the number of vertices of the hull, in counter clockwise order
+     */
+    static int computeConvexHull(double[] x, double[] y, int size, double[] hx, double[] hy) {
+        double[] sx = new double[size];
+        double[] sy = new double[size];
+        System.arraycopy(x, 0, sx, 0, size);
+        System.arraycopy(y, 0, sy, 0, size);
+        sort(sx, sy, size);
+        // removes the duplicated points
+        int n = 1;
+        for (int i = 1; i < size; i++) {
+            if (sx[i] != sx[n - 1] || sy[i] != sy[n - 1]) {
+                sx[n] = sx[i];
+                sy[n] = sy[i];
+                n++;
+            }
         }
-        return result;
-    }
-
-    private static Rectangle2D computeBounds(List<Point2D> points) {
-        double minX = Double.MAX_VALUE;
-        double minY = Double.MAX_VALUE;
-        double maxX = -Double.MAX_VALUE;
-        double maxY = -Double.MAX_VALUE;
-        for (Point2D p : points) {
-            double x = p.getX();
-            double y = p.getY();
-            minX = Math.min(minX, x);
-            minY = Math.min(minY, y);
-            maxX = Math.max(maxX, x);
-            maxY = Math.max(maxY, y);
+        int k = 0;
+        // lower hull
+        for (int i = 0; i < n; i++) {
+            while (k >= 2 && cross(hx[k - 2], hy[k - 2], hx[k - 1], hy[k - 1], sx[i], sy[i]) <= 0) {
+                k--;
+            }
+            hx[k] = sx[i];
+            hy[k] = sy[i];
+            k++;
         }
-        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+        // upper hull
+        int lower = k + 1;
+        for (int i = n - 2; i >= 0; i--) {
+            while (k >= lower && cross(hx[k - 2], hy[k - 2], hx[k - 1], hy[k - 1], sx[i], sy[i]) <= 0) {
+                k--;
+            }
+            hx[k] = sx[i];
+            hy[k] = sy[i];
+            k++;
+        }
+        // the first point closes the chain
+        return Math.max(1, k - 1);
     }
 
     static Path2D createPath(List<Point2D> points) {
@@ -140,110 +175,78 @@ public class MinOrientedBoundingBoxComputer2D {
         return path;
     }
 
-    static List<Point2D> computeConvexHullPoints(List<Point2D> points) {
-        // NOTE: Converting from Point2D to Point here
-        // because the FastConvexHull class expects
-        // the points with integer coordinates.
-        // This should be generalized to Point2D!
-        ArrayList<Point> ps = new ArrayList<>();
-        List<Point2D> result = new ArrayList<>();
-        try {
-            points.forEach((p) -> {
-                ps.add(new Point((int) (p.getX() * MinOrientedBoundingBoxComputer2D.ACCURACY), (int) (p.getY() * MinOrientedBoundingBoxComputer2D.ACCURACY)));
-            });
-            List<Point> convexHull = FastConvexHull.execute(ps);
-            convexHull.forEach((p) -> {
-                double x = p.getX() / MinOrientedBoundingBoxComputer2D.ACCURACY;
-                double y = p.getY() / MinOrientedBoundingBoxComputer2D.ACCURACY;
-                result.add(new Point2D.Double(x, y));
-            });
-        } catch (Exception ex) {
-            System.err.println(ex.getMessage());
-            System.out.println("*********");
-            System.out.println(points.size());
-            for (Point2D point : points) {
-                System.out.println(point + "\n");
+    // ------------------------ PRIVATE ------------------------
+    /**
+     * Moves a caliper forward along the hull while the projection of its
+     * vertex on a direction increases (sign 1) or decreases (sign -1).
+     */
+    private static int advance(double[] hx, double[] hy, int h, int origin, int vertex, double dx, double dy, int sign) {
+        double current = sign * project(hx, hy, origin, vertex, dx, dy);
+        for (int step = 0; step < h; step++) {
+            int next = (vertex + 1) % h;
+            double projection = sign * project(hx, hy, origin, next, dx, dy);
+            if (projection <= current) {
+                break;
             }
+            vertex = next;
+            current = projection;
         }
+        return vertex;
+    }
 
-        return result;
+    /**
+     * Projection of the vertex relative to the origin on a direction.
+     */
+    private static double project(double[] hx, double[] hy, int origin, int vertex, double dx, double dy) {
+        return (hx[vertex] - hx[origin]) * dx + (hy[vertex] - hy[origin]) * dy;
+    }
+
+    /**
+     * Cross product of (b - a) and (c - a), positive for a counter clockwise
+     * turn.
+     */
+    private static double cross(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
     }
 
-    static List<Point2D> computeConvexHullPointsOriginal(List<Point2D> points) {
-        // NOTE: Converting from Point2D to Point here
-        // because the FastConvexHull class expects
-        // the points with integer coordinates. 
-        // This should be generalized to Point2D!
-        ArrayList<Point> ps = new ArrayList<>();
-        for (Point2D p : points) {
-            ps.add(new Point((int) p.getX(), (int) p.getY()));
+    /**
+     * Heap sort of the points by x then y.
+     */
+    private static void sort(double[] x, double[] y, int size) {
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(x, y, i, size);
         }
-        List<Point> convexHull = FastConvexHull.execute(ps);
-        List<Point2D> result = new ArrayList<>();
-        for (Point p : convexHull) {
-            double x = p.getX();
-            double y = p.getY();
-            result.add(new Point2D.Double(x, y));
+        for (int end = size - 1; end > 0; end--) {
+            swap(x, y, 0, end);
+            siftDown(x, y, 0, end);
         }
-        return result;
     }
-}
-
-class FastConvexHull {
 
-    public static ArrayList<Point> execute(ArrayList<Point> points) {
-        ArrayList<Point> xSorted = (ArrayList<Point>) points.clone();
-        Collections.sort(xSorted, new XCompare());
-        int n = xSorted.size();
-        Point[] lUpper = new Point[n];
-        lUpper[0] = xSorted.get(0);
-        lUpper[1] = xSorted.get(1);
-        int lUpperSize = 2;
-        for (int i = 2; i < n; i++) {
-            lUpper[lUpperSize] = xSorted.get(i);
-            lUpperSize++;
-            while (lUpperSize > 2
-                    && !rightTurn(lUpper[lUpperSize - 3], lUpper[lUpperSize - 2],
-                            lUpper[lUpperSize - 1])) {
-// Remove the middle point of the three last
-                lUpper[lUpperSize - 2] = lUpper[lUpperSize - 1];
-                lUpperSize--;
+    private static void siftDown(double[] x, double[] y, int i, int size) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && less(x, y, child, child + 1)) {
+                child++;
             }
-        }
-        Point[] lLower = new Point[n];
-        lLower[0] = xSorted.get(n - 1);
-        lLower[1] = xSorted.get(n - 2);
-        int lLowerSize = 2;
-        for (int i = n - 3; i >= 0; i--) {
-            lLower[lLowerSize] = xSorted.get(i);
-            lLowerSize++;
-            while (lLowerSize > 2
-                    && !rightTurn(lLower[lLowerSize - 3], lLower[lLowerSize - 2],
-                            lLower[lLowerSize - 1])) {
-// Remove the middle point of the three last
-                lLower[lLowerSize - 2] = lLower[lLowerSize - 1];
-                lLowerSize--;
+            if (!less(x, y, i, child)) {
+                return;
             }
+            swap(x, y, i, child);
+            i = child;
         }
-        ArrayList<Point> result = new ArrayList<>();
-        for (int i = 0; i < lUpperSize; i++) {
-            result.add(lUpper[i]);
-        }
-        for (int i = 1; i < lLowerSize - 1; i++) {
-            result.add(lLower[i]);
-        }
-        return result;
     }
 
-    private static boolean rightTurn(Point a, Point b, Point c) {
-        return (b.x - a.x) * (c.y - a.y) - (b.y - a.y) * (c.x - a.x) > 0;
+    private static boolean less(double[] x, double[] y, int i, int j) {
+        return x[i] < x[j] || (x[i] == x[j] && y[i] < y[j]);
     }
 
-    private static class XCompare implements Comparator<Point> {
-
-        @Override
-        public int compare(Point o1, Point o2) {
-            return (Integer.valueOf(o1.x)).compareTo(o2.x);
-        }
+    private static void swap(double[] x, double[] y, int i, int j) {
+        double t = x[i];
+        x[i] = x[j];
+        x[j] = t;
+        t = y[i];
+        y[i] = y[j];
+        y[j] = t;
     }
+    // ---------------------- END PRIVATE ----------------------
 }
@@ -17,11 +17,13 @@
 
 package info.ponciano.lab.jpc.pointcloud.bounding.geometry;
 
-import Jama.Matrix;
+import info.ponciano.lab.jpc.math.Matrix4d;
 import info.ponciano.lab.jpc.math.Point;
 
 /**
  * Provides some methods for affine transformations, such as translation or rotation.
+ * To transform many points, compose the transformations in a {@link Matrix4d}
+ * applied to the whole point cloud or coordinates buffer.
  */
 public class AffineTransformations {
 
@@ -35,23 +37,7 @@ public class AffineTransformations {
 	 * @return the rotated point
 	 */
 	public static Point translate(Point point, double x, double y, double z) {
-		Point translatedPoint;
-		
-		Matrix v = new Matrix(new double[] { point.getCoords().getX(), 
-				point.getCoords().getY(), point.getCoords().getZ(), 1
-		}, 1).transpose();
-		Matrix tMat = new Matrix(new double[][] {
-			{ 1, 0, 0, x },
-			{ 0, 1, 0, y},
-			{ 0, 0, 1, z},
-			{ 0, 0, 0, 1 }
-		});
-		
-		Matrix t = tMat.times(v);
-		
-		translatedPoint = new Point((float) t.get(0, 0), (float) t.get(1, 0), (float) t.get(2, 0));
-		
-		return translatedPoint;
+		return new Point(Matrix4d.translation(x, y, z).transform(point.getCoords()));
 	}
 	
 	/**
@@ -64,35 +50,7 @@ public class AffineTransformations {
 	 * @return a rotated point
 	 */
 	public static Point rotate(Point point, double rotationX, double rotationY, double rotationZ) {
-		Matrix v = new Matrix(new double[] { point.getCoords().getX(), 
-				point.getCoords().getY(), point.getCoords().getZ() }, 1);
-		
-		v = v.transpose();
-		
-		Matrix rxMat = new Matrix( new double[][] { 
-			{ 1, 		0, 				0 }, 
-			{ 0, Math.cos(rotationX), -Math.sin(rotationX) }, 
-			{ 0, Math.sin(rotationX), Math.cos(rotationX) }
-		} );
-		
-		Matrix ryMat = new Matrix( new double[][] { 
-			{ Math.cos(rotationY), 0, Math.sin(rotationY) }, 
-			{ 	0,			1, 		0 }, 
-			{ -Math.sin(rotationY), 0, Math.cos(rotationY) } 
-		} );
-		
-		Matrix rzMat = new Matrix( new double[][] { 
-			{ Math.cos(rotationZ), -Math.sin(rotationZ), 0 }, 
-			{ Math.sin(rotationZ), Math.cos(rotationZ), 0 }, 
-			{ 		0, 			0, 			1 } 
-		} );
-		
-		Matrix r = rzMat.times(ryMat.times(rxMat.times(v)));
-		
-		Point rotatedPoint = new Point((float) r.get(0, 0), (float) r.get(1, 0),
-				(float) r.get(2, 0));
-		
-		return rotatedPoint;
+		return new Point(Matrix4d.rotation(rotationX, rotationY, rotationZ).transform(point.getCoords()));
 	}
 
 }
@@ -25,6 +25,8 @@ import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import Jama.EigenvalueDecomposition;
 import Jama.Matrix;
 import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Matrix4d;
 import info.ponciano.lab.jpc.math.Point;
 
 
@@ -54,15 +56,17 @@ public class OrientedBoundingBox extends BoundingBox {
 		yAxis = new Vector3D(b.getArray()[1]);
 		zAxis = new Vector3D(b.getArray()[2]);
 		
-		double rx = VectorOperations.angleBetweenTwoVectors(new Vector3D(1, 0, 0), xAxis);
-		double ry = VectorOperations.angleBetweenTwoVectors(new Vector3D(0, 1, 0), yAxis);
-		double rz = VectorOperations.angleBetweenTwoVectors(new Vector3D(0, 0, 1), zAxis);
-	
+		Matrix4d toModel = this.toModel();
+		double[] coords = new double[3 * points.size()];
+		int i = 0;
 		for (Point point : points) {
-			Point translatedPoint = AffineTransformations.translate(point, 
-					-centroid.getCoords().getX(), -centroid.getCoords().getY(), -centroid.getCoords().getZ());
-			Point translatedRotatedPoint = AffineTransformations.rotate(translatedPoint, rx, ry, rz);
-			model.add(translatedRotatedPoint);
+			coords[i++] = point.getCoords().getX();
+			coords[i++] = point.getCoords().getY();
+			coords[i++] = point.getCoords().getZ();
+		}
+		toModel.transform(coords);
+		for (i = 0; i < coords.length; i += 3) {
+			model.add(new Point(coords[i], coords[i + 1], coords[i + 2]));
 		}
 		
 		modelAABB = new AxisAlignedBoundingBox(model);
@@ -84,15 +88,23 @@ public class OrientedBoundingBox extends BoundingBox {
 	
 	@Override
 	public boolean contains(double x, double y, double z) {
+		Point translatedRotatedPoint = new Point(this.toModel().transform(new Coord3D(x, y, z)));
+		
+		return modelAABB.contains(translatedRotatedPoint);
+	}
+	
+	/**
+	 * Gets the transformation from the space of the point cloud to the model
+	 * space: translation of the centroid to the origin, then rotation.
+	 * 
+	 * @return the matrix of the transformation.
+	 */
+	private Matrix4d toModel() {
 		double rx = VectorOperations.angleBetweenTwoVectors(new Vector3D(1, 0, 0), xAxis);
 		double ry = VectorOperations.angleBetweenTwoVectors(new Vector3D(0, 1, 0), yAxis);
 		double rz = VectorOperations.angleBetweenTwoVectors(new Vector3D(0, 0, 1), zAxis);
-		
-		Point translatedPoint = AffineTransformations.translate(new Point(x, y, z), 
-				-centroid.getCoords().getX(), -centroid.getCoords().getY(), -centroid.getCoords().getZ());
-		Point translatedRotatedPoint = AffineTransformations.rotate(translatedPoint, rx, ry, rz);
-		
-		return modelAABB.contains(translatedRotatedPoint);
+		return Matrix4d.translation(-centroid.getCoords().getX(), -centroid.getCoords().getY(), -centroid.getCoords().getZ())
+				.rotate(rx, ry, rz);
 	}
 
 	@Override
@@ -16,15 +16,17 @@
  */
 package info.ponciano.lab.jpc.pointcloud.components;
 
+import info.ponciano.lab.jpc.mesh.ply.PLY;
+import info.ponciano.lab.jpc.mesh.ply.PLYPointCloud;
 import info.ponciano.lab.jpc.pointcloud.bounding.MinOrientedBoundingBoxComputer2D;
+import info.ponciano.lab.jpc.pointcloud.stucture.kdtree.KdTree;
 import info.ponciano.lab.jpc.pointcloud.stucture.octree.Voxel;
 import info.ponciano.lab.jpc.math.Color;
 import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Matrix4d;
 import info.ponciano.lab.jpc.math.Point;
 import info.ponciano.lab.jpc.math.vector.Normal;
-import info.ponciano.lab.jpc.math.vector.Vector3d;
 
-import java.awt.geom.Point2D;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
@@ -46,28 +48,33 @@ import java.util.stream.Stream;
  */
 public abstract class APointCloud implements Serializable, Comparable<APointCloud> {
 
-    protected Coord3D centroid;
-    protected Normal meanNormal;
+    /**
+     * Number of points from which the statistics are computed in parallel.
+     */
+    public static final int PARALLEL_SIZE = 1 << 14;
+
+    /**
+     * Statistics of the points updated with the cloud, null until needed or
+     * after a removal.
+     */
+    private transient PointCloudStatistics statistics;
+    /**
+     * Number of modifications of the cloud made through its methods.
+     */
+    private transient long version;
     protected double dx;// vector of dimension X
     protected double dy; // vector of dimension Y
-    protected double dz;// vector of dimension Z 
     protected Voxel obb;  // oriented bouding box
-    protected double minZ; // minz
-    protected double maxZ;// maxz
     protected double volume;
     protected double area;
-    protected Point maxPoint;
-    protected Point minPoint;
 
     /**
      * Create new instance of <code>PointCloud</code>
      */
     public APointCloud() {
         this.obb = null;
-        this.dz = -1;
         this.volume = -1;
         this.area = -1;
-        this.centroid = null;
     }
 
     /**
@@ -109,6 +116,119 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
      */
     public abstract boolean isEmpty();
 
+    /**
+     * Gets the statistics of the point cloud, computed in one pass at the
+     * first call and then updated by the additions and the moves of the
+     * cloud.
+     *
+     * @return a copy of the statistics of the point cloud.
+     */
+    public PointCloudStatistics getStatistics() {
+        return new PointCloudStatistics(this.statistics());
+    }
+
+    /**
+     * Clears the cached statistics and oriented bounding box of the cloud.
+     * Has to be called after points of the cloud have been modified in place.
+     */
+    public void invalidate() {
+        this.invalidateStatistics();
+        this.obb = null;
+    }
+
+    /**
+     * Gets the number of modifications of the cloud made through its
+     * methods: additions, removals, moves and invalidations. Two equal values
+     * mean that the cloud has not been modified in between, unless its points
+     * have been modified in place without calling {@code invalidate}.
+     *
+     * @return the version of the cloud.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Restores cached values computed on the same points, such as values
+     * stored with the points in a file, so that they are not computed again.
+     *
+     * @param statistics statistics of the points of the cloud.
+     * @param obb oriented bounding box of the cloud, null to compute it when
+     * needed.
+     */
+    public void restore(PointCloudStatistics statistics, Voxel obb) {
+        this.statistics = new PointCloudStatistics(statistics);
+        this.obb = obb;
+        if (obb != null && this.size() > 4) {
+            this.computeSpatialValues();
+        }
+    }
+
+    /**
+     * Clears the cached statistics of the cloud, when the colours or the
+     * normals of points have been modified.
+     */
+    protected void invalidateStatistics() {
+        this.statistics = null;
+        this.version++;
+    }
+
+    /**
+     * Computes the statistics of every point of the cloud in one pass.
+     *
+     * @return the statistics of the point cloud.
+     */
+    protected PointCloudStatistics computeStatistics() {
+        return PointCloudStatistics.of(this, this.size() >= PARALLEL_SIZE);
+    }
+
+    /**
+     * Updates the cached values after a point has been added in the cloud.
+     *
+     * @param p point added.
+     */
+    protected void added(Point p) {
+        this.version++;
+        if (this.statistics != null) {
+            this.statistics.accept(p);
+        }
+        this.obb = null;
+    }
+
+    /**
+     * Updates the cached values after a point without colour and normal has
+     * been added in the cloud.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     */
+    protected void added(double x, double y, double z) {
+        this.version++;
+        if (this.statistics != null) {
+            this.statistics.accept(x, y, z);
+        }
+        this.obb = null;
+    }
+
+    /**
+     * Updates the cached values after every point of the cloud has been
+     * translated.
+     *
+     * @param tx translation along x.
+     * @param ty translation along y.
+     * @param tz translation along z.
+     */
+    protected void translated(double tx, double ty, double tz) {
+        this.version++;
+        if (this.statistics != null) {
+            this.statistics.translate(tx, ty, tz);
+        }
+        if (this.obb != null) {
+            this.obb.move(new Coord3D(-tx, -ty, -tz));
+        }
+    }
+
     /**
      * Returns maximum Euclidean distance to consider normals as similar.
      *
@@ -194,22 +314,17 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
         stream().forEach((point) -> {
             point.setColor(color);
         });
+        this.invalidateStatistics();
     }
 
     public abstract void clear();
 
     public double getMinZ() {
-        if (dz < 0) {
-            computeMinMaxZ();
-        }
-        return minZ;
+        return this.isEmpty() ? 0 : this.statistics().getMin().getZ();
     }
 
     public double getMaxZ() {
-        if (dz < 0) {
-            computeMinMaxZ();
-        }
-        return maxZ;
+        return this.isEmpty() ? 0 : this.statistics().getMax().getZ();
     }
 
     /**
@@ -240,10 +355,7 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
     }
 
     public double getDz() {
-        if (dz < 0) {
-            computeMinMaxZ();
-        }
-        return dz;
+        return this.getMaxZ() - this.getMinZ();
     }
 
     public double getVolume() {
@@ -261,27 +373,31 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
     }
 
     private void computesOBB() {
-        if (dz < 0) {
-            computeMinMaxZ();
-        }
         if (this.size() > 4) {
-            Coord3D center = this.center();
-            List<Point2D> p2d = new ArrayList();
-            this.stream().forEach(point -> {
-                double x = point.getCoords().getX();
-                double y = point.getCoords().getY();
-                p2d.add(new Point2D.Double(x, y));
-            });
-
-            List<Point2D> minObbCorners = MinOrientedBoundingBoxComputer2D.computeCorners(p2d);
-            List<Point> vpoints = new ArrayList();
-            for (Point2D p : minObbCorners) {
-                vpoints.add(new Point(p.getX(), p.getY(), this.minZ));
-                vpoints.add(new Point(p.getX(), p.getY(), this.maxZ));
+            // coordinates relative to the centroid to keep their precision
+            Coord3D centroid = this.getCentroid();
+            double[] x = new double[this.size()];
+            double[] y = new double[this.size()];
+            int size = 0;
+            Iterator<Point> iterator = iterator();
+            while (iterator.hasNext()) {
+                Coord3D c = iterator.next().getCoords();
+                x[size] = c.getX() - centroid.getX();
+                y[size] = c.getY() - centroid.getY();
+                size++;
+            }
+
+            double[] minObbCorners = MinOrientedBoundingBoxComputer2D.computeCorners(x, y, size);
+            List<Point> vpoints = new ArrayList<>();
+            double minZ = this.getMinZ();
+            double maxZ = this.getMaxZ();
+            for (int i = 0; i < minObbCorners.length; i += 2) {
+                double cx = minObbCorners[i] + centroid.getX();
+                double cy = minObbCorners[i + 1] + centroid.getY();
+                vpoints.add(new Point(cx, cy, minZ));
+                vpoints.add(new Point(cx, cy, maxZ));
             }
             this.obb = new Voxel(vpoints);
-            this.obb.move(new Coord3D(-center.getX(), -center.getY(), 0));
-            this.uncenter(center);
 
             computeSpatialValues();
         } else {
@@ -295,34 +411,7 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
         this.dx = Math.abs(coordsMax.getX() - coordsMin.getX());
         this.dy = Math.abs(coordsMax.getY() - coordsMin.getY());
         this.area = this.dx * this.dy;
-        this.volume = this.area * this.dz;
-    }
-
-    private void computeMinMaxZ() {
-        if (this.size() <= 1) {
-            this.dz = 0;
-        } else {
-            boolean notSet = true;
-            this.minZ = -1;
-            this.maxZ = -1;
-            // extract min and max Z
-            Iterator<Point> iterator = iterator();
-            while (iterator.hasNext()) {
-                Point p = iterator.next();
-                if (notSet) {
-                    this.minZ = p.getCoords().getZ();
-                    this.maxZ = p.getCoords().getZ();
-                    notSet = false;
-                } else {
-                    if (p.getCoords().getZ() < minZ) {
-                        minZ = p.getCoords().getZ();
-                    } else if (p.getCoords().getZ() > maxZ) {
-                        maxZ = p.getCoords().getZ();
-                    }
-                }
-            }
-            this.dz = Math.abs(this.maxZ - this.minZ);
-        }
+        this.volume = this.area * this.getDz();
     }
 
     /**
@@ -331,53 +420,27 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
      * @return the centroid of the point cloud.
      */
     public Coord3D getCentroid() {
-        if (this.centroid == null) {
-            double x = 0;
-            double y = 0;
-            double z = 0;
-            for (Iterator<Point> iterator = this.iterator(); iterator.hasNext();) {
-                Point point = iterator.next();
-                x += point.getCoords().getX();
-                y += point.getCoords().getY();
-                z += point.getCoords().getZ();
-            }
-            x /= this.size();
-            y /= this.size();
-            z /= this.size();
-            this.centroid = new Coord3D(x, y, z);
-        }
-        return this.centroid;
+        return this.statistics().getCentroid();
     }
 
     public Color getMeanColor() {
-        List<Color> average = new ArrayList<>();
-        for (Iterator<Point> iterator = this.iterator(); iterator.hasNext();) {
-            Point point = iterator.next();
-            average.add(point.getColor());
-        }
-        return new Color(average);
+        return this.statistics().getMeanColor();
     }
 
     public Normal getMeanNormal() {
-        if (this.meanNormal == null) {
-            double x = 0;
-            double y = 0;
-            double z = 0;
-            for (Iterator<Point> iterator = this.iterator(); iterator.hasNext();) {
-                Point point = iterator.next();
-                x += point.getNormal().getX();
-                y += point.getNormal().getY();
-                z += point.getNormal().getZ();
-            }
-            x /= this.size();
-            y /= this.size();
-            z /= this.size();
-            this.meanNormal = new Normal(x, y, z);
-        }
-        return meanNormal;
+        return this.statistics().getMeanNormal();
     }
 
-    public abstract Point getMean();
+    /**
+     * Get the mean point of the point cloud.
+     *
+     * @return a point having the centroid, the mean colour and the mean normal
+     * of the point cloud.
+     */
+    public Point getMean() {
+        PointCloudStatistics stats = this.statistics();
+        return new Point(stats.getCentroid(), stats.getMeanColor(), stats.getMeanNormal());
+    }
 
     /**
      * Get the nearest point of the point cloud to the given point distance with
@@ -403,6 +466,18 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
 
     }
 
+    /**
+     * Get the nearest point of the point cloud to the given point with the
+     * KD-tree of the point cloud.
+     *
+     * @param p point considered for searching its nearest.
+     * @param tree KD-tree built on this point cloud.
+     * @return the nearest point of the cloud to p.
+     */
+    public Point getNearest(Point p, KdTree tree) {
+        return tree.nearest(p);
+    }
+
     /**
      * Lock every point of the point cloud
      */
@@ -424,20 +499,40 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
      * @return the two nearest points of the both cloud
      */
     public Point[] getNearests(APointCloud cloud) {
+        return this.getNearests(cloud, new KdTree(cloud));
+    }
+
+    /**
+     * return the two nearest points of the both cloud, the nearest point of
+     * each point of this cloud being searched in parallel in the KD-tree of
+     * the other one.
+     *
+     * @param cloud cloud to be processed
+     * @param tree KD-tree built on the cloud to be processed.
+     * @return the two nearest points of the both cloud
+     */
+    public Point[] getNearests(APointCloud cloud, KdTree tree) {
         Point[] ps = new Point[2];
+        if (tree.size() == 0) {
+            return ps;
+        }
+        Point[] points = this.stream().toArray(Point[]::new);
+        double[] queries = new double[3 * points.length];
+        for (int i = 0; i < points.length; i++) {
+            Coord3D c = points[i].getCoords();
+            queries[3 * i] = c.getX();
+            queries[3 * i + 1] = c.getY();
+            queries[3 * i + 2] = c.getZ();
+        }
+        int[] nearests = tree.nearest(queries);
         double localMinDistance = Double.MAX_VALUE;
-
-        for (Iterator<Point> iterator = this.iterator(); iterator.hasNext();) {
-            Point pointA = iterator.next();
-            for (Iterator<Point> iterator2 = cloud.iterator(); iterator2.hasNext();) {
-                Point pointB = iterator2.next();
-                Vector3d v = new Vector3d(pointA.getCoords(), pointB.getCoords());
-                Double distance = v.getNorm();
-                if (distance < localMinDistance) {
-                    localMinDistance = distance;
-                    ps[0] = pointA;
-                    ps[1] = pointB;
-                }
+        for (int i = 0; i < points.length; i++) {
+            Point pointB = tree.get(nearests[i]);
+            double distance = points[i].getCoords().distanceSquared(pointB.getCoords());
+            if (distance < localMinDistance) {
+                localMinDistance = distance;
+                ps[0] = points[i];
+                ps[1] = pointB;
             }
         }
         return ps;
@@ -473,51 +568,16 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
         computeSpatialValues();
     }
 
-    private double area() {
-        Point next = this.iterator().next();
-
-        //compute the size of the cloud
-        double[] min = {next.getCoords().getX(), next.getCoords().getY(), next.getCoords().getZ()};
-        double[] max = {next.getCoords().getX(), next.getCoords().getY(), next.getCoords().getZ()};
-        //test each point of the point cloud to seen if a point coordinates is a extremum of the cloud.
-        this.stream().forEach((Point p) -> {
-            if (p.getCoords().getX() < min[0]) {
-                min[0] = p.getCoords().getX();
-            } else if (p.getCoords().getX() > max[0]) {
-                max[0] = p.getCoords().getX();
-            }
-
-            if (p.getCoords().getY() < min[1]) {
-                min[1] = p.getCoords().getY();
-            } else if (p.getCoords().getY() > max[1]) {
-                max[1] = p.getCoords().getY();
-            }
-            if (p.getCoords().getZ() < min[2]) {
-                min[2] = p.getCoords().getZ();
-            } else if (p.getCoords().getZ() > max[2]) {
-                max[2] = p.getCoords().getZ();
-            }
-        });
-        //Calculate the area of the cloud 
-        this.maxPoint = new Point(max[0], max[1], max[2]);
-        this.minPoint = new Point(min[0], min[1], min[2]);
-        this.maxPoint.setColor(next.getColor());
-        this.minPoint.setColor(next.getColor());
-        return (max[0] - min[0]) * (max[1] - min[1]) * (max[2] - min[2]);
-    }
-
     public Point getMaxPoint() {
-        if (this.maxPoint == null) {
-            this.area();
-        }
-        return this.maxPoint;
+        Point maxPoint = new Point(this.statistics().getMax());
+        maxPoint.setColor(this.iterator().next().getColor());
+        return maxPoint;
     }
 
     public Point getMinPoint() {
-        if (this.minPoint == null) {
-            this.area();
-        }
-        return this.minPoint;
+        Point minPoint = new Point(this.statistics().getMin());
+        minPoint.setColor(this.iterator().next().getColor());
+        return minPoint;
     }
 
     /**
@@ -528,8 +588,9 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
      */
     public Coord3D center() {
         if (this.size() > 0) {
-            this.move(this.getCentroid());
-            return this.getCentroid();
+            Coord3D centroid = this.getCentroid();
+            this.move(centroid);
+            return centroid;
         }
         return null;
     }
@@ -540,11 +601,7 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
      * @param centroid centroid of the point cloud used for centering
      */
     public void uncenter(Coord3D centroid) {
-        this.stream().forEach((Point point) -> {
-            point.getCoords().setX(point.getCoords().getX() + centroid.getX());
-            point.getCoords().setY(point.getCoords().getY() + centroid.getY());
-            point.getCoords().setZ(point.getCoords().getZ() + centroid.getZ());
-        });
+        this.transform(Matrix4d.translation(centroid.getX(), centroid.getY(), centroid.getZ()));
     }
 
     /**
@@ -553,11 +610,34 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
      * @param movingVector moving vector
      */
     public void move(Coord3D movingVector) {
-        this.stream().forEach((Point point) -> {
-            point.getCoords().setX(point.getCoords().getX() - movingVector.getX());
-            point.getCoords().setY(point.getCoords().getY() - movingVector.getY());
-            point.getCoords().setZ(point.getCoords().getZ() - movingVector.getZ());
-        });
+        this.transform(Matrix4d.translation(-movingVector.getX(), -movingVector.getY(), -movingVector.getZ()));
+    }
+
+    /**
+     * Transforms in place every point of the point cloud, in parallel for
+     * large clouds.
+     *
+     * @param matrix affine transformation to be applied.
+     */
+    public void transform(Matrix4d matrix) {
+        Stream<Point> points = this.size() >= PARALLEL_SIZE ? this.stream().parallel() : this.stream();
+        points.forEach(point -> point.getCoords().set(matrix.transform(point.getCoords())));
+        this.transformed(matrix);
+    }
+
+    /**
+     * Updates the cached values after every point of the cloud has been
+     * transformed: a translation is applied to the cached values, which are
+     * cleared otherwise.
+     *
+     * @param matrix transformation applied.
+     */
+    protected void transformed(Matrix4d matrix) {
+        if (matrix.isTranslation()) {
+            this.translated(matrix.get(0, 3), matrix.get(1, 3), matrix.get(2, 3));
+        } else {
+            this.invalidate();
+        }
     }
 
     @Override
@@ -595,10 +675,31 @@ public abstract class APointCloud implements Serializable, Comparable<APointClou
 
     public abstract Stream<Point> stream();
 
+    private PointCloudStatistics statistics() {
+        if (this.statistics == null) {
+            this.statistics = this.computeStatistics();
+        }
+        return this.statistics;
+    }
+
     public void save(String string) throws IOException {
         saveTxtFile(this, string);
     }
 
+    /**
+     * Saves the point cloud in a PLY file with its colors and normals.
+     *
+     * @param filepath path of the file.
+     * @param binary true to write a binary little endian file, false to write
+     * an ASCII file.
+     * @throws IOException if the file cannot be written.
+     * @see PLYPointCloud
+     */
+    public void savePly(String filepath, boolean binary) throws IOException {
+        PLYPointCloud.write(new File(filepath).toPath(), this,
+                binary ? PLY.Format.BINARY_LITTLE_ENDIAN : PLY.Format.ASCII);
+    }
+
     /**
      * Save point cloud to TXT file
      *
@@ -0,0 +1,626 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.components;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Matrix4d;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Point cloud storing its points in primitive columns instead of
+ * {@code Point} objects.
+ * <p>
+ * Coordinates are kept in three {@code double} columns, colours in a
+ * {@code byte} column (3 values per point) and normals in a {@code float}
+ * column (3 values per point). Columns are split in chunks of
+ * {@code CHUNK_SIZE} points so that the cloud grows by allocating a new chunk
+ * instead of copying every element. Colour and normal chunks are only
+ * allocated when a coloured or normalized point is added.
+ * </p>
+ * <p>
+ * Subclasses may store the coordinates differently by overriding the
+ * coordinate accessors and the protected methods handling coordinate chunks.
+ * </p>
+ * <p>
+ * {@code Point} instances are only created when they are asked for (iterator,
+ * stream, {@code get}). They are views of the stored point: their colour,
+ * their normal, their lock and their coordinates, including the coordinates
+ * modified in place on {@code getCoords()}, are written through to the
+ * columns. Colours and normals modified in place on {@code getColor()} or
+ * {@code getNormal()} are not stored back, they have to be set again. Use
+ * {@code transform}, {@code move} or {@code uncenter} to modify every
+ * coordinate of the cloud without creating views.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PointCloudArray extends APointCloud {
+
+    public static final int CHUNK_BITS = 16;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    protected static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final byte COLORED = 1;
+    private static final byte NORMALIZED = 2;
+    private static final byte LOCKED = 4;
+
+    protected double[][] xs;
+    protected double[][] ys;
+    protected double[][] zs;
+    protected byte[][] rgb;
+    protected float[][] normals;
+    protected byte[][] flags;
+    protected int size;
+
+    /**
+     * Creates new empty instance of {@code PointCloudArray}
+     */
+    public PointCloudArray() {
+        super();
+        this.clear();
+    }
+
+    /**
+     * Creates new instance of {@code PointCloudArray} containing every point
+     * of the given cloud.
+     *
+     * @param cloud points to be copied in the columns.
+     */
+    public PointCloudArray(APointCloud cloud) {
+        this();
+        cloud.stream().forEach(this::add);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buff = new StringBuilder();
+        this.stream().forEach((point) -> {
+            buff.append(point.toString()).append("\n");
+        });
+        return buff.toString();
+    }
+
+    @Override
+    public void add(Point p) {
+        if (p != null) {
+            Coord3D c = p.getCoords();
+            int i = this.insert(c.getX(), c.getY(), c.getZ());
+            this.storeColor(i, p.getColor());
+            this.storeNormal(i, p.getNormal());
+            this.added(p);
+        }
+    }
+
+    /**
+     * Adds a point without colour and normal.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     * @return the index of the point added.
+     */
+    public int add(double x, double y, double z) {
+        int i = this.insert(x, y, z);
+        this.added(x, y, z);
+        return i;
+    }
+
+    private int insert(double x, double y, double z) {
+        int i = this.size;
+        int c = i >>> CHUNK_BITS;
+        if (c == this.flags.length) {
+            this.grow();
+        }
+        if (this.flags[c] == null) {
+            this.allocateCoords(c);
+            this.flags[c] = new byte[CHUNK_SIZE];
+        }
+        int o = i & CHUNK_MASK;
+        this.storeCoords(c, o, x, y, z);
+        this.flags[c][o] = 0;
+        this.size++;
+        return i;
+    }
+
+    @Override
+    public void add(Collection<Point> points) {
+        points.forEach(p -> this.add(p));
+    }
+
+    /**
+     * Grows the chunk directory, only the chunk references are copied.
+     */
+    private void grow() {
+        int length = this.flags.length * 2;
+        this.growCoords(length);
+        this.flags = java.util.Arrays.copyOf(this.flags, length);
+        if (this.rgb != null) {
+            this.rgb = java.util.Arrays.copyOf(this.rgb, length);
+        }
+        if (this.normals != null) {
+            this.normals = java.util.Arrays.copyOf(this.normals, length);
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes the first point having the same coordinates than the given
+     * point. The order of the remaining points is kept, so the removal costs a
+     * shift of every following point.
+     *
+     * @param noisePoint point to be removed
+     */
+    @Override
+    public void remove(Point noisePoint) {
+        Coord3D c = noisePoint.getCoords();
+        int found = -1;
+        for (int i = 0; i < this.size && found < 0; i++) {
+            if (Math.abs(this.getX(i) - c.getX()) <= Coord3D.ACCURACY
+                    && Math.abs(this.getY(i) - c.getY()) <= Coord3D.ACCURACY
+                    && Math.abs(this.getZ(i) - c.getZ()) <= Coord3D.ACCURACY) {
+                found = i;
+            }
+        }
+        if (found >= 0) {
+            for (int i = found + 1; i < this.size; i++) {
+                this.copy(i, i - 1);
+            }
+            this.size--;
+            this.invalidate();
+        }
+    }
+
+    private void copy(int from, int to) {
+        int cf = from >>> CHUNK_BITS, of = from & CHUNK_MASK;
+        int ct = to >>> CHUNK_BITS, ot = to & CHUNK_MASK;
+        this.copyCoords(cf, of, ct, ot);
+        this.flags[ct][ot] = this.flags[cf][of];
+        if (this.rgb != null && this.rgb[cf] != null) {
+            this.colorChunk(ct);
+            System.arraycopy(this.rgb[cf], of * 3, this.rgb[ct], ot * 3, 3);
+        }
+        if (this.normals != null && this.normals[cf] != null) {
+            this.normalChunk(ct);
+            System.arraycopy(this.normals[cf], of * 3, this.normals[ct], ot * 3, 3);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public final void clear() {
+        this.clearCoords();
+        this.flags = new byte[1][];
+        this.rgb = null;
+        this.normals = null;
+        this.size = 0;
+        this.invalidate();
+    }
+
+    /**
+     * Removes every coordinate chunk, called when the cloud is cleared.
+     */
+    protected void clearCoords() {
+        this.xs = new double[1][];
+        this.ys = new double[1][];
+        this.zs = new double[1][];
+    }
+
+    /**
+     * Grows the directories of the coordinate chunks.
+     *
+     * @param length new number of chunks.
+     */
+    protected void growCoords(int length) {
+        this.xs = java.util.Arrays.copyOf(this.xs, length);
+        this.ys = java.util.Arrays.copyOf(this.ys, length);
+        this.zs = java.util.Arrays.copyOf(this.zs, length);
+    }
+
+    /**
+     * Allocates the coordinate chunks of the cth chunk.
+     *
+     * @param c index of the chunk.
+     */
+    protected void allocateCoords(int c) {
+        this.xs[c] = new double[CHUNK_SIZE];
+        this.ys[c] = new double[CHUNK_SIZE];
+        this.zs[c] = new double[CHUNK_SIZE];
+    }
+
+    /**
+     * Stores coordinates in the coordinate chunks.
+     *
+     * @param c index of the chunk.
+     * @param o index of the point in the chunk.
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     */
+    protected void storeCoords(int c, int o, double x, double y, double z) {
+        this.xs[c][o] = x;
+        this.ys[c][o] = y;
+        this.zs[c][o] = z;
+    }
+
+    /**
+     * Copies the coordinates of a point to another one.
+     *
+     * @param cf chunk of the point copied.
+     * @param of index of the point copied in its chunk.
+     * @param ct chunk of the point replaced.
+     * @param ot index of the point replaced in its chunk.
+     */
+    protected void copyCoords(int cf, int of, int ct, int ot) {
+        this.xs[ct][ot] = this.xs[cf][of];
+        this.ys[ct][ot] = this.ys[cf][of];
+        this.zs[ct][ot] = this.zs[cf][of];
+    }
+
+    public double getX(int i) {
+        return this.xs[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public double getY(int i) {
+        return this.ys[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public double getZ(int i) {
+        return this.zs[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    /**
+     * Sets the coordinates of the ith point.
+     *
+     * @param i index of the point.
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     */
+    public void setCoords(int i, double x, double y, double z) {
+        this.check(i);
+        this.storeCoords(i >>> CHUNK_BITS, i & CHUNK_MASK, x, y, z);
+        this.invalidate();
+    }
+
+    /**
+     * Tests if the ith point is coloured.
+     *
+     * @param i index of the point.
+     * @return true if a colour is stored for the point.
+     */
+    public boolean isColored(int i) {
+        return (this.flags[i >>> CHUNK_BITS][i & CHUNK_MASK] & COLORED) != 0;
+    }
+
+    /**
+     * Tests if the ith point has a normal.
+     *
+     * @param i index of the point.
+     * @return true if a normal is stored for the point.
+     */
+    public boolean hasNormal(int i) {
+        return (this.flags[i >>> CHUNK_BITS][i & CHUNK_MASK] & NORMALIZED) != 0;
+    }
+
+    /**
+     * Tests if the ith point is locked.
+     *
+     * @param i index of the point.
+     * @return true if the point is locked.
+     */
+    public boolean isLock(int i) {
+        return (this.flags[i >>> CHUNK_BITS][i & CHUNK_MASK] & LOCKED) != 0;
+    }
+
+    /**
+     * Sets the lock of the ith point.
+     *
+     * @param i index of the point.
+     * @param lock true to lock the point.
+     */
+    public void setLock(int i, boolean lock) {
+        this.check(i);
+        if (lock) {
+            this.flags[i >>> CHUNK_BITS][i & CHUNK_MASK] |= LOCKED;
+        } else {
+            this.flags[i >>> CHUNK_BITS][i & CHUNK_MASK] &= ~LOCKED;
+        }
+    }
+
+    /**
+     * Gets the colour of the ith point.
+     *
+     * @param i index of the point.
+     * @return a new colour instance or null if the point is not coloured.
+     */
+    public Color getColor(int i) {
+        if (!this.isColored(i)) {
+            return null;
+        }
+        byte[] chunk = this.rgb[i >>> CHUNK_BITS];
+        int o = (i & CHUNK_MASK) * 3;
+        return new Color(chunk[o] & 0xFF, chunk[o + 1] & 0xFF, chunk[o + 2] & 0xFF);
+    }
+
+    /**
+     * Sets the colour of the ith point.
+     *
+     * @param i index of the point.
+     * @param color new colour or null to remove the colour of the point.
+     */
+    public void setColor(int i, Color color) {
+        this.check(i);
+        this.storeColor(i, color);
+        this.invalidateStatistics();
+    }
+
+    private void storeColor(int i, Color color) {
+        int c = i >>> CHUNK_BITS, o = i & CHUNK_MASK;
+        if (color == null) {
+            this.flags[c][o] &= ~COLORED;
+        } else {
+            byte[] chunk = this.colorChunk(c);
+            chunk[o * 3] = (byte) color.getRed();
+            chunk[o * 3 + 1] = (byte) color.getGreen();
+            chunk[o * 3 + 2] = (byte) color.getBlue();
+            this.flags[c][o] |= COLORED;
+        }
+    }
+
+    /**
+     * Gets the normal of the ith point.
+     *
+     * @param i index of the point.
+     * @return a new normal instance or null if the point has no normal.
+     */
+    public Normal getNormal(int i) {
+        if (!this.hasNormal(i)) {
+            return null;
+        }
+        float[] chunk = this.normals[i >>> CHUNK_BITS];
+        int o = (i & CHUNK_MASK) * 3;
+        return new Normal(chunk[o], chunk[o + 1], chunk[o + 2]);
+    }
+
+    /**
+     * Sets the normal of the ith point.
+     *
+     * @param i index of the point.
+     * @param normal new normal or null to remove the normal of the point.
+     */
+    public void setNormal(int i, Normal normal) {
+        this.check(i);
+        this.storeNormal(i, normal);
+        this.invalidateStatistics();
+    }
+
+    private void storeNormal(int i, Normal normal) {
+        int c = i >>> CHUNK_BITS, o = i & CHUNK_MASK;
+        if (normal == null) {
+            this.flags[c][o] &= ~NORMALIZED;
+        } else {
+            float[] chunk = this.normalChunk(c);
+            chunk[o * 3] = (float) normal.getX();
+            chunk[o * 3 + 1] = (float) normal.getY();
+            chunk[o * 3 + 2] = (float) normal.getZ();
+            this.flags[c][o] |= NORMALIZED;
+        }
+    }
+
+    private byte[] colorChunk(int c) {
+        if (this.rgb == null) {
+            this.rgb = new byte[this.flags.length][];
+        }
+        if (this.rgb[c] == null) {
+            this.rgb[c] = new byte[CHUNK_SIZE * 3];
+        }
+        return this.rgb[c];
+    }
+
+    private float[] normalChunk(int c) {
+        if (this.normals == null) {
+            this.normals = new float[this.flags.length][];
+        }
+        if (this.normals[c] == null) {
+            this.normals[c] = new float[CHUNK_SIZE * 3];
+        }
+        return this.normals[c];
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException(i + "/" + this.size);
+        }
+    }
+
+    /**
+     * Gets a view of the ith point.
+     *
+     * @param i index of the point.
+     * @return a new {@code Point} linked to the ith point of the cloud.
+     */
+    public Point get(int i) {
+        this.check(i);
+        return new PointView(i);
+    }
+
+    /**
+     * Computes the statistics of the cloud from the columns, without creating
+     * {@code Point} instances.
+     *
+     * @return the statistics of the point cloud.
+     */
+    @Override
+    protected PointCloudStatistics computeStatistics() {
+        IntStream indices = IntStream.range(0, this.size);
+        if (this.size >= PARALLEL_SIZE) {
+            indices = indices.parallel();
+        }
+        return indices.collect(PointCloudStatistics::new, this::accept, PointCloudStatistics::combine);
+    }
+
+    private void accept(PointCloudStatistics statistics, int i) {
+        statistics.accept(this.getX(i), this.getY(i), this.getZ(i));
+        int c = i >>> CHUNK_BITS, o = (i & CHUNK_MASK) * 3;
+        if (this.isColored(i)) {
+            byte[] chunk = this.rgb[c];
+            statistics.acceptColor(chunk[o] & 0xFF, chunk[o + 1] & 0xFF, chunk[o + 2] & 0xFF);
+        }
+        if (this.hasNormal(i)) {
+            float[] chunk = this.normals[c];
+            statistics.acceptNormal(chunk[o], chunk[o + 1], chunk[o + 2]);
+        }
+    }
+
+    @Override
+    public void setColor(Color color) {
+        for (int i = 0; i < this.size; i++) {
+            this.setColor(i, color);
+        }
+    }
+
+    /**
+     * Transforms the columns of coordinates, the chunks being transformed in
+     * parallel for large clouds.
+     *
+     * @param matrix affine transformation to be applied.
+     */
+    @Override
+    public void transform(Matrix4d matrix) {
+        IntStream chunks = IntStream.range(0, (this.size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        if (this.size >= PARALLEL_SIZE) {
+            chunks = chunks.parallel();
+        }
+        chunks.forEach(c -> matrix.transform(this.xs[c], this.ys[c], this.zs[c], Math.min(CHUNK_SIZE, this.size - c * CHUNK_SIZE)));
+        this.transformed(matrix);
+    }
+
+    @Override
+    public Iterator<Point> iterator() {
+        return new Iterator<Point>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Point next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return new PointView(next++);
+            }
+        };
+    }
+
+    @Override
+    public Stream<Point> stream() {
+        return IntStream.range(0, this.size).mapToObj(PointView::new);
+    }
+
+    /**
+     * {@code Point} created on demand from the columns of the cloud.
+     */
+    private class PointView extends Point {
+
+        private final int index;
+
+        PointView(int index) {
+            super(new CoordView(index), PointCloudArray.this.getColor(index), PointCloudArray.this.getNormal(index));
+            this.index = index;
+        }
+
+        /**
+         * Copies the coordinates in the coordinates of the view, which are
+         * stored in the columns.
+         *
+         * @param coords new coordinates of the point.
+         */
+        @Override
+        public void setCoords(Coord3D coords) {
+            this.getCoords().set(coords);
+        }
+
+        @Override
+        protected Class<? extends Point> getValueClass() {
+            return Point.class;
+        }
+
+        @Override
+        public boolean isLock() {
+            return PointCloudArray.this.isLock(index);
+        }
+
+        @Override
+        public void setLock(boolean lock) {
+            PointCloudArray.this.setLock(index, lock);
+        }
+
+        @Override
+        public void setColor(Color color) {
+            super.setColor(color);
+            PointCloudArray.this.setColor(index, color);
+        }
+
+        @Override
+        public void setNormal(Normal normal) {
+            super.setNormal(normal);
+            PointCloudArray.this.setNormal(index, normal);
+        }
+    }
+
+    /**
+     * {@code Coord3D} of a {@code PointView}, whose modifications are written
+     * through to the columns.
+     */
+    private class CoordView extends Coord3D {
+
+        private final int index;
+
+        CoordView(int index) {
+            super(PointCloudArray.this.getX(index), PointCloudArray.this.getY(index), PointCloudArray.this.getZ(index));
+            this.index = index;
+        }
+
+        @Override
+        protected Class<? extends Coord3D> getValueClass() {
+            return Coord3D.class;
+        }
+
+        @Override
+        protected void changed() {
+            super.changed();
+            PointCloudArray.this.setCoords(this.index, this.x, this.y, this.z);
+        }
+    }
+}
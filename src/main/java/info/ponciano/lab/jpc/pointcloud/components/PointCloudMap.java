@@ -16,30 +16,73 @@
  */
 package info.ponciano.lab.jpc.pointcloud.components;
 
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Matrix4d;
 import info.ponciano.lab.jpc.math.Point;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.stream.Stream;
 
 /**
  * This class is used to manage 3D point cloud.
+ * <p>
+ * Points are deduplicated on the {@code Coord3D.ACCURACY} grid: a point is
+ * not added if a point having the same rounded coordinates is already in the
+ * cloud. The rounded coordinates are packed in a 64 bits key (21 bits by
+ * axis) stored in an open-addressing table of primitives. When a coordinate
+ * does not fit in 21 bits, the table switches to 128 bits keys (42 bits by
+ * axis). Points are kept in insertion order.
+ * </p>
  *
  * @author Dr. Jean-Jacques Ponciano.
  */
 public class PointCloudMap extends APointCloud {
 
-    protected LinkedHashMap<String, Point> points;
+    private static final int NARROW_BITS = 21;
+    private static final int WIDE_BITS = 42;
+    private static final long NARROW_MASK = (1L << NARROW_BITS) - 1;
+    private static final long WIDE_MASK = (1L << WIDE_BITS) - 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Points in insertion order, removed points are set to null until the
+     * next compaction.
+     */
+    protected Point[] points;
+    /**
+     * Number of cells used in {@code points}, removed points included.
+     */
+    private int end;
+    /**
+     * Number of points in the cloud.
+     */
+    private int size;
+    /**
+     * Keys of the table, low part of the key for 128 bits keys.
+     */
+    private long[] keys;
+    /**
+     * High part of the keys of the table, null for 64 bits keys.
+     */
+    private long[] highKeys;
+    /**
+     * Index + 1 in {@code points} of the point of each cell of the table, 0
+     * for empty cells, null if the table has to be rebuilt.
+     */
+    private int[] slots;
 
     public PointCloudMap() {
         super();
-        this.points = new LinkedHashMap<>();
+        this.clear();
     }
 
     @Override
     public String toString() {
         StringBuilder buff = new StringBuilder();
-        points.values().forEach((point) -> {
+        this.stream().forEach((point) -> {
             buff.append(point.toString()).append("\n");
         });
         return buff.toString();
@@ -48,18 +91,34 @@ public class PointCloudMap extends APointCloud {
     @Override
     public void add(Point p) {
         if (p != null) {
-            String hashCode = p.hash();
-            if (!this.points.containsKey(hashCode)) {
-                this.points.put(hashCode, p);
-            } 
-//            else {
-//                Point get = this.points.get(hashCode);
-//                System.out.println("**************************");
-//                System.out.println(get.toString());
-//                System.out.println(p.toString());
-//                System.out.println(get.hash() + " = " + p.hash());
-//            }
-
+            this.index();
+            Coord3D c = p.getCoords();
+            long rx = Math.round(c.getX() / Coord3D.ACCURACY);
+            long ry = Math.round(c.getY() / Coord3D.ACCURACY);
+            long rz = Math.round(c.getZ() / Coord3D.ACCURACY);
+            if (this.highKeys == null && !(fits(rx, NARROW_BITS) && fits(ry, NARROW_BITS) && fits(rz, NARROW_BITS))) {
+                this.widen();
+            }
+            long low = this.low(rx, ry, rz);
+            long high = this.high(rx, ry, rz);
+            int cell = this.find(low, high);
+            if (this.slots[cell] == 0) {
+                if (this.end == this.points.length) {
+                    this.points = Arrays.copyOf(this.points, this.points.length * 2);
+                }
+                this.points[this.end] = p;
+                this.end++;
+                this.size++;
+                this.keys[cell] = low;
+                if (this.highKeys != null) {
+                    this.highKeys[cell] = high;
+                }
+                this.slots[cell] = this.end;
+                if (this.size * 2 > this.slots.length) {
+                    this.rehash(this.slots.length * 2);
+                }
+                this.added(p);
+            }
         }
     }
 
@@ -68,43 +127,326 @@ public class PointCloudMap extends APointCloud {
         points.forEach(p -> this.add(p));
     }
 
+    /**
+     * Adds a point without testing if the cloud already contains a point
+     * having the same coordinates at the {@code Coord3D.ACCURACY} grid. The
+     * table is rebuilt at the next access by coordinates, so that filling a
+     * cloud with points known to be distinct costs a copy of references.
+     *
+     * @param p point to be added, distinct from every point of the cloud.
+     */
+    public void addDistinct(Point p) {
+        if (p != null) {
+            if (this.end == this.points.length) {
+                this.points = Arrays.copyOf(this.points, this.points.length * 2);
+            }
+            this.points[this.end] = p;
+            this.end++;
+            this.size++;
+            this.slots = null;
+            this.added(p);
+        }
+    }
+
     @Override
     public int size() {
-        return this.points.size();
+        return this.size;
     }
 
+    /**
+     * Removes the point of the cloud having the same coordinates than the
+     * given point at the {@code Coord3D.ACCURACY} grid.
+     *
+     * @param noisePoint point to be removed
+     */
     @Override
     public void remove(Point noisePoint) {
-        Point remove = this.points.remove(noisePoint.hashCode());
+        this.index();
+        int cell = this.find(noisePoint);
+        if (cell >= 0 && this.slots[cell] != 0) {
+            this.points[this.slots[cell] - 1] = null;
+            this.size--;
+            this.delete(cell);
+            if (this.size * 2 < this.end && this.end > INITIAL_CAPACITY) {
+                this.compact();
+            }
+            this.invalidate();
+        }
     }
 
     @Override
     public boolean isEmpty() {
-        return this.points.isEmpty();
+        return this.size == 0;
     }
 
     @Override
-    public void clear() {
-        this.points.clear();
-    }
-
-    @Override
-    public Point getMean() {
-        return Point.getMean(this.points.values());
+    public final void clear() {
+        this.points = new Point[INITIAL_CAPACITY];
+        this.keys = new long[INITIAL_CAPACITY * 2];
+        this.highKeys = null;
+        this.slots = new int[INITIAL_CAPACITY * 2];
+        this.end = 0;
+        this.size = 0;
+        this.invalidate();
     }
 
     @Override
     public Iterator<Point> iterator() {
-        return this.points.values().iterator();
+        return new Iterator<Point>() {
+            private int next = this.skip(0);
+
+            private int skip(int i) {
+                while (i < end && points[i] == null) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Point next() {
+                if (next >= end) {
+                    throw new NoSuchElementException();
+                }
+                Point p = points[next];
+                next = this.skip(next + 1);
+                return p;
+            }
+        };
     }
 
     @Override
     public Stream<Point> stream() {
-        return this.points.values().stream();
+        return Arrays.stream(this.points, 0, this.end).filter(Objects::nonNull);
     }
 
+    /**
+     * Gets the point of the cloud having the given key.
+     *
+     * @param i key of the point given by {@code Point.hash()}
+     * @return the point having the key or null if no point has this key.
+     * @deprecated the points are no longer indexed by their string key, this
+     * method scans the whole cloud, use {@code get(Point)} instead.
+     */
+    @Deprecated
     public Point get(String i) {
-        return this.points.get(i);
+        return this.stream().filter(p -> p.hash().equals(i)).findFirst().orElse(null);
+    }
+
+    /**
+     * Gets the point of the cloud having the same coordinates than the given
+     * point at the {@code Coord3D.ACCURACY} grid.
+     *
+     * @param p point searched.
+     * @return the point of the cloud or null if the cloud does not contain
+     * the point.
+     */
+    public Point get(Point p) {
+        int cell = this.find(p);
+        if (cell < 0 || this.slots[cell] == 0) {
+            return null;
+        }
+        return this.points[this.slots[cell] - 1];
+    }
+
+    /**
+     * Tests if the cloud contains a point having the same coordinates than
+     * the given point at the {@code Coord3D.ACCURACY} grid.
+     *
+     * @param p point searched.
+     * @return true if the cloud contains the point.
+     */
+    public boolean contains(Point p) {
+        return this.get(p) != null;
+    }
+
+    /**
+     * Finds the cell of the table corresponding to the coordinates of a
+     * point.
+     *
+     * @param p point searched.
+     * @return the cell of the point or of the empty cell where it should be,
+     * -1 if the key of the point cannot be in the table.
+     */
+    private int find(Point p) {
+        this.index();
+        Coord3D c = p.getCoords();
+        long rx = Math.round(c.getX() / Coord3D.ACCURACY);
+        long ry = Math.round(c.getY() / Coord3D.ACCURACY);
+        long rz = Math.round(c.getZ() / Coord3D.ACCURACY);
+        if (this.highKeys == null && !(fits(rx, NARROW_BITS) && fits(ry, NARROW_BITS) && fits(rz, NARROW_BITS))) {
+            return -1;
+        }
+        return this.find(this.low(rx, ry, rz), this.high(rx, ry, rz));
+    }
+
+    private int find(long low, long high) {
+        int mask = this.slots.length - 1;
+        int cell = hash(low, high) & mask;
+        while (this.slots[cell] != 0
+                && (this.keys[cell] != low || (this.highKeys != null && this.highKeys[cell] != high))) {
+            cell = (cell + 1) & mask;
+        }
+        return cell;
+    }
+
+    /**
+     * The keys of the moved points are no longer valid, the table is rebuilt
+     * at the next access by coordinates.
+     */
+    @Override
+    protected void transformed(Matrix4d matrix) {
+        super.transformed(matrix);
+        this.slots = null;
+    }
+
+    /**
+     * Rebuilds the table if points were added by {@code addDistinct} or
+     * moved.
+     */
+    private void index() {
+        if (this.slots == null) {
+            int capacity = INITIAL_CAPACITY * 2;
+            while (capacity < this.size * 2) {
+                capacity *= 2;
+            }
+            for (int i = 0; i < this.end && this.highKeys == null; i++) {
+                Coord3D c = this.points[i] == null ? null : this.points[i].getCoords();
+                if (c != null && !(fits(Math.round(c.getX() / Coord3D.ACCURACY), NARROW_BITS)
+                        && fits(Math.round(c.getY() / Coord3D.ACCURACY), NARROW_BITS)
+                        && fits(Math.round(c.getZ() / Coord3D.ACCURACY), NARROW_BITS))) {
+                    this.highKeys = new long[capacity];
+                }
+            }
+            this.rehash(capacity);
+        }
+    }
+
+    /**
+     * Empties a cell with the backward shift deletion of linear probing.
+     *
+     * @param cell cell to be emptied.
+     */
+    private void delete(int cell) {
+        int mask = this.slots.length - 1;
+        int hole = cell;
+        int next = (hole + 1) & mask;
+        while (this.slots[next] != 0) {
+            long high = this.highKeys == null ? 0 : this.highKeys[next];
+            int home = hash(this.keys[next], high) & mask;
+            // moves the entry in the hole if its home is not between the hole and it
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                this.keys[hole] = this.keys[next];
+                if (this.highKeys != null) {
+                    this.highKeys[hole] = high;
+                }
+                this.slots[hole] = this.slots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.slots[hole] = 0;
+    }
+
+    /**
+     * Removes the null cells of {@code points} and rebuilds the table.
+     */
+    private void compact() {
+        Point[] live = new Point[Math.max(INITIAL_CAPACITY, this.size * 2)];
+        int j = 0;
+        for (int i = 0; i < this.end; i++) {
+            if (this.points[i] != null) {
+                live[j++] = this.points[i];
+            }
+        }
+        this.points = live;
+        this.end = j;
+        this.rehash(this.slots.length);
+    }
+
+    /**
+     * Switches the table to 128 bits keys.
+     */
+    private void widen() {
+        this.highKeys = new long[this.slots.length];
+        this.rehash(this.slots.length);
+    }
+
+    /**
+     * Rebuilds the table from {@code points}.
+     *
+     * @param capacity new capacity of the table, power of two.
+     */
+    private void rehash(int capacity) {
+        this.keys = new long[capacity];
+        this.slots = new int[capacity];
+        if (this.highKeys != null) {
+            this.highKeys = new long[capacity];
+        }
+        for (int i = 0; i < this.end; i++) {
+            Point p = this.points[i];
+            if (p != null) {
+                Coord3D c = p.getCoords();
+                long rx = Math.round(c.getX() / Coord3D.ACCURACY);
+                long ry = Math.round(c.getY() / Coord3D.ACCURACY);
+                long rz = Math.round(c.getZ() / Coord3D.ACCURACY);
+                long low = this.low(rx, ry, rz);
+                long high = this.high(rx, ry, rz);
+                int cell = this.find(low, high);
+                this.keys[cell] = low;
+                if (this.highKeys != null) {
+                    this.highKeys[cell] = high;
+                }
+                this.slots[cell] = i + 1;
+            }
+        }
+    }
+
+    private long low(long rx, long ry, long rz) {
+        if (this.highKeys == null) {
+            return (rx & NARROW_MASK) << (2 * NARROW_BITS) | (ry & NARROW_MASK) << NARROW_BITS | (rz & NARROW_MASK);
+        }
+        check(rx);
+        check(ry);
+        check(rz);
+        // 42 bits of z and the 22 lowest bits of y
+        return (ry & WIDE_MASK) << WIDE_BITS | (rz & WIDE_MASK);
+    }
+
+    private long high(long rx, long ry, long rz) {
+        if (this.highKeys == null) {
+            return 0;
+        }
+        // 42 bits of x and the 20 highest bits of y
+        return (rx & WIDE_MASK) << 20 | (ry & WIDE_MASK) >>> 22;
+    }
+
+    private static void check(long r) {
+        if (!fits(r, WIDE_BITS)) {
+            throw new IllegalArgumentException("Coordinate out of the range of the point cloud: " + r * Coord3D.ACCURACY);
+        }
+    }
+
+    /**
+     * Tests if a value can be stored in a signed integer of the given number
+     * of bits.
+     */
+    private static boolean fits(long r, int bits) {
+        return r >= -(1L << (bits - 1)) && r < (1L << (bits - 1));
+    }
+
+    private static int hash(long low, long high) {
+        long h = low ^ (high * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
     }
 
 }
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.components;
+
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Matrix4d;
+import java.util.stream.IntStream;
+
+/**
+ * {@code PointCloudArray} storing its coordinates as {@code int} values,
+ * such as in survey formats: a coordinate is stored as the number of
+ * {@code scale} steps from the offset of the cloud, and is read back as
+ * {@code offset + value * scale}.
+ * <p>
+ * With the default scale of {@code Coord3D.ACCURACY}, a point moves by at
+ * most half the accuracy, which is below the precision used to compare
+ * points, while the coordinate columns use half the memory of the
+ * {@code double} columns. The coordinates must stay within
+ * {@code Integer.MAX_VALUE} steps of the offset (about 214 km with the
+ * default scale), an {@code IllegalArgumentException} being thrown
+ * otherwise.
+ * </p>
+ * <p>
+ * Translations only move the offset, the quantized coordinates being kept.
+ * The quantized coordinates can be read with {@code getQuantizedX} to work
+ * in integer space, where {@code squaredDistance} computes exact distances.
+ * </p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PointCloudQuantized extends PointCloudArray {
+
+    protected int[][] qxs;
+    protected int[][] qys;
+    protected int[][] qzs;
+    private final double scale;
+    private double offsetX;
+    private double offsetY;
+    private double offsetZ;
+    /**
+     * True when the offset has been fixed, by the constructor or by the
+     * first point added.
+     */
+    private boolean anchored;
+
+    /**
+     * Creates new empty instance of {@code PointCloudQuantized} whose scale
+     * is {@code Coord3D.ACCURACY} and whose offset is the first point added.
+     */
+    public PointCloudQuantized() {
+        super();
+        this.scale = Coord3D.ACCURACY;
+        this.anchored = false;
+    }
+
+    /**
+     * Creates new empty instance of {@code PointCloudQuantized}.
+     *
+     * @param scale size of a quantization step.
+     * @param offset coordinates stored as zero.
+     * @throws IllegalArgumentException if the scale is not strictly positive.
+     */
+    public PointCloudQuantized(double scale, Coord3D offset) {
+        super();
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("The scale must be strictly positive: " + scale);
+        }
+        this.scale = scale;
+        this.offsetX = offset.getX();
+        this.offsetY = offset.getY();
+        this.offsetZ = offset.getZ();
+        this.anchored = true;
+    }
+
+    /**
+     * Creates new instance of {@code PointCloudQuantized} containing every
+     * point of the given cloud, with a scale of {@code Coord3D.ACCURACY} and
+     * an offset at the centre of the bounds of the cloud.
+     *
+     * @param cloud points to be copied in the columns.
+     * @throws IllegalArgumentException if the cloud is too large to be
+     * quantized with {@code Coord3D.ACCURACY}.
+     */
+    public PointCloudQuantized(APointCloud cloud) {
+        this(Coord3D.ACCURACY, center(cloud));
+        cloud.stream().forEach(this::add);
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets the coordinates stored as zero.
+     *
+     * @return a new instance of the offset.
+     */
+    public Coord3D getOffset() {
+        return new Coord3D(this.offsetX, this.offsetY, this.offsetZ);
+    }
+
+    @Override
+    public double getX(int i) {
+        return this.offsetX + this.getQuantizedX(i) * this.scale;
+    }
+
+    @Override
+    public double getY(int i) {
+        return this.offsetY + this.getQuantizedY(i) * this.scale;
+    }
+
+    @Override
+    public double getZ(int i) {
+        return this.offsetZ + this.getQuantizedZ(i) * this.scale;
+    }
+
+    /**
+     * Gets the number of steps between the x coordinate of the ith point and
+     * the offset.
+     *
+     * @param i index of the point.
+     * @return the quantized x coordinate.
+     */
+    public int getQuantizedX(int i) {
+        return this.qxs[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the number of steps between the y coordinate of the ith point and
+     * the offset.
+     *
+     * @param i index of the point.
+     * @return the quantized y coordinate.
+     */
+    public int getQuantizedY(int i) {
+        return this.qys[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the number of steps between the z coordinate of the ith point and
+     * the offset.
+     *
+     * @param i index of the point.
+     * @return the quantized z coordinate.
+     */
+    public int getQuantizedZ(int i) {
+        return this.qzs[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    /**
+     * Computes in integer space the squared distance between two points, in
+     * squared steps. The result is exact while it is below
+     * {@code Long.MAX_VALUE}, which holds for instance when the points are
+     * closer than about 1.75e9 steps along each axis ({@code 2^31.5 / sqrt(3)}).
+     * Larger distances saturate to {@code Long.MAX_VALUE}.
+     *
+     * @param i index of the first point.
+     * @param j index of the second point.
+     * @return the squared distance in squared steps, to be multiplied by
+     * {@code scale * scale} to get squared units.
+     */
+    public long squaredDistance(int i, int j) {
+        long dx = (long) this.getQuantizedX(i) - this.getQuantizedX(j);
+        long dy = (long) this.getQuantizedY(i) - this.getQuantizedY(j);
+        long dz = (long) this.getQuantizedZ(i) - this.getQuantizedZ(j);
+        if ((double) dx * dx + (double) dy * dy + (double) dz * dz >= 0x1p63) {
+            return Long.MAX_VALUE;
+        }
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Transforms the points of the cloud. A translation only moves the
+     * offset; other transformations move the offset and quantize again the
+     * transformed coordinates, chunk by chunk in parallel for large clouds,
+     * so that each of them moves the points by up to half a step along each
+     * axis.
+     *
+     * @param matrix affine transformation to be applied.
+     * @throws IllegalArgumentException if a transformed point is out of the
+     * range of the quantized coordinates, the cloud being left unchanged.
+     */
+    @Override
+    public void transform(Matrix4d matrix) {
+        if (matrix.isTranslation()) {
+            this.offsetX += matrix.get(0, 3);
+            this.offsetY += matrix.get(1, 3);
+            this.offsetZ += matrix.get(2, 3);
+        } else if (this.anchored) {
+            Coord3D offset = matrix.transform(this.getOffset());
+            int chunks = (this.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            int[][] txs = new int[this.qxs.length][];
+            int[][] tys = new int[this.qys.length][];
+            int[][] tzs = new int[this.qzs.length][];
+            IntStream indices = IntStream.range(0, chunks);
+            if (this.size >= PARALLEL_SIZE) {
+                indices = indices.parallel();
+            }
+            indices.forEach(c -> {
+                int n = Math.min(CHUNK_SIZE, this.size - c * CHUNK_SIZE);
+                double[] x = new double[n];
+                double[] y = new double[n];
+                double[] z = new double[n];
+                for (int o = 0; o < n; o++) {
+                    x[o] = this.offsetX + this.qxs[c][o] * this.scale;
+                    y[o] = this.offsetY + this.qys[c][o] * this.scale;
+                    z[o] = this.offsetZ + this.qzs[c][o] * this.scale;
+                }
+                matrix.transform(x, y, z, n);
+                txs[c] = new int[CHUNK_SIZE];
+                tys[c] = new int[CHUNK_SIZE];
+                tzs[c] = new int[CHUNK_SIZE];
+                for (int o = 0; o < n; o++) {
+                    txs[c][o] = this.quantize(x[o], offset.getX());
+                    tys[c][o] = this.quantize(y[o], offset.getY());
+                    tzs[c][o] = this.quantize(z[o], offset.getZ());
+                }
+            });
+            this.qxs = txs;
+            this.qys = tys;
+            this.qzs = tzs;
+            this.offsetX = offset.getX();
+            this.offsetY = offset.getY();
+            this.offsetZ = offset.getZ();
+        }
+        this.transformed(matrix);
+    }
+
+    @Override
+    protected void clearCoords() {
+        this.qxs = new int[1][];
+        this.qys = new int[1][];
+        this.qzs = new int[1][];
+    }
+
+    @Override
+    protected void growCoords(int length) {
+        this.qxs = java.util.Arrays.copyOf(this.qxs, length);
+        this.qys = java.util.Arrays.copyOf(this.qys, length);
+        this.qzs = java.util.Arrays.copyOf(this.qzs, length);
+    }
+
+    @Override
+    protected void allocateCoords(int c) {
+        this.qxs[c] = new int[CHUNK_SIZE];
+        this.qys[c] = new int[CHUNK_SIZE];
+        this.qzs[c] = new int[CHUNK_SIZE];
+    }
+
+    /**
+     * Quantizes and stores coordinates, the first point stored fixing the
+     * offset if it is not fixed yet.
+     *
+     * @throws IllegalArgumentException if the point is out of the range of
+     * the quantized coordinates, nothing being stored.
+     */
+    @Override
+    protected void storeCoords(int c, int o, double x, double y, double z) {
+        if (!this.anchored) {
+            this.offsetX = x;
+            this.offsetY = y;
+            this.offsetZ = z;
+            this.anchored = true;
+        }
+        int qx = this.quantize(x, this.offsetX);
+        int qy = this.quantize(y, this.offsetY);
+        int qz = this.quantize(z, this.offsetZ);
+        this.qxs[c][o] = qx;
+        this.qys[c][o] = qy;
+        this.qzs[c][o] = qz;
+    }
+
+    @Override
+    protected void copyCoords(int cf, int of, int ct, int ot) {
+        this.qxs[ct][ot] = this.qxs[cf][of];
+        this.qys[ct][ot] = this.qys[cf][of];
+        this.qzs[ct][ot] = this.qzs[cf][of];
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private int quantize(double value, double offset) {
+        long q = Math.round((value - offset) / this.scale);
+        if (q < Integer.MIN_VALUE || q > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(value + " is out of the range of the quantized coordinates around " + offset);
+        }
+        return (int) q;
+    }
+
+    private static Coord3D center(APointCloud cloud) {
+        if (cloud.isEmpty()) {
+            return new Coord3D(0, 0, 0);
+        }
+        PointCloudStatistics statistics = cloud.getStatistics();
+        Coord3D min = statistics.getMin();
+        Coord3D max = statistics.getMax();
+        return new Coord3D((min.getX() + max.getX()) / 2, (min.getY() + max.getY()) / 2, (min.getZ() + max.getZ()) / 2);
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
@@ -43,14 +43,14 @@ public class PointCloudSet extends APointCloud {
 
     @Override
     public void add(Point p) {
-        if (p != null) {
-            this.points.add(p);
+        if (p != null && this.points.add(p)) {
+            this.added(p);
         }
     }
 
     @Override
     public void add(Collection<Point> points) {
-        this.points.addAll(points);
+        points.forEach(p -> this.add(p));
     }
 
     @Override
@@ -60,7 +60,9 @@ public class PointCloudSet extends APointCloud {
 
     @Override
     public void remove(Point noisePoint) {
-        this.points.remove(noisePoint);
+        if (this.points.remove(noisePoint)) {
+            this.invalidate();
+        }
     }
 
     @Override
@@ -71,11 +73,7 @@ public class PointCloudSet extends APointCloud {
     @Override
     public void clear() {
         this.points.clear();
-    }
-
-    @Override
-    public Point getMean() {
-        return Point.getMean(this.points);
+        this.invalidate();
     }
 
     @Override
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.components;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Statistics of a point cloud accumulated in a single pass: number of points,
+ * sums and bounds of the coordinates, covariance, and sums of the colours and
+ * normals. The statistics are updated point by point with {@code accept},
+ * partial statistics computed in parallel are merged with {@code combine},
+ * and a translation of the cloud is applied with {@code translate}, so that
+ * every derived value is obtained in constant time.
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PointCloudStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private long count;
+    /**
+     * Sums of the coordinates, the centroid being their mean.
+     */
+    private double sumX;
+    private double sumY;
+    private double sumZ;
+    /**
+     * Running means and co-moments of the coordinates for the covariance,
+     * updated with the Welford algorithm to keep their precision far from the
+     * origin.
+     */
+    private double meanX;
+    private double meanY;
+    private double meanZ;
+    private double cxx;
+    private double cxy;
+    private double cxz;
+    private double cyy;
+    private double cyz;
+    private double czz;
+    private double minX;
+    private double minY;
+    private double minZ;
+    private double maxX;
+    private double maxY;
+    private double maxZ;
+    /**
+     * Number of coloured points and sums of their colours.
+     */
+    private long colored;
+    private long red;
+    private long green;
+    private long blue;
+    /**
+     * Number of points having a normal and sums of their normals.
+     */
+    private long normalized;
+    private double normalX;
+    private double normalY;
+    private double normalZ;
+
+    /**
+     * Creates new empty statistics.
+     */
+    public PointCloudStatistics() {
+        this.minX = Double.POSITIVE_INFINITY;
+        this.minY = Double.POSITIVE_INFINITY;
+        this.minZ = Double.POSITIVE_INFINITY;
+        this.maxX = Double.NEGATIVE_INFINITY;
+        this.maxY = Double.NEGATIVE_INFINITY;
+        this.maxZ = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Creates a copy of statistics.
+     *
+     * @param clone statistics to be copied.
+     */
+    public PointCloudStatistics(PointCloudStatistics clone) {
+        this();
+        this.combine(clone);
+    }
+
+    /**
+     * Computes the statistics of a point cloud in one pass, in parallel for
+     * large clouds.
+     *
+     * @param cloud point cloud to be processed.
+     * @param parallel true to split the pass between the threads of the common
+     * pool.
+     * @return the statistics of the point cloud.
+     */
+    public static PointCloudStatistics of(APointCloud cloud, boolean parallel) {
+        if (parallel) {
+            return cloud.stream().parallel().collect(PointCloudStatistics::new, PointCloudStatistics::accept, PointCloudStatistics::combine);
+        }
+        PointCloudStatistics statistics = new PointCloudStatistics();
+        cloud.iterator().forEachRemaining(statistics::accept);
+        return statistics;
+    }
+
+    /**
+     * Adds a point to the statistics.
+     *
+     * @param p point to be added.
+     */
+    public void accept(Point p) {
+        Coord3D c = p.getCoords();
+        this.accept(c.getX(), c.getY(), c.getZ());
+        Color color = p.getColor();
+        if (color != null) {
+            this.acceptColor(color.getRed(), color.getGreen(), color.getBlue());
+        }
+        Normal normal = p.getNormal();
+        if (normal != null) {
+            this.acceptNormal(normal.getX(), normal.getY(), normal.getZ());
+        }
+    }
+
+    /**
+     * Adds a point without colour and normal to the statistics.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     */
+    public void accept(double x, double y, double z) {
+        this.count++;
+        this.sumX += x;
+        this.sumY += y;
+        this.sumZ += z;
+        double dx = x - this.meanX;
+        double dy = y - this.meanY;
+        double dz = z - this.meanZ;
+        this.meanX += dx / this.count;
+        this.meanY += dy / this.count;
+        this.meanZ += dz / this.count;
+        this.cxx += dx * (x - this.meanX);
+        this.cxy += dx * (y - this.meanY);
+        this.cxz += dx * (z - this.meanZ);
+        this.cyy += dy * (y - this.meanY);
+        this.cyz += dy * (z - this.meanZ);
+        this.czz += dz * (z - this.meanZ);
+        this.minX = Math.min(this.minX, x);
+        this.minY = Math.min(this.minY, y);
+        this.minZ = Math.min(this.minZ, z);
+        this.maxX = Math.max(this.maxX, x);
+        this.maxY = Math.max(this.maxY, y);
+        this.maxZ = Math.max(this.maxZ, z);
+    }
+
+    /**
+     * Adds the colour of the last point added.
+     */
+    void acceptColor(int r, int g, int b) {
+        this.colored++;
+        this.red += r;
+        this.green += g;
+        this.blue += b;
+    }
+
+    /**
+     * Adds the normal of the last point added.
+     */
+    void acceptNormal(double x, double y, double z) {
+        this.normalized++;
+        this.normalX += x;
+        this.normalY += y;
+        this.normalZ += z;
+    }
+
+    /**
+     * Merges other statistics in these ones, as if their points had been
+     * added after the points of these statistics.
+     *
+     * @param other statistics to be merged.
+     */
+    public void combine(PointCloudStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        long n = this.count + other.count;
+        if (this.count == 0) {
+            this.meanX = other.meanX;
+            this.meanY = other.meanY;
+            this.meanZ = other.meanZ;
+            this.cxx = other.cxx;
+            this.cxy = other.cxy;
+            this.cxz = other.cxz;
+            this.cyy = other.cyy;
+            this.cyz = other.cyz;
+            this.czz = other.czz;
+        } else {
+            double dx = other.meanX - this.meanX;
+            double dy = other.meanY - this.meanY;
+            double dz = other.meanZ - this.meanZ;
+            double w = (double) this.count * other.count / n;
+            this.cxx += other.cxx + dx * dx * w;
+            this.cxy += other.cxy + dx * dy * w;
+            this.cxz += other.cxz + dx * dz * w;
+            this.cyy += other.cyy + dy * dy * w;
+            this.cyz += other.cyz + dy * dz * w;
+            this.czz += other.czz + dz * dz * w;
+            this.meanX += dx * other.count / n;
+            this.meanY += dy * other.count / n;
+            this.meanZ += dz * other.count / n;
+        }
+        this.count = n;
+        this.sumX += other.sumX;
+        this.sumY += other.sumY;
+        this.sumZ += other.sumZ;
+        this.minX = Math.min(this.minX, other.minX);
+        this.minY = Math.min(this.minY, other.minY);
+        this.minZ = Math.min(this.minZ, other.minZ);
+        this.maxX = Math.max(this.maxX, other.maxX);
+        this.maxY = Math.max(this.maxY, other.maxY);
+        this.maxZ = Math.max(this.maxZ, other.maxZ);
+        this.colored += other.colored;
+        this.red += other.red;
+        this.green += other.green;
+        this.blue += other.blue;
+        this.normalized += other.normalized;
+        this.normalX += other.normalX;
+        this.normalY += other.normalY;
+        this.normalZ += other.normalZ;
+    }
+
+    /**
+     * Translates the statistics with the points of the cloud.
+     *
+     * @param tx translation along x.
+     * @param ty translation along y.
+     * @param tz translation along z.
+     */
+    public void translate(double tx, double ty, double tz) {
+        if (this.count == 0) {
+            return;
+        }
+        this.sumX += tx * this.count;
+        this.sumY += ty * this.count;
+        this.sumZ += tz * this.count;
+        this.meanX += tx;
+        this.meanY += ty;
+        this.meanZ += tz;
+        this.minX += tx;
+        this.minY += ty;
+        this.minZ += tz;
+        this.maxX += tx;
+        this.maxY += ty;
+        this.maxZ += tz;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the centroid of the points.
+     *
+     * @return the mean of the coordinates, NaN coordinates without point.
+     */
+    public Coord3D getCentroid() {
+        return new Coord3D(this.sumX / this.count, this.sumY / this.count, this.sumZ / this.count);
+    }
+
+    /**
+     * Gets the lowest coordinates of the points.
+     *
+     * @return the lowest value of each coordinate, infinite without point.
+     */
+    public Coord3D getMin() {
+        return new Coord3D(this.minX, this.minY, this.minZ);
+    }
+
+    /**
+     * Gets the highest coordinates of the points.
+     *
+     * @return the highest value of each coordinate, infinite without point.
+     */
+    public Coord3D getMax() {
+        return new Coord3D(this.maxX, this.maxY, this.maxZ);
+    }
+
+    /**
+     * Gets the covariance matrix of the coordinates of the points.
+     *
+     * @return the population covariance matrix 3x3, NaN values without
+     * point.
+     */
+    public double[][] getCovariance() {
+        double n = this.count;
+        return new double[][]{
+            {this.cxx / n, this.cxy / n, this.cxz / n},
+            {this.cxy / n, this.cyy / n, this.cyz / n},
+            {this.cxz / n, this.cyz / n, this.czz / n}};
+    }
+
+    /**
+     * Gets the mean colour of the coloured points.
+     *
+     * @return the mean colour, black without coloured point.
+     */
+    public Color getMeanColor() {
+        if (this.colored == 0) {
+            return new Color(0, 0, 0);
+        }
+        return new Color((int) (this.red / this.colored), (int) (this.green / this.colored), (int) (this.blue / this.colored));
+    }
+
+    /**
+     * Gets the mean normal of the points having a normal.
+     *
+     * @return the mean normal, null normal without normal.
+     */
+    public Normal getMeanNormal() {
+        if (this.normalized == 0) {
+            return new Normal(0, 0, 0);
+        }
+        return new Normal(this.normalX / this.normalized, this.normalY / this.normalized, this.normalZ / this.normalized);
+    }
+
+    /**
+     * Writes the statistics in a binary stream, to be read by {@code read}.
+     *
+     * @param out stream where the statistics are written.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(this.count);
+        for (double value : new double[]{this.sumX, this.sumY, this.sumZ, this.meanX, this.meanY, this.meanZ,
+            this.cxx, this.cxy, this.cxz, this.cyy, this.cyz, this.czz,
+            this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ}) {
+            out.writeDouble(value);
+        }
+        out.writeLong(this.colored);
+        out.writeLong(this.red);
+        out.writeLong(this.green);
+        out.writeLong(this.blue);
+        out.writeLong(this.normalized);
+        out.writeDouble(this.normalX);
+        out.writeDouble(this.normalY);
+        out.writeDouble(this.normalZ);
+    }
+
+    /**
+     * Reads statistics written by {@code write}.
+     *
+     * @param in stream where the statistics are read.
+     * @return the statistics read.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static PointCloudStatistics read(DataInput in) throws IOException {
+        PointCloudStatistics statistics = new PointCloudStatistics();
+        statistics.count = in.readLong();
+        statistics.sumX = in.readDouble();
+        statistics.sumY = in.readDouble();
+        statistics.sumZ = in.readDouble();
+        statistics.meanX = in.readDouble();
+        statistics.meanY = in.readDouble();
+        statistics.meanZ = in.readDouble();
+        statistics.cxx = in.readDouble();
+        statistics.cxy = in.readDouble();
+        statistics.cxz = in.readDouble();
+        statistics.cyy = in.readDouble();
+        statistics.cyz = in.readDouble();
+        statistics.czz = in.readDouble();
+        statistics.minX = in.readDouble();
+        statistics.minY = in.readDouble();
+        statistics.minZ = in.readDouble();
+        statistics.maxX = in.readDouble();
+        statistics.maxY = in.readDouble();
+        statistics.maxZ = in.readDouble();
+        statistics.colored = in.readLong();
+        statistics.red = in.readLong();
+        statistics.green = in.readLong();
+        statistics.blue = in.readLong();
+        statistics.normalized = in.readLong();
+        statistics.normalX = in.readDouble();
+        statistics.normalY = in.readDouble();
+        statistics.normalZ = in.readDouble();
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return "count: " + this.count + ", centroid: " + this.getCentroid() + ", min: " + this.getMin() + ", max: " + this.getMax();
+    }
+}
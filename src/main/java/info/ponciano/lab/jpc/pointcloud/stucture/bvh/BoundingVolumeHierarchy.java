@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.bvh;
+
+/**
+ * Bounding volume hierarchy of axis-aligned boxes, used to find the pairs of
+ * boxes closer than a distance.
+ * <p>
+ * The hierarchy is a binary tree built by splitting the boxes at the median
+ * of their centres along the axis of largest extent, until a node holds at
+ * most {@link #LEAF_SIZE} boxes. The nodes are stored in arrays of primitive
+ * values.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class BoundingVolumeHierarchy {
+
+    /**
+     * Maximum number of boxes of a leaf.
+     */
+    public static final int LEAF_SIZE = 4;
+
+    /**
+     * Action receiving a pair of boxes.
+     */
+    public interface PairConsumer {
+
+        /**
+         * Receives a pair of boxes.
+         *
+         * @param i index of the first box.
+         * @param j index of the second box, greater than i.
+         */
+        void accept(int i, int j);
+    }
+
+    /**
+     * Bounds of the boxes: min x, y, z then max x, y, z.
+     */
+    private final double[] boxes;
+    /**
+     * Index of the boxes in the order of the leaves.
+     */
+    private final int[] order;
+    /**
+     * Bounds of the nodes, as the ones of the boxes.
+     */
+    private final double[] bounds;
+    /**
+     * First child of inner nodes (the second being the next one), -1 for
+     * leaves.
+     */
+    private final int[] children;
+    /**
+     * Range of the boxes of each node in {@code order}.
+     */
+    private final int[] from;
+    private final int[] to;
+    private int nodes;
+
+    /**
+     * Creates the hierarchy of boxes.
+     *
+     * @param boxes bounds of each box: min x, y, z then max x, y, z.
+     */
+    public BoundingVolumeHierarchy(double[] boxes) {
+        this.boxes = boxes;
+        int n = boxes.length / 6;
+        this.order = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.order[i] = i;
+        }
+        int capacity = Math.max(1, 2 * n);
+        this.bounds = new double[6 * capacity];
+        this.children = new int[capacity];
+        this.from = new int[capacity];
+        this.to = new int[capacity];
+        if (n > 0) {
+            this.build(this.newNode(0, n));
+        }
+    }
+
+    /**
+     * Number of boxes of the hierarchy.
+     *
+     * @return the number of boxes indexed.
+     */
+    public int size() {
+        return this.order.length;
+    }
+
+    /**
+     * Gives every pair of boxes whose Euclidean distance is lower or equal to
+     * the given distance. Each pair is given once.
+     *
+     * @param distance maximum distance between the boxes.
+     * @param action action receiving each pair.
+     */
+    public void forEachPair(double distance, PairConsumer action) {
+        if (this.nodes > 0) {
+            this.pairs(0, distance * distance, action);
+        }
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private int newNode(int first, int last) {
+        int node = this.nodes++;
+        this.from[node] = first;
+        this.to[node] = last;
+        this.children[node] = -1;
+        for (int a = 0; a < 3; a++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int k = first; k < last; k++) {
+                int box = this.order[k];
+                min = Math.min(min, this.boxes[6 * box + a]);
+                max = Math.max(max, this.boxes[6 * box + 3 + a]);
+            }
+            this.bounds[6 * node + a] = min;
+            this.bounds[6 * node + 3 + a] = max;
+        }
+        return node;
+    }
+
+    private void build(int node) {
+        int first = this.from[node];
+        int last = this.to[node];
+        if (last - first <= LEAF_SIZE) {
+            return;
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (this.bounds[6 * node + 3 + a] - this.bounds[6 * node + a]
+                    > this.bounds[6 * node + 3 + axis] - this.bounds[6 * node + axis]) {
+                axis = a;
+            }
+        }
+        int mid = (first + last) >>> 1;
+        this.select(first, last - 1, mid, axis);
+        // children are consecutive
+        int left = this.newNode(first, mid);
+        this.newNode(mid, last);
+        this.children[node] = left;
+        this.build(left);
+        this.build(left + 1);
+    }
+
+    /**
+     * Twice the centre of a box along an axis.
+     */
+    private double centre(int k, int axis) {
+        int box = this.order[k];
+        return this.boxes[6 * box + axis] + this.boxes[6 * box + 3 + axis];
+    }
+
+    /**
+     * Hoare's selection of the k-th box along the axis.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            double a = this.centre(left, axis);
+            double b = this.centre((left + right) >>> 1, axis);
+            double c = this.centre(right, axis);
+            double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (this.centre(i, axis) < pivot) {
+                    i++;
+                }
+                while (this.centre(j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int t = this.order[i];
+                    this.order[i] = this.order[j];
+                    this.order[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Squared Euclidean distance between two boxes stored in arrays.
+     */
+    private static double gap(double[] b1, int o1, double[] b2, int o2) {
+        double sum = 0;
+        for (int a = 0; a < 3; a++) {
+            double d = Math.max(b1[o1 + a] - b2[o2 + 3 + a], b2[o2 + a] - b1[o1 + 3 + a]);
+            if (d > 0) {
+                sum += d * d;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Pairs of the boxes of a node.
+     */
+    private void pairs(int node, double d2, PairConsumer action) {
+        int left = this.children[node];
+        if (left < 0) {
+            for (int i = this.from[node]; i < this.to[node]; i++) {
+                for (int j = i + 1; j < this.to[node]; j++) {
+                    this.test(this.order[i], this.order[j], d2, action);
+                }
+            }
+        } else {
+            this.pairs(left, d2, action);
+            this.pairs(left + 1, d2, action);
+            this.pairs(left, left + 1, d2, action);
+        }
+    }
+
+    /**
+     * Pairs made of a box of each node.
+     */
+    private void pairs(int n1, int n2, double d2, PairConsumer action) {
+        if (gap(this.bounds, 6 * n1, this.bounds, 6 * n2) > d2) {
+            return;
+        }
+        int c1 = this.children[n1];
+        int c2 = this.children[n2];
+        if (c1 < 0 && c2 < 0) {
+            for (int i = this.from[n1]; i < this.to[n1]; i++) {
+                for (int j = this.from[n2]; j < this.to[n2]; j++) {
+                    this.test(this.order[i], this.order[j], d2, action);
+                }
+            }
+        } else if (c2 < 0 || (c1 >= 0 && this.to[n1] - this.from[n1] >= this.to[n2] - this.from[n2])) {
+            // descends into the largest node
+            this.pairs(c1, n2, d2, action);
+            this.pairs(c1 + 1, n2, d2, action);
+        } else {
+            this.pairs(n1, c2, d2, action);
+            this.pairs(n1, c2 + 1, d2, action);
+        }
+    }
+
+    private void test(int i, int j, double d2, PairConsumer action) {
+        if (gap(this.boxes, 6 * i, this.boxes, 6 * j) <= d2) {
+            action.accept(Math.min(i, j), Math.max(i, j));
+        }
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
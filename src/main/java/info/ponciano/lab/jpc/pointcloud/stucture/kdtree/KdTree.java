@@ -0,0 +1,583 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.kdtree;
+
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Static KD-tree indexing the points of a point cloud for nearest neighbours
+ * searches.
+ * <p>
+ * The coordinates are copied into a single array of doubles ordered as an
+ * implicit balanced tree: the node of a range of the array is the median at
+ * its middle, its left subtree the part before and its right subtree the part
+ * after. Each node splits its range along the axis of largest extent. The
+ * tree is built in O(n log n) by selection of the medians, the both halves of
+ * large ranges being built in parallel.</p>
+ * <p>
+ * Points are identified by their index in the order of the cloud used to
+ * build the tree. Equal distances are resolved by the lowest index, so that
+ * the results are the same as the ones of a linear scan of the cloud keeping
+ * the first point found. The tree is not updated when the cloud changes.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class KdTree {
+
+    /**
+     * Size of the ranges under which the tree is built sequentially.
+     */
+    private static final int PARALLEL_SIZE = 1 << 14;
+
+    private final Point[] points;
+    /**
+     * Coordinates x, y, z of the points in the order of the tree.
+     */
+    private final double[] coords;
+    /**
+     * Index in the cloud of the points in the order of the tree.
+     */
+    private final int[] index;
+    /**
+     * Axis (0 for x, 1 for y, 2 for z) splitting the range of each node.
+     */
+    private final byte[] axes;
+
+    /**
+     * Creates the KD-tree of a point cloud.
+     *
+     * @param cloud point cloud to be indexed.
+     */
+    public KdTree(APointCloud cloud) {
+        this(cloud.stream().toArray(Point[]::new));
+    }
+
+    /**
+     * Creates the KD-tree of points.
+     *
+     * @param points points to be indexed, their index in the array being the
+     * one used by the tree.
+     */
+    public KdTree(Point[] points) {
+        this(points.clone(), coordinates(points));
+    }
+
+    /**
+     * Creates the KD-tree of points given by their coordinates, without
+     * {@code Point} instances: the methods returning points cannot be used.
+     *
+     * @param coords coordinates x, y, z of each point, the index of a point
+     * being the one of its x coordinate divided by 3.
+     */
+    public KdTree(double[] coords) {
+        this(null, checked(coords));
+    }
+
+    private KdTree(Point[] points, double[] coords) {
+        this.points = points;
+        int n = coords.length / 3;
+        this.coords = coords;
+        this.index = new int[n];
+        this.axes = new byte[n];
+        for (int i = 0; i < n; i++) {
+            this.index[i] = i;
+        }
+        if (n > PARALLEL_SIZE) {
+            ForkJoinPool.commonPool().invoke(new BuildTask(0, n));
+        } else {
+            this.build(0, n);
+        }
+    }
+
+    /**
+     * Number of points of the tree.
+     *
+     * @return the number of points indexed.
+     */
+    public int size() {
+        return this.index.length;
+    }
+
+    /**
+     * Gets a point of the tree.
+     *
+     * @param i index of the point in the cloud used to build the tree.
+     * @return the point at the given index.
+     */
+    public Point get(int i) {
+        if (this.points == null) {
+            throw new IllegalStateException("KD-tree built from coordinates");
+        }
+        return this.points[i];
+    }
+
+    /**
+     * Gets the nearest point of the given coordinates.
+     *
+     * @param x coordinate x of the query.
+     * @param y coordinate y of the query.
+     * @param z coordinate z of the query.
+     * @return the index of the nearest point, -1 if the tree is empty.
+     */
+    public int nearest(double x, double y, double z) {
+        int[] nearest = this.knn(x, y, z, 1);
+        return nearest.length == 0 ? -1 : nearest[0];
+    }
+
+    /**
+     * Gets the nearest point of the given point.
+     *
+     * @param p point considered for searching its nearest.
+     * @return the nearest point of the tree, null if the tree is empty.
+     */
+    public Point nearest(Point p) {
+        Coord3D c = p.getCoords();
+        int i = this.nearest(c.getX(), c.getY(), c.getZ());
+        return i < 0 ? null : this.get(i);
+    }
+
+    /**
+     * Gets the nearest point of each query, the queries being processed in
+     * parallel.
+     *
+     * @param queries coordinates x, y, z of each query.
+     * @return the index of the nearest point of each query.
+     */
+    public int[] nearest(double[] queries) {
+        return IntStream.range(0, queries.length / 3).parallel()
+                .map(q -> this.nearest(queries[3 * q], queries[3 * q + 1], queries[3 * q + 2]))
+                .toArray();
+    }
+
+    /**
+     * Gets the k nearest points of the given coordinates.
+     *
+     * @param x coordinate x of the query.
+     * @param y coordinate y of the query.
+     * @param z coordinate z of the query.
+     * @param k number of neighbours.
+     * @return the index of the min(k, size) nearest points, from the nearest
+     * to the farthest.
+     */
+    public int[] knn(double x, double y, double z, int k) {
+        if (k <= 0 || this.index.length == 0) {
+            return new int[0];
+        }
+        Neighbours neighbours = new Neighbours(Math.min(k, this.index.length));
+        this.knn(x, y, z, 0, this.index.length, neighbours);
+        return neighbours.sorted();
+    }
+
+    /**
+     * Gets the k nearest points of the given point.
+     *
+     * @param p point considered for searching its neighbours.
+     * @param k number of neighbours.
+     * @return the min(k, size) nearest points, from the nearest to the
+     * farthest.
+     */
+    public List<Point> knn(Point p, int k) {
+        Coord3D c = p.getCoords();
+        return this.toPoints(this.knn(c.getX(), c.getY(), c.getZ(), k));
+    }
+
+    /**
+     * Gets the k nearest points of each query, the queries being processed
+     * in parallel.
+     *
+     * @param queries coordinates x, y, z of each query.
+     * @param k number of neighbours.
+     * @return the index of the nearest points of each query.
+     */
+    public int[][] knn(double[] queries, int k) {
+        return IntStream.range(0, queries.length / 3).parallel()
+                .mapToObj(q -> this.knn(queries[3 * q], queries[3 * q + 1], queries[3 * q + 2], k))
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * Gets the k nearest points of each query, the queries being processed
+     * in parallel.
+     *
+     * @param queries points considered for searching their neighbours.
+     * @param k number of neighbours.
+     * @return the nearest points of each query.
+     */
+    public List<List<Point>> knn(List<Point> queries, int k) {
+        return queries.parallelStream().map(p -> this.knn(p, k)).collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the points in a sphere.
+     *
+     * @param x coordinate x of the centre of the sphere.
+     * @param y coordinate y of the centre of the sphere.
+     * @param z coordinate z of the centre of the sphere.
+     * @param r radius of the sphere.
+     * @return the index of the points at a distance lower or equal to r, in
+     * ascending order.
+     */
+    public int[] radius(double x, double y, double z, double r) {
+        if (r < 0 || this.index.length == 0) {
+            return new int[0];
+        }
+        IntBuffer found = new IntBuffer();
+        this.radius(x, y, z, r * r, 0, this.index.length, found);
+        int[] result = Arrays.copyOf(found.values, found.size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Gets the points in a sphere.
+     *
+     * @param p centre of the sphere.
+     * @param r radius of the sphere.
+     * @return the points at a distance lower or equal to r, in the order of
+     * the cloud.
+     */
+    public List<Point> radius(Point p, double r) {
+        Coord3D c = p.getCoords();
+        return this.toPoints(this.radius(c.getX(), c.getY(), c.getZ(), r));
+    }
+
+    /**
+     * Gets the points in a sphere around each query, the queries being
+     * processed in parallel.
+     *
+     * @param queries coordinates x, y, z of each centre.
+     * @param r radius of the spheres.
+     * @return the index of the points in each sphere.
+     */
+    public int[][] radius(double[] queries, double r) {
+        return IntStream.range(0, queries.length / 3).parallel()
+                .mapToObj(q -> this.radius(queries[3 * q], queries[3 * q + 1], queries[3 * q + 2], r))
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * Gets the points in a sphere around each query, the queries being
+     * processed in parallel.
+     *
+     * @param queries centres of the spheres.
+     * @param r radius of the spheres.
+     * @return the points in each sphere.
+     */
+    public List<List<Point>> radius(List<Point> queries, double r) {
+        return queries.parallelStream().map(p -> this.radius(p, r)).collect(Collectors.toList());
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private static double[] checked(double[] coords) {
+        if (coords.length % 3 != 0) {
+            throw new IllegalArgumentException("Coordinates not multiple of 3: " + coords.length);
+        }
+        return coords.clone();
+    }
+
+    private static double[] coordinates(Point[] points) {
+        double[] coords = new double[3 * points.length];
+        for (int i = 0; i < points.length; i++) {
+            Coord3D c = points[i].getCoords();
+            coords[3 * i] = c.getX();
+            coords[3 * i + 1] = c.getY();
+            coords[3 * i + 2] = c.getZ();
+        }
+        return coords;
+    }
+
+    private List<Point> toPoints(int[] indexes) {
+        List<Point> result = new ArrayList<>(indexes.length);
+        for (int i : indexes) {
+            result.add(this.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Builds the subtree of the range [from, to[ of the array.
+     */
+    private void build(int from, int to) {
+        while (to - from > 1) {
+            int mid = this.split(from, to);
+            this.build(from, mid);
+            from = mid + 1;
+        }
+    }
+
+    /**
+     * Selects the median of a range along its axis of largest extent.
+     *
+     * @return the index of the node of the range.
+     */
+    private int split(int from, int to) {
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = from; i < to; i++) {
+            for (int a = 0; a < 3; a++) {
+                double v = this.coords[3 * i + a];
+                min[a] = Math.min(min[a], v);
+                max[a] = Math.max(max[a], v);
+            }
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (max[a] - min[a] > max[axis] - min[axis]) {
+                axis = a;
+            }
+        }
+        int mid = (from + to) >>> 1;
+        this.select(from, to - 1, mid, axis);
+        this.axes[mid] = (byte) axis;
+        return mid;
+    }
+
+    /**
+     * Hoare's selection: moves the k-th point along the axis at k, the points
+     * before being lower or equal and the points after greater or equal.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            double a = this.coords[3 * left + axis];
+            double b = this.coords[3 * ((left + right) >>> 1) + axis];
+            double c = this.coords[3 * right + axis];
+            double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (this.coords[3 * i + axis] < pivot) {
+                    i++;
+                }
+                while (this.coords[3 * j + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    this.swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        for (int a = 0; a < 3; a++) {
+            double c = this.coords[3 * i + a];
+            this.coords[3 * i + a] = this.coords[3 * j + a];
+            this.coords[3 * j + a] = c;
+        }
+        int t = this.index[i];
+        this.index[i] = this.index[j];
+        this.index[j] = t;
+    }
+
+    private double distanceSquared(double x, double y, double z, int node) {
+        double dx = x - this.coords[3 * node];
+        double dy = y - this.coords[3 * node + 1];
+        double dz = z - this.coords[3 * node + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void knn(double x, double y, double z, int from, int to, Neighbours neighbours) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            neighbours.offer(this.distanceSquared(x, y, z, mid), this.index[mid]);
+            if (to - from == 1) {
+                return;
+            }
+            int axis = this.axes[mid];
+            double diff = (axis == 0 ? x : axis == 1 ? y : z) - this.coords[3 * mid + axis];
+            // nearest side first, the other one only if it may contain a nearer point
+            if (diff < 0) {
+                this.knn(x, y, z, from, mid, neighbours);
+                if (diff * diff > neighbours.bound()) {
+                    return;
+                }
+                from = mid + 1;
+            } else {
+                this.knn(x, y, z, mid + 1, to, neighbours);
+                if (diff * diff > neighbours.bound()) {
+                    return;
+                }
+                to = mid;
+            }
+        }
+    }
+
+    private void radius(double x, double y, double z, double r2, int from, int to, IntBuffer found) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (this.distanceSquared(x, y, z, mid) <= r2) {
+                found.add(this.index[mid]);
+            }
+            int axis = this.axes[mid];
+            double diff = (axis == 0 ? x : axis == 1 ? y : z) - this.coords[3 * mid + axis];
+            boolean left = diff <= 0 || diff * diff <= r2;
+            boolean right = diff >= 0 || diff * diff <= r2;
+            if (left && right) {
+                this.radius(x, y, z, r2, from, mid, found);
+                from = mid + 1;
+            } else if (left) {
+                to = mid;
+            } else {
+                from = mid + 1;
+            }
+        }
+    }
+
+    /**
+     * Parallel build of the subtree of a range.
+     */
+    private class BuildTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        BuildTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= PARALLEL_SIZE) {
+                build(this.from, this.to);
+            } else {
+                int mid = split(this.from, this.to);
+                invokeAll(new BuildTask(this.from, mid), new BuildTask(mid + 1, this.to));
+            }
+        }
+    }
+
+    /**
+     * Bounded max-heap of the nearest points found, ordered by distance then
+     * by index.
+     */
+    private static class Neighbours {
+
+        private final double[] distances;
+        private final int[] indexes;
+        private int size;
+
+        Neighbours(int k) {
+            this.distances = new double[k];
+            this.indexes = new int[k];
+        }
+
+        /**
+         * Squared distance beyond which no point can be accepted.
+         */
+        double bound() {
+            return this.size < this.distances.length ? Double.POSITIVE_INFINITY : this.distances[0];
+        }
+
+        void offer(double d, int i) {
+            if (this.size < this.distances.length) {
+                // sift up
+                int c = this.size++;
+                while (c > 0) {
+                    int p = (c - 1) / 2;
+                    if (!this.greater(d, i, p)) {
+                        break;
+                    }
+                    this.distances[c] = this.distances[p];
+                    this.indexes[c] = this.indexes[p];
+                    c = p;
+                }
+                this.distances[c] = d;
+                this.indexes[c] = i;
+            } else if (this.greater(this.distances[0], this.indexes[0], d, i)) {
+                // replaces the farthest then sifts down
+                int p = 0;
+                while (true) {
+                    int c = 2 * p + 1;
+                    if (c >= this.size) {
+                        break;
+                    }
+                    if (c + 1 < this.size && this.greater(this.distances[c + 1], this.indexes[c + 1], c)) {
+                        c++;
+                    }
+                    if (!this.greater(this.distances[c], this.indexes[c], d, i)) {
+                        break;
+                    }
+                    this.distances[p] = this.distances[c];
+                    this.indexes[p] = this.indexes[c];
+                    p = c;
+                }
+                this.distances[p] = d;
+                this.indexes[p] = i;
+            }
+        }
+
+        int[] sorted() {
+            Integer[] order = new Integer[this.size];
+            for (int j = 0; j < this.size; j++) {
+                order[j] = j;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int c = Double.compare(this.distances[a], this.distances[b]);
+                return c != 0 ? c : Integer.compare(this.indexes[a], this.indexes[b]);
+            });
+            int[] result = new int[this.size];
+            for (int j = 0; j < this.size; j++) {
+                result[j] = this.indexes[order[j]];
+            }
+            return result;
+        }
+
+        private boolean greater(double d, int i, int slot) {
+            return this.greater(d, i, this.distances[slot], this.indexes[slot]);
+        }
+
+        private boolean greater(double d1, int i1, double d2, int i2) {
+            return d1 > d2 || (d1 == d2 && i1 > i2);
+        }
+    }
+
+    /**
+     * Growable array of int.
+     */
+    private static class IntBuffer {
+
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int v) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, 2 * this.size);
+            }
+            this.values[this.size++] = v;
+        }
+    }
+    // ---------------------- END PRIVATE ----------------------
+}
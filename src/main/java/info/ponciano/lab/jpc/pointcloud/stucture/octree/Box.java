@@ -32,10 +32,37 @@ import java.util.List;
  */
 public class Box implements Splitable{
 
+    /**
+     * Default gap of {@code isInside}.
+     */
+    public static final double GAP = 0.0001;
+
     protected Point[] points;
+    /**
+     * True if the faces of the box are parallel to the axes, the box being
+     * then tested with its cached bounds.
+     */
+    private final boolean axisAligned;
+    /**
+     * Coordinates x, y, z of the 8 corners.
+     */
+    private final double[] corners = new double[24];
+    /**
+     * Minimum coordinates of the box for axis-aligned boxes.
+     */
+    private double[] min;
+    /**
+     * Maximum coordinates of the box for axis-aligned boxes.
+     */
+    private double[] max;
+    /**
+     * Axes on which the first corner of an axis-aligned box has the maximum
+     * coordinate: x on bit 0, y on bit 1 and z on bit 2.
+     */
+    private int reversed;
 
     /**
-     * Creates a new instance of <code>Box</code>.
+     * Creates a new instance of <code>Box</code> aligned on the axes.
      *
      * @param p1 first point of the diagonal.
      * @param p2 second point of the diagonal.
@@ -46,6 +73,8 @@ public class Box implements Splitable{
         this.points[0] = new Point(p1);
         this.points[this.points.length - 1] = new Point(p2);
         this.initBox();
+        this.axisAligned = true;
+        this.updateBounds();
     }
 
     /**
@@ -59,6 +88,38 @@ public class Box implements Splitable{
         for (int i = 0; i < 8; i++) {
             this.points[i] = new Point(p.get(i));
         }
+        this.axisAligned = false;
+        this.updateBounds();
+    }
+
+    /**
+     * Updates the cached coordinates of the corners, and the cached bounds of
+     * an axis-aligned box, after the corners have been moved.
+     */
+    protected final void updateBounds() {
+        for (int k = 0; k < 8; k++) {
+            Coord3D c = this.points[k].getCoords();
+            this.corners[3 * k] = c.getX();
+            this.corners[3 * k + 1] = c.getY();
+            this.corners[3 * k + 2] = c.getZ();
+        }
+        if (this.axisAligned) {
+            Coord3D d = this.points[0].getCoords();
+            Coord3D f = this.points[this.points.length - 1].getCoords();
+            this.min = new double[]{Math.min(d.getX(), f.getX()), Math.min(d.getY(), f.getY()), Math.min(d.getZ(), f.getZ())};
+            this.max = new double[]{Math.max(d.getX(), f.getX()), Math.max(d.getY(), f.getY()), Math.max(d.getZ(), f.getZ())};
+            this.reversed = (d.getX() > f.getX() ? 1 : 0) | (d.getY() > f.getY() ? 2 : 0) | (d.getZ() > f.getZ() ? 4 : 0);
+        }
+    }
+
+    /**
+     * Tests if the faces of the box are parallel to the axes.
+     *
+     * @return true for boxes created from their diagonal, false for oriented
+     * boxes.
+     */
+    public boolean isAxisAligned() {
+        return axisAligned;
     }
 
     /**
@@ -245,16 +306,65 @@ public class Box implements Splitable{
      * @return the shortest distance between both boxes
      */
     public double distance(Box b) {
-        List<Point[]> pointFaces = this.getPointFaces();
-        List<Point[]> pointFaces2 = b.getPointFaces();
+        double best = Double.POSITIVE_INFINITY;
+        for (int s1 = 0; s1 < SEGMENTS.length; s1 += 2) {
+            int p = 3 * SEGMENTS[s1];
+            int q = 3 * SEGMENTS[s1 + 1];
+            for (int s2 = 0; s2 < SEGMENTS.length; s2 += 2) {
+                int r = 3 * SEGMENTS[s2];
+                int t = 3 * SEGMENTS[s2 + 1];
+                // the segments cannot be closer than their bounds
+                if (segmentsGap(this.corners, p, q, b.corners, r, t) <= best * best * PRUNING) {
+                    best = Math.min(best, segmentDistance(this.corners, p, q, b.corners, r, t));
+                }
+            }
+        }
+        return best;
+    }
 
-        List<Double> distances = new ArrayList<>();
-        pointFaces.forEach(s1 -> {
-            pointFaces2.forEach(s2 -> {
-                distances.add(distance2Faces(s1, s2));
-            });
-        });
-        return PiMath.min(distances);
+    /**
+     * Gets the axis-aligned bounding box of the corners of the box.
+     *
+     * @return the minimum x, y, z then the maximum x, y, z of the corners.
+     */
+    public double[] getBounds() {
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (Point p : this.points) {
+            Coord3D c = p.getCoords();
+            double[] v = {c.getX(), c.getY(), c.getZ()};
+            for (int a = 0; a < 3; a++) {
+                bounds[a] = Math.min(bounds[a], v[a]);
+                bounds[3 + a] = Math.max(bounds[3 + a], v[a]);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets a lower bound of {@link #distance(Box)} without computing the
+     * distances between the segments of the boxes: the largest of the
+     * distance between their axis-aligned bounding boxes and the distance
+     * between their bounding spheres.
+     *
+     * @param b box for comparison
+     * @return a value lower or equal to the shortest distance between both
+     * boxes.
+     */
+    public double lowerBoundDistance(Box b) {
+        double[] b1 = this.getBounds();
+        double[] b2 = b.getBounds();
+        double gap = 0;
+        for (int a = 0; a < 3; a++) {
+            double d = Math.max(b1[a] - b2[3 + a], b2[a] - b1[3 + a]);
+            if (d > 0) {
+                gap += d * d;
+            }
+        }
+        Coord3D c1 = new Point(this.points).getCoords();
+        Coord3D c2 = new Point(b.points).getCoords();
+        double spheres = c1.distance(c2) - this.radius(c1) - b.radius(c2);
+        return Math.max(Math.sqrt(gap), spheres);
     }
 
     /**
@@ -291,6 +401,29 @@ public class Box implements Splitable{
         return PiMath.min(distances);
     }
     private static final double SMALL_NUM = 0.00000001;
+    /**
+     * Corners of the 6 segments of each face of {@link #getPointFaces()}: the
+     * 4 edges then the 2 diagonals.
+     */
+    private static final int[] SEGMENTS;
+    /**
+     * Margin of the pruning of the segments, so that rounding errors of the
+     * bounds never discard the nearest segments.
+     */
+    private static final double PRUNING = 1 + 1e-8;
+
+    static {
+        int[][] faces = {{0, 2, 3, 1}, {2, 6, 7, 3}, {6, 4, 5, 7}, {4, 0, 1, 5}, {1, 3, 7, 5}, {0, 4, 6, 2}};
+        int[][] segments = {{0, 1}, {1, 2}, {2, 3}, {3, 0}, {0, 2}, {1, 3}};
+        SEGMENTS = new int[2 * faces.length * segments.length];
+        int k = 0;
+        for (int[] face : faces) {
+            for (int[] segment : segments) {
+                SEGMENTS[k++] = face[segment[0]];
+                SEGMENTS[k++] = face[segment[1]];
+            }
+        }
+    }
 
     /**
      * Get the 3D minimum distance between 2 segments
@@ -430,10 +563,16 @@ public class Box implements Splitable{
     }
 
     public boolean isInside(Coord3D p) {
-        return this.isInside(p, 0.0001);
+        return this.isInside(p, GAP);
     }
 
     public boolean isInside(Coord3D p, double gap) {
+        if (this.axisAligned) {
+            // (min + max) / 2 and max - min are the centre and the length of the general case
+            return (2 * Math.abs(p.getX() - (min[0] + max[0]) / 2.0) - gap <= max[0] - min[0])
+                    & (2 * Math.abs(p.getY() - (min[1] + max[1]) / 2.0) - gap <= max[1] - min[1])
+                    & (2 * Math.abs(p.getZ() - (min[2] + max[2]) / 2.0) - gap <= max[2] - min[2]);
+        }
         Coord3D d = this.points[0].getCoords();
         Coord3D f = this.points[this.points.length - 1].getCoords();
 
@@ -472,6 +611,146 @@ public class Box implements Splitable{
         return isInside;
     }
 
+    /**
+     * Gets the index of the first child of an axis-aligned box containing a
+     * point, the children being the boxes between each corner of the box and
+     * the given centre, in the order of the corners.
+     * <p>
+     * On each axis, the point belongs to the child of the first corner if it
+     * is inside this child with the given gap, to the child of the opposite
+     * corner otherwise. The index is thus the one of the first child accepted
+     * by {@code isInside}, without testing the 8 children in turn.</p>
+     *
+     * @param p coordinates of the point, inside the box.
+     * @param centre centre of the split.
+     * @param gap gap of the test.
+     * @return the index of the corner of the child.
+     * @throws UnsupportedOperationException if the box is not axis-aligned.
+     */
+    public int octant(Coord3D p, Coord3D centre, double gap) {
+        if (!this.axisAligned) {
+            throw new UnsupportedOperationException("Octant of an oriented box.");
+        }
+        // corner index: y on bit 0, x on bit 1 and z on bit 2 (see initBox)
+        return this.side(p.getY(), 1, centre.getY(), gap)
+                | this.side(p.getX(), 0, centre.getX(), gap) << 1
+                | this.side(p.getZ(), 2, centre.getZ(), gap) << 2;
+    }
+
+    /**
+     * Gets the side of a coordinate on one axis: 0 for the child of the first
+     * corner, 1 for the child of the last corner.
+     */
+    private int side(double p, int axis, double centre, double gap) {
+        boolean rev = (this.reversed >> axis & 1) == 1;
+        double d = rev ? this.max[axis] : this.min[axis];
+        double f = rev ? this.min[axis] : this.max[axis];
+        if (2 * Math.abs(p - (d + centre) / 2.0) - gap <= Math.abs(d - centre)) {
+            return 0;
+        } else if (2 * Math.abs(p - (f + centre) / 2.0) - gap <= Math.abs(f - centre)) {
+            return 1;
+        } else {
+            // lost by rounding, kept on its side of the centre
+            return (p < centre) == (d < centre) ? 0 : 1;
+        }
+    }
+
+    /**
+     * Squared distance between the bounds of two segments given by the
+     * offsets of their ends in arrays of coordinates.
+     */
+    private static double segmentsGap(double[] c1, int p, int q, double[] c2, int r, int t) {
+        double sum = 0;
+        for (int a = 0; a < 3; a++) {
+            double d = Math.max(Math.min(c1[p + a], c1[q + a]) - Math.max(c2[r + a], c2[t + a]),
+                    Math.min(c2[r + a], c2[t + a]) - Math.max(c1[p + a], c1[q + a]));
+            if (d > 0) {
+                sum += d * d;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * {@link #dist3D_Segment_to_Segment} on segments given by the offsets of
+     * their ends in arrays of coordinates, with the same operations.
+     */
+    private static double segmentDistance(double[] c1, int p, int q, double[] c2, int r, int t) {
+        double ux = c1[p] - c1[q];
+        double uy = c1[p + 1] - c1[q + 1];
+        double uz = c1[p + 2] - c1[q + 2];
+        double vx = c2[r] - c2[t];
+        double vy = c2[r + 1] - c2[t + 1];
+        double vz = c2[r + 2] - c2[t + 2];
+        double wx = c2[r] - c1[p];
+        double wy = c2[r + 1] - c1[p + 1];
+        double wz = c2[r + 2] - c1[p + 2];
+        final double a = ux * ux + uy * uy + uz * uz;
+        final double b = ux * vx + uy * vy + uz * vz;
+        final double c = vx * vx + vy * vy + vz * vz;
+        final double d = ux * wx + uy * wy + uz * wz;
+        final double e = vx * wx + vy * wy + vz * wz;
+        final double D = a * c - b * b;
+        double sc, sN, sD = D;
+        double tc, tN, tD = D;
+        if (D < SMALL_NUM) {
+            sN = 0.0;
+            sD = 1.0;
+            tN = e;
+            tD = c;
+        } else {
+            sN = (b * e - c * d);
+            tN = (a * e - b * d);
+            if (sN < 0.0) {
+                sN = 0.0;
+                tN = e;
+                tD = c;
+            } else if (sN > sD) {
+                sN = sD;
+                tN = e + b;
+                tD = c;
+            }
+        }
+        if (tN < 0.0) {
+            tN = 0.0;
+            if (-d < 0.0) {
+                sN = 0.0;
+            } else if (-d > a) {
+                sN = sD;
+            } else {
+                sN = -d;
+                sD = a;
+            }
+        } else if (tN > tD) {
+            tN = tD;
+            if ((-d + b) < 0.0) {
+                sN = 0;
+            } else if ((-d + b) > a) {
+                sN = sD;
+            } else {
+                sN = (-d + b);
+                sD = a;
+            }
+        }
+        sc = (Math.abs(sN) < SMALL_NUM ? 0.0 : sN / sD);
+        tc = (Math.abs(tN) < SMALL_NUM ? 0.0 : tN / tD);
+        wx += ux * sc - vx * tc;
+        wy += uy * sc - vy * tc;
+        wz += uz * sc - vz * tc;
+        return Math.sqrt(Math.pow(wx, 2) + Math.pow(wy, 2) + Math.pow(wz, 2));
+    }
+
+    /**
+     * Radius of the sphere of given centre holding the corners.
+     */
+    private double radius(Coord3D centre) {
+        double radius = 0;
+        for (Point p : this.points) {
+            radius = Math.max(radius, centre.distance(p.getCoords()));
+        }
+        return radius;
+    }
+
     /*
      * public boolean isInside(Point point) { boolean inside =
      * point.getCoords().isBetween(this.points[0].getCoords(),
@@ -0,0 +1,910 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.octree;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lite.stream.PointBatch;
+import lite.stream.PointSource;
+
+/**
+ * Octree whose points are stored on disk, one file by leaf, only the node
+ * directory (bounds, number of points and mean of each node) being kept in
+ * memory.
+ * <p>
+ * The tree is built in two passes over a {@code PointSource}: the first one
+ * computes the bounds of the root cube, centred on the centroid as in
+ * {@code Octree}, the second one appends each point to the file of its leaf,
+ * splitting on disk every leaf exceeding the leaf capacity. The points of a
+ * leaf are loaded on demand in a LRU cache whose size is bounded by a byte
+ * budget. Voxels returned by {@code getVoxels}, {@code getVoxelsAtMaxSize} and
+ * {@code getVoxels(List)} are {@code DiskVoxel}: their size and mean come from
+ * the directory and their points are only loaded when
+ * {@code getPointsContained} is called.</p>
+ * <p>
+ * Contrary to {@code Octree}, a node is split on the planes passing through
+ * its centre and the points are not deduplicated when they are written:
+ * duplicates are removed when a page is loaded in a {@code PointCloudMap}.</p>
+ * <p>
+ * Example:</p>
+ * <code>
+ * DiskOctree tree = DiskOctree.build(dir, () -&gt; new PatchPointSource(file), 100000, 2L &lt;&lt; 30);<br>
+ * Voxels voxels = tree.getVoxelsAtMaxSize(5000);<br>
+ * tree.save();
+ * </code>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class DiskOctree implements AutoCloseable {
+
+    /**
+     * Size in bytes of a point in a leaf file: x, y, z, flags of the colour
+     * and normal, rgb, nx, ny, nz.
+     */
+    public static final int RECORD_SIZE = 3 * Double.BYTES + 1 + Integer.BYTES + 3 * Double.BYTES;
+    /**
+     * Estimated size in bytes of a point loaded in memory.
+     */
+    public static final int POINT_MEMORY = 200;
+    /**
+     * Nodes at this depth are not split anymore.
+     */
+    public static final int MAX_DEPTH = 32;
+    private static final String INDEX = "octree.idx";
+    private static final int WRITE_BUFFER = 1 << 14;
+
+    private final Path directory;
+    private final List<DiskNode> nodes;
+    private final int leafCapacity;
+    private final PageCache cache;
+    /**
+     * Write buffers of the leaves being filled.
+     */
+    private final Map<Integer, ByteBuffer> buffers;
+    private final long writeBudget;
+
+    /**
+     * Source of points, opened once for each pass of the construction.
+     */
+    public interface Sources {
+
+        public PointSource open() throws IOException;
+    }
+
+    private DiskOctree(Path directory, int leafCapacity, long cacheBytes) {
+        this.directory = directory;
+        this.nodes = new ArrayList<>();
+        this.leafCapacity = leafCapacity;
+        this.cache = new PageCache(cacheBytes);
+        this.buffers = new HashMap<>();
+        this.writeBudget = Math.max(WRITE_BUFFER, cacheBytes / 4);
+    }
+
+    /**
+     * Builds an octree on disk.
+     *
+     * @param directory directory where leaves are stored, created if needed.
+     * @param sources source of the points, read twice.
+     * @param leafCapacity maximum number of points written in a leaf.
+     * @param cacheBytes maximum number of bytes of the points loaded in
+     * memory.
+     * @return the octree built.
+     * @throws IOException if the points cannot be read or written.
+     */
+    public static DiskOctree build(Path directory, Sources sources, int leafCapacity, long cacheBytes) throws IOException {
+        Files.createDirectories(directory);
+        DiskOctree tree = new DiskOctree(directory, leafCapacity, cacheBytes);
+        PointBatch batch = new PointBatch(1 << 14);
+        // first pass: bounds and centroid
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        double[] sum = new double[3];
+        long count = 0;
+        try (PointSource source = sources.open()) {
+            while (source.read(batch)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    for (int c = 0; c < 3; c++) {
+                        double v = batch.get(i, c);
+                        min[c] = Math.min(min[c], v);
+                        max[c] = Math.max(max[c], v);
+                        sum[c] += v;
+                    }
+                }
+                count += batch.size();
+            }
+        }
+        double side = 0;
+        double[] centre = new double[3];
+        for (int c = 0; c < 3 && count > 0; c++) {
+            side = Math.max(side, max[c] - min[c]);
+            centre[c] = sum[c] / count;
+        }
+        side *= 2;
+        double[] rootMin = new double[3];
+        double[] rootMax = new double[3];
+        for (int c = 0; c < 3; c++) {
+            rootMin[c] = centre[c] - side / 2.0;
+            rootMax[c] = centre[c] + side / 2.0;
+            // the centroid is not the centre of the bounds, the cube must contain them
+            rootMin[c] = Math.min(rootMin[c], min[c]);
+            rootMax[c] = Math.max(rootMax[c], max[c]);
+        }
+        tree.nodes.add(new DiskNode(0, 0, rootMin, rootMax));
+        // second pass: distribution of the points in the leaves
+        try (PointSource source = sources.open()) {
+            while (source.read(batch)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    tree.insert(batch, i);
+                }
+            }
+        }
+        tree.flushAll();
+        return tree;
+    }
+
+    /**
+     * Builds an octree on disk from a point cloud in memory.
+     *
+     * @param directory directory where leaves are stored, created if needed.
+     * @param cloud points of the octree.
+     * @param leafCapacity maximum number of points written in a leaf.
+     * @param cacheBytes maximum number of bytes of the points loaded in
+     * memory.
+     * @return the octree built.
+     * @throws IOException if the points cannot be written.
+     */
+    public static DiskOctree build(Path directory, APointCloud cloud, int leafCapacity, long cacheBytes) throws IOException {
+        return build(directory, () -> new CloudSource(cloud), leafCapacity, cacheBytes);
+    }
+
+    /**
+     * Opens an octree saved with {@code save}.
+     *
+     * @param directory directory of the octree.
+     * @param cacheBytes maximum number of bytes of the points loaded in
+     * memory.
+     * @return the octree opened.
+     * @throws IOException if the octree cannot be read.
+     */
+    public static DiskOctree open(Path directory, long cacheBytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(INDEX))))) {
+            int leafCapacity = in.readInt();
+            int size = in.readInt();
+            DiskOctree tree = new DiskOctree(directory, leafCapacity, cacheBytes);
+            for (int i = 0; i < size; i++) {
+                tree.nodes.add(DiskNode.read(i, in));
+            }
+            return tree;
+        }
+    }
+
+    /**
+     * Saves the node directory so that the octree can be opened again.
+     *
+     * @throws IOException if the directory cannot be written.
+     */
+    public void save() throws IOException {
+        this.flushAll();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(INDEX))))) {
+            out.writeInt(this.leafCapacity);
+            out.writeInt(this.nodes.size());
+            for (DiskNode node : this.nodes) {
+                node.write(out);
+            }
+        }
+    }
+
+    // ------------------------ PRIVATE ------------------------
+    private void insert(PointBatch batch, int i) throws IOException {
+        DiskNode node = this.nodes.get(0);
+        double x = batch.getX(i), y = batch.getY(i), z = batch.getZ(i);
+        while (!node.isLeaf()) {
+            node.accumulate(batch, i);
+            node = this.child(node, node.octant(x, y, z));
+        }
+        node.accumulate(batch, i);
+        ByteBuffer buffer = this.buffer(node.id);
+        put(buffer, batch, i);
+        if (!buffer.hasRemaining()) {
+            this.flush(node.id);
+        }
+        if (node.count > this.leafCapacity && node.canSplit()) {
+            this.split(node);
+        }
+    }
+
+    /**
+     * Writes a point of a batch in a record.
+     */
+    private static void put(ByteBuffer buffer, PointBatch batch, int i) {
+        buffer.putDouble(batch.getX(i)).putDouble(batch.getY(i)).putDouble(batch.getZ(i));
+        buffer.put(batch.getFlags(i));
+        buffer.putInt(batch.getColor(i));
+        buffer.putDouble(batch.getNormalX(i)).putDouble(batch.getNormalY(i)).putDouble(batch.getNormalZ(i));
+    }
+
+    private ByteBuffer buffer(int id) throws IOException {
+        ByteBuffer buffer = this.buffers.get(id);
+        if (buffer == null) {
+            if ((long) (this.buffers.size() + 1) * WRITE_BUFFER * RECORD_SIZE > this.writeBudget) {
+                this.flushAll();
+            }
+            buffer = ByteBuffer.allocate(WRITE_BUFFER * RECORD_SIZE);
+            this.buffers.put(id, buffer);
+        }
+        return buffer;
+    }
+
+    private void flush(int id) throws IOException {
+        ByteBuffer buffer = this.buffers.remove(id);
+        if (buffer != null && buffer.position() > 0) {
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(this.page(id), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    private void flushAll() throws IOException {
+        for (Integer id : new ArrayList<>(this.buffers.keySet())) {
+            this.flush(id);
+        }
+    }
+
+    private Path page(int id) {
+        return this.directory.resolve("leaf-" + id + ".bin");
+    }
+
+    /**
+     * Splits a leaf in 8 children and moves its points in their pages.
+     */
+    private void split(DiskNode node) throws IOException {
+        this.flush(node.id);
+        this.cache.remove(node.id);
+        node.children = new int[8];
+        for (int k = 0; k < 8; k++) {
+            node.children[k] = -1;
+            this.child(node, k);
+        }
+        Path page = this.page(node.id);
+        if (Files.exists(page)) {
+            PointBatch batch = new PointBatch(1 << 12);
+            try (PageReader reader = new PageReader(page)) {
+                while (reader.read(batch)) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        DiskNode child = this.nodes.get(node.children[node.octant(batch.getX(i), batch.getY(i), batch.getZ(i))]);
+                        child.accumulate(batch, i);
+                        ByteBuffer buffer = this.buffer(child.id);
+                        put(buffer, batch, i);
+                        if (!buffer.hasRemaining()) {
+                            this.flush(child.id);
+                        }
+                    }
+                }
+            }
+            Files.delete(page);
+        }
+        for (int k = 0; k < 8; k++) {
+            DiskNode child = this.nodes.get(node.children[k]);
+            if (child.count == 0) {
+                node.children[k] = -1;
+            }
+        }
+        // children exceeding the capacity are split in turn
+        for (int k = 0; k < 8; k++) {
+            if (node.children[k] >= 0) {
+                DiskNode child = this.nodes.get(node.children[k]);
+                if (child.count > this.leafCapacity && child.canSplit()) {
+                    this.split(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a child of a node, creating it if it has been removed because it
+     * was empty.
+     */
+    private DiskNode child(DiskNode node, int k) {
+        if (node.children[k] < 0) {
+            double[] min = new double[3];
+            double[] max = new double[3];
+            for (int c = 0; c < 3; c++) {
+                boolean upper = (k >> c & 1) == 1;
+                min[c] = upper ? node.centre(c) : node.min[c];
+                max[c] = upper ? node.max[c] : node.centre(c);
+            }
+            DiskNode child = new DiskNode(this.nodes.size(), node.depth + 1, min, max);
+            this.nodes.add(child);
+            node.children[k] = child.id;
+        }
+        return this.nodes.get(node.children[k]);
+    }
+
+    /**
+     * Splits the leaves until every node of the given depth exists.
+     */
+    private void goDeepEnough(DiskNode node, int level) throws IOException {
+        if (node.depth < level && node.canSplit()) {
+            if (node.isLeaf()) {
+                this.split(node);
+            }
+            for (int child : node.children) {
+                if (child >= 0) {
+                    this.goDeepEnough(this.nodes.get(child), level);
+                }
+            }
+        }
+    }
+
+    private void getNodes(DiskNode node, int level, List<DiskNode> res) {
+        if (node.depth == level || node.isLeaf()) {
+            res.add(node);
+        } else {
+            for (int child : node.children) {
+                if (child >= 0) {
+                    this.getNodes(this.nodes.get(child), level, res);
+                }
+            }
+        }
+    }
+
+    private void getLeaves(DiskNode node, List<DiskNode> res) {
+        this.getNodes(node, Integer.MAX_VALUE, res);
+    }
+
+    // ---------------------- END PRIVATE ----------------------
+    /**
+     * Loads the points of a node, from the cache if they are already loaded.
+     * The points of a node that is not a leaf are only loaded if they fit in
+     * the byte budget of the cache.
+     *
+     * @param node node of the tree.
+     * @return the points of every leaf under the node.
+     * @throws IllegalStateException if the node is not a leaf and its points
+     * exceed the byte budget of the cache.
+     */
+    PointCloudMap load(DiskNode node) {
+        PointCloudMap cloud = this.cache.get(node.id);
+        if (cloud == null) {
+            if (!node.isLeaf() && node.count * POINT_MEMORY > this.cache.budget) {
+                throw new IllegalStateException("The " + node.count + " points of the voxel exceed the cache of "
+                        + this.cache.budget + " bytes, its sub voxels have to be loaded one by one");
+            }
+            try {
+                this.flushAll();
+                cloud = new PointCloudMap();
+                List<DiskNode> leaves = new ArrayList<>();
+                this.getLeaves(node, leaves);
+                PointBatch batch = new PointBatch(1 << 12);
+                for (DiskNode leaf : leaves) {
+                    Path page = this.page(leaf.id);
+                    if (Files.exists(page)) {
+                        try (PageReader reader = new PageReader(page)) {
+                            while (reader.read(batch)) {
+                                for (int i = 0; i < batch.size(); i++) {
+                                    Point p = new Point(batch.getX(i), batch.getY(i), batch.getZ(i));
+                                    if (batch.hasColor(i)) {
+                                        int rgb = batch.getColor(i);
+                                        p.setColor(new Color(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF));
+                                    }
+                                    if (batch.hasNormal(i)) {
+                                        p.setNormal(new Normal(batch.getNormalX(i), batch.getNormalY(i), batch.getNormalZ(i)));
+                                    }
+                                    cloud.add(p);
+                                }
+                            }
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            this.cache.put(node.id, cloud);
+        }
+        return cloud;
+    }
+
+    /**
+     * Adds a point in the leaf containing it, splitting the leaf if it
+     * exceeds the leaf capacity.
+     *
+     * @param point point to be added.
+     * @throws UncheckedIOException if the point cannot be written.
+     */
+    void add(Point point) {
+        PointBatch batch = new PointBatch(1);
+        Coord3D c = point.getCoords();
+        int i = batch.add(c.getX(), c.getY(), c.getZ());
+        if (point.isColored()) {
+            Color color = point.getColor();
+            batch.setColor(i, color.getRed(), color.getGreen(), color.getBlue());
+        }
+        if (point.isNormalized()) {
+            Normal normal = point.getNormal();
+            batch.setNormal(i, normal.getX(), normal.getY(), normal.getZ());
+        }
+        try {
+            this.insert(batch, i);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        // the pages loaded on the path of the point do not contain it
+        DiskNode node = this.nodes.get(0);
+        this.cache.remove(node.id);
+        while (!node.isLeaf()) {
+            node = this.nodes.get(node.children[node.octant(c.getX(), c.getY(), c.getZ())]);
+            this.cache.remove(node.id);
+        }
+    }
+
+    /**
+     * Gets the children of a node, splitting it on disk if it is a leaf.
+     *
+     * @param node node of the tree.
+     * @return the non-empty children of the node, empty if the node cannot be
+     * split anymore.
+     */
+    List<DiskNode> children(DiskNode node) {
+        List<DiskNode> res = new ArrayList<>();
+        if (node.canSplit()) {
+            try {
+                if (node.isLeaf()) {
+                    this.split(node);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            for (int child : node.children) {
+                if (child >= 0) {
+                    res.add(this.nodes.get(child));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Gets voxels at the specific level in the tree, leaves above the level
+     * being split on disk if needed.
+     *
+     * @param level Level in the tree
+     * @return list of cubes at the given level.
+     * @throws UncheckedIOException if a leaf cannot be split.
+     */
+    public Voxels getVoxels(int level) {
+        Voxels result = new Voxels();
+        if (level >= 0) {
+            try {
+                this.goDeepEnough(this.nodes.get(0), level);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            List<DiskNode> res = new ArrayList<>();
+            this.getNodes(this.nodes.get(0), level, res);
+            res.stream().filter(n -> n.count > 0).forEachOrdered(n -> result.add(new DiskVoxel(this, n)));
+        }
+        return result;
+    }
+
+    /**
+     * Gets voxels of the octree leaves and split the octree until the maximum
+     * number of point on the leaf is under the number given.
+     *
+     * @param maxNumberofPoint maximum number of point per box
+     * @return Voxels at the right level in the octree.
+     * @throws UncheckedIOException if a leaf cannot be split.
+     */
+    public Voxels getVoxelsAtMaxSize(int maxNumberofPoint) {
+        Voxels result = new Voxels();
+        List<DiskNode> leaves = new ArrayList<>();
+        this.getLeaves(this.nodes.get(0), leaves);
+        try {
+            for (DiskNode leaf : leaves) {
+                if (leaf.count > maxNumberofPoint && leaf.canSplit()) {
+                    this.splitUntil(leaf, maxNumberofPoint);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        leaves.clear();
+        this.getLeaves(this.nodes.get(0), leaves);
+        leaves.stream().filter(n -> n.count > 0).forEachOrdered(n -> result.add(new DiskVoxel(this, n)));
+        return result;
+    }
+
+    private void splitUntil(DiskNode node, int maxNumberofPoint) throws IOException {
+        if (node.isLeaf()) {
+            this.split(node);
+        }
+        for (int child : node.children) {
+            if (child >= 0) {
+                DiskNode c = this.nodes.get(child);
+                if (c.count > maxNumberofPoint && c.canSplit()) {
+                    this.splitUntil(c, maxNumberofPoint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets list of voxels that their mean point is contained in the given
+     * list.
+     *
+     * @param points list of points corresponding to the mean of voxels points
+     * @return List of voxels found.
+     */
+    public List<Voxel> getVoxels(List<Point> points) {
+        List<Voxel> boxes = new ArrayList<>();
+        for (Point point : points) {
+            DiskNode node = this.nodes.get(0);
+            Coord3D c = point.getCoords();
+            while (node != null && !node.getMean().equals(point)) {
+                if (node.isLeaf()) {
+                    node = null;
+                } else {
+                    int child = node.children[node.octant(c.getX(), c.getY(), c.getZ())];
+                    node = child < 0 ? null : this.nodes.get(child);
+                }
+            }
+            if (node != null) {
+                boxes.add(new DiskVoxel(this, node));
+            }
+        }
+        return boxes;
+    }
+
+    /**
+     * Gets point cloud corresponding to point contained in octree voxels that
+     * their mean point is contained in the given list.
+     *
+     * @param points list of points corresponding to the mean of voxels points.
+     * @return point cloud in full resolution.
+     */
+    public PointCloudMap getSubPointCloud(List<Point> points) {
+        PointCloudMap result = new PointCloudMap();
+        this.getVoxels(points).forEach(v -> result.add(v.getPointsContained()));
+        return result;
+    }
+
+    /**
+     * Gets point cloud corresponding to point contained in the octree voxel
+     * that its mean point is the given point.
+     *
+     * @param point point corresponding to the mean of voxels points.
+     * @return point cloud in full resolution.
+     */
+    public PointCloudMap getSubPointCloud(Point point) {
+        return this.getSubPointCloud(List.of(point));
+    }
+
+    /**
+     * Gets the number of points written in the octree.
+     *
+     * @return the number of points, duplicates included.
+     */
+    public long size() {
+        return this.nodes.get(0).count;
+    }
+
+    /**
+     * Gets the number of bytes of the points loaded in the cache.
+     *
+     * @return the estimated memory used by the cache.
+     */
+    public long getCachedBytes() {
+        return this.cache.bytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the pending points and empties the cache.
+     *
+     * @throws IOException if the points cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        this.flushAll();
+        this.cache.clear();
+    }
+
+    /**
+     * Node of the directory, kept in memory.
+     */
+    static class DiskNode {
+
+        final int id;
+        final int depth;
+        final double[] min;
+        final double[] max;
+        /**
+         * Index of the children in the directory, -1 for empty children, null
+         * for leaves.
+         */
+        int[] children;
+        long count;
+        /**
+         * Number of points with a colour and with a normal.
+         */
+        long colored;
+        long normalized;
+        final double[] sums = new double[6];
+        final long[] colors = new long[3];
+
+        DiskNode(int id, int depth, double[] min, double[] max) {
+            this.id = id;
+            this.depth = depth;
+            this.min = min;
+            this.max = max;
+        }
+
+        boolean isLeaf() {
+            return this.children == null;
+        }
+
+        boolean canSplit() {
+            return this.depth < MAX_DEPTH && this.max[0] - this.min[0] > Coord3D.ACCURACY;
+        }
+
+        double centre(int c) {
+            return (this.min[c] + this.max[c]) / 2.0;
+        }
+
+        int octant(double x, double y, double z) {
+            return (x >= this.centre(0) ? 1 : 0) | (y >= this.centre(1) ? 2 : 0) | (z >= this.centre(2) ? 4 : 0);
+        }
+
+        void accumulate(PointBatch batch, int i) {
+            this.count++;
+            this.sums[0] += batch.getX(i);
+            this.sums[1] += batch.getY(i);
+            this.sums[2] += batch.getZ(i);
+            if (batch.hasNormal(i)) {
+                this.normalized++;
+                this.sums[3] += batch.getNormalX(i);
+                this.sums[4] += batch.getNormalY(i);
+                this.sums[5] += batch.getNormalZ(i);
+            }
+            if (batch.hasColor(i)) {
+                this.colored++;
+                int rgb = batch.getColor(i);
+                this.colors[0] += rgb >> 16 & 0xFF;
+                this.colors[1] += rgb >> 8 & 0xFF;
+                this.colors[2] += rgb & 0xFF;
+            }
+        }
+
+        Point getMean() {
+            if (this.count == 0) {
+                return new Point(this.centre(0), this.centre(1), this.centre(2));
+            }
+            Point mean = new Point(sums[0] / count, sums[1] / count, sums[2] / count);
+            if (colored > 0) {
+                mean.setColor(new Color((int) (colors[0] / colored), (int) (colors[1] / colored), (int) (colors[2] / colored)));
+            }
+            if (normalized > 0) {
+                mean.setNormal(new Normal(sums[3] / normalized, sums[4] / normalized, sums[5] / normalized));
+            }
+            return mean;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(this.depth);
+            for (int c = 0; c < 3; c++) {
+                out.writeDouble(this.min[c]);
+                out.writeDouble(this.max[c]);
+            }
+            out.writeLong(this.count);
+            out.writeLong(this.colored);
+            out.writeLong(this.normalized);
+            for (double s : this.sums) {
+                out.writeDouble(s);
+            }
+            for (long s : this.colors) {
+                out.writeLong(s);
+            }
+            out.writeBoolean(this.isLeaf());
+            if (!this.isLeaf()) {
+                for (int child : this.children) {
+                    out.writeInt(child);
+                }
+            }
+        }
+
+        static DiskNode read(int id, DataInputStream in) throws IOException {
+            int depth = in.readInt();
+            double[] min = new double[3];
+            double[] max = new double[3];
+            for (int c = 0; c < 3; c++) {
+                min[c] = in.readDouble();
+                max[c] = in.readDouble();
+            }
+            DiskNode node = new DiskNode(id, depth, min, max);
+            node.count = in.readLong();
+            node.colored = in.readLong();
+            node.normalized = in.readLong();
+            for (int i = 0; i < node.sums.length; i++) {
+                node.sums[i] = in.readDouble();
+            }
+            for (int i = 0; i < node.colors.length; i++) {
+                node.colors[i] = in.readLong();
+            }
+            if (!in.readBoolean()) {
+                node.children = new int[8];
+                for (int k = 0; k < 8; k++) {
+                    node.children[k] = in.readInt();
+                }
+            }
+            return node;
+        }
+    }
+
+    /**
+     * LRU cache of the loaded pages bounded by a number of bytes.
+     */
+    private static class PageCache {
+
+        private final long budget;
+        private final LinkedHashMap<Integer, PointCloudMap> pages;
+        private long bytes;
+
+        PageCache(long budget) {
+            this.budget = budget;
+            this.pages = new LinkedHashMap<>(16, 0.75f, true);
+            this.bytes = 0;
+        }
+
+        PointCloudMap get(int id) {
+            return this.pages.get(id);
+        }
+
+        void put(int id, PointCloudMap cloud) {
+            this.remove(id);
+            this.pages.put(id, cloud);
+            this.bytes += (long) cloud.size() * POINT_MEMORY;
+            Iterator<Map.Entry<Integer, PointCloudMap>> iterator = this.pages.entrySet().iterator();
+            // the page just loaded is kept even if it exceeds the budget alone
+            while (this.bytes > this.budget && this.pages.size() > 1 && iterator.hasNext()) {
+                Map.Entry<Integer, PointCloudMap> eldest = iterator.next();
+                if (eldest.getKey() != id) {
+                    this.bytes -= (long) eldest.getValue().size() * POINT_MEMORY;
+                    iterator.remove();
+                }
+            }
+        }
+
+        void remove(int id) {
+            PointCloudMap removed = this.pages.remove(id);
+            if (removed != null) {
+                this.bytes -= (long) removed.size() * POINT_MEMORY;
+            }
+        }
+
+        void clear() {
+            this.pages.clear();
+            this.bytes = 0;
+        }
+    }
+
+    /**
+     * Reader of the records of a leaf file.
+     */
+    private static class PageReader implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        PageReader(Path page) throws IOException {
+            this.channel = FileChannel.open(page, StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+            this.buffer.flip();
+        }
+
+        boolean read(PointBatch batch) throws IOException {
+            batch.clear();
+            while (!batch.isFull()) {
+                if (this.buffer.remaining() < RECORD_SIZE) {
+                    this.buffer.compact();
+                    int read = this.channel.read(this.buffer);
+                    this.buffer.flip();
+                    if (read < 0 || this.buffer.remaining() < RECORD_SIZE) {
+                        return !batch.isEmpty();
+                    }
+                }
+                int i = batch.add(this.buffer.getDouble(), this.buffer.getDouble(), this.buffer.getDouble());
+                byte flags = this.buffer.get();
+                int rgb = this.buffer.getInt();
+                double nx = this.buffer.getDouble();
+                double ny = this.buffer.getDouble();
+                double nz = this.buffer.getDouble();
+                if ((flags & PointBatch.HAS_COLOR) != 0) {
+                    batch.setColor(i, rgb >> 16, rgb >> 8, rgb);
+                }
+                if ((flags & PointBatch.HAS_NORMAL) != 0) {
+                    batch.setNormal(i, nx, ny, nz);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Source reading a point cloud in memory.
+     */
+    private static class CloudSource implements PointSource {
+
+        private final Iterator<Point> iterator;
+
+        CloudSource(APointCloud cloud) {
+            this.iterator = cloud.iterator();
+        }
+
+        @Override
+        public boolean read(PointBatch batch) {
+            batch.clear();
+            while (!batch.isFull() && this.iterator.hasNext()) {
+                Point p = this.iterator.next();
+                Coord3D c = p.getCoords();
+                int i = batch.add(c.getX(), c.getY(), c.getZ());
+                if (p.isColored()) {
+                    batch.setColor(i, p.getColor().getRed(), p.getColor().getGreen(), p.getColor().getBlue());
+                }
+                if (p.isNormalized()) {
+                    batch.setNormal(i, p.getNormal().getX(), p.getNormal().getY(), p.getNormal().getZ());
+                }
+            }
+            return !batch.isEmpty();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.octree;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.util.ArrayList;
+
+/**
+ * Voxel of a {@code DiskOctree} whose points are loaded on demand.
+ * <p>
+ * The number of points and the mean come from the node directory of the tree,
+ * so that the voxel can be listed and compared without reading its points.
+ * Points are loaded through the page cache of the tree the first time
+ * {@code getPointsContained} is called, the cache being allowed to release
+ * them afterwards.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class DiskVoxel extends Voxel {
+
+    private final transient DiskOctree tree;
+    private final transient DiskOctree.DiskNode node;
+
+    DiskVoxel(DiskOctree tree, DiskOctree.DiskNode node) {
+        super(new Point(node.min[0], node.min[1], node.min[2]), new Point(node.max[0], node.max[1], node.max[2]));
+        this.tree = tree;
+        this.node = node;
+        this.cloud = null;
+        this.mean = node.getMean();
+        if (this.mean.isColored()) {
+            this.setColor(this.mean.getColor());
+        }
+    }
+
+    /**
+     * Adds a point inside the voxel to the tree, in the leaf containing it.
+     * The mean of the voxel is updated from the directory of the tree.
+     *
+     * @param point point to be added.
+     * @return True of the point could be added, false if the point is not
+     * inside the voxel.
+     * @throws java.io.UncheckedIOException if the point cannot be written.
+     */
+    @Override
+    public boolean add(final Point point) {
+        final boolean inside = this.isInside(point);
+        if (inside) {
+            this.put(point);
+        }
+        return inside;
+    }
+
+    @Override
+    void put(final Point point) {
+        this.tree.add(point);
+        this.mean = this.node.getMean();
+        if (this.mean.isColored()) {
+            this.setColor(this.mean.getColor());
+        }
+    }
+
+    @Override
+    void putAll(final Point[] points, final int[] index, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            this.put(points[index[i]]);
+        }
+    }
+
+    /**
+     * Get points contained in the Box, loading them from the disk if they are
+     * not in the cache. The voxel of a node which is not a leaf of the tree
+     * can only be loaded if its points fit in the cache of the tree.
+     *
+     * @return all points inside the voxel.
+     * @throws java.io.UncheckedIOException if the points cannot be read.
+     * @throws IllegalStateException if the voxel is not a leaf and its points
+     * exceed the byte budget of the cache.
+     */
+    @Override
+    public PointCloudMap getPointsContained() {
+        return this.tree.load(this.node);
+    }
+
+    /**
+     * Split the voxel in its non-empty children, splitting the leaf on disk if
+     * needed.
+     *
+     * @return Sub voxels, empty if the voxel cannot be split anymore.
+     */
+    @Override
+    public ArrayList<Voxel> split() {
+        final ArrayList<Voxel> voxels = new ArrayList<>();
+        this.tree.children(this.node).forEach(n -> voxels.add(new DiskVoxel(this.tree, n)));
+        return voxels;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.node.count == 0;
+    }
+
+    /**
+     * Return the number of point written in the voxel, duplicates included.
+     *
+     * @return the number of point inside the voxel.
+     */
+    @Override
+    public int pointCount() {
+        return (int) Math.min(Integer.MAX_VALUE, this.node.count);
+    }
+
+    @Override
+    public int size() {
+        return this.pointCount();
+    }
+
+    @Override
+    public Point getMean() {
+        return this.mean;
+    }
+
+    /**
+     * Colors every points contained in the cloud. The color is lost if the
+     * points are released by the cache.
+     *
+     * @param color color to be used to color points.
+     */
+    @Override
+    public void colorPoints(final Color color) {
+        this.getPointsContained().stream().forEach(point -> point.setColor(color));
+    }
+
+    @Override
+    public double getOptimalNormal() {
+        return this.getPointsContained().getOptimalNormal();
+    }
+}
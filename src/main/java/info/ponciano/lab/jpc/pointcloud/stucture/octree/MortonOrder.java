@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.octree;
+
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Morton codes of the points of an octree, used to split its leaves without
+ * testing every point against every child voxel.
+ * <p>
+ * The code of a point concatenates, from the root, the index of the child of
+ * {@code Voxel.split} receiving the point at each level, 3 bits by level on
+ * {@code MAX_LEVEL} levels. The bits of a level are computed by
+ * {@code Box.octant} when the leaves of the level are split, so that the
+ * partition is the same as the one of {@code Voxel.split}.</p>
+ * <p>
+ * The points are sorted by a MSD radix sort on the codes, one level at a time:
+ * each split is a stable counting sort of the range of every leaf on its 3
+ * bits, run in parallel over the leaves with {@code SplitTask}. Node boundaries come from the sorted
+ * order and the points of each node keep the order of the cloud, as with
+ * {@code Voxel.split}.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+class MortonOrder {
+
+    /**
+     * Number of levels coded in the 63 bits of a code.
+     */
+    static final int MAX_LEVEL = 21;
+    private final Point[] points;
+    private final long[] codes;
+    /**
+     * Index of the points sorted on the codes up to the current level.
+     */
+    private int[] order;
+    /**
+     * Start of the range of each leaf in {@code order}, followed by the number
+     * of points.
+     */
+    private int[] starts;
+    private int level;
+
+    /**
+     * Fills the root voxel with the points of the cloud.
+     *
+     * @param root root voxel, empty.
+     * @param origin points of the octree.
+     */
+    MortonOrder(Voxel root, APointCloud origin) {
+        Point[] all = origin.stream().toArray(Point[]::new);
+        boolean[] inside = new boolean[all.length];
+        IntStream.range(0, all.length).parallel().forEach(i -> inside[i] = root.isInside(all[i]));
+        // points of a PointCloudMap are already distinct
+        PointCloudMap distinct = origin instanceof PointCloudMap ? null : new PointCloudMap();
+        List<Point> accepted = new ArrayList<>(all.length);
+        for (int i = 0; i < all.length; i++) {
+            if (!inside[i]) {
+                System.err.println("point cannot be added");
+            } else if (distinct == null) {
+                accepted.add(all[i]);
+            } else {
+                distinct.add(all[i]);
+                accepted.add(all[i]);
+            }
+        }
+        if (distinct == null || distinct.size() == accepted.size()) {
+            this.points = accepted.toArray(new Point[accepted.size()]);
+            root.putAll(this.points, IntStream.range(0, this.points.length).toArray(), 0, this.points.length);
+        } else {
+            // duplicates change the mean computed by Voxel.add
+            accepted.forEach(root::put);
+            this.points = distinct.stream().toArray(Point[]::new);
+        }
+        this.codes = new long[this.points.length];
+        this.order = IntStream.range(0, this.points.length).toArray();
+        this.starts = new int[]{0, this.points.length};
+        this.level = 0;
+    }
+
+    /**
+     * Tests if the leaves can still be split with the codes.
+     *
+     * @return true if the codes have a level under the current one.
+     */
+    boolean canSplit() {
+        return this.level < MAX_LEVEL;
+    }
+
+    /**
+     * Splits every leaf of the current level.
+     *
+     * @param leaves leaves of the current level, in the order of the codes.
+     * @param parallelThreshold minimum number of points of a group of leaves
+     * split in parallel, 0 to split the leaves sequentially.
+     * @return the leaves of the next level.
+     */
+    List<OctreeNode> split(List<OctreeNode> leaves, int parallelThreshold) {
+        this.level++;
+        int shift = 3 * (MAX_LEVEL - this.level);
+        int[] next = new int[this.order.length];
+        List<List<OctreeNode>> children = new ArrayList<>(Collections.nCopies(leaves.size(), null));
+        SplitTask.split(leaves, parallelThreshold,
+                i -> children.set(i, this.split(leaves.get(i), this.starts[i], this.starts[i + 1], shift, next)));
+        List<OctreeNode> newLeaves = new ArrayList<>();
+        children.forEach(newLeaves::addAll);
+        // children are consecutive in the new order
+        int[] newStarts = new int[newLeaves.size() + 1];
+        int start = 0;
+        for (int i = 0; i < newLeaves.size(); i++) {
+            newStarts[i] = start;
+            start += newLeaves.get(i).getData().pointCount();
+        }
+        newStarts[newLeaves.size()] = start;
+        this.order = next;
+        this.starts = newStarts;
+        return newLeaves;
+    }
+
+    /**
+     * Splits a leaf with a stable counting sort of its range.
+     */
+    private List<OctreeNode> split(OctreeNode leaf, int start, int end, int shift, int[] next) {
+        Voxel voxel = leaf.getData();
+        // same centre as Voxel.split
+        Point centre = new Point(voxel.points);
+        Coord3D c = centre.getCoords();
+        int[] offsets = new int[9];
+        for (int j = start; j < end; j++) {
+            int i = this.order[j];
+            int k = voxel.octant(this.points[i].getCoords(), c, Box.GAP);
+            this.codes[i] |= (long) k << shift;
+            offsets[k + 1]++;
+        }
+        for (int k = 0; k < 8; k++) {
+            offsets[k + 1] += offsets[k];
+        }
+        int[] sizes = new int[8];
+        for (int k = 0; k < 8; k++) {
+            sizes[k] = offsets[k + 1] - offsets[k];
+        }
+        for (int j = start; j < end; j++) {
+            int k = (int) (this.codes[this.order[j]] >>> shift & 7);
+            next[start + offsets[k]++] = this.order[j];
+        }
+        // children created as in Voxel.split, empty ones being removed
+        List<OctreeNode> children = new ArrayList<>();
+        int first = start;
+        for (int k = 0; k < 8; k++) {
+            if (sizes[k] > 0) {
+                Voxel child = new Voxel(voxel.points[k], centre);
+                child.putAll(this.points, next, first, first + sizes[k]);
+                OctreeNode node = new OctreeNode(child);
+                leaf.addChild(node);
+                children.add(node);
+            }
+            first += sizes[k];
+        }
+        if (children.isEmpty()) {
+            throw new InternalError("The split of the OctreeNode does not produce any leaf!");
+        }
+        return children;
+    }
+}
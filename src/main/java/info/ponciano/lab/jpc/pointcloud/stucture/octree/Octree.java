@@ -52,6 +52,16 @@ public class Octree {
      */
     private OctreeNode root;
     private int maxLevel;
+    /**
+     * Morton codes of the points used to split the leaves, null if the tree
+     * is split with {@code Voxel.split}.
+     */
+    private MortonOrder morton;
+    /**
+     * Minimum number of points of a group of leaves split in parallel, 0 to
+     * split the leaves sequentially.
+     */
+    private int parallelThreshold;
 
     /**
      * Creates a new instance of @code{Octree}
@@ -67,6 +77,36 @@ public class Octree {
         this.leaves.add(root);
     }
 
+    private Octree(APointCloud origin, boolean morton) {
+        this.maxLevel = -1;
+        this.depthLevel = 0;
+        this.origin = origin;
+        if (morton) {
+            this.initMorton();
+        } else {
+            this.init();
+        }
+        this.leaves = new ArrayList<>();
+        this.leaves.add(root);
+    }
+
+    /**
+     * Creates an octree split with the Morton codes of its points.
+     * <p>
+     * The code of each point is computed once and the points are sorted on it
+     * when the tree is split, instead of testing each point against the
+     * children of its voxel. The voxels obtained are the same as those of
+     * {@code new Octree(origin)}, with the points in the same order. Levels
+     * deeper than {@code MortonOrder.MAX_LEVEL} are split with
+     * {@code Voxel.split}.</p>
+     *
+     * @param origin point cloud used to create the tree.
+     * @return the octree created.
+     */
+    public static Octree withMortonCodes(APointCloud origin) {
+        return new Octree(origin, true);
+    }
+
     public Octree(Collection<Point> origin) {
         this.maxLevel = -1;
         this.depthLevel = 0;
@@ -97,25 +137,25 @@ public class Octree {
         this.root = new OctreeNode(motherBox);
     }
 
+    private void initMorton() {
+        double max = PiMath.max(List.of(origin.getDx(), origin.getDy(), origin.getDz())) * 2;
+        Point pm = new Point(origin.getCentroid());
+        Voxel motherBox = new Voxel(pm, max, max, max);
+        this.morton = new MortonOrder(motherBox, this.origin);
+        this.root = new OctreeNode(motherBox);
+    }
+
     private void split() {
 
         // if it is possible to split
         if (!this.maxLevelFound()) {
             this.depthLevel++;
-            // List<Thread> workers = new ArrayList<>();
-            // ExecutorService execute = Executors.newCachedThreadPool();
-            // split in multithreading every node in the current leaves
-//            ThreadManager manager = new ThreadManager();
-            for (int i = 0; i < this.leaves.size(); i++) {
-                OctreeNode leave = this.leaves.get(i);
-                // execute.submit(leave);
-               leave.run();
-//                manager.addWorker(leave);
+            if (this.morton != null && this.morton.canSplit()) {
+                this.leaves = this.morton.split(this.leaves, this.parallelThreshold);
+                return;
             }
-            // wait until every node are splitted
-//            if (this.leaves.size() > 0) {
-//                manager.waitTheEnd();
-//            }
+            this.morton = null;
+            SplitTask.split(this.leaves, this.parallelThreshold, i -> this.leaves.get(i).run());
 
             // init result list
             List<OctreeNode> newLeaves = new ArrayList<>();
@@ -142,8 +182,23 @@ public class Octree {
 //            }
         }
     }
-   public static Voxels getRawVoxels(APointCloud pointcloud, int size) {
-        Octree oct = new Octree(pointcloud);
+    public static Voxels getRawVoxels(APointCloud pointcloud, int size) {
+        return getRawVoxels(pointcloud, size, 0);
+    }
+
+    /**
+     * Gets the voxels of an octree split until they contain less points than
+     * the given size.
+     *
+     * @param pointcloud points of the octree.
+     * @param size maximum number of points of a voxel.
+     * @param parallelThreshold minimum number of points of a group of leaves
+     * split in parallel, 0 to split sequentially.
+     * @return the voxels, in the same order whatever the threshold.
+     */
+    public static Voxels getRawVoxels(APointCloud pointcloud, int size, int parallelThreshold) {
+        Octree oct = Octree.withMortonCodes(pointcloud);
+        oct.setParallelThreshold(parallelThreshold);
         return oct.getVoxelsAtMaxSize(size);
     }
     private void setMaxLevel() {
@@ -297,6 +352,23 @@ public class Octree {
         return result;
     }
 
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the fork-join subdivision of the tree: sibling leaves are split in
+     * parallel on the common pool, by groups having at least the given number
+     * of points. The voxels and their order are the same as with a sequential
+     * split.
+     *
+     * @param parallelThreshold minimum number of points of a group of leaves
+     * split in parallel, 0 to split the leaves sequentially.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
     /**
      * Gets the max level if it is known, -1 otherwise.
      *
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.octree;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Fork-join task splitting the leaves of an octree level.
+ * <p>
+ * The range of leaves is halved until it contains a single leaf or less
+ * points than the threshold, the leaves of a range being then split one
+ * after another. Each leaf only modifies its own children, so that the tree
+ * obtained is the same as the one of a sequential split, the new leaves being
+ * collected in the order of the leaves afterwards.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+class SplitTask extends RecursiveAction {
+
+    /**
+     * Number of points of the leaves before each leaf.
+     */
+    private final long[] counts;
+    private final int from;
+    private final int to;
+    private final int threshold;
+    private final IntConsumer split;
+
+    private SplitTask(long[] counts, int from, int to, int threshold, IntConsumer split) {
+        this.counts = counts;
+        this.from = from;
+        this.to = to;
+        this.threshold = threshold;
+        this.split = split;
+    }
+
+    /**
+     * Splits every leaf, in parallel if the threshold is positive.
+     *
+     * @param leaves leaves to be split.
+     * @param threshold minimum number of points of a range of leaves split in
+     * parallel, 0 or less to split the leaves sequentially.
+     * @param split split of the leaf at the given index.
+     */
+    static void split(List<OctreeNode> leaves, int threshold, IntConsumer split) {
+        if (threshold <= 0 || leaves.size() < 2) {
+            for (int i = 0; i < leaves.size(); i++) {
+                split.accept(i);
+            }
+        } else {
+            long[] counts = new long[leaves.size() + 1];
+            for (int i = 0; i < leaves.size(); i++) {
+                counts[i + 1] = counts[i] + leaves.get(i).getData().pointCount();
+            }
+            ForkJoinPool.commonPool().invoke(new SplitTask(counts, 0, leaves.size(), threshold, split));
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (this.to - this.from < 2 || this.counts[this.to] - this.counts[this.from] <= this.threshold) {
+            for (int i = this.from; i < this.to; i++) {
+                this.split.accept(i);
+            }
+        } else {
+            // halves the points rather than the leaves
+            long half = (this.counts[this.from] + this.counts[this.to]) / 2;
+            int mid = this.from + 1;
+            while (mid < this.to - 1 && this.counts[mid + 1] <= half) {
+                mid++;
+            }
+            invokeAll(new SplitTask(this.counts, this.from, mid, this.threshold, this.split),
+                    new SplitTask(this.counts, mid, this.to, this.threshold, this.split));
+        }
+    }
+}
@@ -28,6 +28,7 @@ import info.ponciano.lab.jpc.math.Point;
 
 import info.ponciano.lab.jpc.math.Color;
 import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.vector.Normal;
 import info.ponciano.lab.jpc.opengl.IObjectGL;
 import java.io.Serializable;
 
@@ -100,20 +101,93 @@ public class Voxel extends Box implements Serializable {
     public boolean add(final Point point) {
         final boolean inside = this.isInside(point);
         if (inside) {
-            // add the point
-            this.cloud.add(point);
-            // calcule the mean
-            if (this.mean == null) {
-                this.mean = point;
-            } else {
-                final Point mean1 = point.getMean(mean, this.pointCount() - 1);
-                this.mean = mean1;
+            this.put(point);
+        }
+        return inside;
+    }
+
+    /**
+     * Adds a point already known to be inside the voxel and updates the mean.
+     *
+     * @param point point to be added.
+     */
+    void put(final Point point) {
+        // add the point
+        this.cloud.add(point);
+        // calcule the mean
+        if (this.mean == null) {
+            this.mean = point;
+        } else {
+            final Point mean1 = point.getMean(mean, this.pointCount() - 1);
+            this.mean = mean1;
+        }
+        if (mean.isColored()) {
+            this.color = mean.getColor();
+        }
+    }
+
+    /**
+     * Adds points already known to be inside an empty voxel and distinct at
+     * the {@code Coord3D.ACCURACY} grid. The mean is the same as the one of
+     * successive calls of {@code put}, without creating a point for each
+     * intermediate mean.
+     *
+     * @param points points to be added.
+     * @param index index of the points in the array.
+     * @param from first index in {@code index}, included.
+     * @param to last index in {@code index}, excluded.
+     */
+    void putAll(final Point[] points, final int[] index, final int from, final int to) {
+        if (from >= to) {
+            return;
+        }
+        final Point first = points[index[from]];
+        this.cloud.addDistinct(first);
+        final Coord3D fc = first.getCoords();
+        double x = fc.getX(), y = fc.getY(), z = fc.getZ();
+        final boolean colored = first.isColored();
+        final boolean normalized = first.isNormalized();
+        int r = 0, g = 0, b = 0;
+        double nx = 0, ny = 0, nz = 0;
+        if (colored) {
+            r = first.getColor().getRed();
+            g = first.getColor().getGreen();
+            b = first.getColor().getBlue();
+        }
+        if (normalized) {
+            nx = first.getNormal().getX();
+            ny = first.getNormal().getY();
+            nz = first.getNormal().getZ();
+        }
+        for (int i = from + 1; i < to; i++) {
+            final Point p = points[index[i]];
+            this.cloud.addDistinct(p);
+            // same arithmetic as Point.getMean
+            final int weight = this.pointCount();
+            final Coord3D c = p.getCoords();
+            x = (x * (weight - 1) + c.getX()) / weight;
+            y = (y * (weight - 1) + c.getY()) / weight;
+            z = (z * (weight - 1) + c.getZ()) / weight;
+            if (colored && p.isColored()) {
+                r = (r * (weight - 1) + p.getColor().getRed()) / weight;
+                g = (g * (weight - 1) + p.getColor().getGreen()) / weight;
+                b = (b * (weight - 1) + p.getColor().getBlue()) / weight;
             }
-            if (mean.isColored()) {
-                this.color = mean.getColor();
+            if (normalized && p.isNormalized()) {
+                nx = Math.abs((nx * (weight - 1) + p.getNormal().getX()) / weight);
+                ny = Math.abs((ny * (weight - 1) + p.getNormal().getY()) / weight);
+                nz = Math.abs((nz * (weight - 1) + p.getNormal().getZ()) / weight);
             }
         }
-        return inside;
+        if (to - from == 1) {
+            this.mean = first;
+        } else {
+            this.mean = new Point(new Coord3D(x, y, z), colored ? new Color(r, g, b) : null,
+                    normalized ? new Normal(nx, ny, nz) : null);
+        }
+        if (mean.isColored()) {
+            this.color = mean.getColor();
+        }
     }
 
     public void add(final Collection<Point> points) {
@@ -164,39 +238,23 @@ public class Voxel extends Box implements Serializable {
         }
         // -------Fill
         // fill subBox with points to be splitted
-        this.cloud.stream().forEach((Point point) -> {
-            int j = 0;
-            boolean added = false;
-            while (!added && j < voxels.size()) {
-                added = voxels.get(j).add(point);
-                j++;
-            }
-            if (!added) {
-//                boolean k = this.isInside(point);
-//                Display d = new Display(null, true);
-//                Voxel voxel = new Voxel(point, 1, 1, 1);
-//                Coord3D coord3D = new Coord3D(413387.67820, 5318067.80870, 308.50620);
-//                voxel.move(coord3D);
-//                voxel.setColor(Color.RED);
-//                d.addObject(voxel.getView());
-//                voxels.forEach(v -> {
-//                    v.move(coord3D);
-//                    d.addObject(v.getView());
-//                });
-//                Iterator<Voxel> iterator = voxels.iterator();
-//                int size = voxels.size();
-//                int o = 0;
-//                while (iterator.hasNext()) {
-//                    Voxel next = iterator.next();
-//                    next.move(coord3D);
-//                    next.setColor(Color.getColor(o++, size));
-//                    d.addObject(voxels.get(0).getView());
-//                }
-//                d.run();
-                throw new InternalError("Point not added!");
-                // throw new InternalError("A point is lost...");
-            }
-        });
+        if (this.isAxisAligned()) {
+            // the octant of each point gives the first child accepting it
+            final Coord3D c = centre.getCoords();
+            this.cloud.stream().forEach(point -> voxels.get(this.octant(point.getCoords(), c, GAP)).put(point));
+        } else {
+            this.cloud.stream().forEach((Point point) -> {
+                int j = 0;
+                boolean added = false;
+                while (!added && j < voxels.size()) {
+                    added = voxels.get(j).add(point);
+                    j++;
+                }
+                if (!added) {
+                    throw new InternalError("Point not added!");
+                }
+            });
+        }
         // remove empty voxel
         final ArrayList<Voxel> finalBoxes = new ArrayList<>();
         voxels.stream().filter((voxele) -> (!voxele.isEmpty())).forEachOrdered((voxele) -> {
@@ -326,6 +384,7 @@ public class Voxel extends Box implements Serializable {
             point.getCoords().setY(point.getCoords().getY() - movingVector.getY());
             point.getCoords().setZ(point.getCoords().getZ() - movingVector.getZ());
         }
+        this.updateBounds();
     }
 
     public List<Point> getListPoints() {
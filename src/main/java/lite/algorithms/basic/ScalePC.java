@@ -18,6 +18,7 @@
  */
 package lite.algorithms.basic;
 
+import info.ponciano.lab.jpc.math.Matrix4d;
 import lite.pointcloud.PointCloud;
 import lite.algorithms.IAlgorithm;
 
@@ -65,11 +66,7 @@ public class ScalePC implements IAlgorithm {
 
     @Override
     public void run() {
-        for (int i = 0; i < this.cloud.size(); i++) {
-            this.cloud.get(i).setX(this.cloud.get(i).getX() * x);
-            this.cloud.get(i).setY(this.cloud.get(i).getY() * y);
-            this.cloud.get(i).setZ(this.cloud.get(i).getZ() * z);
-        }
+        this.cloud.transform(Matrix4d.scaling(x, y, z));
     }
 
     public PointCloud getCloud() {
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.algorithms.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only memory mapping of a binary point cloud file written by
+ * {@code SavePCbin}.
+ * <p>
+ * No point object is created: the coordinates are exposed as a
+ * {@code FloatBuffer} viewing the mapped file, in the byte order of the file.
+ * A single buffer cannot exceed {@code Integer.MAX_VALUE} bytes, so larger
+ * files have to be read by blocks of points with
+ * {@code getCoordinates(long, int)}.</p>
+ * <p>
+ * Example:</p>
+ * <code>
+ * try (MappedPCbin bin = new MappedPCbin(path)) {<br>
+ * &nbsp;&nbsp;FloatBuffer xyz = bin.getCoordinates();<br>
+ * &nbsp;&nbsp;float x0 = xyz.get(0);<br>
+ * }
+ * </code>
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class MappedPCbin implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final PCbinHeader header;
+
+    /**
+     * Creates a new instance of <code>MappedPCbin</code>.
+     *
+     * @param filepath The path of the file containing the point cloud.
+     * @throws IOException if the file cannot be opened or if it is not in the
+     * versioned binary format.
+     */
+    public MappedPCbin(String filepath) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ);
+        try {
+            this.header = PCbinHeader.read(this.channel);
+            if (this.header == null) {
+                throw new IOException(filepath + " is not a versioned binary point cloud");
+            }
+            if (this.channel.size() < PCbinHeader.SIZE + this.header.getDataSize()) {
+                throw new IOException(filepath + " is truncated");
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    public PCbinHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Gets the number of points of the file.
+     *
+     * @return the number of points.
+     */
+    public long size() {
+        return this.header.getCount();
+    }
+
+    /**
+     * Gets the coordinates of every point.
+     *
+     * @return a buffer containing x, y, z of each point, mapped on the file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public FloatBuffer getCoordinates() throws IOException {
+        if (this.size() * 3 * Float.BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Too many points to be mapped in one buffer: " + this.size());
+        }
+        return this.getCoordinates(0, (int) this.size());
+    }
+
+    /**
+     * Gets the coordinates of a block of points.
+     *
+     * @param first index of the first point of the block.
+     * @param count number of points of the block.
+     * @return a buffer containing x, y, z of each point of the block, mapped
+     * on the file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public FloatBuffer getCoordinates(long first, int count) throws IOException {
+        this.check(first, count);
+        long position = PCbinHeader.SIZE + first * 3 * Float.BYTES;
+        return this.map(position, (long) count * 3 * Float.BYTES).asFloatBuffer();
+    }
+
+    /**
+     * Gets the colors of every point.
+     *
+     * @return a buffer containing red, green, blue of each point as unsigned
+     * bytes, mapped on the file, or null if the file has no color.
+     * @throws IOException if the file cannot be mapped or if the colors
+     * exceed the size of a buffer.
+     */
+    public ByteBuffer getColors() throws IOException {
+        if (this.size() * 3 > Integer.MAX_VALUE) {
+            throw new IOException("Too many points to be mapped in one buffer: " + this.size());
+        }
+        return this.getColors(0, (int) this.size());
+    }
+
+    /**
+     * Gets the colors of a block of points.
+     *
+     * @param first index of the first point of the block.
+     * @param count number of points of the block.
+     * @return a buffer containing red, green, blue of each point of the block
+     * as unsigned bytes, mapped on the file, or null if the file has no color.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public ByteBuffer getColors(long first, int count) throws IOException {
+        if (!this.header.hasColor()) {
+            return null;
+        }
+        this.check(first, count);
+        return this.map(this.header.getColorPosition() + first * 3, (long) count * 3);
+    }
+
+    /**
+     * Tests if the data of the file match the CRC32 of the header.
+     *
+     * @return true if the data are not corrupted.
+     * @throws IOException if the file cannot be read.
+     */
+    public boolean checkCRC() throws IOException {
+        CRC32 crc = new CRC32();
+        long position = PCbinHeader.SIZE;
+        long end = PCbinHeader.SIZE + this.header.getDataSize();
+        while (position < end) {
+            long length = Math.min(end - position, 1 << 26);
+            crc.update(this.map(position, length));
+            position += length;
+        }
+        return (int) crc.getValue() == this.header.getCrc();
+    }
+
+    private MappedByteBuffer map(long position, long length) throws IOException {
+        MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffer.order(this.header.getOrder());
+        return buffer;
+    }
+
+    private void check(long first, int count) {
+        if (first < 0 || count < 0 || first + count > this.size()) {
+            throw new IndexOutOfBoundsException(first + "+" + count + "/" + this.size());
+        }
+    }
+
+    /**
+     * Closes the file, buffers already mapped stay valid until they are
+     * garbage collected.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.algorithms.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Header of the binary point cloud format written by {@code SavePCbin}.
+ * <p>
+ * The file starts with a header of {@code SIZE} bytes:</p>
+ * <ul>
+ * <li>magic number "LPCB" (4 bytes),</li>
+ * <li>byte order of the file, 0 for big endian and 1 for little endian (1
+ * byte),</li>
+ * <li>version of the format (1 byte),</li>
+ * <li>attribute layout flags (2 bytes),</li>
+ * <li>number of points (8 bytes),</li>
+ * <li>bounds min x, min y, min z, max x, max y, max z (6 floats),</li>
+ * <li>CRC32 of the data following the header (4 bytes),</li>
+ * <li>reserved (4 bytes).</li>
+ * </ul>
+ * <p>
+ * The header is followed by the x, y, z coordinates of every point stored as
+ * floats, then, if the {@code COLOR} flag is set, by the red, green, blue
+ * components of every point stored as unsigned bytes. Every value after the
+ * byte order is written in the byte order of the file, so a file written in
+ * the native order can be mapped and given as it is to OpenGL.</p>
+ * <p>
+ * Files starting without the magic number are the legacy format: a big endian
+ * int giving the number of points followed by the big endian x, y, z floats
+ * of each point.</p>
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class PCbinHeader {
+
+    public static final byte[] MAGIC = "LPCB".getBytes(StandardCharsets.US_ASCII);
+    public static final byte VERSION = 1;
+    public static final int SIZE = 48;
+    /**
+     * Layout flag indicating that the file contains the colors of the points.
+     */
+    public static final short COLOR = 1;
+
+    private ByteOrder order;
+    private short layout;
+    private long count;
+    private final float[] bounds;
+    private int crc;
+
+    /**
+     * Creates a new instance of <code>PCbinHeader</code>.
+     *
+     * @param order byte order of the file.
+     * @param layout attribute layout flags.
+     * @param count number of points.
+     */
+    public PCbinHeader(ByteOrder order, short layout, long count) {
+        this.order = order;
+        this.layout = layout;
+        this.count = count;
+        this.bounds = new float[6];
+    }
+
+    /**
+     * Reads the header at the beginning of a channel.
+     *
+     * @param channel channel of the file.
+     * @return the header read or null if the file is in the legacy format.
+     * @throws IOException if the file cannot be read or if its version is not
+     * supported.
+     */
+    public static PCbinHeader read(SeekableByteChannel channel) throws IOException {
+        if (channel.size() < SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        channel.position(0);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        }
+        buffer.flip();
+        for (byte b : MAGIC) {
+            if (buffer.get() != b) {
+                return null;
+            }
+        }
+        ByteOrder order = buffer.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        buffer.order(order);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary point cloud version: " + version);
+        }
+        PCbinHeader header = new PCbinHeader(order, buffer.getShort(), buffer.getLong());
+        for (int i = 0; i < 6; i++) {
+            header.bounds[i] = buffer.getFloat();
+        }
+        header.crc = buffer.getInt();
+        return header;
+    }
+
+    /**
+     * Writes the header at the beginning of a channel.
+     *
+     * @param channel channel of the file.
+     * @throws IOException if the header cannot be written.
+     */
+    public void write(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        buffer.put(MAGIC);
+        buffer.put((byte) (this.order == ByteOrder.BIG_ENDIAN ? 0 : 1));
+        buffer.order(this.order);
+        buffer.put(VERSION);
+        buffer.putShort(this.layout);
+        buffer.putLong(this.count);
+        for (float b : this.bounds) {
+            buffer.putFloat(b);
+        }
+        buffer.putInt(this.crc);
+        buffer.putInt(0);
+        buffer.flip();
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Gets the size in bytes of the data following the header.
+     *
+     * @return the size of the coordinates and of the attributes.
+     */
+    public long getDataSize() {
+        long size = this.count * 3 * Float.BYTES;
+        if (this.hasColor()) {
+            size += this.count * 3;
+        }
+        return size;
+    }
+
+    /**
+     * Gets the position in the file of the colors.
+     *
+     * @return the position of the first color.
+     */
+    public long getColorPosition() {
+        return SIZE + this.count * 3 * Float.BYTES;
+    }
+
+    public boolean hasColor() {
+        return (this.layout & COLOR) != 0;
+    }
+
+    public ByteOrder getOrder() {
+        return order;
+    }
+
+    public short getLayout() {
+        return layout;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the bounds of the point cloud.
+     *
+     * @return min x, min y, min z, max x, max y, max z.
+     */
+    public float[] getBounds() {
+        return bounds.clone();
+    }
+
+    public void setBounds(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        this.bounds[0] = minX;
+        this.bounds[1] = minY;
+        this.bounds[2] = minZ;
+        this.bounds[3] = maxX;
+        this.bounds[4] = maxY;
+        this.bounds[5] = maxZ;
+    }
+
+    public int getCrc() {
+        return crc;
+    }
+
+    public void setCrc(int crc) {
+        this.crc = crc;
+    }
+
+}
@@ -19,13 +19,23 @@
 package lite.algorithms.io;
 
 import lite.pointcloud.PointColor;
+import java.awt.Color;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
+ * Reads a point cloud saved by {@code SavePCbin}, in the versioned format
+ * described by {@code PCbinHeader} or in the legacy format. Use
+ * {@code MappedPCbin} to access the coordinates without creating point
+ * objects.
  *
  * @author Jean-Jacques Ponciano
  */
@@ -46,7 +56,9 @@ public class ReadPCfromBin extends PCreader {
         //create the file
         File file = new File(filepath);
         // test if the file exists
-        if (file.exists()) // if it does not exists throws a exception.
+        if (file.exists() && this.isVersioned()) {
+            this.readMapped();
+        } else if (file.exists()) // if it does not exists throws a exception.
         {
             DataInputStream ois = null;
             try {
@@ -76,4 +88,37 @@ public class ReadPCfromBin extends PCreader {
         this.isready = true;
     }
 
+    private boolean isVersioned() {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            return PCbinHeader.read(channel) != null;
+        } catch (final IOException e) {
+            System.err.println(e);
+            return false;
+        }
+    }
+
+    private void readMapped() {
+        final int block = 1 << 20;
+        try (MappedPCbin bin = new MappedPCbin(filepath)) {
+            for (long first = 0; first < bin.size(); first += block) {
+                int count = (int) Math.min(block, bin.size() - first);
+                FloatBuffer coords = bin.getCoordinates(first, count);
+                ByteBuffer colors = bin.getColors(first, count);
+                for (int i = 0; i < count; i++) {
+                    float x = coords.get();
+                    float y = coords.get();
+                    float z = coords.get();
+                    if (colors == null) {
+                        this.cloud.add(new PointColor(x, y, z));
+                    } else {
+                        Color color = new Color(colors.get() & 0xFF, colors.get() & 0xFF, colors.get() & 0xFF);
+                        this.cloud.add(new PointColor(x, y, z, color));
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            System.err.println(e);
+        }
+    }
+
 }
@@ -18,20 +18,29 @@
  */
 package lite.algorithms.io;
 
-import lite.pointcloud.Point;
 import lite.pointcloud.PointCloud;
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
-import java.io.FileOutputStream;
+import lite.pointcloud.PointColor;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
 
 /**
+ * Saves a point cloud in the versioned binary format described by
+ * {@code PCbinHeader}. The points are written through a direct buffer, in the
+ * native byte order by default so that the file can be mapped and uploaded
+ * without conversion.
  *
  * @author Jean-Jacques Ponciano
  */
 public class SavePCbin extends IoPointCloud {
 
+    private static final int BUFFER_SIZE = 1 << 20;
     protected PointCloud cloud;
+    protected ByteOrder order;
 
     /**
      * Creates a new instance of <code>SavePCbin</code>.
@@ -40,42 +49,75 @@ public class SavePCbin extends IoPointCloud {
      * @param filepath The path of the file containing the point cloud.
      */
     public SavePCbin(PointCloud cloud, String filepath) {
+        this(cloud, filepath, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates a new instance of <code>SavePCbin</code>.
+     *
+     * @param cloud cloud to be saved.
+     * @param filepath The path of the file containing the point cloud.
+     * @param order byte order of the file.
+     */
+    public SavePCbin(PointCloud cloud, String filepath, ByteOrder order) {
         super(filepath);
         this.cloud = cloud;
+        this.order = order;
     }
 
     @Override
     public void run() {
         this.isready = false;
-        // initialization of the stream.
-        DataOutputStream oos = null;
-        try {
-            // open the stream from the file
-            oos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filepath)));
-
-            //write the number of point
-            oos.writeInt(this.cloud.size());
-            for (Point point : this.cloud.getPoints()) {
-                // write points coordinates
-                oos.writeFloat(point.getX());
-                oos.writeFloat(point.getY());
-                oos.writeFloat(point.getZ());
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            PCbinHeader header = new PCbinHeader(this.order, PCbinHeader.COLOR, this.cloud.size());
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(this.order);
+            channel.position(PCbinHeader.SIZE);
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+            // write points coordinates
+            for (PointColor point : this.cloud.getPoints()) {
+                if (buffer.remaining() < 3 * Float.BYTES) {
+                    this.flush(buffer, channel, crc);
+                }
+                buffer.putFloat(point.getX());
+                buffer.putFloat(point.getY());
+                buffer.putFloat(point.getZ());
+                minX = Math.min(minX, point.getX());
+                minY = Math.min(minY, point.getY());
+                minZ = Math.min(minZ, point.getZ());
+                maxX = Math.max(maxX, point.getX());
+                maxY = Math.max(maxY, point.getY());
+                maxZ = Math.max(maxZ, point.getZ());
             }
-
-        } catch (final java.io.IOException e) {
-            System.err.println(e);
-        } finally {
-            try {
-                if (oos != null) {
-                    // empty the buffer
-                    oos.flush();
-                    // close the file
-                    oos.close();
+            // write points colors
+            for (PointColor point : this.cloud.getPoints()) {
+                if (buffer.remaining() < 3) {
+                    this.flush(buffer, channel, crc);
                 }
-            } catch (final IOException ex) {
-                System.err.println(ex);
+                buffer.put((byte) point.getColor().getRed());
+                buffer.put((byte) point.getColor().getGreen());
+                buffer.put((byte) point.getColor().getBlue());
             }
+            this.flush(buffer, channel, crc);
+            if (this.cloud.size() > 0) {
+                header.setBounds(minX, minY, minZ, maxX, maxY, maxZ);
+            }
+            header.setCrc((int) crc.getValue());
+            header.write(channel);
+        } catch (final java.io.IOException e) {
+            System.err.println(e);
         }
         this.isready = true;
     }
+
+    private void flush(ByteBuffer buffer, FileChannel channel, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
 }
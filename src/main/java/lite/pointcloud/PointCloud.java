@@ -18,10 +18,12 @@
  */
 package lite.pointcloud;
 
+import info.ponciano.lab.jpc.math.Matrix4d;
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.stream.IntStream;
 
 /**
  *
@@ -29,6 +31,10 @@ import java.util.Collections;
  */
 public class PointCloud {
 
+    /**
+     * Number of points transformed together in a buffer.
+     */
+    private static final int CHUNK_SIZE = 1 << 12;
     protected ArrayList<PointColor> points;
     private final int maxSize;
     private int index;
@@ -101,6 +107,36 @@ public class PointCloud {
         }
     }
 
+    /**
+     * Applies in place a transformation to the coordinates of the points.
+     * The points are copied by chunks in buffers of {@code CHUNK_SIZE} points
+     * transformed in parallel, the coordinates being computed in double
+     * precision before being rounded to float.
+     *
+     * @param matrix transformation to be applied.
+     */
+    public void transform(Matrix4d matrix) {
+        int size = this.size();
+        IntStream.range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(c -> {
+            int from = c * CHUNK_SIZE;
+            int count = Math.min(size, from + CHUNK_SIZE) - from;
+            double[] coords = new double[3 * count];
+            for (int i = 0; i < count; i++) {
+                PointColor p = this.points.get(from + i);
+                coords[3 * i] = p.getX();
+                coords[3 * i + 1] = p.getY();
+                coords[3 * i + 2] = p.getZ();
+            }
+            matrix.transform(coords, 0, count);
+            for (int i = 0; i < count; i++) {
+                PointColor p = this.points.get(from + i);
+                p.setX((float) coords[3 * i]);
+                p.setY((float) coords[3 * i + 1]);
+                p.setZ((float) coords[3 * i + 2]);
+            }
+        });
+    }
+
     /**
      * Sort the point cloud in Z X Y.
      */
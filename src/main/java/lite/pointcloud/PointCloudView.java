@@ -21,8 +21,13 @@ package lite.pointcloud;
 import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL2;
 import info.ponciano.lab.jpc.opengl.IObjectGL;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import lite.algorithms.io.MappedPCbin;
 
 /**
  *
@@ -31,7 +36,8 @@ import java.nio.IntBuffer;
 public class PointCloudView implements IPointCloudListener, IObjectGL {
 
     private FloatBuffer vertex;
-    private FloatBuffer color;
+    private Buffer color;
+    private int colorType;
     private IntBuffer indice;
     private int indiceCount;
     private int nbPoints;
@@ -55,6 +61,50 @@ public class PointCloudView implements IPointCloudListener, IObjectGL {
         this.updateCloud(cloud);
     }
 
+    /**
+     * Creates a new instance of <code>PointCloudView</code>.
+     *
+     * @param bin update the view with the mapped file given.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public PointCloudView(MappedPCbin bin) throws IOException {
+        this.nbPoints = 0;
+        this.indiceCount = 0;
+        this.updateCloud(bin);
+    }
+
+    /**
+     * Updates the view with the buffers mapped on a binary point cloud file.
+     * The buffers are given as they are to OpenGL when the file is in the
+     * native byte order, without creating any point.
+     *
+     * @param bin mapped file containing the point cloud.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public void updateCloud(MappedPCbin bin) throws IOException {
+        FloatBuffer coords = bin.getCoordinates();
+        if (coords.order() != ByteOrder.nativeOrder()) {
+            // OpenGL reads the buffers in the native order
+            FloatBuffer copy = Buffers.newDirectFloatBuffer(coords.remaining());
+            copy.put(coords).flip();
+            coords = copy;
+        }
+        this.vertex = coords;
+        this.nbPoints = (int) bin.size();
+        ByteBuffer colors = bin.getColors();
+        if (colors == null) {
+            float[] colorArray = new float[this.nbPoints * 3];
+            java.util.Arrays.fill(colorArray, 1.0f);
+            this.color = Buffers.newDirectFloatBuffer(colorArray);
+            this.colorType = GL2.GL_FLOAT;
+        } else {
+            this.color = colors;
+            this.colorType = GL2.GL_UNSIGNED_BYTE;
+        }
+        this.indice = null;
+        this.indiceCount = this.nbPoints;
+    }
+
     @Override
     public void updateCloud(PointCloud cloud) {
         if (cloud != null) {
@@ -83,6 +133,7 @@ public class PointCloudView implements IPointCloudListener, IObjectGL {
                 //fill buffer
                 this.vertex = Buffers.newDirectFloatBuffer(vertexArray);
                 this.color = Buffers.newDirectFloatBuffer(colorArray);
+                this.colorType = GL2.GL_FLOAT;
                 this.indice = Buffers.newDirectIntBuffer(indiceArray);
                 this.indiceCount = indiceArray.length;
             }
@@ -102,9 +153,13 @@ public class PointCloudView implements IPointCloudListener, IObjectGL {
                 gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
 
                 gl.glVertexPointer(3, GL2.GL_FLOAT, 0, vertex);
-                gl.glColorPointer(3, GL2.GL_FLOAT, 0, color);
+                gl.glColorPointer(3, this.colorType, 0, color);
 
-                gl.glDrawElements(GL2.GL_POINTS, this.indiceCount, GL2.GL_UNSIGNED_INT, indice);
+                if (indice == null) {
+                    gl.glDrawArrays(GL2.GL_POINTS, 0, this.indiceCount);
+                } else {
+                    gl.glDrawElements(GL2.GL_POINTS, this.indiceCount, GL2.GL_UNSIGNED_INT, indice);
+                }
 
                 gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
                 gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
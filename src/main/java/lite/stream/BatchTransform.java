@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+/**
+ * Transformation of the points of a batch, applied in place. The factories
+ * give the streaming counterparts of {@code ScalePC}, {@code CenterPC} and
+ * {@code SwitchPCcoord}, computed in double precision.
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public interface BatchTransform extends PointStream.BatchConsumer {
+
+    /**
+     * Transforms the points of a batch.
+     *
+     * @param batch points to be transformed.
+     */
+    public void apply(PointBatch batch);
+
+    @Override
+    public default void accept(PointBatch batch) {
+        this.apply(batch);
+    }
+
+    /**
+     * Scales the points as {@code ScalePC}.
+     *
+     * @param x Scale in x.
+     * @param y Scale in y.
+     * @param z Scale in z.
+     * @return the transformation.
+     */
+    public static BatchTransform scale(float x, float y, float z) {
+        return batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                batch.setCoords(i, batch.getX(i) * x, batch.getY(i) * y, batch.getZ(i) * z);
+            }
+        };
+    }
+
+    /**
+     * Moves the points as {@code CenterPC}: the first point of the stream
+     * becomes the origin.
+     *
+     * @return the transformation, to be used for one stream only.
+     */
+    public static BatchTransform center() {
+        return new BatchTransform() {
+            private double[] origin;
+
+            @Override
+            public void apply(PointBatch batch) {
+                if (this.origin == null && !batch.isEmpty()) {
+                    this.origin = new double[]{batch.getX(0), batch.getY(0), batch.getZ(0)};
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.setCoords(i, batch.getX(i) - origin[0], batch.getY(i) - origin[1], batch.getZ(i) - origin[2]);
+                }
+            }
+        };
+    }
+
+    /**
+     * Switches two coordinates as {@code SwitchPCcoord}.
+     *
+     * @param c1 first coordinate, 0:x, 1:y, 2:z.
+     * @param c2 second coordinate, 0:x, 1:y, 2:z.
+     * @return the transformation.
+     */
+    public static BatchTransform switchCoords(int c1, int c2) {
+        return batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                double v = batch.get(i, c1);
+                batch.set(i, c1, batch.get(i, c2));
+                batch.set(i, c2, v);
+            }
+        };
+    }
+
+    /**
+     * Applies a transformation after this one.
+     *
+     * @param after transformation to apply next.
+     * @return the composed transformation.
+     */
+    public default BatchTransform then(BatchTransform after) {
+        return batch -> {
+            this.apply(batch);
+            after.apply(batch);
+        };
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import lite.algorithms.io.PCbinHeader;
+
+/**
+ * Writes a point stream in the versioned binary format of
+ * {@code SavePCbin}. The colors, stored after every coordinate, are written
+ * in a temporary file appended when the sink is closed, so the memory used
+ * does not depend on the number of points.
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class BinPointSink implements PointSink {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private final FileChannel channel;
+    private final Path colorPath;
+    private final FileChannel colorChannel;
+    private final ByteOrder order;
+    private final ByteBuffer coords;
+    private final ByteBuffer colors;
+    private final CRC32 crc;
+    private final float[] bounds;
+    private long count;
+
+    /**
+     * Creates a new instance of <code>BinPointSink</code> writing in the
+     * native byte order.
+     *
+     * @param filepath The path of the file to be written.
+     * @throws IOException if the file cannot be created.
+     */
+    public BinPointSink(String filepath) throws IOException {
+        this(filepath, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates a new instance of <code>BinPointSink</code>.
+     *
+     * @param filepath The path of the file to be written.
+     * @param order byte order of the file.
+     * @throws IOException if the file cannot be created.
+     */
+    public BinPointSink(String filepath, ByteOrder order) throws IOException {
+        Path path = Paths.get(filepath);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.channel.position(PCbinHeader.SIZE);
+        Path dir = path.toAbsolutePath().getParent();
+        this.colorPath = Files.createTempFile(dir, path.getFileName().toString(), ".rgb");
+        this.colorChannel = FileChannel.open(this.colorPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        this.order = order;
+        this.coords = ByteBuffer.allocateDirect(BUFFER_SIZE).order(order);
+        this.colors = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.crc = new CRC32();
+        this.bounds = new float[]{Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+            -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        this.count = 0;
+    }
+
+    @Override
+    public void write(PointBatch batch) throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            if (this.coords.remaining() < 3 * Float.BYTES) {
+                this.flush(this.coords, this.channel, true);
+            }
+            if (this.colors.remaining() < 3) {
+                this.flush(this.colors, this.colorChannel, false);
+            }
+            for (int c = 0; c < 3; c++) {
+                float v = (float) batch.get(i, c);
+                this.coords.putFloat(v);
+                this.bounds[c] = Math.min(this.bounds[c], v);
+                this.bounds[c + 3] = Math.max(this.bounds[c + 3], v);
+            }
+            int color = batch.getColor(i);
+            this.colors.put((byte) (color >> 16));
+            this.colors.put((byte) (color >> 8));
+            this.colors.put((byte) color);
+        }
+        this.count += batch.size();
+    }
+
+    private void flush(ByteBuffer buffer, FileChannel out, boolean checksum) throws IOException {
+        buffer.flip();
+        if (checksum) {
+            this.crc.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Appends the colors and writes the header.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush(this.coords, this.channel, true);
+            this.flush(this.colors, this.colorChannel, false);
+            long size = this.colorChannel.size();
+            long position = 0;
+            this.colors.clear();
+            while (position < size) {
+                int read = this.colorChannel.read(this.colors, position);
+                position += read;
+                this.flush(this.colors, this.channel, true);
+            }
+            PCbinHeader header = new PCbinHeader(this.order, PCbinHeader.COLOR, this.count);
+            if (this.count > 0) {
+                header.setBounds(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+            }
+            header.setCrc((int) this.crc.getValue());
+            header.write(this.channel);
+        } finally {
+            this.colorChannel.close();
+            this.channel.close();
+            Files.deleteIfExists(this.colorPath);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import lite.algorithms.io.MappedPCbin;
+import lite.algorithms.io.PCbinHeader;
+
+/**
+ * Reads a binary point cloud of {@code SavePCbin} block by block, in the
+ * versioned format through a memory mapping of each block or in the legacy
+ * format through a stream.
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class BinPointSource implements PointSource {
+
+    private MappedPCbin mapped;
+    private DataInputStream legacy;
+    private long remaining;
+    private long next;
+
+    /**
+     * Creates a new instance of <code>BinPointSource</code>.
+     *
+     * @param filepath The path of the file containing the point cloud.
+     * @throws IOException if the file cannot be opened.
+     */
+    public BinPointSource(String filepath) throws IOException {
+        boolean versioned;
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            versioned = PCbinHeader.read(channel) != null;
+        }
+        if (versioned) {
+            this.mapped = new MappedPCbin(filepath);
+            this.remaining = this.mapped.size();
+        } else {
+            InputStream in = Files.newInputStream(Paths.get(filepath));
+            this.legacy = new DataInputStream(new BufferedInputStream(in));
+            this.remaining = this.legacy.readInt();
+        }
+        this.next = 0;
+    }
+
+    @Override
+    public boolean read(PointBatch batch) throws IOException {
+        batch.clear();
+        int count = (int) Math.min(this.remaining, batch.capacity());
+        if (count > 0 && this.mapped != null) {
+            FloatBuffer coords = this.mapped.getCoordinates(this.next, count);
+            ByteBuffer colors = this.mapped.getColors(this.next, count);
+            for (int i = 0; i < count; i++) {
+                batch.add(coords.get(), coords.get(), coords.get());
+                if (colors != null) {
+                    batch.setColor(i, colors.get(), colors.get(), colors.get());
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                batch.add(this.legacy.readFloat(), this.legacy.readFloat(), this.legacy.readFloat());
+            }
+        }
+        this.next += count;
+        this.remaining -= count;
+        return count > 0;
+    }
+
+    /**
+     * Gets the number of points not read yet.
+     *
+     * @return the number of remaining points.
+     */
+    public long remaining() {
+        return remaining;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.mapped != null) {
+            this.mapped.close();
+        }
+        if (this.legacy != null) {
+            this.legacy.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import info.ponciano.lab.jpc.algorithms.IoPointcloud;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads the patch format of {@code IoPointcloud.saveASCII} block by block:
+ * x, y, z, red, green, blue, nx, ny, nz and patch id by line. As
+ * {@code IoPointcloud.loadASCII}, missing colors and normals are inherited
+ * from the previous lines, lines starting with {@code #} or {@code /} are
+ * comments and set lines ({@code %}) are gathered in the sets of regular,
+ * irregular and isolated patches, complete once the source is read.
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class PatchPointSource implements PointSource {
+
+    private final BufferedReader reader;
+    private final Set<String> regular = new LinkedHashSet<>();
+    private final Set<String> irregular = new LinkedHashSet<>();
+    private final Set<String> isolated = new LinkedHashSet<>();
+    private int r = 255;
+    private int g = 255;
+    private int b = 255;
+    private double nx = 0;
+    private double ny = 0;
+    private double nz = 0;
+
+    /**
+     * Creates a new instance of <code>PatchPointSource</code>.
+     *
+     * @param filepath The path of the file containing the point cloud.
+     * @throws IOException if the file cannot be opened.
+     */
+    public PatchPointSource(String filepath) throws IOException {
+        this.reader = Files.newBufferedReader(Paths.get(filepath), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean read(PointBatch batch) throws IOException {
+        batch.clear();
+        String line;
+        while (!batch.isFull() && (line = this.reader.readLine()) != null) {
+            String[] split = line.split("\\s");
+            if (split.length > 1 && !split[0].isEmpty() && split[0].charAt(0) == IoPointcloud.SET_K) {
+                IoPointcloud.readSet(split, regular, irregular, isolated);
+            } else if (split.length > 1 && line.charAt(0) != '#' && line.charAt(0) != '/') {
+                int i = batch.add(parse(split, 0), parse(split, 1), parse(split, 2));
+                if (split.length >= 6) {
+                    r = Short.parseShort(split[3]);
+                    g = Short.parseShort(split[4]);
+                    b = Short.parseShort(split[5]);
+                }
+                if (split.length >= 9) {
+                    nx = parse(split, 6);
+                    ny = parse(split, 7);
+                    nz = parse(split, 8);
+                }
+                batch.setColor(i, r, g, b);
+                batch.setNormal(i, nx, ny, nz);
+                batch.setPatch(i, split.length >= 10 ? split[9] : "0");
+            }
+        }
+        return !batch.isEmpty();
+    }
+
+    private static double parse(String[] split, int i) {
+        if (i >= split.length) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(split[i]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public Set<String> getRegular() {
+        return regular;
+    }
+
+    public Set<String> getIrregular() {
+        return irregular;
+    }
+
+    public Set<String> getIsolated() {
+        return isolated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size block of points stored in primitive arrays, filled by a
+ * {@code PointSource} and reused from one block to the next.
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class PointBatch {
+
+    /**
+     * Color given to the points without color.
+     */
+    public static final int WHITE = 0xFFFFFF;
+    /**
+     * Flag of the points whose color is set.
+     */
+    public static final byte HAS_COLOR = 1;
+    /**
+     * Flag of the points whose normal is set.
+     */
+    public static final byte HAS_NORMAL = 2;
+    /**
+     * x, y, z of each point.
+     */
+    protected final double[] coords;
+    /**
+     * Red, green and blue of each point packed as 0xRRGGBB.
+     */
+    protected final int[] colors;
+    /**
+     * nx, ny, nz of each point.
+     */
+    protected final double[] normals;
+    /**
+     * {@code HAS_COLOR} and {@code HAS_NORMAL} flags of each point.
+     */
+    protected final byte[] flags;
+    /**
+     * Id of the patch of each point, null if the source has no patch.
+     */
+    protected final String[] patches;
+    protected int size;
+
+    /**
+     * Creates a new instance of <code>PointBatch</code>.
+     *
+     * @param capacity maximum number of points of the batch.
+     */
+    public PointBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.coords = new double[capacity * 3];
+        this.colors = new int[capacity];
+        this.normals = new double[capacity * 3];
+        this.flags = new byte[capacity];
+        this.patches = new String[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a point at the end of the batch.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     * @return the index of the point in the batch.
+     */
+    public int add(double x, double y, double z) {
+        if (this.isFull()) {
+            throw new IllegalStateException("Batch full");
+        }
+        int i = this.size;
+        this.coords[i * 3] = x;
+        this.coords[i * 3 + 1] = y;
+        this.coords[i * 3 + 2] = z;
+        this.colors[i] = WHITE;
+        this.normals[i * 3] = 0;
+        this.normals[i * 3 + 1] = 0;
+        this.normals[i * 3 + 2] = 0;
+        this.flags[i] = 0;
+        this.patches[i] = null;
+        this.size++;
+        return i;
+    }
+
+    public void clear() {
+        Arrays.fill(this.patches, 0, this.size, null);
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return this.colors.length;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public boolean isFull() {
+        return this.size == this.colors.length;
+    }
+
+    public double getX(int i) {
+        return this.coords[i * 3];
+    }
+
+    public double getY(int i) {
+        return this.coords[i * 3 + 1];
+    }
+
+    public double getZ(int i) {
+        return this.coords[i * 3 + 2];
+    }
+
+    /**
+     * Gets the ith coordinate of a point.
+     *
+     * @param i index of the point.
+     * @param c coordinate 0:x, 1:y, 2:z.
+     * @return the coordinate.
+     */
+    public double get(int i, int c) {
+        return this.coords[i * 3 + c];
+    }
+
+    /**
+     * Sets the ith coordinate of a point.
+     *
+     * @param i index of the point.
+     * @param c coordinate 0:x, 1:y, 2:z.
+     * @param value new value of the coordinate.
+     */
+    public void set(int i, int c, double value) {
+        this.coords[i * 3 + c] = value;
+    }
+
+    public void setCoords(int i, double x, double y, double z) {
+        this.coords[i * 3] = x;
+        this.coords[i * 3 + 1] = y;
+        this.coords[i * 3 + 2] = z;
+    }
+
+    /**
+     * Gets the color of a point.
+     *
+     * @param i index of the point.
+     * @return the color packed as 0xRRGGBB.
+     */
+    public int getColor(int i) {
+        return this.colors[i];
+    }
+
+    public void setColor(int i, int red, int green, int blue) {
+        this.colors[i] = (red & 0xFF) << 16 | (green & 0xFF) << 8 | (blue & 0xFF);
+        this.flags[i] |= HAS_COLOR;
+    }
+
+    /**
+     * Tests if the color of a point is set, {@code getColor} returning
+     * {@code WHITE} otherwise.
+     *
+     * @param i index of the point.
+     * @return true if the color is set.
+     */
+    public boolean hasColor(int i) {
+        return (this.flags[i] & HAS_COLOR) != 0;
+    }
+
+    public double getNormalX(int i) {
+        return this.normals[i * 3];
+    }
+
+    public double getNormalY(int i) {
+        return this.normals[i * 3 + 1];
+    }
+
+    public double getNormalZ(int i) {
+        return this.normals[i * 3 + 2];
+    }
+
+    public void setNormal(int i, double nx, double ny, double nz) {
+        this.normals[i * 3] = nx;
+        this.normals[i * 3 + 1] = ny;
+        this.normals[i * 3 + 2] = nz;
+        this.flags[i] |= HAS_NORMAL;
+    }
+
+    /**
+     * Tests if the normal of a point is set, its coordinates being 0
+     * otherwise.
+     *
+     * @param i index of the point.
+     * @return true if the normal is set.
+     */
+    public boolean hasNormal(int i) {
+        return (this.flags[i] & HAS_NORMAL) != 0;
+    }
+
+    /**
+     * Gets the flags of a point.
+     *
+     * @param i index of the point.
+     * @return the {@code HAS_COLOR} and {@code HAS_NORMAL} flags of the
+     * point.
+     */
+    public byte getFlags(int i) {
+        return this.flags[i];
+    }
+
+    public String getPatch(int i) {
+        return this.patches[i];
+    }
+
+    public void setPatch(int i, String patch) {
+        this.patches[i] = patch;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import java.io.IOException;
+
+/**
+ * Destination of points written block by block.
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public interface PointSink extends AutoCloseable {
+
+    /**
+     * Writes every point of a batch.
+     *
+     * @param batch points to be written.
+     * @throws IOException if the points cannot be written.
+     */
+    public void write(PointBatch batch) throws IOException;
+
+    @Override
+    public void close() throws IOException;
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pull-based stream of point batches read from a {@code PointSource} by a
+ * background thread.
+ * <p>
+ * A fixed number of batches is allocated when the stream is created: the
+ * reading thread waits for a batch to be released before reading the next
+ * points, so a slow consumer slows down the reading (back-pressure) and the
+ * memory used does not depend on the size of the source.</p>
+ * <p>
+ * Example:</p>
+ * <code>
+ * try (PointStream stream = new PointStream(new BinPointSource(path))) {<br>
+ * &nbsp;&nbsp;StreamStatistics stats = new StreamStatistics();<br>
+ * &nbsp;&nbsp;stream.forEach(stats);<br>
+ * }
+ * </code>
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class PointStream implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+    public static final int DEFAULT_PREFETCH = 2;
+    private static final PointBatch END = new PointBatch(1);
+
+    private final PointSource source;
+    private final BlockingQueue<PointBatch> free;
+    private final BlockingQueue<PointBatch> full;
+    private final Thread reader;
+    private volatile IOException error;
+    private volatile boolean closed;
+    private PointBatch current;
+    private boolean ended;
+
+    /**
+     * Creates a new instance of <code>PointStream</code> with the default
+     * batch size and prefetch.
+     *
+     * @param source source of the points.
+     */
+    public PointStream(PointSource source) {
+        this(source, DEFAULT_BATCH_SIZE, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Creates a new instance of <code>PointStream</code>.
+     *
+     * @param source source of the points.
+     * @param batchSize maximum number of points by batch.
+     * @param prefetch number of batches read in advance.
+     */
+    public PointStream(PointSource source, int batchSize, int prefetch) {
+        this.source = source;
+        int batches = prefetch + 1;
+        this.free = new ArrayBlockingQueue<>(batches);
+        this.full = new ArrayBlockingQueue<>(batches + 1);
+        for (int i = 0; i < batches; i++) {
+            this.free.add(new PointBatch(batchSize));
+        }
+        this.reader = new Thread(this::readAll, "PointStream reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void readAll() {
+        try {
+            boolean more = true;
+            while (more && !this.closed) {
+                PointBatch batch = this.free.take();
+                more = this.source.read(batch);
+                if (more) {
+                    this.full.put(batch);
+                }
+            }
+        } catch (IOException ex) {
+            this.error = ex;
+        } catch (RuntimeException ex) {
+            this.error = new IOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.full.offer(END);
+        }
+    }
+
+    /**
+     * Gets the next batch of points, waiting for it to be read. The batch
+     * given by the previous call is released and must not be used anymore.
+     *
+     * @return the next batch or null if every point was read.
+     * @throws IOException if the source cannot be read.
+     */
+    public PointBatch next() throws IOException {
+        this.release();
+        if (this.ended) {
+            return null;
+        }
+        try {
+            PointBatch batch = this.full.take();
+            if (batch == END) {
+                this.ended = true;
+                if (this.error != null) {
+                    throw this.error;
+                }
+                return null;
+            }
+            this.current = batch;
+            return batch;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+
+    private void release() {
+        if (this.current != null) {
+            this.current.clear();
+            this.free.offer(this.current);
+            this.current = null;
+        }
+    }
+
+    /**
+     * Gives every batch of the stream to a consumer.
+     *
+     * @param consumer consumer of the batches.
+     * @throws IOException if the source cannot be read or the consumer fails.
+     */
+    public void forEach(BatchConsumer consumer) throws IOException {
+        PointBatch batch;
+        while ((batch = this.next()) != null) {
+            consumer.accept(batch);
+        }
+    }
+
+    /**
+     * Transforms every point of the stream and writes it in a sink.
+     *
+     * @param transform transformation applied to each batch.
+     * @param sink destination of the points transformed.
+     * @throws IOException if the points cannot be read or written.
+     */
+    public void transform(BatchTransform transform, PointSink sink) throws IOException {
+        this.forEach(batch -> {
+            transform.apply(batch);
+            sink.write(batch);
+        });
+    }
+
+    /**
+     * Stops the reading and closes the source.
+     *
+     * @throws IOException if the source cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.reader.interrupt();
+        try {
+            this.reader.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.source.close();
+    }
+
+    /**
+     * Consumer of the batches of a stream.
+     */
+    public interface BatchConsumer {
+
+        public void accept(PointBatch batch) throws IOException;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import java.io.IOException;
+import lite.algorithms.spatial.Unit;
+import lite.pointcloud.Point;
+
+/**
+ * Statistics of a point stream computed in one pass: number of points,
+ * bounds, area and density as {@code AreaPC} and {@code PointDensity},
+ * centroid, and minimum and maximum Z.
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class StreamStatistics implements PointStream.BatchConsumer {
+
+    private long count;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+
+    /**
+     * Creates a new instance of <code>StreamStatistics</code>.
+     */
+    public StreamStatistics() {
+        this.count = 0;
+        this.min = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        this.max = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        this.sum = new double[3];
+    }
+
+    /**
+     * Computes the statistics of every point of a source.
+     *
+     * @param source source of the points.
+     * @return the statistics of the source.
+     * @throws IOException if the source cannot be read.
+     */
+    public static StreamStatistics of(PointSource source) throws IOException {
+        StreamStatistics stats = new StreamStatistics();
+        try (PointStream stream = new PointStream(source)) {
+            stream.forEach(stats);
+        }
+        return stats;
+    }
+
+    @Override
+    public void accept(PointBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            for (int c = 0; c < 3; c++) {
+                double v = batch.get(i, c);
+                if (v < this.min[c]) {
+                    this.min[c] = v;
+                }
+                if (v > this.max[c]) {
+                    this.max[c] = v;
+                }
+                this.sum[c] += v;
+            }
+        }
+        this.count += batch.size();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the area of the bounding box in a specific unit of measure.
+     *
+     * @param unit Unit of measure to be used (m3,dm3,cm3,mm3)
+     * @return The area in a specific unit of measure, 0 if the stream is
+     * empty.
+     */
+    public double getArea(Unit unit) {
+        if (this.count == 0) {
+            return 0;
+        }
+        double area = (max[0] - min[0]) * (max[1] - min[1]) * (max[2] - min[2]);
+        switch (unit) {
+            case dm3:
+                return area * 1000;
+            case cm3:
+                return area * 1000 * 1000;
+            case mm3:
+                return area * 1000 * 1000 * 1000;
+            default:
+                return area;
+        }
+    }
+
+    /**
+     * Get the density of the points as {@code PointDensity}.
+     *
+     * @param unit Unit of spatial measure
+     * @return the area divided by the number of points.
+     */
+    public double getDensity(Unit unit) {
+        return this.getArea(unit) / (double) this.count;
+    }
+
+    /**
+     * Gets the centroid of the points.
+     *
+     * @return x, y, z of the centroid.
+     */
+    public double[] getCentroid() {
+        return new double[]{sum[0] / count, sum[1] / count, sum[2] / count};
+    }
+
+    public double getMinZ() {
+        return min[2];
+    }
+
+    public double getMaxZ() {
+        return max[2];
+    }
+
+    public Point getMinPoint() {
+        return new Point((float) min[0], (float) min[1], (float) min[2]);
+    }
+
+    public Point getMaxPoint() {
+        return new Point((float) max[0], (float) max[1], (float) max[2]);
+    }
+}
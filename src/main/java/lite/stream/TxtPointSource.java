@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Reads the text format of {@code ReadPCfromTXT} block by block: one point by
+ * line made of x, y, z and optionally red, green, blue, lines starting with
+ * {@code #} being comments.
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class TxtPointSource implements PointSource {
+
+    private final BufferedReader reader;
+
+    /**
+     * Creates a new instance of <code>TxtPointSource</code>.
+     *
+     * @param filepath The path of the file containing the point cloud.
+     * @throws IOException if the file cannot be opened.
+     */
+    public TxtPointSource(String filepath) throws IOException {
+        this.reader = Files.newBufferedReader(Paths.get(filepath), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean read(PointBatch batch) throws IOException {
+        batch.clear();
+        String line;
+        while (!batch.isFull() && (line = this.reader.readLine()) != null) {
+            //test if the line is not a comment
+            if (!line.isEmpty() && line.charAt(0) != '#') {
+                String[] split = line.split("\\s");
+                int i = batch.add(Float.parseFloat(split[0]), Float.parseFloat(split[1]), Float.parseFloat(split[2]));
+                if (split.length == 6) {
+                    batch.setColor(i, Integer.parseInt(split[3]), Integer.parseInt(split[4]), Integer.parseInt(split[5]));
+                }
+            }
+        }
+        return !batch.isEmpty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
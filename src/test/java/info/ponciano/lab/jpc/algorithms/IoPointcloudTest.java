@@ -17,10 +17,21 @@
 package info.ponciano.lab.jpc.algorithms;
 
 import info.ponciano.lab.jpc.pointcloud.Pointcloud;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
@@ -81,4 +92,55 @@ public class IoPointcloudTest {
 //        }
     }
 
+    /**
+     * Test of read method, of class ParallelAsciiReader.
+     */
+    @Test
+    public void testParallelRead() throws IOException {
+        System.out.println("read");
+        Random random = new Random(7);
+        StringBuilder txt = new StringBuilder("# comment\n120\n");
+        for (int i = 0; i < 3000; i++) {
+            txt.append(random.nextInt(2000) / 7.0).append('\t').append(random.nextGaussian() * 1e4).append(' ').append(-random.nextInt(100) + "e-3");
+            switch (i % 5) {
+                case 0:
+                    // inherits color and normal
+                    break;
+                case 1:
+                    txt.append(' ').append(random.nextInt(256)).append(' ').append(random.nextInt(256)).append(' ').append(random.nextInt(256));
+                    break;
+                default:
+                    txt.append('\t').append(random.nextInt(256)).append('\t').append(random.nextInt(256)).append('\t').append(random.nextInt(256))
+                            .append('\t').append(random.nextDouble()).append("\t-").append(random.nextFloat()).append("\t1.5E-7")
+                            .append('\t').append("p" + random.nextInt(12));
+            }
+            txt.append(i % 11 == 0 ? "\r\n" : "\n");
+            if (i % 500 == 0) {
+                txt.append("/ comment\n%\t").append("rsi".charAt(i / 500 % 3)).append("\tp").append(i % 12).append("\tp3\n");
+            }
+        }
+        Path file = Files.createTempFile("parallel", ".txt");
+        try {
+            Files.write(file, txt.toString().getBytes(StandardCharsets.UTF_8));
+            Pointcloud expected = new Pointcloud();
+            IoPointcloud.loadASCIILines(file.toString(), expected);
+            Pointcloud result = new Pointcloud();
+            ParallelAsciiReader.read(file, result, 3, 1000);
+            assertIterableEquals(expected.getPatches().keySet(), result.getPatches().keySet());
+            for (String id : expected.getPatches().keySet()) {
+                assertIterableEquals(toStrings(expected.get(id)), toStrings(result.get(id)));
+            }
+            assertIterableEquals(expected.getRegular(), result.getRegular());
+            assertIterableEquals(expected.getIsolated(), result.getIsolated());
+            assertFalse(expected.getIrregular().isEmpty());
+            assertIterableEquals(expected.getIrregular(), result.getIrregular());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<String> toStrings(APointCloud cloud) {
+        return cloud.stream().map(p -> p.toString()).collect(Collectors.toList());
+    }
+
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.algorithms;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudArray;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class NormalEstimationTest {
+
+    public NormalEstimationTest() {
+    }
+
+    /**
+     * Test of smallestEigenvector method, of class NormalEstimation.
+     */
+    @Test
+    public void testSmallestEigenvector() {
+        System.out.println("smallestEigenvector");
+        Random random = new Random(11);
+        double[] vector = new double[3];
+        for (int test = 0; test < 1000; test++) {
+            // covariance of random points stretched along random axes
+            double[] m = new double[6];
+            double[] scales = {random.nextDouble() * 10, random.nextDouble() * 5, random.nextDouble()};
+            double angle = random.nextDouble() * Math.PI;
+            for (int i = 0; i < 20; i++) {
+                double u = random.nextGaussian() * scales[0];
+                double v = random.nextGaussian() * scales[1];
+                double x = u * Math.cos(angle) - v * Math.sin(angle);
+                double y = u * Math.sin(angle) + v * Math.cos(angle);
+                double z = random.nextGaussian() * scales[2] + 0.3 * x;
+                m[0] += x * x;
+                m[1] += x * y;
+                m[2] += x * z;
+                m[3] += y * y;
+                m[4] += y * z;
+                m[5] += z * z;
+            }
+            assertTrue(NormalEstimation.smallestEigenvector(m, vector));
+            Matrix matrix = new Matrix(new double[][]{{m[0], m[1], m[2]}, {m[1], m[3], m[4]}, {m[2], m[4], m[5]}});
+            EigenvalueDecomposition decomposition = matrix.eig();
+            double[] values = decomposition.getRealEigenvalues();
+            int min = 0;
+            for (int i = 1; i < 3; i++) {
+                if (values[i] < values[min]) {
+                    min = i;
+                }
+            }
+            Matrix vectors = decomposition.getV();
+            double dot = vector[0] * vectors.get(0, min) + vector[1] * vectors.get(1, min) + vector[2] * vectors.get(2, min);
+            assertEquals(1, Math.abs(dot), 1e-6);
+        }
+        // a line has no single normal but every direction orthogonal to it
+        assertTrue(NormalEstimation.smallestEigenvector(new double[]{4, 0, 0, 0, 0, 0}, vector));
+        assertEquals(0, vector[0], 1e-12);
+        assertEquals(1, Math.hypot(vector[1], vector[2]), 1e-12);
+        assertFalse(NormalEstimation.smallestEigenvector(new double[]{2, 0, 0, 2, 0, 2}, vector));
+    }
+
+    /**
+     * Test of run method, of class NormalEstimation.
+     */
+    @Test
+    public void testRun() {
+        System.out.println("run");
+        Random random = new Random(17);
+        // tilted plane at georeferenced coordinates
+        double[] expected = {-0.3, -0.2, 1};
+        double norm = Math.sqrt(0.09 + 0.04 + 1);
+        PointCloudMap cloud = new PointCloudMap();
+        for (int i = 0; i < 5000; i++) {
+            double x = random.nextDouble() * 20;
+            double y = random.nextDouble() * 20;
+            cloud.add(new Point(4.5e5 + x, 5.4e6 + y, 100 + 0.3 * x + 0.2 * y));
+        }
+        NormalEstimation instance = new NormalEstimation(cloud, 10);
+        instance.setViewpoint(new Coord3D(4.5e5, 5.4e6, 1000));
+        instance.setParallelism(2);
+        instance.run();
+        float[] normals = instance.getResults();
+        assertEquals(3 * cloud.size(), normals.length);
+        assertTrue(cloud.isNormalized());
+        int i = 0;
+        for (Point p : cloud.stream().toArray(Point[]::new)) {
+            double dot = (normals[3 * i] * expected[0] + normals[3 * i + 1] * expected[1] + normals[3 * i + 2] * expected[2]) / norm;
+            // oriented toward the viewpoint above the plane
+            assertEquals(1, dot, 1e-5);
+            assertEquals(Math.abs(normals[3 * i + 2]), p.getNormal().getZ(), 1e-6);
+            i++;
+        }
+        // same normals in the columns of an array cloud
+        PointCloudArray array = new PointCloudArray(cloud);
+        NormalEstimation columns = new NormalEstimation(array, 10);
+        columns.setViewpoint(new Coord3D(4.5e5, 5.4e6, 1000));
+        columns.run();
+        assertArrayEquals(normals, columns.getResults());
+        assertEquals(Math.abs(normals[0]), array.getNormal(0).getX(), 1e-6);
+    }
+}
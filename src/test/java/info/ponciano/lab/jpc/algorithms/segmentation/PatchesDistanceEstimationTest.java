@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.algorithms.segmentation;
+
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PatchesDistanceEstimationTest {
+
+    public PatchesDistanceEstimationTest() {
+    }
+
+    /**
+     * Estimation on small random patches keeping the distances computed.
+     */
+    private static class Estimation extends PatchesDistanceEstimation {
+
+        private final Map<String, APointCloud> patches = new LinkedHashMap<>();
+        private final List<Object[]> results = new ArrayList<>();
+
+        Estimation(int maxDistance) {
+            super(maxDistance);
+            Random random = new Random(42);
+            for (int i = 0; i < 60; i++) {
+                APointCloud patch = new PointCloudMap();
+                double x = random.nextDouble() * 20;
+                double y = random.nextDouble() * 20;
+                for (int j = 0; j < 20; j++) {
+                    patch.add(new Point(x + random.nextDouble(), y + random.nextDouble(), random.nextDouble()));
+                }
+                this.patches.put(Integer.toString(i), patch);
+            }
+        }
+
+        @Override
+        protected Map<String, APointCloud> getPatches() {
+            return this.patches;
+        }
+
+        @Override
+        protected void postprocessing(PatchDistances distances, Map<String, APointCloud> patches) {
+            distances.forEach((p1, p2, d) -> this.results.add(new Object[]{p1, p2, d}));
+        }
+    }
+
+    /**
+     * Test of run method, of class PatchesDistanceEstimation.
+     */
+    @Test
+    public void testRun() {
+        System.out.println("run");
+        Estimation instance = new Estimation(2);
+        instance.setParallelism(3);
+        List<Double> progress = new ArrayList<>();
+        instance.setProgressListener(f -> {
+            synchronized (progress) {
+                progress.add(f);
+            }
+        });
+        instance.run();
+        assertFalse(instance.isCancelled());
+        assertEquals(1.0, progress.stream().mapToDouble(Double::doubleValue).max().getAsDouble(), 1e-12);
+        // every pair closer than the maximum distance is found with its distance
+        List<APointCloud> patches = new ArrayList<>(instance.getPatches().values());
+        int expected = 0;
+        for (int i = 0; i < patches.size(); i++) {
+            for (int j = i + 1; j < patches.size(); j++) {
+                if (patches.get(i).getOBB().distance(patches.get(j).getOBB()) <= 2) {
+                    expected++;
+                }
+            }
+        }
+        int close = 0;
+        for (Object[] result : instance.results) {
+            double d = (double) result[2];
+            assertEquals(((APointCloud) result[0]).getOBB().distance(((APointCloud) result[1]).getOBB()), d);
+            if (d <= 2) {
+                close++;
+            }
+        }
+        assertTrue(expected > 0);
+        assertEquals(expected, close);
+    }
+
+    /**
+     * Test of cancel method, of class PatchesDistanceEstimation.
+     */
+    @Test
+    public void testCancel() {
+        System.out.println("cancel");
+        Estimation instance = new Estimation(20);
+        AtomicInteger batches = new AtomicInteger();
+        instance.setProgressListener(f -> {
+            batches.incrementAndGet();
+            instance.cancel();
+        });
+        instance.run();
+        assertTrue(instance.isCancelled());
+        assertTrue(batches.get() >= 1);
+        assertTrue(instance.results.isEmpty());
+    }
+
+}
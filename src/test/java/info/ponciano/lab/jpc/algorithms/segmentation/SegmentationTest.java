@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.algorithms.segmentation;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudArray;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class SegmentationTest {
+
+    public SegmentationTest() {
+    }
+
+    /**
+     * Connected points by a breadth-first search on every pair of points.
+     */
+    private static Set<Set<String>> expected(List<Point> points, double distance) {
+        Set<Set<String>> components = new HashSet<>();
+        boolean[] visited = new boolean[points.size()];
+        for (int s = 0; s < points.size(); s++) {
+            if (visited[s]) {
+                continue;
+            }
+            Set<String> component = new HashSet<>();
+            Deque<Integer> queue = new ArrayDeque<>();
+            queue.add(s);
+            visited[s] = true;
+            while (!queue.isEmpty()) {
+                Point p = points.get(queue.poll());
+                component.add(p.getCoords().toString());
+                Color c1 = p.getNormal().toColor().asHumanPerception(RegionNormal.ACCURACY);
+                for (int j = 0; j < points.size(); j++) {
+                    Point q = points.get(j);
+                    if (!visited[j] && p.getCoords().distance(q.getCoords()) <= distance
+                            && c1.equals(q.getNormal().toColor().asHumanPerception(RegionNormal.ACCURACY))) {
+                        visited[j] = true;
+                        queue.add(j);
+                    }
+                }
+            }
+            components.add(component);
+        }
+        return components;
+    }
+
+    private static Set<Set<String>> result(Regions regions) {
+        return regions.stream()
+                .map(r -> r.getCloud().stream().map(p -> p.getCoords().toString()).collect(Collectors.toSet()))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Test of run method, of class Segmentation.
+     */
+    @Test
+    public void testRun() {
+        System.out.println("run");
+        Random random = new Random(5);
+        Normal[] normals = {new Normal(0, 0, 1), new Normal(1, 0, 0), new Normal(0.6, 0.8, 0)};
+        APointCloud cloud = new PointCloudArray();
+        for (int i = 0; i < 1500; i++) {
+            Coord3D c = new Coord3D(random.nextDouble() * 20, random.nextDouble() * 20, random.nextDouble() * 3);
+            cloud.add(new Point(c, new Color(0, 0, 0), normals[random.nextInt(normals.length)]));
+        }
+        List<Point> points = cloud.stream().collect(Collectors.toList());
+        Set<Set<String>> expected = expected(points, 0.8);
+        Segmentation instance = new SegmentationNormal(cloud, 0.8);
+        instance.run();
+        assertEquals(expected.size(), instance.getResults().size());
+        assertEquals(expected, result(instance.getResults()));
+        instance = new SegmentationEuclidean(cloud, 0.8);
+        instance.run();
+        assertEquals(expected, result(instance.getResults()));
+    }
+
+    /**
+     * Test of merges method, of class Regions.
+     */
+    @Test
+    public void testMerges() {
+        System.out.println("merges");
+        Regions instance = new Regions();
+        // chain of regions 1 apart, broken between 4 and 10
+        double[] xs = {0, 1, 2, 3, 4, 10, 11, 20};
+        for (double x : xs) {
+            APointCloud points = new PointCloudMap();
+            points.add(new Point(x, 0, 0));
+            points.add(new Point(x, 0.5, 0));
+            instance.add(new RegionEuclidean(points, 1.0));
+        }
+        Regions result = instance.merges(true);
+        assertEquals(3, result.size());
+        // merged in the order of sortX, from the highest X
+        assertEquals(2, result.getRegions().get(0).size());
+        assertEquals(4, result.getRegions().get(1).size());
+        assertEquals(10, result.getRegions().get(2).size());
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.benchmark;
+
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Vector3d;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudArray;
+import info.ponciano.lab.jpc.pointcloud.stucture.kdtree.KdTree;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Nearest neighbours searches with and without the KD-tree.
+ * <p>
+ * {@code bruteForceNearest} and {@code treeNearest} measure the time of a
+ * search of the nearest point of a query, the tree being built once.
+ * {@code bruteForceNearests} is the double loop {@code getNearests} used
+ * before the KD-tree and {@code treeNearests} the current
+ * {@code getNearests}, build of the tree included. {@code treeBuild}
+ * measures the build alone.</p>
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile} then this class with the test
+ * classpath.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KdTreeBenchmark {
+
+    private static final int SIZE = 200000;
+    private static final int QUERIES = 100;
+    private static final int PAIRS_SIZE = 5000;
+
+    private APointCloud cloud;
+    private KdTree tree;
+    private List<Point> queries;
+    private APointCloud first;
+    private APointCloud second;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.cloud = new PointCloudArray();
+        for (int i = 0; i < SIZE; i++) {
+            this.cloud.add(new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 10));
+        }
+        this.tree = new KdTree(this.cloud);
+        this.queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            this.queries.add(new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 10));
+        }
+        this.first = new PointCloudArray();
+        this.second = new PointCloudArray();
+        for (int i = 0; i < PAIRS_SIZE; i++) {
+            this.first.add(new Point(random.nextDouble() * 10, random.nextDouble() * 10, random.nextDouble() * 10));
+            this.second.add(new Point(12 + random.nextDouble() * 10, random.nextDouble() * 10, random.nextDouble() * 10));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void bruteForceNearest(Blackhole blackhole) {
+        for (Point query : this.queries) {
+            blackhole.consume(this.cloud.getNearest(query));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void treeNearest(Blackhole blackhole) {
+        for (Point query : this.queries) {
+            blackhole.consume(this.cloud.getNearest(query, this.tree));
+        }
+    }
+
+    @Benchmark
+    public KdTree treeBuild() {
+        return new KdTree(this.cloud);
+    }
+
+    @Benchmark
+    public Point[] bruteForceNearests() {
+        Point[] ps = new Point[2];
+        double localMinDistance = Double.MAX_VALUE;
+        for (Point pointA : this.first.stream().toArray(Point[]::new)) {
+            for (Point pointB : this.second.stream().toArray(Point[]::new)) {
+                Double distance = new Vector3d(pointA.getCoords(), pointB.getCoords()).getNorm();
+                if (distance < localMinDistance) {
+                    localMinDistance = distance;
+                    ps[0] = pointA;
+                    ps[1] = pointB;
+                }
+            }
+        }
+        return ps;
+    }
+
+    @Benchmark
+    public Point[] treeNearests() {
+        return this.first.getNearests(this.second);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(KdTreeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.benchmark;
+
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.stucture.octree.Box;
+import info.ponciano.lab.jpc.pointcloud.stucture.octree.Voxel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of the split of an octree voxel, in points by second.
+ * <p>
+ * {@code orientedSplit} distributes the points as {@code Voxel.split} did
+ * before the axis-aligned path: each point is tested against the children in
+ * turn with the general test of oriented boxes. {@code axisAlignedSplit} calls
+ * {@code Voxel.split}, which selects the child from the octant of each
+ * point.</p>
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile} then this class with the test
+ * classpath.</p>
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OctreeSplitBenchmark {
+
+    private static final int SIZE = 100000;
+
+    private Voxel voxel;
+    private List<Point> points;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.voxel = new Voxel(new Point(0, 0, 0), new Point(100, 100, 100));
+        this.points = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            Point p = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+            this.voxel.add(p);
+            this.points.add(p);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public List<Voxel> orientedSplit() {
+        Point centre = new Point(this.voxel.getPoints());
+        List<Voxel> children = new ArrayList<>();
+        for (Point corner : this.voxel.getPoints()) {
+            // same corners, general test of Box.isInside
+            children.add(new Voxel(Arrays.asList(new Box(corner, centre).getPoints())));
+        }
+        for (Point point : this.points) {
+            int j = 0;
+            while (!children.get(j).add(point)) {
+                j++;
+            }
+        }
+        return children;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public List<Voxel> axisAlignedSplit() {
+        return this.voxel.split();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OctreeSplitBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.math;
+
+import Jama.Matrix;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudArray;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class Matrix4dTest {
+
+    public Matrix4dTest() {
+    }
+
+    /**
+     * Test of then method, of class Matrix4d.
+     */
+    @Test
+    public void testThen() {
+        System.out.println("then");
+        double rx = 0.3, ry = -1.1, rz = 2.4;
+        Matrix4d instance = Matrix4d.translation(-5, 2, 7).rotate(rx, ry, rz).scale(2, 0.5, 3);
+        Matrix t = new Matrix(new double[][]{{1, 0, 0, -5}, {0, 1, 0, 2}, {0, 0, 1, 7}, {0, 0, 0, 1}});
+        Matrix x = new Matrix(new double[][]{{1, 0, 0, 0}, {0, Math.cos(rx), -Math.sin(rx), 0}, {0, Math.sin(rx), Math.cos(rx), 0}, {0, 0, 0, 1}});
+        Matrix y = new Matrix(new double[][]{{Math.cos(ry), 0, Math.sin(ry), 0}, {0, 1, 0, 0}, {-Math.sin(ry), 0, Math.cos(ry), 0}, {0, 0, 0, 1}});
+        Matrix z = new Matrix(new double[][]{{Math.cos(rz), -Math.sin(rz), 0, 0}, {Math.sin(rz), Math.cos(rz), 0, 0}, {0, 0, 1, 0}, {0, 0, 0, 1}});
+        Matrix s = new Matrix(new double[][]{{2, 0, 0, 0}, {0, 0.5, 0, 0}, {0, 0, 3, 0}, {0, 0, 0, 1}});
+        Matrix expected = s.times(z.times(y.times(x.times(t))));
+        for (int r = 0; r < 4; r++) {
+            for (int c = 0; c < 4; c++) {
+                assertEquals(expected.get(r, c), instance.get(r, c), 1e-12);
+            }
+        }
+        assertTrue(Matrix4d.translation(1, 2, 3).translate(-4, 0, 1).isTranslation());
+        assertFalse(instance.isTranslation());
+        assertEquals(Matrix4d.translation(-3, 2, 4), Matrix4d.translation(1, 2, 3).translate(-4, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Matrix4d(new double[16]));
+    }
+
+    /**
+     * Test of transform method, of class Matrix4d.
+     */
+    @Test
+    public void testTransform() {
+        System.out.println("transform");
+        Random random = new Random(7);
+        Matrix4d instance = Matrix4d.rotation(0.2, 0.4, -0.9).translate(412000.5, 5420000.25, 120);
+        int n = 100003;
+        double[] coords = new double[3 * n];
+        double[] xs = new double[n], ys = new double[n], zs = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = coords[3 * i] = random.nextDouble() * 100;
+            ys[i] = coords[3 * i + 1] = random.nextDouble() * 100;
+            zs[i] = coords[3 * i + 2] = random.nextDouble() * 10;
+        }
+        double[] original = coords.clone();
+        instance.transform(coords);
+        instance.transform(xs, ys, zs, n);
+        for (int i = 0; i < n; i++) {
+            Coord3D expected = instance.transform(new Coord3D(original[3 * i], original[3 * i + 1], original[3 * i + 2]));
+            assertEquals(expected.getX(), coords[3 * i]);
+            assertEquals(expected.getY(), coords[3 * i + 1]);
+            assertEquals(expected.getZ(), coords[3 * i + 2]);
+            assertEquals(expected.getX(), xs[i]);
+            assertEquals(expected.getY(), ys[i]);
+            assertEquals(expected.getZ(), zs[i]);
+        }
+    }
+
+    /**
+     * Test of transform method, of class APointCloud.
+     */
+    @Test
+    public void testTransformCloud() {
+        System.out.println("transformCloud");
+        Matrix4d matrix = Matrix4d.scaling(2, 2, 2).rotate(0, 0, Math.PI / 3).translate(100, -50, 3);
+        for (APointCloud cloud : new APointCloud[]{new PointCloudMap(), new PointCloudArray()}) {
+            for (int i = 0; i < 20000; i++) {
+                cloud.add(new Point(i % 100, i / 100, (i * 7) % 13));
+            }
+            Coord3D mean = cloud.getMean().getCoords();
+            Coord3D expected = matrix.transform(mean);
+            cloud.transform(matrix);
+            assertEquals(20000, cloud.size());
+            Coord3D actual = cloud.getMean().getCoords();
+            assertEquals(expected.getX(), actual.getX(), 1e-6);
+            assertEquals(expected.getY(), actual.getY(), 1e-6);
+            assertEquals(expected.getZ(), actual.getZ(), 1e-6);
+            // translations keep the statistics up to date
+            cloud.move(new Coord3D(1, 2, 3));
+            Coord3D moved = cloud.getMean().getCoords();
+            assertEquals(actual.getX() - 1, moved.getX(), 1e-6);
+            assertEquals(actual.getY() - 2, moved.getY(), 1e-6);
+            assertEquals(actual.getZ() - 3, moved.getZ(), 1e-6);
+            if (cloud instanceof PointCloudMap) {
+                // the keys follow the transformed coordinates
+                Coord3D origin = matrix.translate(-1, -2, -3).transform(new Coord3D(0, 0, 0));
+                assertTrue(((PointCloudMap) cloud).contains(new Point(origin)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.mesh.ply;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.mesh.Mesh;
+import info.ponciano.lab.jpc.pointcloud.Pointcloud;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudArray;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PLYTest {
+
+    public PLYTest() {
+    }
+
+    /**
+     * Test of write and read methods, of class PLYPointCloud.
+     */
+    @Test
+    public void testPointCloud() throws IOException {
+        System.out.println("pointCloud");
+        Random random = new Random(3);
+        PointCloudArray cloud = new PointCloudArray();
+        for (int i = 0; i < 100000; i++) {
+            Point p = new Point(412000 + random.nextDouble() * 50, 5420000 + random.nextDouble() * 50, random.nextDouble() * 10);
+            if (i % 3 != 0) {
+                p.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            }
+            p.setNormal(new Normal(random.nextFloat(), random.nextFloat(), random.nextFloat()));
+            cloud.add(p);
+        }
+        for (PLY.Format format : PLY.Format.values()) {
+            Path path = Files.createTempFile("jpc", ".ply");
+            try {
+                PLYPointCloud.write(path, cloud, format);
+                PointCloudArray read = new PointCloudArray();
+                PLYPointCloud.read(path, read);
+                assertEquals(cloud.size(), read.size());
+                Iterator<Point> expected = cloud.iterator();
+                Iterator<Point> actual = read.iterator();
+                while (expected.hasNext()) {
+                    Point e = expected.next();
+                    Point a = actual.next();
+                    assertEquals(e.getCoords().getX(), a.getCoords().getX());
+                    assertEquals(e.getCoords().getY(), a.getCoords().getY());
+                    assertEquals(e.getCoords().getZ(), a.getCoords().getZ());
+                    Color color = e.isColored() ? e.getColor() : Color.WHITE;
+                    assertEquals(color.getRGB(), a.getColor().getRGB());
+                    assertEquals((float) e.getNormal().getX(), (float) a.getNormal().getX());
+                    assertEquals((float) e.getNormal().getZ(), (float) a.getNormal().getZ());
+                }
+                // only the coordinates are loaded
+                PLY ply = PLY.read(path, "x", "vertex.y", "z");
+                PLYElementList vertex = ply.getElement(PLYPointCloud.VERTEX);
+                assertEquals(cloud.size(), vertex.getCount());
+                assertTrue(vertex.contains("red"));
+                assertFalse(vertex.isLoaded("red"));
+                assertEquals(cloud.getY(17), vertex.getDoubles("y")[17]);
+            } finally {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Test of write and read methods with patches, of class PLYPointCloud.
+     */
+    @Test
+    public void testPatches() throws IOException {
+        System.out.println("patches");
+        Pointcloud cloud = new Pointcloud();
+        for (int k = 0; k < 5; k++) {
+            APointCloud patch = new PointCloudMap();
+            for (int i = 0; i < 100; i++) {
+                patch.add(new Point(k * 1000 + i, i * 0.5, -k));
+            }
+            cloud.add("patch " + k, patch);
+        }
+        Path path = Files.createTempFile("jpc", ".ply");
+        try {
+            PLYPointCloud.write(path, cloud, PLY.Format.BINARY_LITTLE_ENDIAN);
+            Pointcloud read = new Pointcloud();
+            PLYPointCloud.read(path, read);
+            assertEquals(new ArrayList<>(cloud.getPatches().keySet()), new ArrayList<>(read.getPatches().keySet()));
+            for (String k : cloud.getPatches().keySet()) {
+                List<Point> expected = cloud.get(k).stream().collect(Collectors.toList());
+                assertIterableEquals(expected, read.get(k).stream().collect(Collectors.toList()));
+                assertFalse(read.get(k).stream().anyMatch(Point::isColored));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Test of exportPly and importPly methods, of class Mesh.
+     */
+    @Test
+    public void testMesh() throws IOException {
+        System.out.println("mesh");
+        Coord3D[] vertices = {
+            new Coord3D(0, 0, 0), new Coord3D(1, 0, 0), new Coord3D(1, 1, 0), new Coord3D(0, 1, 0.5)
+        };
+        int[][] faces = {{0, 1, 2}, {0, 2, 3}, {3, 2, 1, 0}};
+        Mesh mesh = new Mesh(vertices, faces);
+        mesh.getPolygons().get(1).setColor(Color.RED);
+        for (PLY.Format format : PLY.Format.values()) {
+            Path path = Files.createTempFile("jpc", ".ply");
+            try {
+                mesh.exportPly(path.toString(), "test mesh\nsecond line", format);
+                PLY ply = PLY.read(path);
+                assertEquals(List.of("test mesh", "second line"), ply.getComments());
+                assertEquals(4, ply.getElement("vertex").getCount());
+                assertArrayEquals(faces, ply.getElement("face").getLists("vertex_indices"));
+                Mesh read = Mesh.importPly(path.toString());
+                assertEquals(3, read.getPolygons().size());
+                assertEquals(Color.RED.getRGB(), read.getPolygons().get(1).getColor().getRGB());
+                assertEquals(4, read.getPolygons().get(2).getPtlist().size());
+                assertEquals(0.5, read.getPolygons().get(2).get(0).getCoords().getZ());
+            } finally {
+                Files.delete(path);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import info.ponciano.lab.jpc.pointcloud.stucture.octree.DiskOctree;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PointcloudTest {
+
+    public PointcloudTest() {
+    }
+
+    /**
+     * Creates a room of 4 walls and a floor, with normals, in a single patch.
+     */
+    private static Pointcloud room() {
+        Random random = new Random(42);
+        APointCloud points = new PointCloudMap();
+        for (int i = 0; i < 8000; i++) {
+            double a = random.nextDouble() * 10;
+            double b = random.nextDouble() * 3;
+            Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+            switch (i % 5) {
+                case 0:
+                    points.add(new Point(new Coord3D(a, 0, b), color, new Normal(0, 1, 0)));
+                    break;
+                case 1:
+                    points.add(new Point(new Coord3D(a, 10, b), color, new Normal(0, 1, 0)));
+                    break;
+                case 2:
+                    points.add(new Point(new Coord3D(0, a, b), color, new Normal(1, 0, 0)));
+                    break;
+                case 3:
+                    points.add(new Point(new Coord3D(10, a, b), color, new Normal(1, 0, 0)));
+                    break;
+                default:
+                    points.add(new Point(new Coord3D(a, random.nextDouble() * 10, 0), color, new Normal(0, 0, 1)));
+            }
+        }
+        Pointcloud cloud = new Pointcloud();
+        cloud.setMaxPatchSize(400);
+        cloud.add(points);
+        return cloud;
+    }
+
+    /**
+     * Creates points extending the wall y = 10 of the room beyond x = 10.
+     */
+    private static APointCloud strip() {
+        Random random = new Random(7);
+        APointCloud added = new PointCloudMap();
+        for (int i = 0; i < 1000; i++) {
+            added.add(new Point(new Coord3D(10 + random.nextDouble() * 4, 10, random.nextDouble() * 3),
+                    new Color(0, 0, 0), new Normal(0, 1, 0)));
+        }
+        return added;
+    }
+
+    /**
+     * Test of refactor method, of class Pointcloud.
+     */
+    @Test
+    public void testRefactor() throws IOException {
+        System.out.println("refactor");
+        Pointcloud sequential = room();
+        assertTrue(sequential.refactor());
+        assertTrue(sequential.getPatches().size() > 1);
+        Pointcloud parallel = room();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertTrue(parallel.refactor(executor));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(sequential.getRegular(), parallel.getRegular());
+        assertEquals(sequential.getIrregular(), parallel.getIrregular());
+        assertEquals(sequential.getIsolated(), parallel.getIsolated());
+        // saved files are the same
+        Path expected = Files.createTempFile("sequential", ".xyz");
+        Path result = Files.createTempFile("parallel", ".xyz");
+        try {
+            assertTrue(sequential.saveASCII(expected.toString()));
+            assertTrue(parallel.saveASCII(result.toString()));
+            assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(result));
+        } finally {
+            Files.delete(expected);
+            Files.delete(result);
+        }
+    }
+
+    /**
+     * Test of refactor method with new points, of class Pointcloud.
+     */
+    @Test
+    public void testRefactorAdded() {
+        System.out.println("refactor added");
+        Pointcloud instance = room();
+        assertTrue(instance.refactor());
+        int size = instance.size();
+        Map<String, APointCloud> before = new LinkedHashMap<>(instance.getPatches());
+        APointCloud added = strip();
+        assertTrue(instance.refactor(added, 0.5));
+        assertEquals(size + added.size(), instance.size());
+        Set<String> keys = new HashSet<>(instance.getRegular());
+        keys.addAll(instance.getIrregular());
+        keys.addAll(instance.getIsolated());
+        assertEquals(instance.getPatches().keySet(), keys);
+        int kept = 0;
+        for (Map.Entry<String, APointCloud> entry : before.entrySet()) {
+            APointCloud patch = entry.getValue();
+            boolean far = patch.getMaxPoint().getCoords().getX() < 9 || patch.getMaxPoint().getCoords().getY() < 9;
+            if (instance.getPatches().get(entry.getKey()) == patch) {
+                kept++;
+            } else {
+                assertFalse(far, "patch far from the new points recreated");
+            }
+        }
+        assertTrue(kept > 0);
+        assertTrue(kept < before.size());
+        assertFalse(instance.refactor(new PointCloudMap(), 0.5));
+    }
+
+    /**
+     * Test of openArchive method, of class Pointcloud.
+     */
+    @Test
+    public void testOpenArchive() throws IOException {
+        System.out.println("openArchive");
+        Pointcloud expected = room();
+        assertTrue(expected.refactor());
+        // a patch without colour and normal
+        APointCloud bare = new PointCloudMap();
+        for (int i = 0; i < 10; i++) {
+            bare.add(new Point(412000.5 + i, 5420000.25, i * 0.1));
+        }
+        expected.add("bare", bare);
+        // a patch read in several chunks
+        APointCloud large = new PointCloudMap();
+        for (int i = 0; i < 40000; i++) {
+            large.add(new Point(new Coord3D(-100 - i * 0.01, -100, 0), new Color(1, 2, 3), new Normal(0, 0, 1)));
+        }
+        expected.add("large", large);
+        Path path = Files.createTempFile("patches", ".jpca");
+        try {
+            expected.saveArchive(path.toString());
+            Pointcloud instance = new Pointcloud();
+            instance.openArchive(path.toString());
+            assertTrue(instance.patches.isEmpty());
+            assertEquals(expected.getPatches().keySet(), instance.getIds());
+            assertEquals(expected.size(), instance.size());
+            assertEquals(expected.getRegular(), instance.getRegular());
+            assertEquals(expected.getIrregular(), instance.getIrregular());
+            assertEquals(expected.getIsolated(), instance.getIsolated());
+            // a single patch is loaded with its cached values
+            String id = expected.getRegular().iterator().next();
+            APointCloud patch = instance.get(id);
+            assertEquals(1, instance.patches.size());
+            assertIterableEquals(expected.get(id).stream().collect(Collectors.toList()), patch.stream().collect(Collectors.toList()));
+            assertEquals(expected.get(id).getCentroid().getX(), patch.getCentroid().getX());
+            assertEquals(expected.get(id).getOBB(), patch.getOBB());
+            assertEquals(expected.get(id).getArea(), patch.getArea());
+            assertFalse(instance.get("bare").stream().anyMatch(p -> p.isColored() || p.isNormalized()));
+            assertIterableEquals(large.stream().collect(Collectors.toList()), instance.get("large").stream().collect(Collectors.toList()));
+            assertNull(instance.get("missing"));
+            // iterating loads the remaining patches in the order of the archive
+            assertEquals(expected, instance);
+            assertIterableEquals(expected.getPatches().keySet(), instance.getPatches().keySet());
+            Point p = expected.get(id).stream().findFirst().get();
+            Point q = instance.get(id).stream().filter(p::equals).findFirst().get();
+            assertEquals(p.getColor().getRGB(), q.getColor().getRGB());
+            assertEquals(p.getNormal().getX(), q.getNormal().getX());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Test of saveArchive method, of class Pointcloud, saving an opened
+     * archive in its own file.
+     */
+    @Test
+    public void testSaveArchive() throws IOException {
+        System.out.println("saveArchive");
+        Pointcloud expected = room();
+        assertTrue(expected.refactor());
+        Path path = Files.createTempFile("patches", ".jpca");
+        try {
+            expected.saveArchive(path.toString());
+            Pointcloud instance = new Pointcloud();
+            instance.openArchive(path.toString());
+            // the patches still in the archive are read before it is replaced
+            instance.get(expected.getRegular().iterator().next());
+            instance.saveArchive(path.toString());
+            Pointcloud reopened = new Pointcloud();
+            reopened.openArchive(path.toString());
+            assertEquals(expected.size(), reopened.size());
+            assertEquals(expected.getRegular(), reopened.getRegular());
+            assertEquals(expected, reopened);
+            try (Stream<Path> files = Files.list(path.toAbsolutePath().getParent())) {
+                String name = path.getFileName().toString();
+                assertFalse(files.anyMatch(f -> f.getFileName().toString().startsWith(name) && f.toString().endsWith(".tmp")));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Test of refactor method with new points, of class Pointcloud, on the
+     * patches of an archive.
+     */
+    @Test
+    public void testRefactorArchive() throws IOException {
+        System.out.println("refactor archive");
+        Pointcloud expected = room();
+        assertTrue(expected.refactor());
+        Path path = Files.createTempFile("patches", ".jpca");
+        try {
+            expected.saveArchive(path.toString());
+            Pointcloud instance = new Pointcloud();
+            instance.setMaxPatchSize(expected.getMaxPatchSize());
+            instance.openArchive(path.toString());
+            Set<String> before = instance.getIds();
+            assertTrue(expected.refactor(strip(), 0.5));
+            assertTrue(instance.refactor(strip(), 0.5));
+            assertEquals(expected.size(), instance.size());
+            assertEquals(expected.getRegular(), instance.getRegular());
+            assertEquals(expected.getIrregular(), instance.getIrregular());
+            assertEquals(expected.getIsolated(), instance.getIsolated());
+            // the untouched patches are still in the archive only
+            Set<String> kept = new HashSet<>(before);
+            kept.retainAll(instance.getIds());
+            assertFalse(kept.isEmpty());
+            assertTrue(kept.size() < before.size());
+            for (String id : kept) {
+                assertFalse(instance.patches.containsKey(id));
+            }
+            assertEquals(instance.getIds().size() - kept.size(), instance.patches.size());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Test of storeOnDisk method, of class Pointcloud.
+     */
+    @Test
+    public void testStoreOnDisk() throws IOException {
+        System.out.println("storeOnDisk");
+        Pointcloud expected = room();
+        assertTrue(expected.refactor());
+        int largest = expected.getPatches().values().stream().mapToInt(APointCloud::size).max().getAsInt();
+        long budget = 2L * largest * DiskOctree.POINT_MEMORY;
+        Pointcloud instance = new Pointcloud();
+        instance.setPatches(new LinkedHashMap<>(expected.getPatches()));
+        instance.setRegular(new LinkedHashSet<>(expected.getRegular()));
+        instance.setIrregular(new LinkedHashSet<>(expected.getIrregular()));
+        instance.setIsolated(new LinkedHashSet<>(expected.getIsolated()));
+        Path directory = Files.createTempDirectory("patches");
+        try {
+            instance.storeOnDisk(directory.toString(), budget);
+            DiskPatches disk = (DiskPatches) instance.patches;
+            assertTrue(disk.getCachedBytes() <= budget);
+            assertEquals(expected.size(), instance.size());
+            assertEquals(expected.getStatistics().getMin(), instance.getStatistics().getMin());
+            assertEquals(expected.getStatistics().getMax(), instance.getStatistics().getMax());
+            assertEquals(expected, instance);
+            assertTrue(disk.getCachedBytes() <= budget);
+            // a modified patch is written back when it leaves the memory
+            String id = expected.getRegular().iterator().next();
+            Point added = new Point(-1000, -1000, -1000);
+            instance.get(id).add(added);
+            instance.getPatches().values().forEach(APointCloud::size);
+            assertTrue(disk.getCachedBytes() <= budget);
+            assertEquals(expected.size() + 1, instance.size());
+            assertTrue(instance.get(id).stream().anyMatch(added::equals));
+            instance.flush();
+            // the patches are opened again without loading them
+            Pointcloud opened = new Pointcloud();
+            opened.openPatches(directory.toString(), budget);
+            assertEquals(expected.size() + 1, opened.size());
+            assertEquals(added.getCoords(), opened.getStatistics().getMin());
+            assertEquals(0, ((DiskPatches) opened.patches).getCachedCount());
+            assertEquals(expected.getRegular(), opened.getRegular());
+            assertEquals(expected.getIrregular(), opened.getIrregular());
+            assertEquals(expected.getIsolated(), opened.getIsolated());
+            assertIterableEquals(expected.getPatches().keySet(), opened.getIds());
+            assertTrue(opened.get(id).stream().anyMatch(added::equals));
+            opened.getPatches().remove(id);
+            assertFalse(opened.contains(id));
+            // a patch grown in place evicts the other patches at its next access
+            DiskPatches cache = (DiskPatches) opened.patches;
+            Iterator<String> ids = opened.getIds().iterator();
+            opened.get(ids.next());
+            String grown = ids.next();
+            APointCloud patch = opened.get(grown);
+            for (int i = 0; i < 2 * largest; i++) {
+                patch.add(new Point(-2000 - i, -2000, -2000));
+            }
+            assertEquals(2, cache.getCachedCount());
+            opened.get(grown);
+            assertEquals(1, cache.getCachedCount());
+            assertEquals((long) patch.size() * DiskOctree.POINT_MEMORY, cache.getCachedBytes());
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+}
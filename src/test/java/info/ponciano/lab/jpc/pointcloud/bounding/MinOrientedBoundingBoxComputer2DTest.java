@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.bounding;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class MinOrientedBoundingBoxComputer2DTest {
+
+    public MinOrientedBoundingBoxComputer2DTest() {
+    }
+
+    /**
+     * Test of computeConvexHull method, of class
+     * MinOrientedBoundingBoxComputer2D.
+     */
+    @Test
+    public void testComputeConvexHull() {
+        System.out.println("computeConvexHull");
+        // grid with collinear and duplicated points
+        double[] x = new double[50];
+        double[] y = new double[50];
+        for (int i = 0; i < 50; i++) {
+            x[i] = (i % 25) % 5;
+            y[i] = (i % 25) / 5;
+        }
+        double[] hx = new double[51];
+        double[] hy = new double[51];
+        assertEquals(4, MinOrientedBoundingBoxComputer2D.computeConvexHull(x, y, 50, hx, hy));
+        assertArrayEquals(new double[]{0, 4, 4, 0}, Arrays.copyOf(hx, 4));
+        assertArrayEquals(new double[]{0, 0, 4, 4}, Arrays.copyOf(hy, 4));
+    }
+
+    /**
+     * Test of computeCorners method, of class MinOrientedBoundingBoxComputer2D.
+     */
+    @Test
+    public void testComputeCorners() {
+        System.out.println("computeCorners");
+        Random random = new Random(5);
+        for (int test = 0; test < 100; test++) {
+            // rotated rectangle at georeferenced coordinates
+            double angle = random.nextDouble() * Math.PI;
+            double ox = 4.5e5 + random.nextDouble() * 100;
+            double oy = 5.4e6 + random.nextDouble() * 100;
+            int size = 10 + random.nextInt(500);
+            double[] x = new double[size];
+            double[] y = new double[size];
+            for (int i = 0; i < size; i++) {
+                double u = random.nextDouble() * 4;
+                double v = random.nextDouble();
+                x[i] = ox + u * Math.cos(angle) - v * Math.sin(angle);
+                y[i] = oy + u * Math.sin(angle) + v * Math.cos(angle);
+            }
+            double[] corners = MinOrientedBoundingBoxComputer2D.computeCorners(x, y, size);
+            double width = Math.hypot(corners[2] - corners[0], corners[3] - corners[1]);
+            double height = Math.hypot(corners[6] - corners[0], corners[7] - corners[1]);
+            assertEquals(bruteForceArea(x, y, size), width * height, 1e-6);
+            // every point inside the rectangle
+            for (int i = 0; i < size; i++) {
+                for (int c = 0; c < 8; c += 2) {
+                    int n = (c + 2) % 8;
+                    double cross = (corners[n] - corners[c]) * (y[i] - corners[c + 1])
+                            - (corners[n + 1] - corners[c + 1]) * (x[i] - corners[c]);
+                    assertTrue(cross >= -1e-6);
+                }
+            }
+        }
+    }
+
+    /**
+     * Smallest area of the bounds of the points aligned on an edge of their
+     * convex hull.
+     */
+    private static double bruteForceArea(double[] x, double[] y, int size) {
+        double[] hx = new double[size + 1];
+        double[] hy = new double[size + 1];
+        int h = MinOrientedBoundingBoxComputer2D.computeConvexHull(x, y, size, hx, hy);
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < h; i++) {
+            int j = (i + 1) % h;
+            double angle = Math.atan2(hy[j] - hy[i], hx[j] - hx[i]);
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            double minU = Double.POSITIVE_INFINITY;
+            double maxU = Double.NEGATIVE_INFINITY;
+            double minV = Double.POSITIVE_INFINITY;
+            double maxV = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < size; k++) {
+                double u = (x[k] - hx[i]) * cos + (y[k] - hy[i]) * sin;
+                double v = -(x[k] - hx[i]) * sin + (y[k] - hy[i]) * cos;
+                minU = Math.min(minU, u);
+                maxU = Math.max(maxU, u);
+                minV = Math.min(minV, v);
+                maxV = Math.max(maxV, v);
+            }
+            min = Math.min(min, (maxU - minU) * (maxV - minV));
+        }
+        return min;
+    }
+}
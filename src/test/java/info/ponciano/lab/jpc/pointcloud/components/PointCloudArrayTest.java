@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.components;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PointCloudArrayTest {
+
+    public PointCloudArrayTest() {
+    }
+
+    /**
+     * Test of add method, of class PointCloudArray, across chunks.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        int size = 2 * PointCloudArray.CHUNK_SIZE + 10;
+        PointCloudArray instance = new PointCloudArray();
+        List<Point> expected = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Color color = i % 2 == 0 ? new Color(i % 256, (i / 256) % 256, 7) : null;
+            Normal normal = i % 3 == 0 ? new Normal(0, i % 5, 1) : null;
+            Point p = new Point(new Coord3D(i, -i * 0.5, i % 13), color, normal);
+            instance.add(p);
+            expected.add(p);
+        }
+        assertEquals(size, instance.size());
+        assertIterableEquals(expected, instance.stream().collect(Collectors.toList()));
+        // last point of a chunk and first point of the next one
+        for (int i : new int[]{PointCloudArray.CHUNK_SIZE - 1, PointCloudArray.CHUNK_SIZE, size - 1}) {
+            Point p = expected.get(i);
+            assertEquals(p.getCoords().getX(), instance.getX(i));
+            assertEquals(p.getCoords().getY(), instance.getY(i));
+            assertEquals(p.isColored(), instance.isColored(i));
+            assertEquals(p.isNormalized(), instance.hasNormal(i));
+            if (p.isColored()) {
+                assertEquals(p.getColor().getRGB(), instance.getColor(i).getRGB());
+            }
+            if (p.isNormalized()) {
+                assertEquals((float) p.getNormal().getY(), instance.getNormal(i).getY());
+            }
+        }
+        assertEquals(size, instance.add(1, 2, 3));
+        assertFalse(instance.isColored(size));
+        assertThrows(IndexOutOfBoundsException.class, () -> instance.get(size + 1));
+        instance.clear();
+        assertTrue(instance.isEmpty());
+    }
+
+    /**
+     * Test of remove method, of class PointCloudArray.
+     */
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+        int size = PointCloudArray.CHUNK_SIZE + 100;
+        PointCloudArray instance = new PointCloudArray();
+        for (int i = 0; i < size; i++) {
+            instance.add(new Point(new Coord3D(i, 0, 0), i % 2 == 0 ? new Color(1, 2, 3) : null, null));
+        }
+        // the removal shifts the following points across the chunk boundary
+        instance.remove(new Point(10, 0, 0));
+        instance.remove(new Point(size + 5, 0, 0));
+        assertEquals(size - 1, instance.size());
+        assertEquals(9, instance.getX(9));
+        assertEquals(11, instance.getX(10));
+        assertFalse(instance.isColored(10));
+        assertTrue(instance.isColored(11));
+        assertEquals(PointCloudArray.CHUNK_SIZE, instance.getX(PointCloudArray.CHUNK_SIZE - 1));
+        assertEquals(size - 1, instance.getX(size - 2));
+    }
+
+    /**
+     * Test of get method, of class PointCloudArray: modifications of the views
+     * are written through to the columns.
+     */
+    @Test
+    public void testGet() {
+        System.out.println("get");
+        PointCloudArray instance = new PointCloudArray();
+        for (int i = 0; i < 10; i++) {
+            instance.add(new Point(i, i, i));
+        }
+        Point view = instance.get(3);
+        view.getCoords().setX(30);
+        view.getCoords().add(new Coord3D(0, 1, 1));
+        assertEquals(30, instance.getX(3));
+        assertEquals(4, instance.getY(3));
+        assertEquals(4, instance.getZ(3));
+        assertEquals(new Coord3D(30, 4, 4), instance.get(3).getCoords());
+        view.setCoords(new Coord3D(-1, -2, -3));
+        view.getCoords().scale(2);
+        assertEquals(-6, instance.getZ(3));
+        view.setColor(new Color(10, 20, 30));
+        view.setNormal(new Normal(0, 0, 1));
+        assertEquals(new Color(10, 20, 30).getRGB(), instance.getColor(3).getRGB());
+        assertTrue(instance.hasNormal(3));
+        assertFalse(instance.get(3).isLock());
+        view.setLock(true);
+        assertTrue(instance.isLock(3));
+        assertTrue(instance.get(3).isLock());
+        assertFalse(instance.get(4).isLock());
+        // statistics are computed again after an in place modification
+        double mean = instance.getCentroid().getX();
+        instance.get(0).getCoords().setX(100);
+        assertEquals(mean + 10, instance.getCentroid().getX(), 1.0e-9);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.components;
+
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PointCloudMapTest {
+
+    public PointCloudMapTest() {
+    }
+
+    /**
+     * Test of add method, of class PointCloudMap.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        Random random = new Random(42);
+        PointCloudMap instance = new PointCloudMap();
+        LinkedHashMap<String, Point> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // small range to produce duplicates
+            Point p = new Point(random.nextInt(30) * 0.00011, random.nextInt(30) * 0.0003, random.nextInt(30) * 0.0002);
+            instance.add(p);
+            Coord3D c = p.getCoords();
+            String key = Math.round(c.getX() / Coord3D.ACCURACY) + ";" + Math.round(c.getY() / Coord3D.ACCURACY) + ";" + Math.round(c.getZ() / Coord3D.ACCURACY);
+            expected.putIfAbsent(key, p);
+        }
+        assertEquals(expected.size(), instance.size());
+        assertIterableEquals(expected.values(), instance.stream().collect(Collectors.toList()));
+        // far points switch to 128 bits keys
+        Point far = new Point(1.0e6, -2.5e5, 10);
+        instance.add(far);
+        instance.add(new Point(1.0e6, -2.5e5, 10));
+        assertEquals(expected.size() + 1, instance.size());
+        List<Point> all = new ArrayList<>(expected.values());
+        all.add(far);
+        assertIterableEquals(all, instance.stream().collect(Collectors.toList()));
+    }
+
+    /**
+     * Test of remove method, of class PointCloudMap.
+     */
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+        PointCloudMap instance = new PointCloudMap();
+        List<Point> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Point p = new Point(i, i % 7, -i);
+            instance.add(p);
+            expected.add(p);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            instance.remove(new Point(i, i % 7, -i));
+        }
+        expected.removeIf(p -> ((int) p.getCoords().getX()) % 3 == 0);
+        assertEquals(1000 - 334, instance.size());
+        assertIterableEquals(expected, instance.stream().collect(Collectors.toList()));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 3 != 0, instance.contains(new Point(i, i % 7, -i)));
+        }
+        instance.add(new Point(0, 0, 0));
+        assertEquals(1000 - 333, instance.size());
+    }
+
+}
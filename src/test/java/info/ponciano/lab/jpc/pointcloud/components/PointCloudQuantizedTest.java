@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.components;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Matrix4d;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PointCloudQuantizedTest {
+
+    public PointCloudQuantizedTest() {
+    }
+
+    /**
+     * Test of add method, of class PointCloudQuantized.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        Random random = new Random(42);
+        PointCloudArray expected = new PointCloudArray();
+        // geo-referenced coordinates spread over 2 km
+        for (int i = 0; i < 150000; i++) {
+            Coord3D c = new Coord3D(412000 + random.nextDouble() * 2000, 5420000 + random.nextDouble() * 2000, 250 + random.nextDouble() * 50);
+            Color color = i % 2 == 0 ? new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)) : null;
+            Normal normal = i % 3 == 0 ? new Normal(random.nextDouble(), random.nextDouble(), random.nextDouble()) : null;
+            expected.add(new Point(c, color, normal));
+        }
+        PointCloudQuantized instance = new PointCloudQuantized(expected);
+        assertEquals(expected.size(), instance.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getX(i), instance.getX(i), Coord3D.ACCURACY);
+            assertEquals(expected.getY(i), instance.getY(i), Coord3D.ACCURACY);
+            assertEquals(expected.getZ(i), instance.getZ(i), Coord3D.ACCURACY);
+            assertEquals(expected.get(i), instance.get(i));
+            assertEquals(expected.isColored(i), instance.isColored(i));
+            assertEquals(expected.hasNormal(i), instance.hasNormal(i));
+        }
+        assertEquals(expected.getStatistics().getCentroid(), instance.getStatistics().getCentroid());
+        // the coordinates are read back as they were quantized
+        Point p = instance.get(10);
+        instance.setCoords(10, p.getCoords().getX(), p.getCoords().getY(), p.getCoords().getZ());
+        assertEquals(p.getCoords().getX(), instance.getX(10));
+        // integer distances
+        double dx = instance.getX(0) - instance.getX(1);
+        double dy = instance.getY(0) - instance.getY(1);
+        double dz = instance.getZ(0) - instance.getZ(1);
+        assertEquals(dx * dx + dy * dy + dz * dz, instance.squaredDistance(0, 1) * instance.getScale() * instance.getScale(), 1.0e-3);
+        PointCloudQuantized far = new PointCloudQuantized(1, new Coord3D());
+        far.add(new Point(-1.7e9, -1.7e9, -1.7e9));
+        far.add(new Point(0, 0, 0));
+        far.add(new Point(2.1e9, 0, 0));
+        assertEquals(3 * 1700000000L * 1700000000L, far.squaredDistance(0, 1));
+        // beyond the range of a long the distance saturates
+        assertEquals(Long.MAX_VALUE, far.squaredDistance(0, 2));
+        // out of range
+        int size = instance.size();
+        assertThrows(IllegalArgumentException.class, () -> instance.add(new Point(412000, 5420000, 1.0e6)));
+        assertEquals(size, instance.size());
+        PointCloudQuantized first = new PointCloudQuantized();
+        first.add(new Point(412000.00004, 5420000, 250));
+        first.add(new Point(412000.00016, 5420000, 250));
+        assertEquals(new Coord3D(412000.00004, 5420000, 250), first.getOffset());
+        assertEquals(1, first.getQuantizedX(1));
+    }
+
+    /**
+     * Test of transform method, of class PointCloudQuantized.
+     */
+    @Test
+    public void testTransform() {
+        System.out.println("transform");
+        Random random = new Random(7);
+        PointCloudArray expected = new PointCloudArray();
+        for (int i = 0; i < 100000; i++) {
+            expected.add(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 10);
+        }
+        PointCloudQuantized instance = new PointCloudQuantized(expected);
+        int qx = instance.getQuantizedX(5);
+        // a translation keeps the quantized coordinates
+        Matrix4d translation = Matrix4d.translation(412000.25, 5420000.5, 300);
+        expected.transform(translation);
+        instance.transform(translation);
+        assertEquals(qx, instance.getQuantizedX(5));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getX(i), instance.getX(i), Coord3D.ACCURACY);
+            assertEquals(expected.getY(i), instance.getY(i), Coord3D.ACCURACY);
+        }
+        // other transformations quantize again the transformed points around
+        // the moved offset
+        expected = new PointCloudArray(instance);
+        Matrix4d rotation = Matrix4d.rotation(0.1, 0, Math.PI / 5).translate(-10, 20, 0);
+        expected.transform(rotation);
+        instance.transform(rotation);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getX(i), instance.getX(i), Coord3D.ACCURACY);
+            assertEquals(expected.getY(i), instance.getY(i), Coord3D.ACCURACY);
+            assertEquals(expected.getZ(i), instance.getZ(i), Coord3D.ACCURACY);
+        }
+        // a transformation out of range leaves the cloud unchanged
+        double x = instance.getX(0);
+        assertThrows(IllegalArgumentException.class, () -> instance.transform(Matrix4d.scaling(1.0e5, 1.0e5, 1.0e5)));
+        assertEquals(x, instance.getX(0));
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.components;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class PointCloudStatisticsTest {
+
+    public PointCloudStatisticsTest() {
+    }
+
+    /**
+     * Test of combine method, of class PointCloudStatistics.
+     */
+    @Test
+    public void testCombine() {
+        System.out.println("combine");
+        Random random = new Random(3);
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // georeferenced coordinates
+            Point p = new Point(4.5e5 + random.nextDouble() * 10, 5.4e6 + random.nextDouble() * 4, random.nextDouble());
+            p.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            p.setNormal(new Normal(random.nextDouble(), random.nextDouble(), random.nextDouble()));
+            points.add(p);
+        }
+        PointCloudStatistics first = new PointCloudStatistics();
+        PointCloudStatistics second = new PointCloudStatistics();
+        for (int i = 0; i < points.size(); i++) {
+            (i < 300 ? first : second).accept(points.get(i));
+        }
+        first.combine(second);
+        assertEquals(1000, first.getCount());
+        // two pass reference
+        double[] mean = new double[3];
+        for (Point p : points) {
+            mean[0] += p.getCoords().getX() / 1000;
+            mean[1] += p.getCoords().getY() / 1000;
+            mean[2] += p.getCoords().getZ() / 1000;
+        }
+        double[][] covariance = new double[3][3];
+        for (Point p : points) {
+            double[] d = {p.getCoords().getX() - mean[0], p.getCoords().getY() - mean[1], p.getCoords().getZ() - mean[2]};
+            for (int a = 0; a < 3; a++) {
+                for (int b = 0; b < 3; b++) {
+                    covariance[a][b] += d[a] * d[b] / 1000;
+                }
+            }
+        }
+        double[][] result = first.getCovariance();
+        for (int a = 0; a < 3; a++) {
+            assertArrayEquals(covariance[a], result[a], 1e-9);
+        }
+        PointCloudMap cloud = new PointCloudMap();
+        cloud.add(points);
+        Point mean2 = Point.getMean(points);
+        assertTrue(mean2.getCoords().distance(first.getCentroid()) < 1e-6);
+        assertEquals(mean2.getColor(), first.getMeanColor());
+        assertTrue(mean2.getNormal().distance(first.getMeanNormal()) < 1e-9);
+        assertEquals(cloud.getMinPoint().getCoords(), first.getMin());
+        assertEquals(cloud.getMaxPoint().getCoords(), first.getMax());
+        // parallel pass
+        PointCloudStatistics parallel = PointCloudStatistics.of(cloud, true);
+        assertEquals(1000, parallel.getCount());
+        assertTrue(parallel.getCentroid().distance(first.getCentroid()) < 1e-6);
+        for (int a = 0; a < 3; a++) {
+            assertArrayEquals(covariance[a], parallel.getCovariance()[a], 1e-9);
+        }
+    }
+
+    /**
+     * Test of getStatistics method, of class APointCloud, after the cloud has
+     * been modified.
+     */
+    @Test
+    public void testGetStatistics() {
+        System.out.println("getStatistics");
+        PointCloudMap cloud = new PointCloudMap();
+        for (int i = 0; i < 10; i++) {
+            cloud.add(new Point(i, 2 * i, 1));
+        }
+        assertEquals(new Coord3D(4.5, 9, 1), cloud.getCentroid());
+        assertEquals(9, cloud.getMaxPoint().getCoords().getX());
+        cloud.add(new Point(20, 0, 1));
+        assertEquals(11, cloud.getStatistics().getCount());
+        assertEquals(20, cloud.getMaxPoint().getCoords().getX());
+        assertEquals((45 + 20) / 11.0, cloud.getCentroid().getX(), 1e-12);
+        cloud.move(new Coord3D(0, 0, 1));
+        assertEquals(0, cloud.getMinZ());
+        assertEquals(0, cloud.getCentroid().getZ(), 1e-12);
+        cloud.remove(new Point(20, 0, 0));
+        assertEquals(9, cloud.getMaxPoint().getCoords().getX());
+        assertEquals(new Coord3D(4.5, 9, 0), cloud.getCentroid());
+        Coord3D centroid = cloud.center();
+        assertEquals(new Coord3D(4.5, 9, 0), centroid);
+        cloud.uncenter(centroid);
+        assertEquals(centroid, cloud.getCentroid());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.bvh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class BoundingVolumeHierarchyTest {
+
+    public BoundingVolumeHierarchyTest() {
+    }
+
+    /**
+     * Test of forEachPair method, of class BoundingVolumeHierarchy.
+     */
+    @Test
+    public void testForEachPair() {
+        System.out.println("forEachPair");
+        Random random = new Random(42);
+        int n = 2000;
+        double[] boxes = new double[6 * n];
+        for (int i = 0; i < n; i++) {
+            for (int a = 0; a < 3; a++) {
+                double min = random.nextDouble() * 100;
+                boxes[6 * i + a] = min;
+                boxes[6 * i + 3 + a] = min + random.nextDouble() * 2;
+            }
+        }
+        double distance = 1.5;
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double sum = 0;
+                for (int a = 0; a < 3; a++) {
+                    double d = Math.max(boxes[6 * i + a] - boxes[6 * j + 3 + a], boxes[6 * j + a] - boxes[6 * i + 3 + a]);
+                    sum += d > 0 ? d * d : 0;
+                }
+                if (Math.sqrt(sum) <= distance) {
+                    expected.add((long) i << 32 | j);
+                }
+            }
+        }
+        BoundingVolumeHierarchy instance = new BoundingVolumeHierarchy(boxes);
+        assertEquals(n, instance.size());
+        List<Long> result = new ArrayList<>();
+        instance.forEachPair(distance, (i, j) -> {
+            assertTrue(i < j);
+            result.add((long) i << 32 | j);
+        });
+        result.sort(null);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, result);
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.kdtree;
+
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.APointCloud;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudArray;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class KdTreeTest {
+
+    public KdTreeTest() {
+    }
+
+    /**
+     * Creates a cloud on a small grid, so that many distances are equal.
+     */
+    private static APointCloud cloud(Random random, int size) {
+        APointCloud cloud = new PointCloudArray();
+        for (int i = 0; i < size; i++) {
+            cloud.add(new Point(random.nextInt(40), random.nextInt(20) * 0.5, random.nextInt(10)));
+        }
+        return cloud;
+    }
+
+    /**
+     * Index of the points sorted by distance then by index.
+     */
+    private static List<Integer> bruteForce(Point[] points, Point p) {
+        return IntStream.range(0, points.length).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> points[i].getCoords().distanceSquared(p.getCoords()))
+                        .thenComparing(i -> i))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Test of knn method, of class KdTree.
+     */
+    @Test
+    public void testKnn() {
+        System.out.println("knn");
+        Random random = new Random(42);
+        Point[] points = cloud(random, 30000).stream().toArray(Point[]::new);
+        KdTree instance = new KdTree(points);
+        assertEquals(points.length, instance.size());
+        for (int q = 0; q < 50; q++) {
+            Point p = new Point(random.nextDouble() * 40, random.nextDouble() * 10, random.nextInt(10));
+            List<Integer> expected = bruteForce(points, p).subList(0, 25);
+            List<Integer> result = IntStream.of(instance.knn(p.getCoords().getX(), p.getCoords().getY(), p.getCoords().getZ(), 25))
+                    .boxed().collect(Collectors.toList());
+            assertEquals(expected, result);
+            assertSame(points[expected.get(0)], instance.nearest(p));
+        }
+        assertEquals(points.length, instance.knn(0, 0, 0, points.length + 10).length);
+        assertEquals(0, new KdTree(new Point[0]).knn(0, 0, 0, 3).length);
+    }
+
+    /**
+     * Test of radius method, of class KdTree.
+     */
+    @Test
+    public void testRadius() {
+        System.out.println("radius");
+        Random random = new Random(7);
+        Point[] points = cloud(random, 30000).stream().toArray(Point[]::new);
+        KdTree instance = new KdTree(points);
+        List<Point> queries = new ArrayList<>();
+        for (int q = 0; q < 50; q++) {
+            queries.add(new Point(random.nextInt(40), random.nextDouble() * 10, random.nextInt(10)));
+        }
+        List<List<Point>> result = instance.radius(queries, 2);
+        for (int q = 0; q < queries.size(); q++) {
+            Point p = queries.get(q);
+            List<Point> expected = new ArrayList<>();
+            for (Point point : points) {
+                if (point.getCoords().distanceSquared(p.getCoords()) <= 4) {
+                    expected.add(point);
+                }
+            }
+            assertIterableEquals(expected, result.get(q));
+        }
+    }
+
+    /**
+     * Test of getNearests method, of class APointCloud.
+     */
+    @Test
+    public void testGetNearests() {
+        System.out.println("getNearests");
+        Random random = new Random(3);
+        APointCloud a = cloud(random, 500);
+        APointCloud b = new PointCloudArray();
+        for (int i = 0; i < 500; i++) {
+            b.add(new Point(50 + random.nextDouble() * 40, random.nextDouble() * 10, random.nextDouble() * 10));
+        }
+        Point[] expected = new Point[2];
+        double min = Double.MAX_VALUE;
+        for (Point pa : a.stream().collect(Collectors.toList())) {
+            for (Point pb : b.stream().collect(Collectors.toList())) {
+                double d = pa.getCoords().distanceSquared(pb.getCoords());
+                if (d < min) {
+                    min = d;
+                    expected[0] = pa;
+                    expected[1] = pb;
+                }
+            }
+        }
+        assertArrayEquals(expected, a.getNearests(b));
+        KdTree tree = new KdTree(b);
+        assertEquals(b.getNearest(expected[0]), b.getNearest(expected[0], tree));
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.octree;
+
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class BoxTest {
+
+    public BoxTest() {
+    }
+
+    /**
+     * Creates a box with the general test of oriented boxes.
+     */
+    private static Box oriented(Box box) {
+        return new Box(Arrays.asList(box.getPoints()));
+    }
+
+    /**
+     * Gets a coordinate close to the bounds or the centre of a box.
+     */
+    private static double coordinate(Random random, double a, double b) {
+        double[] planes = {a, b, (a + b) / 2.0, (3 * a + b) / 4.0};
+        return planes[random.nextInt(planes.length)] + (random.nextDouble() - 0.5) * 0.0003;
+    }
+
+    /**
+     * Test of isInside method, of class Box.
+     */
+    @Test
+    public void testIsInside() {
+        System.out.println("isInside");
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            Point p1 = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+            // cubes as in the octree, the first corner being any corner
+            double side = random.nextDouble() * 4;
+            Point p2 = new Point(p1.getCoords().getX() + (random.nextBoolean() ? side : -side),
+                    p1.getCoords().getY() + (random.nextBoolean() ? side : -side),
+                    p1.getCoords().getZ() + (random.nextBoolean() ? side : -side));
+            Box instance = new Box(p1, p2);
+            Box expected = oriented(instance);
+            assertTrue(instance.isAxisAligned());
+            assertFalse(expected.isAxisAligned());
+            for (int j = 0; j < 200; j++) {
+                Coord3D c = new Coord3D(coordinate(random, p1.getCoords().getX(), p2.getCoords().getX()),
+                        coordinate(random, p1.getCoords().getY(), p2.getCoords().getY()),
+                        coordinate(random, p1.getCoords().getZ(), p2.getCoords().getZ()));
+                assertEquals(expected.isInside(c), instance.isInside(c));
+            }
+        }
+    }
+
+    /**
+     * Test of octant method, of class Box.
+     */
+    @Test
+    public void testOctant() {
+        System.out.println("octant");
+        Random random = new Random(12);
+        for (int i = 0; i < 100; i++) {
+            Point p1 = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+            double side = random.nextDouble() * 4;
+            Point p2 = new Point(p1.getCoords().getX() + side, p1.getCoords().getY() - side, p1.getCoords().getZ() + side);
+            Voxel instance = new Voxel(p1, p2);
+            Point centre = new Point(instance.getPoints());
+            for (int j = 0; j < 500; j++) {
+                Coord3D c = new Coord3D(coordinate(random, p1.getCoords().getX(), p2.getCoords().getX()),
+                        coordinate(random, p1.getCoords().getY(), p2.getCoords().getY()),
+                        coordinate(random, p1.getCoords().getZ(), p2.getCoords().getZ()));
+                if (instance.isInside(c)) {
+                    // first child accepting the point with the general test
+                    int expected = 0;
+                    while (expected < 8 && !oriented(new Box(instance.getPoints()[expected], centre)).isInside(c)) {
+                        expected++;
+                    }
+                    assertEquals(expected, instance.octant(c, centre.getCoords(), Box.GAP));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of lowerBoundDistance method, of class Box.
+     */
+    @Test
+    public void testLowerBoundDistance() {
+        System.out.println("lowerBoundDistance");
+        Random random = new Random(13);
+        for (int i = 0; i < 100; i++) {
+            Box[] boxes = new Box[2];
+            for (int b = 0; b < 2; b++) {
+                // oriented bounding box of a tilted plate
+                PointCloudMap cloud = new PointCloudMap();
+                double ox = random.nextDouble() * 20;
+                double oy = random.nextDouble() * 20;
+                double angle = random.nextDouble() * Math.PI;
+                for (int j = 0; j < 50; j++) {
+                    double u = random.nextDouble() * 3;
+                    double v = random.nextDouble();
+                    cloud.add(new Point(ox + u * Math.cos(angle) - v * Math.sin(angle),
+                            oy + u * Math.sin(angle) + v * Math.cos(angle), random.nextDouble() * 2));
+                }
+                boxes[b] = cloud.getOBB();
+            }
+            double expected = boxes[0].distance(boxes[1]);
+            assertTrue(boxes[0].lowerBoundDistance(boxes[1]) <= expected + 1e-9);
+            assertTrue(boxes[1].lowerBoundDistance(boxes[0]) <= expected + 1e-9);
+        }
+    }
+
+    /**
+     * Test of distance method, of class Box.
+     */
+    @Test
+    public void testDistance() {
+        System.out.println("distance");
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Box[] boxes = new Box[2];
+            for (int b = 0; b < 2; b++) {
+                if (random.nextBoolean()) {
+                    double x = random.nextDouble() * 10;
+                    double y = random.nextDouble() * 10;
+                    double z = random.nextDouble() * 10;
+                    boxes[b] = new Box(new Point(x, y, z), new Point(x + random.nextDouble() * 3,
+                            y + random.nextDouble() * 3, z + random.nextDouble() * 3));
+                } else {
+                    PointCloudMap cloud = new PointCloudMap();
+                    double ox = random.nextDouble() * 10;
+                    double oy = random.nextDouble() * 10;
+                    double angle = random.nextDouble() * Math.PI;
+                    for (int j = 0; j < 50; j++) {
+                        double u = random.nextDouble() * 3;
+                        double v = random.nextDouble();
+                        cloud.add(new Point(ox + u * Math.cos(angle) - v * Math.sin(angle),
+                                oy + u * Math.sin(angle) + v * Math.cos(angle), random.nextDouble() * 2));
+                    }
+                    boxes[b] = cloud.getOBB();
+                }
+            }
+            // minimum distance between the faces
+            double expected = Double.POSITIVE_INFINITY;
+            for (Point[] f1 : boxes[0].getPointFaces()) {
+                for (Point[] f2 : boxes[1].getPointFaces()) {
+                    expected = Math.min(expected, Box.distance2Faces(f1, f2));
+                }
+            }
+            assertEquals(expected, boxes[0].distance(boxes[1]));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.octree;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.math.vector.Normal;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class DiskOctreeTest {
+
+    public DiskOctreeTest() {
+    }
+
+    /**
+     * Test of build method, of class DiskOctree.
+     */
+    @Test
+    public void testBuild() throws IOException {
+        System.out.println("build");
+        PointCloudMap cloud = cloud(30000);
+        Path directory = Files.createTempDirectory("octree");
+        try {
+            try (DiskOctree tree = DiskOctree.build(directory, cloud, 2000, 1L << 30)) {
+                assertEquals(cloud.size(), tree.size());
+                tree.save();
+            }
+            try (DiskOctree tree = DiskOctree.open(directory, 1L << 30)) {
+                assertEquals(cloud.size(), tree.size());
+                Voxels voxels = tree.getVoxelsAtMaxSize(500);
+                PointCloudMap all = new PointCloudMap();
+                voxels.stream().forEach(v -> all.add(v.getPointsContained()));
+                assertEquals(cloud.size(), all.size());
+                // colours and normals are read back
+                Point expected = cloud.stream().findFirst().get();
+                Point result = all.stream().filter(expected::equals).findFirst().get();
+                assertEquals(expected.getColor().getRGB(), result.getColor().getRGB());
+                assertEquals(expected.getNormal().getX(), result.getNormal().getX(), 1.0e-9);
+                // a voxel is found from its mean
+                Voxel first = voxels.getFirst();
+                assertEquals(first.size(), tree.getSubPointCloud(first.getMean()).size());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test of build method, of class DiskOctree, with points without colour
+     * or normal.
+     */
+    @Test
+    public void testBuildBare() throws IOException {
+        System.out.println("build bare");
+        Random random = new Random(5);
+        PointCloudMap cloud = new PointCloudMap();
+        for (int i = 0; i < 6000; i++) {
+            Point p = new Point(random.nextDouble() * 10, random.nextDouble() * 10, random.nextDouble() * 10);
+            if (i % 3 == 1) {
+                p.setColor(new Color(200, 100, 50));
+            } else if (i % 3 == 2) {
+                p.setNormal(new Normal(0, 0, 1));
+            }
+            cloud.add(p);
+        }
+        long colored = cloud.stream().filter(Point::isColored).count();
+        long normalized = cloud.stream().filter(Point::isNormalized).count();
+        Path directory = Files.createTempDirectory("octree");
+        try {
+            try (DiskOctree tree = DiskOctree.build(directory, cloud, 500, 1L << 30)) {
+                tree.save();
+            }
+            try (DiskOctree tree = DiskOctree.open(directory, 1L << 30)) {
+                PointCloudMap all = new PointCloudMap();
+                tree.getVoxelsAtMaxSize(500).stream().forEach(v -> all.add(v.getPointsContained()));
+                assertEquals(cloud.size(), all.size());
+                assertEquals(colored, all.stream().filter(Point::isColored).count());
+                assertEquals(normalized, all.stream().filter(Point::isNormalized).count());
+                assertTrue(all.stream().filter(Point::isColored).allMatch(p -> p.getColor().getRed() == 200));
+                // the mean only counts the points having a colour or a normal
+                Point mean = tree.getVoxels(0).getFirst().getMean();
+                assertEquals(200, mean.getColor().getRed());
+                assertEquals(1, mean.getNormal().getZ(), 1.0e-9);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test of getVoxelsAtMaxSize method, of class DiskOctree.
+     */
+    @Test
+    public void testGetVoxelsAtMaxSize() throws IOException {
+        System.out.println("getVoxelsAtMaxSize");
+        PointCloudMap cloud = cloud(20000);
+        Octree expected = new Octree(cloud);
+        Path directory = Files.createTempDirectory("octree");
+        try (DiskOctree instance = DiskOctree.build(directory, cloud, 5000, 1L << 30)) {
+            for (int max : new int[]{5000, 300, 50}) {
+                Voxels voxels = instance.getVoxelsAtMaxSize(max);
+                assertEquals(expected.getVoxelsAtMaxSize(max).stream().mapToInt(Voxel::pointCount).sum(),
+                        voxels.stream().mapToInt(Voxel::pointCount).sum());
+                assertTrue(voxels.stream().allMatch(v -> v.pointCount() <= max));
+                assertEquals(cloud.size(), voxels.stream().mapToInt(v -> v.getPointsContained().size()).sum());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test of getCachedBytes method, of class DiskOctree.
+     */
+    @Test
+    public void testGetCachedBytes() throws IOException {
+        System.out.println("getCachedBytes");
+        PointCloudMap cloud = cloud(20000);
+        long budget = 2000L * DiskOctree.POINT_MEMORY;
+        Path directory = Files.createTempDirectory("octree");
+        try (DiskOctree instance = DiskOctree.build(directory, cloud, 1000, budget)) {
+            Voxels voxels = instance.getVoxelsAtMaxSize(1000);
+            assertTrue(voxels.size() > 10);
+            int total = 0;
+            Iterator<Voxel> it = voxels.getVoxels();
+            while (it.hasNext()) {
+                total += it.next().getPointsContained().size();
+                assertTrue(instance.getCachedBytes() <= budget);
+            }
+            assertEquals(cloud.size(), total);
+            // the root does not fit in the cache
+            Voxel root = instance.getVoxels(0).getFirst();
+            assertThrows(IllegalStateException.class, root::getPointsContained);
+            // points added to a voxel are written in its leaf
+            Voxel voxel = voxels.getFirst();
+            Point added = new Point(voxel.getMean().getCoords().getX(), voxel.getMean().getCoords().getY(), voxel.getMean().getCoords().getZ());
+            assertTrue(voxel.add(added));
+            assertEquals(cloud.size() + 1, instance.size());
+            PointCloudMap all = new PointCloudMap();
+            instance.getVoxelsAtMaxSize(1000).stream().forEach(v -> all.add(v.getPointsContained()));
+            assertTrue(all.stream().anyMatch(added::equals));
+            assertFalse(voxel.add(new Point(1.0e6, 0, 0)));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static PointCloudMap cloud(int size) {
+        Random random = new Random(11);
+        PointCloudMap cloud = new PointCloudMap();
+        for (int i = 0; i < size; i++) {
+            Coord3D c = new Coord3D(random.nextGaussian() * 20, random.nextDouble() * 50, random.nextDouble() * 5);
+            Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+            cloud.add(new Point(c, color, new Normal(0, 0, 1)));
+        }
+        return cloud;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+}
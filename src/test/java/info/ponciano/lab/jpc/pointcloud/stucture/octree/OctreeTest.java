@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package info.ponciano.lab.jpc.pointcloud.stucture.octree;
+
+import info.ponciano.lab.jpc.math.Color;
+import info.ponciano.lab.jpc.math.Coord3D;
+import info.ponciano.lab.jpc.math.Point;
+import info.ponciano.lab.jpc.pointcloud.components.PointCloudMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Dr Jean-Jacques Ponciano (Contact: jean-jacques@ponciano.info)
+ */
+public class OctreeTest {
+
+    public OctreeTest() {
+    }
+
+    /**
+     * Test of withMortonCodes method, of class Octree.
+     */
+    @Test
+    public void testWithMortonCodes() {
+        System.out.println("withMortonCodes");
+        Random random = new Random(7);
+        PointCloudMap cloud = new PointCloudMap();
+        for (int i = 0; i < 20000; i++) {
+            // coordinates on a grid to put points on the split planes
+            Coord3D c = new Coord3D(random.nextInt(400) * 0.25, random.nextInt(320) * 0.125, random.nextInt(112) * 0.0625);
+            cloud.add(new Point(c, new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), null));
+        }
+        Octree expected = new Octree(cloud);
+        Octree instance = Octree.withMortonCodes(cloud);
+        assertSameVoxels(expected.getVoxelsAtMaxSize(200), instance.getVoxelsAtMaxSize(200));
+        assertSameVoxels(expected.getVoxels(2), instance.getVoxels(2));
+        Point mean = instance.getVoxels(3).getVoxels().next().getMean();
+        assertIterableEquals(expected.getSubPointCloud(mean).stream().collect(Collectors.toList()),
+                instance.getSubPointCloud(mean).stream().collect(Collectors.toList()));
+    }
+
+    /**
+     * Test of setParallelThreshold method, of class Octree.
+     */
+    @Test
+    public void testSetParallelThreshold() {
+        System.out.println("setParallelThreshold");
+        Random random = new Random(8);
+        PointCloudMap cloud = new PointCloudMap();
+        for (int i = 0; i < 20000; i++) {
+            cloud.add(new Point(random.nextGaussian() * 10, random.nextGaussian() * 10, random.nextDouble()));
+        }
+        Octree expected = new Octree(cloud);
+        Octree instance = new Octree(cloud);
+        instance.setParallelThreshold(100);
+        assertSameVoxels(expected.getVoxelsAtMaxSize(50), instance.getVoxelsAtMaxSize(50));
+        assertSameVoxels(Octree.getRawVoxels(cloud, 50), Octree.getRawVoxels(cloud, 50, 100));
+    }
+
+    private static void assertSameVoxels(Voxels expected, Voxels result) {
+        assertEquals(expected.size(), result.size());
+        Iterator<Voxel> e = expected.getVoxels();
+        Iterator<Voxel> r = result.getVoxels();
+        while (e.hasNext()) {
+            Voxel ve = e.next();
+            Voxel vr = r.next();
+            assertArrayEquals(ve.getPoints(), vr.getPoints());
+            assertEquals(ve.getMean().getCoords().toString(), vr.getMean().getCoords().toString());
+            List<Point> pe = ve.getPointsContained().stream().collect(Collectors.toList());
+            List<Point> pr = vr.getPointsContained().stream().collect(Collectors.toList());
+            assertIterableEquals(pe, pr);
+        }
+    }
+}
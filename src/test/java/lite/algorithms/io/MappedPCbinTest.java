@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.algorithms.io;
+
+import java.awt.Color;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import lite.pointcloud.PointCloud;
+import lite.pointcloud.PointColor;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class MappedPCbinTest {
+
+    public MappedPCbinTest() {
+    }
+
+    /**
+     * Test of getHeader method, of class MappedPCbin.
+     */
+    @Test
+    public void testGetHeader() throws IOException {
+        System.out.println("getHeader");
+        PointCloud cloud = cloud(1000);
+        Path file = Files.createTempFile("cloud", ".bin");
+        try {
+            for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                new SavePCbin(cloud, file.toString(), order).run();
+                assertEquals(PCbinHeader.SIZE + 1000 * 15, Files.size(file));
+                try (MappedPCbin instance = new MappedPCbin(file.toString())) {
+                    PCbinHeader header = instance.getHeader();
+                    assertEquals(order, header.getOrder());
+                    assertEquals(1000, header.getCount());
+                    assertTrue(header.hasColor());
+                    float[] bounds = header.getBounds();
+                    for (PointColor p : cloud.getPoints()) {
+                        assertTrue(p.getX() >= bounds[0] && p.getX() <= bounds[3]);
+                        assertTrue(p.getY() >= bounds[1] && p.getY() <= bounds[4]);
+                        assertTrue(p.getZ() >= bounds[2] && p.getZ() <= bounds[5]);
+                    }
+                    assertEquals(header.getColorPosition(), PCbinHeader.SIZE + 1000 * 3 * Float.BYTES);
+                }
+            }
+            // unsupported version
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{2}), 5);
+            }
+            assertThrows(IOException.class, () -> new MappedPCbin(file.toString()));
+            // truncated data
+            new SavePCbin(cloud, file.toString()).run();
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(Files.size(file) - 1);
+            }
+            assertThrows(IOException.class, () -> new MappedPCbin(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of checkCRC method, of class MappedPCbin.
+     */
+    @Test
+    public void testCheckCRC() throws IOException {
+        System.out.println("checkCRC");
+        Path file = Files.createTempFile("cloud", ".bin");
+        try {
+            new SavePCbin(cloud(5000), file.toString()).run();
+            try (MappedPCbin instance = new MappedPCbin(file.toString())) {
+                assertTrue(instance.checkCRC());
+            }
+            // corrupts a color byte
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer b = ByteBuffer.allocate(1);
+                long position = channel.size() - 10;
+                channel.read(b, position);
+                b.put(0, (byte) ~b.get(0));
+                b.rewind();
+                channel.write(b, position);
+            }
+            try (MappedPCbin instance = new MappedPCbin(file.toString())) {
+                assertFalse(instance.checkCRC());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of getCoordinates method, of class MappedPCbin.
+     */
+    @Test
+    public void testGetCoordinates() throws IOException {
+        System.out.println("getCoordinates");
+        PointCloud cloud = cloud(3000);
+        Path file = Files.createTempFile("cloud", ".bin");
+        try {
+            new SavePCbin(cloud, file.toString(), ByteOrder.BIG_ENDIAN).run();
+            try (MappedPCbin instance = new MappedPCbin(file.toString())) {
+                assertEquals(3000, instance.size());
+                FloatBuffer coords = instance.getCoordinates();
+                ByteBuffer colors = instance.getColors();
+                for (PointColor p : cloud.getPoints()) {
+                    assertEquals(p.getX(), coords.get());
+                    assertEquals(p.getY(), coords.get());
+                    assertEquals(p.getZ(), coords.get());
+                    assertEquals(p.getColor(), new Color(colors.get() & 0xFF, colors.get() & 0xFF, colors.get() & 0xFF));
+                }
+                FloatBuffer block = instance.getCoordinates(1000, 10);
+                assertEquals(30, block.remaining());
+                assertEquals(cloud.get(1000).getX(), block.get(0));
+                assertEquals(cloud.get(1009).getZ(), block.get(29));
+                assertThrows(IndexOutOfBoundsException.class, () -> instance.getCoordinates(2995, 10));
+                assertThrows(IndexOutOfBoundsException.class, () -> instance.getColors(-1, 1));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of run method, of class ReadPCfromBin, on the versioned and the
+     * legacy formats.
+     */
+    @Test
+    public void testRead() throws IOException {
+        System.out.println("read");
+        PointCloud cloud = cloud(2500);
+        Path file = Files.createTempFile("cloud", ".bin");
+        try {
+            // round trip in the versioned format
+            new SavePCbin(cloud, file.toString(), ByteOrder.LITTLE_ENDIAN).run();
+            ReadPCfromBin reader = new ReadPCfromBin(file.toString());
+            reader.run();
+            assertTrue(reader.isReady());
+            PointCloud result = reader.getCloud();
+            assertEquals(cloud.size(), result.size());
+            for (int i = 0; i < cloud.size(); i++) {
+                assertEquals(cloud.get(i).getX(), result.get(i).getX());
+                assertEquals(cloud.get(i).getY(), result.get(i).getY());
+                assertEquals(cloud.get(i).getZ(), result.get(i).getZ());
+                assertEquals(cloud.get(i).getColor(), result.get(i).getColor());
+            }
+            // legacy format: count and coordinates in big endian
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+                out.writeInt(cloud.size());
+                for (PointColor p : cloud.getPoints()) {
+                    out.writeFloat(p.getX());
+                    out.writeFloat(p.getY());
+                    out.writeFloat(p.getZ());
+                }
+            }
+            assertThrows(IOException.class, () -> new MappedPCbin(file.toString()));
+            reader = new ReadPCfromBin(file.toString());
+            reader.run();
+            result = reader.getCloud();
+            assertEquals(cloud.size(), result.size());
+            for (int i = 0; i < cloud.size(); i++) {
+                assertEquals(cloud.get(i).getX(), result.get(i).getX());
+                assertEquals(cloud.get(i).getZ(), result.get(i).getZ());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static PointCloud cloud(int size) {
+        Random random = new Random(3);
+        PointCloud cloud = new PointCloud();
+        for (int i = 0; i < size; i++) {
+            Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+            cloud.add(new PointColor(random.nextFloat() * 100, random.nextFloat() * 50 - 25, random.nextFloat(), color));
+        }
+        return cloud;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.pointcloud;
+
+import info.ponciano.lab.jpc.math.Matrix4d;
+import java.util.Random;
+import lite.algorithms.basic.CenterPC;
+import lite.algorithms.basic.ScalePC;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class PointCloudTest {
+
+    public PointCloudTest() {
+    }
+
+    /**
+     * Test of transform method, of class PointCloud.
+     */
+    @Test
+    public void testTransform() {
+        System.out.println("transform");
+        Random random = new Random(3);
+        // several chunks and a partial one
+        PointCloud instance = new PointCloud();
+        float[] expected = new float[3 * 10000];
+        for (int i = 0; i < 10000; i++) {
+            float x = random.nextFloat() * 100, y = random.nextFloat() * 100, z = random.nextFloat() * 10;
+            instance.add(new PointColor(x, y, z));
+            expected[3 * i] = x * 0.5f;
+            expected[3 * i + 1] = y * 2;
+            expected[3 * i + 2] = z * -1;
+        }
+        new ScalePC(instance, 0.5f, 2, -1).run();
+        for (int i = 0; i < instance.size(); i++) {
+            assertEquals(expected[3 * i], instance.get(i).getX());
+            assertEquals(expected[3 * i + 1], instance.get(i).getY());
+            assertEquals(expected[3 * i + 2], instance.get(i).getZ());
+        }
+        float[] orig = instance.get(0).getArray();
+        float x = instance.get(9999).getX() - orig[0];
+        new CenterPC(instance).run();
+        assertEquals(0, instance.get(0).getX());
+        assertEquals(x, instance.get(9999).getX());
+        instance.transform(Matrix4d.translation(1, 0, 0));
+        assertEquals(1, instance.get(0).getX());
+        new PointCloud().transform(Matrix4d.scaling(2, 2, 2));
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2016 Jean-Jacques Ponciano.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package lite.stream;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import lite.algorithms.io.MappedPCbin;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Jean-Jacques Ponciano
+ */
+public class PointStreamTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    public PointStreamTest() {
+    }
+
+    /**
+     * Test of next method, of class PointStream, with a consumer slower than
+     * the source.
+     */
+    @Test
+    public void testBackPressure() throws Exception {
+        System.out.println("backPressure");
+        CountingSource source = new CountingSource(1000, -1);
+        try (PointStream instance = new PointStream(source, 10, 2)) {
+            // the 3 batches are filled, then the reader waits for one of them
+            waitFor(() -> source.reads.get() == 3);
+            Thread.sleep(200);
+            assertEquals(3, source.reads.get());
+            PointBatch first = instance.next();
+            assertEquals(10, first.size());
+            assertEquals(0, first.getX(0));
+            Thread.sleep(100);
+            assertEquals(3, source.reads.get());
+            // releasing the first batch lets the reader read one more
+            PointBatch second = instance.next();
+            assertEquals(10, second.getX(0));
+            waitFor(() -> source.reads.get() == 4);
+            Thread.sleep(100);
+            assertEquals(4, source.reads.get());
+        }
+        assertTrue(source.closed.get());
+    }
+
+    /**
+     * Test of close method, of class PointStream, while the reader thread is
+     * blocked.
+     */
+    @Test
+    public void testClose() throws Exception {
+        System.out.println("close");
+        // reader blocked on a full queue
+        CountingSource full = new CountingSource(1000, -1);
+        PointStream instance = new PointStream(full, 10, 1);
+        waitFor(() -> full.reads.get() == 2);
+        assertTimeoutPreemptively(TIMEOUT, instance::close);
+        assertTrue(full.closed.get());
+        // reader blocked in the source
+        CountDownLatch never = new CountDownLatch(1);
+        CountDownLatch reading = new CountDownLatch(1);
+        AtomicBoolean closed = new AtomicBoolean();
+        PointSource blocked = new PointSource() {
+            @Override
+            public boolean read(PointBatch batch) throws IOException {
+                reading.countDown();
+                try {
+                    never.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                return false;
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        PointStream waiting = new PointStream(blocked, 10, 1);
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        assertTimeoutPreemptively(TIMEOUT, waiting::close);
+        assertTrue(closed.get());
+    }
+
+    /**
+     * Test of forEach method, of class PointStream, with a source failing.
+     */
+    @Test
+    public void testForEachError() throws Exception {
+        System.out.println("forEachError");
+        AtomicInteger batches = new AtomicInteger();
+        try (PointStream instance = new PointStream(new CountingSource(1000, 3), 10, 2)) {
+            IOException ex = assertThrows(IOException.class, () -> instance.forEach(b -> batches.incrementAndGet()));
+            assertEquals("read 3", ex.getMessage());
+            // the batches read before the error are given to the consumer
+            assertEquals(2, batches.get());
+            assertNull(instance.next());
+        }
+        PointSource failing = new PointSource() {
+            @Override
+            public boolean read(PointBatch batch) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (PointStream instance = new PointStream(failing, 10, 2)) {
+            IOException ex = assertThrows(IOException.class, instance::next);
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * Test of transform method, of class PointStream, from a text source to a
+     * binary sink read back by a binary source.
+     */
+    @Test
+    public void testTransform() throws IOException {
+        System.out.println("transform");
+        Random random = new Random(5);
+        int size = 25000;
+        float[] expected = new float[size * 3];
+        int[] colors = new int[size];
+        Path txt = Files.createTempFile("cloud", ".txt");
+        Path bin = Files.createTempFile("cloud", ".bin");
+        try {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(txt))) {
+                out.println("# x y z r g b");
+                for (int i = 0; i < size; i++) {
+                    for (int c = 0; c < 3; c++) {
+                        expected[i * 3 + c] = random.nextInt(100000) / 100f;
+                    }
+                    colors[i] = random.nextInt(1 << 24);
+                    out.println(expected[i * 3] + " " + expected[i * 3 + 1] + " " + expected[i * 3 + 2] + " "
+                            + (colors[i] >> 16) + " " + (colors[i] >> 8 & 0xFF) + " " + (colors[i] & 0xFF));
+                }
+            }
+            try (PointStream stream = new PointStream(new TxtPointSource(txt.toString()), 4096, 2);
+                    BinPointSink sink = new BinPointSink(bin.toString(), ByteOrder.BIG_ENDIAN)) {
+                stream.transform(BatchTransform.scale(2, 2, 1).then(BatchTransform.switchCoords(0, 2)), sink);
+            }
+            try (MappedPCbin mapped = new MappedPCbin(bin.toString())) {
+                assertEquals(size, mapped.size());
+                assertTrue(mapped.checkCRC());
+                FloatBuffer coords = mapped.getCoordinates();
+                ByteBuffer rgb = mapped.getColors();
+                for (int i = 0; i < size; i++) {
+                    assertEquals(expected[i * 3 + 2], coords.get());
+                    assertEquals(expected[i * 3 + 1] * 2, coords.get());
+                    assertEquals(expected[i * 3] * 2, coords.get());
+                    assertEquals(colors[i], (rgb.get() & 0xFF) << 16 | (rgb.get() & 0xFF) << 8 | (rgb.get() & 0xFF));
+                }
+            }
+            // read back through a stream
+            BinPointSource source = new BinPointSource(bin.toString());
+            StreamStatistics statistics = StreamStatistics.of(source);
+            assertEquals(size, statistics.getCount());
+            assertEquals(0, source.remaining());
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += expected[i * 3 + 2];
+            }
+            assertEquals(sum / size, statistics.getCentroid()[0], 1.0e-6);
+        } finally {
+            Files.delete(txt);
+            Files.delete(bin);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long end = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < end, "timeout");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Source of points whose x is their index, counting its reads and failing
+     * at a given read.
+     */
+    private static class CountingSource implements PointSource {
+
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final int size;
+        private final int failure;
+        private int next;
+
+        CountingSource(int size, int failure) {
+            this.size = size;
+            this.failure = failure;
+        }
+
+        @Override
+        public boolean read(PointBatch batch) throws IOException {
+            int read = this.reads.incrementAndGet();
+            if (read == this.failure) {
+                throw new IOException("read " + read);
+            }
+            batch.clear();
+            while (!batch.isFull() && this.next < this.size) {
+                batch.add(this.next++, 0, 0);
+            }
+            return !batch.isEmpty();
+        }
+
+        @Override
+        public void close() {
+            this.closed.set(true);
+        }
+    }
+}